@@ -0,0 +1,535 @@
+/**
+ * @file AdherenceScoringEngine.java
+ * @brief Batched evaluation of nutrition goal adherence over date ranges
+ *
+ * @details The AdherenceScoringEngine class scores how well many users stuck to
+ *          their NutritionGoal over a range of days. Daily rollups are held in
+ *          flat primitive arrays (one row of days per user) and evaluated in tight
+ *          loops without allocating objects per day, producing streak lengths, days
+ *          over and under the calorie target and a composite score per user.
+ *
+ * @author kagan
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.IntStream;
+
+/**
+ * @class AdherenceScoringEngine
+ * @brief Scores calorie and macronutrient adherence for blocks of users
+ *
+ * @details A day counts as logged when its calories are above zero. A logged day is
+ *          on target when its calories are within the tolerance of the calorie goal,
+ *          otherwise it is over or under. The composite score (0-100) weighs the
+ *          share of on-target days (50%), macronutrient accuracy on logged days (30%)
+ *          and logging consistency (20%).
+ */
+public class AdherenceScoringEngine {
+    /** @brief Default relative tolerance around the calorie goal */
+    public static final double DEFAULT_TOLERANCE = 0.10;
+
+    /** @brief Users per block below which evaluation stays on the calling thread */
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    /** @brief User rows allocated before DailyRollups.load first has to grow */
+    private static final int INITIAL_LOAD_CAPACITY = 16;
+
+    private static final double ON_TARGET_WEIGHT = 50;
+    private static final double MACRO_WEIGHT = 30;
+    private static final double CONSISTENCY_WEIGHT = 20;
+
+    /** @brief Relative tolerance around the calorie goal */
+    private final double tolerance;
+
+    /**
+     * @brief Creates an engine with DEFAULT_TOLERANCE
+     */
+    public AdherenceScoringEngine() {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @brief Creates an engine with a custom calorie tolerance
+     *
+     * @param tolerance Relative tolerance, for example 0.1 for plus or minus 10%
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public AdherenceScoringEngine(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance cannot be negative");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @brief Evaluates a block of rollups into a new result
+     *
+     * @param rollups Daily rollups of the users to score
+     * @return Scores in the same user order as the rollups
+     */
+    public AdherenceScores evaluate(DailyRollups rollups) {
+        AdherenceScores scores = new AdherenceScores(rollups.getUserCount());
+        evaluate(rollups, scores);
+        return scores;
+    }
+
+    /**
+     * @brief Evaluates a block of rollups into an existing result
+     * @details Lets callers scoring many blocks reuse the same result arrays.
+     *
+     * @param rollups Daily rollups of the users to score
+     * @param scores Result with capacity for at least rollups.getUserCount() users
+     * @throws IllegalArgumentException if the result is too small
+     */
+    public void evaluate(DailyRollups rollups, AdherenceScores scores) {
+        int users = rollups.getUserCount();
+        if (scores.capacity() < users) {
+            throw new IllegalArgumentException("Result capacity is smaller than the user count");
+        }
+        scores.userCount = users;
+        System.arraycopy(rollups.userIds, 0, scores.userIds, 0, users);
+
+        if (users >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, users).parallel().forEach(u -> evaluateUser(rollups, scores, u));
+        } else {
+            for (int u = 0; u < users; u++) {
+                evaluateUser(rollups, scores, u);
+            }
+        }
+    }
+
+    /**
+     * @brief Scores one user row of the rollups
+     */
+    private void evaluateUser(DailyRollups rollups, AdherenceScores scores, int u) {
+        final int days = rollups.days;
+        final int base = u * days;
+        final double[] calories = rollups.calories;
+        final double[] protein = rollups.protein;
+        final double[] carbs = rollups.carbs;
+        final double[] fat = rollups.fat;
+
+        final double calorieGoal = rollups.calorieGoal[u];
+        final double low = calorieGoal * (1 - tolerance);
+        final double high = calorieGoal * (1 + tolerance);
+        final double proteinGoal = rollups.proteinGoal[u];
+        final double carbGoal = rollups.carbGoal[u];
+        final double fatGoal = rollups.fatGoal[u];
+
+        int streak = 0;
+        int longest = 0;
+        int over = 0;
+        int under = 0;
+        int onTarget = 0;
+        int logged = 0;
+        double macroAccuracy = 0;
+
+        for (int d = 0; d < days; d++) {
+            double c = calories[base + d];
+            if (c <= 0) {
+                streak = 0;
+                continue;
+            }
+            logged++;
+            if (c > high) {
+                over++;
+                streak = 0;
+            } else if (c < low) {
+                under++;
+                streak = 0;
+            } else {
+                onTarget++;
+                streak++;
+                if (streak > longest) {
+                    longest = streak;
+                }
+            }
+            macroAccuracy += (accuracy(protein[base + d], proteinGoal)
+                              + accuracy(carbs[base + d], carbGoal)
+                              + accuracy(fat[base + d], fatGoal)) / 3;
+        }
+
+        double score = 0;
+        if (days > 0) {
+            score = ON_TARGET_WEIGHT * onTarget / days
+                    + CONSISTENCY_WEIGHT * logged / days
+                    + (logged > 0 ? MACRO_WEIGHT * macroAccuracy / logged : 0);
+        }
+
+        scores.currentStreak[u] = streak;
+        scores.longestStreak[u] = longest;
+        scores.daysOver[u] = over;
+        scores.daysUnder[u] = under;
+        scores.daysOnTarget[u] = onTarget;
+        scores.daysLogged[u] = logged;
+        scores.score[u] = score;
+    }
+
+    /**
+     * @brief Closeness of an intake to its goal, 1 when equal and 0 at 100% off or more
+     */
+    private static double accuracy(double actual, double goal) {
+        if (goal <= 0) {
+            return 1;
+        }
+        double error = Math.abs(actual - goal) / goal;
+        return error >= 1 ? 0 : 1 - error;
+    }
+
+    /**
+     * @class DailyRollups
+     * @brief Per-user, per-day nutrition totals and goals in flat primitive arrays
+     *
+     * @details Day d of user u is stored at index u * days + d. Instances can be
+     *          refilled and reused for successive blocks of users; setUserCount
+     *          selects how many rows of the current block are in use.
+     */
+    public static class DailyRollups {
+        private final int capacity;
+        private final int days;
+        private int userCount;
+        private final int[] userIds;
+        private final double[] calories;
+        private final double[] protein;
+        private final double[] carbs;
+        private final double[] fat;
+        private final double[] calorieGoal;
+        private final double[] proteinGoal;
+        private final double[] carbGoal;
+        private final double[] fatGoal;
+
+        /**
+         * @brief Constructor for DailyRollups
+         *
+         * @param capacity Maximum number of users in one block
+         * @param days Number of days per user
+         */
+        public DailyRollups(int capacity, int days) {
+            if (capacity < 0 || days < 0) {
+                throw new IllegalArgumentException("Capacity and days cannot be negative");
+            }
+            this.capacity = capacity;
+            this.days = days;
+            this.userCount = capacity;
+            this.userIds = new int[capacity];
+            this.calories = new double[capacity * days];
+            this.protein = new double[capacity * days];
+            this.carbs = new double[capacity * days];
+            this.fat = new double[capacity * days];
+            this.calorieGoal = new double[capacity];
+            this.proteinGoal = new double[capacity];
+            this.carbGoal = new double[capacity];
+            this.fatGoal = new double[capacity];
+        }
+
+        /**
+         * @brief Sets the identity and goals of one user row
+         *
+         * @param u Row index
+         * @param userId Database id of the user
+         * @param calorieGoal Daily calorie goal
+         * @param proteinGoal Daily protein goal in grams
+         * @param carbGoal Daily carbohydrate goal in grams
+         * @param fatGoal Daily fat goal in grams
+         */
+        public void setUser(int u, int userId, double calorieGoal, double proteinGoal,
+                            double carbGoal, double fatGoal) {
+            this.userIds[u] = userId;
+            this.calorieGoal[u] = calorieGoal;
+            this.proteinGoal[u] = proteinGoal;
+            this.carbGoal[u] = carbGoal;
+            this.fatGoal[u] = fatGoal;
+        }
+
+        /**
+         * @brief Sets the totals of one day of one user
+         *
+         * @param u Row index
+         * @param d Day index from the start of the range
+         * @param dayCalories Calories consumed
+         * @param dayProtein Protein consumed in grams
+         * @param dayCarbs Carbohydrates consumed in grams
+         * @param dayFat Fat consumed in grams
+         */
+        public void setDay(int u, int d, double dayCalories, double dayProtein,
+                           double dayCarbs, double dayFat) {
+            int i = u * days + d;
+            calories[i] = dayCalories;
+            protein[i] = dayProtein;
+            carbs[i] = dayCarbs;
+            fat[i] = dayFat;
+        }
+
+        /**
+         * @brief Selects how many user rows are in use
+         *
+         * @param userCount Number of rows, at most the capacity
+         */
+        public void setUserCount(int userCount) {
+            if (userCount < 0 || userCount > capacity) {
+                throw new IllegalArgumentException("User count out of range");
+            }
+            this.userCount = userCount;
+        }
+
+        /**
+         * Gets the number of user rows in use.
+         * @return User count
+         */
+        public int getUserCount() {
+            return userCount;
+        }
+
+        /**
+         * Gets the number of days per user.
+         * @return Day count
+         */
+        public int getDays() {
+            return days;
+        }
+
+        /**
+         * Gets the raw calorie column, indexed by u * days + d.
+         * @return Backing array, not a copy
+         */
+        public double[] getCalories() {
+            return calories;
+        }
+
+        /**
+         * Gets the raw protein column, indexed by u * days + d.
+         * @return Backing array, not a copy
+         */
+        public double[] getProtein() {
+            return protein;
+        }
+
+        /**
+         * Gets the raw carbohydrate column, indexed by u * days + d.
+         * @return Backing array, not a copy
+         */
+        public double[] getCarbs() {
+            return carbs;
+        }
+
+        /**
+         * Gets the raw fat column, indexed by u * days + d.
+         * @return Backing array, not a copy
+         */
+        public double[] getFat() {
+            return fat;
+        }
+
+        /**
+         * @brief Copies the rows into rollups with a larger capacity
+         *
+         * @param newCapacity Capacity of the copy, at least the current one
+         * @return Rollups holding the same rows and user count
+         */
+        private DailyRollups grow(int newCapacity) {
+            DailyRollups grown = new DailyRollups(newCapacity, days);
+            System.arraycopy(userIds, 0, grown.userIds, 0, capacity);
+            System.arraycopy(calories, 0, grown.calories, 0, capacity * days);
+            System.arraycopy(protein, 0, grown.protein, 0, capacity * days);
+            System.arraycopy(carbs, 0, grown.carbs, 0, capacity * days);
+            System.arraycopy(fat, 0, grown.fat, 0, capacity * days);
+            System.arraycopy(calorieGoal, 0, grown.calorieGoal, 0, capacity);
+            System.arraycopy(proteinGoal, 0, grown.proteinGoal, 0, capacity);
+            System.arraycopy(carbGoal, 0, grown.carbGoal, 0, capacity);
+            System.arraycopy(fatGoal, 0, grown.fatGoal, 0, capacity);
+            grown.userCount = userCount;
+            return grown;
+        }
+
+        /**
+         * @brief Converts a YYYY-MM-DD date to its epoch day without parsing objects
+         *
+         * @param date Date in YYYY-MM-DD format
+         * @return Days since 1970-01-01
+         */
+        static long epochDay(String date) {
+            if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+                return LocalDate.parse(date).toEpochDay();
+            }
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+                return LocalDate.parse(date).toEpochDay();
+            }
+            // Days from the civil date, counting years from March so leap days come last
+            int y = month <= 2 ? year - 1 : year;
+            int era = y / 400;
+            int yearOfEra = y - era * 400;
+            int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097L + dayOfEra - 719468;
+        }
+
+        /**
+         * @brief Reads a run of decimal digits
+         * @return The value, or -1 if a character is not a digit
+         */
+        private static int digits(String s, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        /**
+         * @brief Loads rollups for all users from daily_nutrition_reports
+         * @details Reads the table written by NutritionReportBatchJob. Users are the
+         *          ones with at least one report in the range; days without a report
+         *          stay at zero. Goals are taken from the latest report of each user.
+         *
+         * @param conn Connection to read from
+         * @param fromDate First day in YYYY-MM-DD format
+         * @param toDate Last day in YYYY-MM-DD format
+         * @return Rollups covering every day of the range
+         * @throws SQLException if the query fails
+         */
+        public static DailyRollups load(Connection conn, String fromDate, String toDate) throws SQLException {
+            LocalDate from = LocalDate.parse(fromDate);
+            int days = (int) ChronoUnit.DAYS.between(from, LocalDate.parse(toDate)) + 1;
+            if (days <= 0) {
+                return new DailyRollups(0, 0);
+            }
+
+            long firstDay = from.toEpochDay();
+            DailyRollups rollups = new DailyRollups(INITIAL_LOAD_CAPACITY, days);
+            int rowCount = 0;
+            int lastUserId = 0;
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT user_id, date, total_calories, total_protein, total_carbs, total_fat, " +
+                    "calorie_goal, protein_goal, carb_goal, fat_goal " +
+                    "FROM daily_nutrition_reports WHERE date >= ? AND date <= ? " +
+                    "ORDER BY user_id, date")) {
+                pstmt.setString(1, fromDate);
+                pstmt.setString(2, toDate);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        // Rows arrive grouped by user, so a new id starts the next row
+                        int userId = rs.getInt(1);
+                        if (rowCount == 0 || userId != lastUserId) {
+                            if (rowCount == rollups.capacity) {
+                                rollups = rollups.grow(rowCount * 2);
+                            }
+                            rowCount++;
+                            lastUserId = userId;
+                        }
+                        int row = rowCount - 1;
+                        // Dates are ascending, so the goals of the latest report win
+                        rollups.setUser(row, userId, rs.getDouble(7), rs.getDouble(8),
+                                        rs.getDouble(9), rs.getDouble(10));
+                        long day = epochDay(rs.getString(2)) - firstDay;
+                        if (day >= 0 && day < days) {
+                            rollups.setDay(row, (int) day, rs.getDouble(3), rs.getDouble(4),
+                                           rs.getDouble(5), rs.getDouble(6));
+                        }
+                    }
+                }
+            }
+
+            rollups.setUserCount(rowCount);
+            return rollups;
+        }
+    }
+
+    /**
+     * @class AdherenceScores
+     * @brief Adherence results in flat arrays, one entry per user row
+     */
+    public static class AdherenceScores {
+        private int userCount;
+        private final int[] userIds;
+        private final int[] currentStreak;
+        private final int[] longestStreak;
+        private final int[] daysOver;
+        private final int[] daysUnder;
+        private final int[] daysOnTarget;
+        private final int[] daysLogged;
+        private final double[] score;
+
+        /**
+         * @brief Constructor for AdherenceScores
+         *
+         * @param capacity Maximum number of users
+         */
+        public AdherenceScores(int capacity) {
+            this.userIds = new int[capacity];
+            this.currentStreak = new int[capacity];
+            this.longestStreak = new int[capacity];
+            this.daysOver = new int[capacity];
+            this.daysUnder = new int[capacity];
+            this.daysOnTarget = new int[capacity];
+            this.daysLogged = new int[capacity];
+            this.score = new double[capacity];
+        }
+
+        /** @brief Gets the maximum number of users @return Capacity */
+        public int capacity() {
+            return userIds.length;
+        }
+
+        /** @brief Gets the number of users scored @return User count */
+        public int getUserCount() {
+            return userCount;
+        }
+
+        /** @brief Gets the user id of a row @param u Row index @return User id */
+        public int getUserId(int u) {
+            return userIds[u];
+        }
+
+        /** @brief Gets the on-target streak ending on the last day @param u Row index @return Days */
+        public int getCurrentStreak(int u) {
+            return currentStreak[u];
+        }
+
+        /** @brief Gets the longest on-target streak @param u Row index @return Days */
+        public int getLongestStreak(int u) {
+            return longestStreak[u];
+        }
+
+        /** @brief Gets the number of days above the calorie target @param u Row index @return Days */
+        public int getDaysOver(int u) {
+            return daysOver[u];
+        }
+
+        /** @brief Gets the number of logged days below the calorie target @param u Row index @return Days */
+        public int getDaysUnder(int u) {
+            return daysUnder[u];
+        }
+
+        /** @brief Gets the number of days within the calorie target @param u Row index @return Days */
+        public int getDaysOnTarget(int u) {
+            return daysOnTarget[u];
+        }
+
+        /** @brief Gets the number of days with any food logged @param u Row index @return Days */
+        public int getDaysLogged(int u) {
+            return daysLogged[u];
+        }
+
+        /** @brief Gets the composite adherence score @param u Row index @return Score from 0 to 100 */
+        public double getScore(int u) {
+            return score[u];
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.berkant.kagan.haluk.irem.dietapp;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @class AuthenticationService
@@ -235,4 +236,79 @@ public class AuthenticationService {
        
         return users;
     }
-}
\ No newline at end of file
+
+    /**
+     * @brief Retrieves one page of the registered users
+     * @details Keyset-paginated variant of getAllUsers. Users are in id order and
+     *          each page seeks past the previous page's last user id.
+     *
+     * @param afterId User id of the previous page's last user, 0 for the first page
+     * @param pageSize Maximum number of users on the page
+     * @return Page of User objects keyed by user id
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<User, Long> getAllUsers(long afterId, int pageSize) {
+        Page.checkPageSize(pageSize);
+        Page<User, Long> empty = new Page<>(new ArrayList<>(), afterId, false);
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            return empty;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return Page.read(rs, pageSize, afterId, row -> {
+                    User user = new User(
+                        row.getString("username"),
+                        row.getString("password"),
+                        row.getString("email"),
+                        row.getString("name")
+                    );
+                    user.setLoggedIn(row.getInt("is_logged_in") == 1);
+                    return user;
+                }, row -> row.getLong("id"));
+            }
+        } catch (SQLException e) {
+            System.out.println("Users could not be retrieved: " + e.getMessage());
+            return empty;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * @brief Streams all registered users without loading them into memory
+     * @details Cursor-backed variant of getAllUsers for admin exports. Users are
+     *          produced lazily in id order from a pooled connection, which is released
+     *          back to DatabaseHelper when the stream is closed.
+     *
+     * @param fetchSize Rows fetched per round trip (0 for the default)
+     * @return Stream of User objects that must be closed by the caller
+     * @throws SQLException if there is an error accessing the database
+     */
+    public Stream<User> streamAllUsers(int fetchSize) throws SQLException {
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            throw new SQLException("Failed to obtain database connection");
+        }
+        PreparedStatement stmt;
+        try {
+            stmt = conn.prepareStatement("SELECT * FROM users ORDER BY id");
+        } catch (SQLException e) {
+            DatabaseHelper.releaseConnection(conn);
+            throw e;
+        }
+        return ResultSetStreams.stream(stmt, fetchSize, rs -> {
+            User user = new User(
+                rs.getString("username"),
+                rs.getString("password"),
+                rs.getString("email"),
+                rs.getString("name")
+            );
+            user.setLoggedIn(rs.getInt("is_logged_in") == 1);
+            return user;
+        }, () -> DatabaseHelper.releaseConnection(conn));
+    }
+}
@@ -19,8 +19,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * @class CalorieNutrientTrackingService
@@ -35,16 +41,83 @@ import java.util.List;
 public class CalorieNutrientTrackingService {
     /** @brief Service for accessing food logs and meal planning data */
     private MealPlanningService mealPlanningService;
+    /** @brief Cached rolling windows keyed by username and window size */
+    private final Map<String, RollingNutritionWindow> rollingWindows = new ConcurrentHashMap<>();
+    /** @brief DatabaseHelper.getFoodValuesVersion() each cached rolling window was loaded at */
+    private final Map<String, Long> rollingVersions = new ConcurrentHashMap<>();
+    /** @brief In-memory autocomplete index kept current by addFoodEntry and deleteFoodEntry */
+    private FoodAutocompleteIndex autocompleteIndex = FoodAutocompleteIndex.getShared();
+    /** @brief Scores goal adherence over the stored daily reports */
+    private final AdherenceScoringEngine adherenceEngine = new AdherenceScoringEngine();
     
     /**
      * @brief Constructor for CalorieNutrientTrackingService
      * @details Initializes the service with a reference to the meal planning service
-     *          which is required for accessing food logs and meal data.
+     *          which is required for accessing food logs and meal data. Food logged
+     *          through that service updates the cached rolling windows.
      * 
      * @param mealPlanningService Service for accessing food logs and meal planning data
      */
     public CalorieNutrientTrackingService(MealPlanningService mealPlanningService) {
         this.mealPlanningService = mealPlanningService;
+        if (mealPlanningService != null) {
+            mealPlanningService.addFoodLogListener((username, date, foodId) -> refreshRollingDay(username, date));
+        }
+    }
+
+    /**
+     * @brief Sets the autocomplete index fed with added and deleted foods
+     * @details Defaults to FoodAutocompleteIndex.getShared(). Pass null to stop
+     *          maintaining an index; suggestFoods then returns nothing.
+     * 
+     * @param autocompleteIndex Index to maintain, may be null
+     */
+    public void setAutocompleteIndex(FoodAutocompleteIndex autocompleteIndex) {
+        this.autocompleteIndex = autocompleteIndex;
+    }
+
+    /**
+     * @brief Loads the autocomplete index, or reloads it if foods were added
+     * @details Reads the database, so it is meant for a background thread; the
+     *          food name fields call it off the event dispatch thread.
+     * 
+     * @return true if the index is loaded
+     */
+    public boolean refreshAutocompleteIndex() {
+        FoodAutocompleteIndex index = autocompleteIndex;
+        if (index == null) {
+            return false;
+        }
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            return index.isLoaded();
+        }
+        try {
+            index.reloadIfChanged(conn);
+        } catch (SQLException e) {
+            System.out.println("Food names could not be loaded: " + e.getMessage());
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        return index.isLoaded();
+    }
+
+    /**
+     * @brief Suggests food names while the user types
+     * @details Answered from the in-memory autocomplete index without touching
+     *          the database; refreshAutocompleteIndex loads it.
+     * 
+     * @param text The typed text, case-insensitive
+     * @param limit Maximum number of names to return
+     * @return Suggested food names, best first; empty if none or if the index is
+     *         not loaded yet
+     */
+    public List<String> suggestFoods(String text, int limit) {
+        FoodAutocompleteIndex index = autocompleteIndex;
+        if (index == null || !index.isLoaded()) {
+            return new ArrayList<>();
+        }
+        return index.suggest(text, limit);
     }
     
     /**
@@ -293,6 +366,234 @@ public class CalorieNutrientTrackingService {
         return reports;
     }
     
+    /**
+     * @brief Gets rolling daily averages ending today
+     * @details Convenience overload of getRollingAverages(String, int, String) that
+     *          uses the current date as the last day of the window.
+     * 
+     * @param username The username of the user
+     * @param windowDays Number of days in the window, for example 7 or 30
+     * @return RollingAverages for the window ending today
+     */
+    public RollingAverages getRollingAverages(String username, int windowDays) {
+        return getRollingAverages(username, windowDays, LocalDate.now().toString());
+    }
+    
+    /**
+     * @brief Gets rolling daily averages of calories and macronutrients
+     * @details Averages are kept in a per-user RollingNutritionWindow. The first call
+     *          loads the daily totals of the whole window; later calls only load the
+     *          days between the previously cached latest day (which is refreshed, since
+     *          food may have been logged since) and the requested end date. Food
+     *          logged through the meal planning service and foods removed with
+     *          deleteFoodEntry only reload the days they touch. Moving backwards or
+     *          past a full window rebuilds the window from scratch, and so does a
+     *          change to the nutrient values of an existing food. Days without
+     *          logged food count as zero.
+     * 
+     * @param username The username of the user
+     * @param windowDays Number of days in the window, for example 7 or 30
+     * @param endDate Last day of the window in YYYY-MM-DD format
+     * @return RollingAverages for the window, all zero for invalid users
+     * @throws IllegalArgumentException if windowDays is not positive or endDate is invalid
+     */
+    public RollingAverages getRollingAverages(String username, int windowDays, String endDate) {
+        if (windowDays <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        LocalDate end;
+        try {
+            end = LocalDate.parse(endDate);
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid end date: " + endDate);
+        }
+        
+        if (username == null || username.trim().isEmpty()) {
+            RollingNutritionWindow empty = new RollingNutritionWindow(windowDays);
+            empty.reset(end);
+            return new RollingAverages(empty, getNutritionGoals(username));
+        }
+        
+        String key = username + "#" + windowDays;
+        RollingNutritionWindow window = rollingWindows.computeIfAbsent(
+            key, k -> new RollingNutritionWindow(windowDays));
+        
+        synchronized (window) {
+            long version = DatabaseHelper.getFoodValuesVersion();
+            LocalDate latest = window.getLatestDate();
+            LocalDate from;
+            if (latest == null || end.isBefore(latest) || !end.isBefore(latest.plusDays(windowDays))
+                    || !Long.valueOf(version).equals(rollingVersions.get(key))) {
+                window.reset(end);
+                from = end.minusDays(windowDays - 1);
+            } else {
+                from = latest;
+            }
+            
+            Map<String, double[]> totals = loadDailyTotals(username, from.toString(), end.toString());
+            if (totals == null) {
+                rollingWindows.remove(key);
+                rollingVersions.remove(key);
+                window.reset(end);
+            } else {
+                rollingVersions.put(key, version);
+                for (LocalDate day = from; !day.isAfter(end); day = day.plusDays(1)) {
+                    double[] t = totals.get(day.toString());
+                    if (t != null) {
+                        window.setDay(day, t[0], t[1], t[2], t[3]);
+                    } else {
+                        window.setDay(day, 0, 0, 0, 0);
+                    }
+                }
+            }
+            return new RollingAverages(window, getNutritionGoals(username));
+        }
+    }
+    
+    /**
+     * @brief Reloads one day of the cached rolling windows of a user
+     * @details Windows that do not cover the day are left alone; they load it
+     *          when they reach it. Windows that are already stale are rebuilt by
+     *          their next request anyway.
+     * 
+     * @param username The username of the user
+     * @param date Day whose food log changed, in YYYY-MM-DD format
+     */
+    private void refreshRollingDay(String username, String date) {
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (DateTimeParseException | NullPointerException e) {
+            return;
+        }
+        String prefix = username + "#";
+        for (Map.Entry<String, RollingNutritionWindow> entry : rollingWindows.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            RollingNutritionWindow window = entry.getValue();
+            synchronized (window) {
+                LocalDate latest = window.getLatestDate();
+                if (latest == null || day.isAfter(latest) || day.isBefore(window.getStartDate())
+                        || !Long.valueOf(DatabaseHelper.getFoodValuesVersion()).equals(rollingVersions.get(key))) {
+                    continue;
+                }
+                Map<String, double[]> totals = loadDailyTotals(username, date, date);
+                if (totals == null) {
+                    rollingWindows.remove(key);
+                    rollingVersions.remove(key);
+                    continue;
+                }
+                double[] t = totals.get(date);
+                if (t != null) {
+                    window.setDay(day, t[0], t[1], t[2], t[3]);
+                } else {
+                    window.setDay(day, 0, 0, 0, 0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @brief Drops the cached rolling windows of a user
+     * @details Food logged through the meal planning service and foods removed
+     *          with deleteFoodEntry are applied to the cached windows as they
+     *          happen; call this after changing food_logs any other way so the
+     *          next request reloads the window.
+     * 
+     * @param username The username of the user
+     */
+    public void invalidateRollingAverages(String username) {
+        if (username != null) {
+            String prefix = username + "#";
+            rollingWindows.keySet().removeIf(key -> key.startsWith(prefix));
+            rollingVersions.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+    
+    /**
+     * @brief Scores nutrition goal adherence of all users over a date range
+     * @details Unlike getNutritionReport, which covers a single day of one user,
+     *          this evaluates every user with a stored daily report in the range at
+     *          once. The reports are the ones written by NutritionReportBatchJob;
+     *          days without a report count as not logged.
+     * 
+     * @param fromDate First day in YYYY-MM-DD format
+     * @param toDate Last day in YYYY-MM-DD format
+     * @return Streaks, days over and under target and composite scores per user,
+     *         empty on database errors
+     * @throws IllegalArgumentException if a date is invalid
+     */
+    public AdherenceScoringEngine.AdherenceScores getAdherenceScores(String fromDate, String toDate) {
+        try {
+            LocalDate.parse(fromDate);
+            LocalDate.parse(toDate);
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid date range: " + fromDate + " to " + toDate);
+        }
+        
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            return new AdherenceScoringEngine.AdherenceScores(0);
+        }
+        try {
+            return adherenceEngine.evaluate(AdherenceScoringEngine.DailyRollups.load(conn, fromDate, toDate));
+        } catch (SQLException e) {
+            System.out.println("Adherence scores could not be calculated: " + e.getMessage());
+            return new AdherenceScoringEngine.AdherenceScores(0);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+    
+    /**
+     * @brief Loads per-day totals of a user's food log over a date range
+     * 
+     * @param username The username of the user
+     * @param fromDate First day in YYYY-MM-DD format
+     * @param toDate Last day in YYYY-MM-DD format
+     * @return Map from date to {calories, protein, carbs, fat}, or null on error
+     */
+    private Map<String, double[]> loadDailyTotals(String username, String fromDate, String toDate) {
+        Map<String, double[]> totals = new HashMap<>();
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            return null;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT fl.date, SUM(f.calories) AS calories, " +
+                "COALESCE(SUM(fn.protein), 0) AS protein, COALESCE(SUM(fn.carbs), 0) AS carbs, " +
+                "COALESCE(SUM(fn.fat), 0) AS fat " +
+                "FROM food_logs fl " +
+                "JOIN foods f ON fl.food_id = f.id " +
+                "LEFT JOIN food_nutrients fn ON fn.id = " +
+                "(SELECT MAX(id) FROM food_nutrients WHERE food_id = f.id) " +
+                "WHERE fl.user_id = (SELECT id FROM users WHERE username = ?) " +
+                "AND fl.date >= ? AND fl.date <= ? " +
+                "GROUP BY fl.date")) {
+            pstmt.setString(1, username);
+            pstmt.setString(2, fromDate);
+            pstmt.setString(3, toDate);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(rs.getString("date"), new double[] {
+                        rs.getDouble("calories"),
+                        rs.getDouble("protein"),
+                        rs.getDouble("carbs"),
+                        rs.getDouble("fat")
+                    });
+                }
+            }
+            return totals;
+        } catch (SQLException e) {
+            System.out.println("Daily totals could not be retrieved: " + e.getMessage());
+            return null;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+    
     /**
      * @brief Calculates suggested daily calorie intake
      * @details Uses the Harris-Benedict equation to calculate recommended daily
@@ -650,6 +951,146 @@ public class CalorieNutrientTrackingService {
             return goals.getFatGoal() > 0 ? (totalFat * 100.0 / goals.getFatGoal()) : 0;
         }
     }
+    
+    /**
+     * @class RollingAverages
+     * @brief Class representing rolling daily averages over a window of days
+     * 
+     * @details Snapshot of a RollingNutritionWindow together with the user's
+     *          nutrition goals, so averages can be compared against daily targets.
+     */
+    public class RollingAverages {
+        /** @brief Number of days in the window */
+        private int windowDays;
+        /** @brief First day of the window in YYYY-MM-DD format */
+        private String startDate;
+        /** @brief Last day of the window in YYYY-MM-DD format */
+        private String endDate;
+        /** @brief Average daily calories */
+        private double averageCalories;
+        /** @brief Average daily protein in grams */
+        private double averageProtein;
+        /** @brief Average daily carbohydrates in grams */
+        private double averageCarbs;
+        /** @brief Average daily fat in grams */
+        private double averageFat;
+        /** @brief User's nutrition goals for comparison */
+        private NutritionGoal goals;
+        
+        /**
+         * @brief Constructor for RollingAverages
+         * @details Copies the current averages out of the window.
+         * 
+         * @param window Window to snapshot
+         * @param goals User's nutrition goals
+         */
+        public RollingAverages(RollingNutritionWindow window, NutritionGoal goals) {
+            this.windowDays = window.getWindowDays();
+            this.startDate = window.getStartDate().toString();
+            this.endDate = window.getLatestDate().toString();
+            this.averageCalories = window.getAverageCalories();
+            this.averageProtein = window.getAverageProtein();
+            this.averageCarbs = window.getAverageCarbs();
+            this.averageFat = window.getAverageFat();
+            this.goals = goals != null ? goals : new NutritionGoal(2000, 50, 250, 70);
+        }
+        
+        /**
+         * Gets the number of days in the window.
+         * @return Window size in days
+         */
+        public int getWindowDays() {
+            return windowDays;
+        }
+        
+        /**
+         * Gets the first day of the window.
+         * @return The date in YYYY-MM-DD format
+         */
+        public String getStartDate() {
+            return startDate;
+        }
+        
+        /**
+         * Gets the last day of the window.
+         * @return The date in YYYY-MM-DD format
+         */
+        public String getEndDate() {
+            return endDate;
+        }
+        
+        /**
+         * Gets the average daily calories.
+         * @return Average calories per day
+         */
+        public double getAverageCalories() {
+            return averageCalories;
+        }
+        
+        /**
+         * Gets the average daily protein.
+         * @return Average protein per day in grams
+         */
+        public double getAverageProtein() {
+            return averageProtein;
+        }
+        
+        /**
+         * Gets the average daily carbohydrates.
+         * @return Average carbohydrates per day in grams
+         */
+        public double getAverageCarbs() {
+            return averageCarbs;
+        }
+        
+        /**
+         * Gets the average daily fat.
+         * @return Average fat per day in grams
+         */
+        public double getAverageFat() {
+            return averageFat;
+        }
+        
+        /**
+         * Gets the nutrition goals used for comparison.
+         * @return NutritionGoal object
+         */
+        public NutritionGoal getGoals() {
+            return goals;
+        }
+        
+        /**
+         * Calculates the average calories as a percentage of the calorie goal.
+         * @return Percentage of calorie goal (0-100+)
+         */
+        public double getCaloriePercentage() {
+            return goals.getCalorieGoal() > 0 ? (averageCalories * 100.0 / goals.getCalorieGoal()) : 0;
+        }
+        
+        /**
+         * Calculates the average protein as a percentage of the protein goal.
+         * @return Percentage of protein goal (0-100+)
+         */
+        public double getProteinPercentage() {
+            return goals.getProteinGoal() > 0 ? (averageProtein * 100.0 / goals.getProteinGoal()) : 0;
+        }
+        
+        /**
+         * Calculates the average carbohydrates as a percentage of the carbohydrate goal.
+         * @return Percentage of carbohydrate goal (0-100+)
+         */
+        public double getCarbPercentage() {
+            return goals.getCarbGoal() > 0 ? (averageCarbs * 100.0 / goals.getCarbGoal()) : 0;
+        }
+        
+        /**
+         * Calculates the average fat as a percentage of the fat goal.
+         * @return Percentage of fat goal (0-100+)
+         */
+        public double getFatPercentage() {
+            return goals.getFatGoal() > 0 ? (averageFat * 100.0 / goals.getFatGoal()) : 0;
+        }
+    }
 
     public List<String> getAllFoods() {
         List<String> foods = new ArrayList<>();
@@ -666,6 +1107,39 @@ public class CalorieNutrientTrackingService {
         return foods;
     }
 
+    /**
+     * @brief Gets one page of the food names in the catalog
+     * @details Keyset-paginated variant of getAllFoods. Names are in the order the
+     *          foods were added and each page seeks past the previous page's last
+     *          food id.
+     *
+     * @param afterId Food id of the previous page's last name, 0 for the first page
+     * @param pageSize Maximum number of names on the page
+     * @return Page of food names keyed by food id
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<String, Long> getAllFoods(long afterId, int pageSize) {
+        Page.checkPageSize(pageSize);
+        Page<String, Long> empty = new Page<>(new ArrayList<>(), afterId, false);
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            return empty;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT id, name FROM foods WHERE id > ? ORDER BY id LIMIT ?")) {
+            pstmt.setLong(1, afterId);
+            pstmt.setInt(2, pageSize + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return Page.read(rs, pageSize, afterId, row -> row.getString("name"), row -> row.getLong("id"));
+            }
+        } catch (SQLException e) {
+            System.out.println("Foods could not be retrieved: " + e.getMessage());
+            return empty;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
     public boolean addFoodConsumption(String foodName, double quantity) {
         try (Connection conn = DatabaseHelper.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(
@@ -717,6 +1191,10 @@ public class CalorieNutrientTrackingService {
             stmt.setDouble(6, fat);
             stmt.executeUpdate();
         }
+        DatabaseHelper.foodDataChanged();
+        if (autocompleteIndex != null) {
+            autocompleteIndex.add(foodName);
+        }
     }
 
     public List<String> viewFoodEntries() throws SQLException {
@@ -736,11 +1214,102 @@ public class CalorieNutrientTrackingService {
         return entries;
     }
 
+    /**
+     * @brief Gets one page of the food entries
+     * @details Keyset-paginated variant of viewFoodEntries. Entries use the same
+     *          format, in the order the foods were added, and each page seeks past
+     *          the previous page's last food id.
+     *
+     * @param afterId Food id of the previous page's last entry, 0 for the first page
+     * @param pageSize Maximum number of entries on the page
+     * @return Page of formatted food entries keyed by food id
+     * @throws SQLException if the query cannot be executed
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<String, Long> viewFoodEntries(long afterId, int pageSize) throws SQLException {
+        Page.checkPageSize(pageSize);
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            throw new SQLException("Failed to obtain database connection");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT id, name, calories, protein, carbs, fat FROM foods WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return Page.read(rs, pageSize, afterId,
+                    row -> row.getString("name") + ", " +
+                           row.getInt("calories") + " kcal, " +
+                           row.getDouble("protein") + "g protein, " +
+                           row.getDouble("carbs") + "g carbs, " +
+                           row.getDouble("fat") + "g fat",
+                    row -> row.getLong("id"));
+            }
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * @brief Streams all food entries without loading them into memory
+     * @details Cursor-backed variant of viewFoodEntries. Entries use the same
+     *          format and are produced lazily from a pooled connection, which is
+     *          released back to DatabaseHelper when the stream is closed.
+     *
+     * @param fetchSize Rows fetched per round trip (0 for the default)
+     * @return Stream of formatted food entries that must be closed by the caller
+     * @throws SQLException if the query cannot be executed
+     */
+    public Stream<String> streamFoodEntries(int fetchSize) throws SQLException {
+        Connection conn = DatabaseHelper.getConnection();
+        if (conn == null) {
+            throw new SQLException("Failed to obtain database connection");
+        }
+        PreparedStatement stmt;
+        try {
+            stmt = conn.prepareStatement("SELECT name, calories, protein, carbs, fat FROM foods ORDER BY id");
+        } catch (SQLException e) {
+            DatabaseHelper.releaseConnection(conn);
+            throw e;
+        }
+        return ResultSetStreams.stream(stmt, fetchSize,
+            rs -> rs.getString("name") + ", " +
+                  rs.getInt("calories") + " kcal, " +
+                  rs.getDouble("protein") + "g protein, " +
+                  rs.getDouble("carbs") + "g carbs, " +
+                  rs.getDouble("fat") + "g fat",
+            () -> DatabaseHelper.releaseConnection(conn));
+    }
+
     public void deleteFoodEntry(String foodName) throws SQLException {
+        // Days whose totals included the food, looked up through idx_food_logs_food
+        List<String[]> loggedDays = new ArrayList<>();
+        if (!rollingWindows.isEmpty()) {
+            try (PreparedStatement stmt = DatabaseHelper.getConnection().prepareStatement(
+                    "SELECT DISTINCT u.username, fl.date FROM foods f " +
+                    "JOIN food_logs fl ON fl.food_id = f.id " +
+                    "JOIN users u ON u.id = fl.user_id " +
+                    "WHERE f.name = ?")) {
+                stmt.setString(1, foodName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        loggedDays.add(new String[] {rs.getString(1), rs.getString(2)});
+                    }
+                }
+            }
+        }
         String sql = "DELETE FROM foods WHERE name = ?";
         try (PreparedStatement stmt = DatabaseHelper.getConnection().prepareStatement(sql)) {
             stmt.setString(1, foodName);
             stmt.executeUpdate();
         }
+        DatabaseHelper.foodDataChanged();
+        if (autocompleteIndex != null) {
+            autocompleteIndex.remove(foodName);
+        }
+        // Log entries of the removed food no longer count towards those days
+        for (String[] loggedDay : loggedDays) {
+            refreshRollingDay(loggedDay[0], loggedDay[1]);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/**
+ * @file CalorieSampler.java
+ * @brief Uniform random sampling of foods below a calorie limit
+ *
+ * @details The CalorieSampler class keeps the foods table sorted by calories in
+ *          memory. Drawing k distinct foods with at most a given number of calories
+ *          is a binary search for the cut-off followed by Floyd's sampling
+ *          algorithm over the qualifying prefix, so a request costs O(log n + k)
+ *          instead of the full scan and sort of ORDER BY RANDOM().
+ *
+ * @author berkant
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @class CalorieSampler
+ * @brief Calorie-sorted snapshot of the foods table with a seedable sampler
+ *
+ * @details Every sample call compares DatabaseHelper.getFoodDataVersion() with the
+ *          value it loaded at and reloads the snapshot when it has moved, so foods
+ *          inserted or deleted through the application are picked up without a query.
+ *          Rows written with plain SQL are only seen after invalidate(). Methods are
+ *          synchronized.
+ */
+public class CalorieSampler {
+    /** @brief Query for the snapshot, served by idx_foods_calories */
+    private static final String LOAD_SQL =
+        "SELECT name, grams, calories, protein, carbs, fat, fiber, sugar, sodium " +
+        "FROM foods ORDER BY calories, id";
+
+    private final Random random;
+
+    /** @brief Calories of each food in ascending order */
+    private int[] calories = new int[0];
+    /** @brief Foods in the same order as calories */
+    private FoodNutrient[] foods = new FoodNutrient[0];
+    /** @brief DatabaseHelper.getFoodDataVersion() at the time of loading */
+    private long loadedVersion;
+    /** @brief False before the first load and after invalidate() */
+    private boolean loaded;
+
+    /**
+     * @brief Creates a sampler with an unseeded random generator
+     */
+    public CalorieSampler() {
+        this(new Random());
+    }
+
+    /**
+     * @brief Creates a sampler with the given random generator
+     * @details Pass a seeded Random to make samples reproducible.
+     *
+     * @param random Random generator used for sampling
+     */
+    public CalorieSampler(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @brief Draws distinct foods uniformly from those with at most maxCalories
+     *
+     * @param conn Connection used to check for changes and reload the snapshot
+     * @param maxCalories Inclusive calorie limit
+     * @param k Number of foods to draw
+     * @return Up to k distinct foods in random order, fewer if not enough qualify
+     * @throws SQLException if the foods table cannot be read
+     */
+    public synchronized List<FoodNutrient> sample(Connection conn, double maxCalories, int k) throws SQLException {
+        refreshIfStale(conn);
+        int n = countAtMost(maxCalories);
+        List<FoodNutrient> result = new ArrayList<>(Math.min(Math.max(k, 0), n));
+        if (k <= 0 || n == 0) {
+            return result;
+        }
+        if (k >= n) {
+            for (int i = 0; i < n; i++) {
+                result.add(foods[i]);
+            }
+            // Fisher-Yates shuffle so the order is random as well
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                FoodNutrient tmp = result.get(i);
+                result.set(i, result.get(j));
+                result.set(j, tmp);
+            }
+            return result;
+        }
+
+        // Floyd's algorithm: k distinct indexes from [0, n) with exactly k draws
+        Set<Integer> chosen = new HashSet<>(k * 2);
+        for (int j = n - k; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            int pick = chosen.add(t) ? t : j;
+            if (pick == j) {
+                chosen.add(j);
+            }
+            result.add(foods[pick]);
+        }
+        // Floyd's picks are a uniform set but not a uniform order; shuffle the k picks
+        for (int i = result.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            FoodNutrient tmp = result.get(i);
+            result.set(i, result.get(j));
+            result.set(j, tmp);
+        }
+        return result;
+    }
+
+    /**
+     * @brief Counts foods with at most the given calories
+     * @details Binary search for the first food above the limit.
+     *
+     * @param maxCalories Inclusive calorie limit
+     * @return Number of qualifying foods in the current snapshot
+     */
+    public synchronized int countAtMost(double maxCalories) {
+        int lo = 0;
+        int hi = calories.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (calories[mid] <= maxCalories) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @brief Forces a reload on the next sample call
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * @brief Reloads the snapshot if foods were written since the last load
+     */
+    private void refreshIfStale(Connection conn) throws SQLException {
+        // A fresh snapshot needs no query, but callers still expect a dead connection to fail
+        if (conn.isClosed()) {
+            throw new SQLException("Connection is closed");
+        }
+        // Read before loading so that writes made during the load trigger another one
+        long version = DatabaseHelper.getFoodDataVersion();
+        if (loaded && version == loadedVersion) {
+            return;
+        }
+
+        List<FoodNutrient> rows = new ArrayList<>(Math.max(foods.length, 16));
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAD_SQL)) {
+            while (rs.next()) {
+                rows.add(new FoodNutrient(
+                    rs.getString("name"),
+                    rs.getDouble("grams"),
+                    rs.getInt("calories"),
+                    rs.getDouble("protein"),
+                    rs.getDouble("carbs"),
+                    rs.getDouble("fat"),
+                    rs.getDouble("fiber"),
+                    rs.getDouble("sugar"),
+                    rs.getDouble("sodium")));
+            }
+        }
+
+        foods = rows.toArray(new FoodNutrient[0]);
+        calories = new int[foods.length];
+        for (int i = 0; i < foods.length; i++) {
+            calories[i] = foods[i].getCalories();
+        }
+        loadedVersion = version;
+        loaded = true;
+    }
+}
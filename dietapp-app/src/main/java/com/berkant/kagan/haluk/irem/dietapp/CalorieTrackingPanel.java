@@ -18,7 +18,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.List;
 
 /**
  * @class CalorieTrackingPanel
@@ -50,6 +49,14 @@ public class CalorieTrackingPanel extends JPanel {
     private JButton viewButton;
     /** @brief Button for deleting food entries */
     private JButton deleteButton;
+    /** @brief Button for showing the next page of food entries */
+    private JButton moreButton;
+    /** @brief Food entries shown per page */
+    static final int ENTRY_PAGE_SIZE = 50;
+    /** @brief Food id of the last entry shown */
+    private long entryKey;
+    /** @brief Food name suggestions shown while typing */
+    private FoodNameAutocomplete foodNameAutocomplete;
 
     /**
      * @brief Constructor for CalorieTrackingPanel
@@ -72,6 +79,9 @@ public class CalorieTrackingPanel extends JPanel {
      */
     private void initializeComponents() {
         foodNameField = new JTextField(20);
+        foodNameAutocomplete = new FoodNameAutocomplete(foodNameField,
+            text -> trackingService.suggestFoods(text, FoodNameAutocomplete.DEFAULT_SUGGESTIONS),
+            () -> trackingService.refreshAutocompleteIndex());
         caloriesField = new JTextField(10);
         proteinField = new JTextField(10);
         carbsField = new JTextField(10);
@@ -81,6 +91,8 @@ public class CalorieTrackingPanel extends JPanel {
         addButton = new JButton("Add");
         viewButton = new JButton("View");
         deleteButton = new JButton("Delete");
+        moreButton = new JButton("More");
+        moreButton.setEnabled(false);
     }
 
     /**
@@ -131,6 +143,7 @@ public class CalorieTrackingPanel extends JPanel {
         buttonPanel.add(addButton);
         buttonPanel.add(viewButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(moreButton);
 
         add(inputPanel, BorderLayout.NORTH);
         add(new JScrollPane(resultArea), BorderLayout.CENTER);
@@ -170,16 +183,16 @@ public class CalorieTrackingPanel extends JPanel {
         viewButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                try {
-                    List<String> entries = trackingService.viewFoodEntries();
-                    StringBuilder sb = new StringBuilder();
-                    for (String entry : entries) {
-                        sb.append(entry).append("\n");
-                    }
-                    resultArea.setText(sb.toString());
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(CalorieTrackingPanel.this, "Error occurred: " + ex.getMessage());
-                }
+                entryKey = 0;
+                resultArea.setText("");
+                showNextEntryPage();
+            }
+        });
+
+        moreButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showNextEntryPage();
             }
         });
 
@@ -198,6 +211,24 @@ public class CalorieTrackingPanel extends JPanel {
         });
     }
 
+    /**
+     * @brief Appends the next page of food entries to the result area
+     * @details Only ENTRY_PAGE_SIZE entries are read at a time; the More button
+     *          stays enabled while further entries follow.
+     */
+    private void showNextEntryPage() {
+        try {
+            Page<String, Long> page = trackingService.viewFoodEntries(entryKey, ENTRY_PAGE_SIZE);
+            for (String entry : page.getItems()) {
+                resultArea.append(entry + "\n");
+            }
+            entryKey = page.getNextKey();
+            moreButton.setEnabled(page.hasMore());
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(CalorieTrackingPanel.this, "Error occurred: " + ex.getMessage());
+        }
+    }
+
     /**
      * @brief Clears all input fields
      * @details Resets all text fields to empty strings after successful
@@ -0,0 +1,48 @@
+/**
+ * @file ConnectionFactory.java
+ * @brief Source of caller-owned database connections
+ *
+ * @details The ConnectionFactory interface is used by the batch and bulk classes
+ *          that need connections of their own instead of the shared pool, such as
+ *          NutritionReportBatchJob, PriceListImporter and
+ *          HouseholdShoppingListMerger. The application passes
+ *          DatabaseHelper::openDedicatedConnection; tests pass a factory for a
+ *          temporary database. A factory lending pooled connections overrides
+ *          release to return them instead of closing them.
+ *
+ * @author irem
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * @interface ConnectionFactory
+ * @brief Opens a new connection owned by the caller
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+    /**
+     * @brief Opens a connection
+     * @return A new open connection, which the caller must close
+     * @throws SQLException if the connection cannot be opened
+     */
+    Connection open() throws SQLException;
+
+    /**
+     * @brief Gives back a connection obtained from open
+     * @details Closes the connection unless overridden.
+     *
+     * @param conn The connection, may be null
+     * @throws SQLException if the connection cannot be closed
+     */
+    default void release(Connection conn) throws SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+    }
+}
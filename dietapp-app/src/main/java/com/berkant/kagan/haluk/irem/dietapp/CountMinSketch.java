@@ -0,0 +1,158 @@
+/**
+ * @file CountMinSketch.java
+ * @brief Count-min sketch for approximate frequency counts
+ *
+ * @details The CountMinSketch class estimates how often a key has been added using
+ *          a fixed depth x width table of counters. Estimates never undercount and
+ *          overcount by at most about e/width of the total count with probability
+ *          1 - e^-depth. Sketches with the same dimensions can be merged.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * @class CountMinSketch
+ * @brief Fixed-size frequency sketch with mergeable counters
+ *
+ * @details Row indexes are derived from one 64-bit hash with the Kirsch-Mitzenmacher
+ *          double hashing scheme. Instances are not thread-safe.
+ */
+public class CountMinSketch {
+    /** @brief Number of counters per row */
+    private final int width;
+    /** @brief Number of rows */
+    private final int depth;
+    /** @brief Counter table, depth rows of width counters */
+    private final long[][] counts;
+    /** @brief Sum of all added counts */
+    private long totalCount;
+
+    /**
+     * @brief Constructor for CountMinSketch
+     *
+     * @param width Number of counters per row, must be positive
+     * @param depth Number of rows, must be positive
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Sketch dimensions must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counts = new long[depth][width];
+    }
+
+    /**
+     * @brief Adds occurrences of a key
+     *
+     * @param key Key to count
+     * @param count Number of occurrences to add, must not be negative
+     */
+    public void add(String key, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+        long hash = SketchHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counts[row][index(h1, h2, row)] += count;
+        }
+        totalCount += count;
+    }
+
+    /**
+     * @brief Estimates how often a key has been added
+     *
+     * @param key Key to look up
+     * @return Estimated count, never lower than the true count
+     */
+    public long estimate(String key) {
+        long hash = SketchHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row][index(h1, h2, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * @brief Adds all counters of another sketch to this one
+     *
+     * @param other Sketch with the same width and depth
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                counts[row][col] += other.counts[row][col];
+            }
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Gets the total number of occurrences added.
+     * @return Total count
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @brief Writes the sketch to a stream
+     *
+     * @param out Stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(totalCount);
+        for (long[] row : counts) {
+            for (long value : row) {
+                out.writeLong(value);
+            }
+        }
+    }
+
+    /**
+     * @brief Reads a sketch written by writeTo
+     *
+     * @param in Stream to read from
+     * @return The restored sketch
+     * @throws IOException if reading fails
+     */
+    public static CountMinSketch readFrom(DataInputStream in) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+        sketch.totalCount = in.readLong();
+        for (long[] row : sketch.counts) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = in.readLong();
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * @brief Computes the column of a key in one row
+     */
+    private int index(int h1, int h2, int row) {
+        int combined = h1 + row * h2;
+        return (combined & Integer.MAX_VALUE) % width;
+    }
+}
@@ -23,6 +23,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @class DatabaseHelper
@@ -39,6 +40,10 @@ public class DatabaseHelper {
     private static final int MAX_CONNECTIONS = 10;
     /** @brief Pool of database connections */
     private static List<Connection> connectionPool = new ArrayList<>();
+    /** @brief Count of food and nutrient writes made by this process, see getFoodDataVersion */
+    private static final AtomicLong foodDataVersion = new AtomicLong();
+    /** @brief Count of changed nutrient values of existing foods, see getFoodValuesVersion */
+    private static final AtomicLong foodValuesVersion = new AtomicLong();
    
     /**
      * @brief Static initialization block
@@ -148,7 +153,19 @@ public class DatabaseHelper {
             DB_URL + "?journal_mode=WAL&synchronous=NORMAL&cache_size=1000");
         return connection;
     }
-    
+
+    /**
+     * @brief Opens a dedicated connection outside the pool
+     * @details Used by background jobs that need one connection per worker thread
+     *          for the whole run. The caller owns the connection and must close it.
+     *
+     * @return A new Connection object with the same settings as pooled connections
+     * @throws SQLException if connection creation fails
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        return createConnection();
+    }
+
     /**
      * @brief Releases a connection back to the pool
      * @details Returns a connection to the pool if it's not closed and the pool
@@ -201,6 +218,49 @@ public class DatabaseHelper {
         System.out.println("Database connections closed");
     }
     
+    /**
+     * @brief Gets the number of food writes made by this process
+     * @details Every method that inserts or deletes foods or writes food_nutrients
+     *          rows moves this value, so caches built from those tables can check
+     *          for changes without querying them. Rows written with plain SQL from
+     *          elsewhere are not counted.
+     * 
+     * @return A value that changes after every food or nutrient write
+     */
+    public static long getFoodDataVersion() {
+        return foodDataVersion.get();
+    }
+    
+    /**
+     * @brief Records that foods or their nutrient values were written
+     * @details Called by every method that inserts or deletes foods or inserts or
+     *          updates food_nutrients rows.
+     */
+    static void foodDataChanged() {
+        foodDataVersion.incrementAndGet();
+    }
+    
+    /**
+     * @brief Gets the number of nutrient value changes of existing foods
+     * @details Unlike getFoodDataVersion this does not move when a new food gets
+     *          its first nutrient row, so totals over logged foods only have to be
+     *          recomputed when food they may already include was changed.
+     * 
+     * @return A value that changes after every nutrient change of an existing food
+     */
+    public static long getFoodValuesVersion() {
+        return foodValuesVersion.get();
+    }
+    
+    /**
+     * @brief Records that the nutrient values of an existing food changed
+     * @details Also counts as a nutrient write for getFoodDataVersion.
+     */
+    static void foodValuesChanged() {
+        foodValuesVersion.incrementAndGet();
+        foodDataVersion.incrementAndGet();
+    }
+    
     /**
      * @brief Creates all necessary database tables
      * @details Creates the following tables if they don't exist:
@@ -381,7 +441,82 @@ public class DatabaseHelper {
                 "FOREIGN KEY(ingredient_id) REFERENCES ingredients(id)" +
                 ");"
             );
-            
+
+            // Package sizes on sale per ingredient, used by PackageCostOptimizer
+            statement.execute(
+                "CREATE TABLE IF NOT EXISTS ingredient_packages (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "ingredient_id INTEGER NOT NULL," +
+                "size REAL NOT NULL," +
+                "unit TEXT NOT NULL," +
+                "price REAL NOT NULL," +
+                "available INTEGER NOT NULL DEFAULT -1," +
+                "FOREIGN KEY(ingredient_id) REFERENCES ingredients(id)" +
+                ");"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_ingredient_packages_ingredient ON ingredient_packages(ingredient_id);"
+            );
+
+            // Daily per-user reports written by NutritionReportBatchJob
+            NutritionReportBatchJob.createTables(statement);
+
+            // Versioned ingredient price lists written by PriceListImporter
+            PriceListImporter.createTables(statement);
+
+            // Households and their members, used for combined shopping lists
+            HouseholdService.createTables(statement);
+
+            // Full-text index over food names for type-ahead search
+            createFoodSearchIndex(statement);
+
+            // Indexes for per-user, date-ranged scans of logs and plans
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_food_logs_user_date ON food_logs(user_id, date);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_food_logs_food ON food_logs(food_id);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_meal_plans_user_date ON meal_plans(user_id, date);"
+            );
+            // Indexes seeked by the keyset-paginated list methods
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_foods_name ON foods(name);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_food_nutrients_food ON food_nutrients(food_id);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_meal_plans_week ON meal_plans(" +
+                MealPlanningService.weekPositionSql("") + ") WHERE day IS NOT NULL;"
+            );
+            // Calorie-ordered index used to load the recommendation sampler
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_foods_calories ON foods(calories);"
+            );
+            // Indexes for loading a diet profile with its child rows
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_diet_profiles_user ON diet_profiles(user_id);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_health_conditions_profile ON health_conditions(profile_id);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_excluded_foods_profile ON excluded_foods(profile_id);"
+            );
+            // Recipes are joined to meal plans by food id; link rows saved by name only
+            statement.execute(
+                "UPDATE recipes SET food_id = (SELECT f.id FROM foods f WHERE f.name = recipes.name) " +
+                "WHERE food_id IS NULL;"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_recipes_food ON recipes(food_id);"
+            );
+            statement.execute(
+                "CREATE INDEX IF NOT EXISTS idx_recipe_ingredients_recipe ON recipe_ingredients(recipe_id);"
+            );
+
             // Insert sample data (optional)
             insertSampleData(statement);
             
@@ -392,6 +527,55 @@ public class DatabaseHelper {
         }
     }
     
+    /**
+     * @brief Creates the full-text index used by MealPlanningService.searchFoods
+     * @details foods_fts is an FTS5 table over foods.name that stores no copy of
+     *          the names; triggers mirror every insert, delete and rename of a
+     *          food. When the table is first created it is filled from the
+     *          existing foods. Prefix indexes of 1 to 6 characters keep
+     *          type-ahead prefixes cheap. A missing FTS5 module is reported and
+     *          leaves search on the name index only.
+     * 
+     * @param statement The Statement object to execute the DDL with
+     * @throws SQLException if the name index cannot be created
+     */
+    static void createFoodSearchIndex(Statement statement) throws SQLException {
+        statement.execute(
+            "CREATE INDEX IF NOT EXISTS idx_foods_name_nocase ON foods(name COLLATE NOCASE);"
+        );
+        boolean exists;
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'foods_fts'")) {
+            exists = rs.next();
+        }
+        try {
+            statement.execute(
+                "CREATE VIRTUAL TABLE IF NOT EXISTS foods_fts USING fts5(" +
+                "name, content='foods', content_rowid='id', " +
+                "tokenize='unicode61 remove_diacritics 2', prefix='1 2 3 4 5 6');"
+            );
+            statement.execute(
+                "CREATE TRIGGER IF NOT EXISTS foods_fts_insert AFTER INSERT ON foods BEGIN " +
+                "INSERT INTO foods_fts(rowid, name) VALUES (new.id, new.name); END;"
+            );
+            statement.execute(
+                "CREATE TRIGGER IF NOT EXISTS foods_fts_delete AFTER DELETE ON foods BEGIN " +
+                "INSERT INTO foods_fts(foods_fts, rowid, name) VALUES ('delete', old.id, old.name); END;"
+            );
+            statement.execute(
+                "CREATE TRIGGER IF NOT EXISTS foods_fts_update AFTER UPDATE OF name ON foods BEGIN " +
+                "INSERT INTO foods_fts(foods_fts, rowid, name) VALUES ('delete', old.id, old.name); " +
+                "INSERT INTO foods_fts(rowid, name) VALUES (new.id, new.name); END;"
+            );
+            if (!exists) {
+                statement.execute("INSERT INTO foods_fts(foods_fts) VALUES ('rebuild');");
+                statement.execute("INSERT INTO foods_fts(foods_fts) VALUES ('optimize');");
+            }
+        } catch (SQLException e) {
+            System.out.println("Full-text food search is not available: " + e.getMessage());
+        }
+    }
+
     /**
      * @brief Inserts sample data into the database
      * @details Adds initial sample data to the database tables for testing
@@ -425,13 +609,17 @@ public class DatabaseHelper {
         try {
             statement.executeUpdate("INSERT INTO meals (user_id, date, day, meal_type, food_id) VALUES (1, '2024-05-23', 'Monday', 'Breakfast', 1)");
         } catch (SQLException e) { /* ignore if already exists */ }
-        // excluded_foods örnek
+        // excluded_foods örnek, only until a real profile takes id 1
         try {
-            statement.executeUpdate("INSERT INTO excluded_foods (profile_id, food_name) VALUES (1, 'Peanut')");
+            statement.executeUpdate("INSERT INTO excluded_foods (profile_id, food_name) SELECT 1, 'Peanut' " +
+                                    "WHERE NOT EXISTS (SELECT 1 FROM diet_profiles WHERE id = 1) " +
+                                    "AND NOT EXISTS (SELECT 1 FROM excluded_foods WHERE profile_id = 1)");
         } catch (SQLException e) { /* ignore if already exists */ }
-        // health_conditions örnek
+        // health_conditions örnek, only until a real profile takes id 1
         try {
-            statement.executeUpdate("INSERT INTO health_conditions (profile_id, condition_name) VALUES (1, 'Diabetes')");
+            statement.executeUpdate("INSERT INTO health_conditions (profile_id, condition_name) SELECT 1, 'Diabetes' " +
+                                    "WHERE NOT EXISTS (SELECT 1 FROM diet_profiles WHERE id = 1) " +
+                                    "AND NOT EXISTS (SELECT 1 FROM health_conditions WHERE profile_id = 1)");
         } catch (SQLException e) { /* ignore if already exists */ }
         // recipe_ingredients örnek
         try {
@@ -537,6 +725,7 @@ public class DatabaseHelper {
                     insertStmt.setInt(3, food.getCalories());
                     int rowsAffected = insertStmt.executeUpdate();
                     if (rowsAffected > 0) {
+                        foodDataChanged();
                         try (Statement idStmt = conn.createStatement()) {
                             ResultSet rs = idStmt.executeQuery("SELECT last_insert_rowid()");
                             if (rs.next()) {
@@ -571,10 +760,12 @@ public class DatabaseHelper {
                 ResultSet rs = checkStmt.executeQuery();
                 
                 if (rs.next()) {
-                    // Update existing record
+                    // Update existing record, rows already holding these values are left alone
                     try (PreparedStatement updateStmt = conn.prepareStatement(
                             "UPDATE food_nutrients SET protein = ?, carbs = ?, fat = ?, " +
-                            "fiber = ?, sugar = ?, sodium = ? WHERE food_id = ?")) {
+                            "fiber = ?, sugar = ?, sodium = ? WHERE food_id = ? " +
+                            "AND (protein IS NOT ? OR carbs IS NOT ? OR fat IS NOT ? " +
+                            "OR fiber IS NOT ? OR sugar IS NOT ? OR sodium IS NOT ?)")) {
                         
                         updateStmt.setDouble(1, foodNutrient.getProtein());
                         updateStmt.setDouble(2, foodNutrient.getCarbs());
@@ -583,12 +774,23 @@ public class DatabaseHelper {
                         updateStmt.setDouble(5, foodNutrient.getSugar());
                         updateStmt.setDouble(6, foodNutrient.getSodium());
                         updateStmt.setInt(7, foodId);
+                        updateStmt.setDouble(8, foodNutrient.getProtein());
+                        updateStmt.setDouble(9, foodNutrient.getCarbs());
+                        updateStmt.setDouble(10, foodNutrient.getFat());
+                        updateStmt.setDouble(11, foodNutrient.getFiber());
+                        updateStmt.setDouble(12, foodNutrient.getSugar());
+                        updateStmt.setDouble(13, foodNutrient.getSodium());
                         
-                        return updateStmt.executeUpdate() > 0;
+                        if (updateStmt.executeUpdate() > 0) {
+                            foodValuesChanged();
+                        }
+                        return true;
                     }
                 } else {
                     // Insert new record
-                    return saveFoodNutrients(conn, foodId, foodNutrient);
+                    boolean saved = saveFoodNutrients(conn, foodId, foodNutrient);
+                    foodValuesChanged();
+                    return saved;
                 }
             }
         } catch (SQLException e) {
@@ -625,7 +827,9 @@ public class DatabaseHelper {
                 pstmt.setDouble(5, foodNutrient.getFiber());
                 pstmt.setDouble(6, foodNutrient.getSugar());
                 pstmt.setDouble(7, foodNutrient.getSodium());
-                return pstmt.executeUpdate() > 0;
+                boolean saved = pstmt.executeUpdate() > 0;
+                foodDataChanged();
+                return saved;
             }
         } catch (SQLException e) {
             System.out.println("Could not save nutrient values: " + e.getMessage());
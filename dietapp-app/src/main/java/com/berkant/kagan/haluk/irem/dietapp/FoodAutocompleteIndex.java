@@ -0,0 +1,638 @@
+/**
+ * @file FoodAutocompleteIndex.java
+ * @brief In-memory prefix trie with typo tolerance for food name autocomplete
+ *
+ * @details The FoodAutocompleteIndex class keeps every distinct food name in a
+ *          path-compressed trie whose nodes each remember their k most popular names,
+ *          so a typed prefix is answered by walking the prefix and copying one list.
+ *          When the prefix matches fewer names than requested, the trie is searched
+ *          again with a bounded edit distance ("bananna" finds "Banana Smoothie").
+ *          Popularity is how often a food was logged or planned. The index is
+ *          loaded from the database off the event dispatch thread, updated as foods
+ *          are inserted and reloaded when the foods table has changed.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class FoodAutocompleteIndex
+ * @brief Radix trie with per-node top-k lists and a fuzzy prefix search
+ *
+ * @details Names are matched case-insensitively with runs of whitespace collapsed;
+ *          names that differ only in case share one entry, shown with the first
+ *          spelling seen. The fuzzy search walks the trie with one row of the
+ *          edit-distance table per character, counting insertions, deletions,
+ *          substitutions and swaps of adjacent letters, and prunes a branch once
+ *          every entry of its row exceeds the allowed distance.
+ *          All public methods are thread-safe; loads read the database without
+ *          holding the lock, so suggestions stay available meanwhile.
+ */
+public class FoodAutocompleteIndex {
+    /** @brief Default number of names kept per trie node */
+    public static final int DEFAULT_TOP_K = 10;
+
+    /** @brief Shortest typed text that is matched with one typo */
+    private static final int ONE_EDIT_LENGTH = 4;
+    /** @brief Shortest typed text that is matched with two typos */
+    private static final int TWO_EDITS_LENGTH = 8;
+
+    private static final String LOAD_SQL =
+        "SELECT f.name, COALESCE(SUM(u.uses), 0) AS uses FROM foods f LEFT JOIN (" +
+        "SELECT food_id, COUNT(*) AS uses FROM food_logs GROUP BY food_id UNION ALL " +
+        "SELECT food_id, COUNT(*) AS uses FROM meal_plans GROUP BY food_id) u " +
+        "ON u.food_id = f.id GROUP BY f.id";
+
+    private static final String VERSION_SQL = "SELECT COUNT(*), COALESCE(MAX(id), 0) FROM foods";
+
+    /** @brief Index used by the services when no other one is configured */
+    private static final FoodAutocompleteIndex SHARED = new FoodAutocompleteIndex(DEFAULT_TOP_K);
+
+    /**
+     * @brief Trie node; the edge leading into it is labelled with label
+     */
+    private static final class Node {
+        String label;
+        Node[] children = new Node[0];
+        /** @brief Name ending exactly at this node, or -1 */
+        int nameId = -1;
+        /** @brief Most popular names in this subtree, best first */
+        int[] top = new int[0];
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].label.charAt(0);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node node) {
+            char c = node.label.charAt(0);
+            int at = 0;
+            while (at < children.length && children[at].label.charAt(0) < c) {
+                at++;
+            }
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = node;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+        }
+
+        void replaceChild(Node old, Node node) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == old) {
+                    children[i] = node;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final int topK;
+    private final Node root = new Node("");
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    private final List<String> displayNames = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private long[] popularity = new long[16];
+    private int liveNames;
+    private boolean loaded;
+    /** @brief Row count and highest id of the foods table at the last load */
+    private long[] loadedVersion;
+
+    /**
+     * @brief Constructor for FoodAutocompleteIndex
+     *
+     * @param topK Number of names kept per node, the most a prefix lookup returns
+     */
+    public FoodAutocompleteIndex(int topK) {
+        this.topK = Math.max(1, topK);
+    }
+
+    /**
+     * @brief Gets the application-wide instance
+     * @return Shared FoodAutocompleteIndex instance
+     */
+    public static FoodAutocompleteIndex getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @brief Normalizes a name or typed text to its trie key
+     *
+     * @param text Name or typed text
+     * @return Lower-case text with whitespace runs collapsed to one space
+     */
+    static String keyOf(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = key.length() > 0;
+            } else {
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                key.append(c);
+            }
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @brief Loads every food name and its popularity from the database
+     * @details Names added before the load are kept; their popularity is replaced by
+     *          the counted logs and plans. Later calls do nothing.
+     *
+     * @param conn Connection to read foods, food_logs and meal_plans from
+     * @throws SQLException if the query fails; the index stays unloaded
+     */
+    public void load(Connection conn) throws SQLException {
+        if (!isLoaded()) {
+            reloadIfChanged(conn);
+        }
+    }
+
+    /**
+     * @brief Loads the index, or loads it again if foods were added since
+     * @details Compares the row count and highest id of the foods table with the
+     *          last load, which catches foods inserted by other code or other
+     *          processes. A reload adds the new names and replaces the popularity
+     *          of every name; names are only dropped through remove.
+     *
+     * @param conn Connection to read foods, food_logs and meal_plans from
+     * @return true if the database was read
+     * @throws SQLException if a query fails; the index keeps its names
+     */
+    public boolean reloadIfChanged(Connection conn) throws SQLException {
+        long[] version = new long[2];
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(VERSION_SQL)) {
+            if (rs.next()) {
+                version[0] = rs.getLong(1);
+                version[1] = rs.getLong(2);
+            }
+        }
+        synchronized (this) {
+            if (loaded && Arrays.equals(version, loadedVersion)) {
+                return false;
+            }
+        }
+
+        Map<String, Long> uses = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<String> nameKeys = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAD_SQL)) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name == null || name.trim().isEmpty()) {
+                    continue;
+                }
+                String key = keyOf(name);
+                Long known = uses.put(key, rs.getLong("uses"));
+                if (known == null) {
+                    names.add(name);
+                    nameKeys.add(key);
+                } else {
+                    uses.put(key, known + uses.get(key));
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < names.size(); i++) {
+                String key = nameKeys.get(i);
+                Integer id = idsByKey.get(key);
+                if (id == null) {
+                    id = insert(names.get(i).trim(), key, null);
+                }
+                popularity[id] = uses.get(key);
+            }
+            rebuildTop(root);
+            loadedVersion = version;
+            loaded = true;
+        }
+        return true;
+    }
+
+    /**
+     * @brief Checks whether load has completed
+     * @return true if the catalog was loaded
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @brief Adds a newly inserted food name
+     *
+     * @param name Food name
+     * @return true if the name was new to the index, false if it was known or blank
+     */
+    public synchronized boolean add(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return false;
+        }
+        String key = keyOf(name);
+        if (idsByKey.containsKey(key)) {
+            return false;
+        }
+        List<Node> path = new ArrayList<>();
+        int id = insert(name.trim(), key, path);
+        promote(path, id);
+        return true;
+    }
+
+    /**
+     * @brief Counts one more log or plan of a food, moving it up in suggestions
+     *
+     * @param name Food name
+     */
+    public synchronized void recordUse(String name) {
+        if (name == null) {
+            return;
+        }
+        Integer id = idsByKey.get(keyOf(name));
+        if (id != null) {
+            popularity[id]++;
+            promote(pathTo(keys.get(id)), id);
+        }
+    }
+
+    /**
+     * @brief Removes a deleted food name
+     *
+     * @param name Food name
+     * @return true if the name was in the index
+     */
+    public synchronized boolean remove(String name) {
+        if (name == null) {
+            return false;
+        }
+        String key = keyOf(name);
+        Integer id = idsByKey.remove(key);
+        if (id == null) {
+            return false;
+        }
+        List<Node> path = pathTo(key);
+        path.get(path.size() - 1).nameId = -1;
+        liveNames--;
+        refresh(path);
+        return true;
+    }
+
+    /**
+     * @brief Gets the number of names in the index
+     * @return Number of distinct names
+     */
+    public synchronized int size() {
+        return liveNames;
+    }
+
+    /**
+     * @brief Suggests food names for typed text
+     * @details Names starting with the text come first, most popular first. If there
+     *          are fewer than limit of them and the text has at least four
+     *          characters, the remaining places go to names starting with a spelling
+     *          within one typo of the text (two typos from eight characters), closest
+     *          and then most popular first.
+     *
+     * @param text Typed text, case-insensitive
+     * @param limit Maximum number of names, at most the index's top-k
+     * @return Suggested names in display spelling; empty if none
+     */
+    public synchronized List<String> suggest(String text, int limit) {
+        List<String> result = new ArrayList<>();
+        if (text == null || limit <= 0) {
+            return result;
+        }
+        String query = keyOf(text);
+        if (query.isEmpty()) {
+            return result;
+        }
+        limit = Math.min(limit, topK);
+
+        Node exact = prefixNode(query);
+        if (exact != null) {
+            for (int i = 0; i < exact.top.length && result.size() < limit; i++) {
+                result.add(displayNames.get(exact.top[i]));
+            }
+        }
+        int maxEdits = query.length() >= TWO_EDITS_LENGTH ? 2 : query.length() >= ONE_EDIT_LENGTH ? 1 : 0;
+        if (result.size() < limit && maxEdits > 0) {
+            Map<Integer, Integer> distances = new HashMap<>();
+            int[] first = new int[query.length() + 1];
+            for (int j = 0; j < first.length; j++) {
+                first[j] = j;
+            }
+            for (Node child : root.children) {
+                fuzzy(child, query, null, first, '\0', maxEdits, Integer.MAX_VALUE, distances);
+            }
+            if (exact != null) {
+                for (int id : exact.top) {
+                    distances.remove(id);
+                }
+            }
+            List<Integer> close = new ArrayList<>(distances.keySet());
+            close.sort((a, b) -> {
+                int byDistance = Integer.compare(distances.get(a), distances.get(b));
+                return byDistance != 0 ? byDistance : compareIds(a, b);
+            });
+            for (int i = 0; i < close.size() && result.size() < limit; i++) {
+                result.add(displayNames.get(close.get(i)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @brief Finds the node whose subtree holds every key starting with the query
+     */
+    private Node prefixNode(String query) {
+        Node node = root;
+        int depth = 0;
+        while (depth < query.length()) {
+            Node child = node.child(query.charAt(depth));
+            if (child == null) {
+                return null;
+            }
+            String label = child.label;
+            int common = 0;
+            while (common < label.length() && depth + common < query.length()
+                   && label.charAt(common) == query.charAt(depth + common)) {
+                common++;
+            }
+            if (depth + common == query.length()) {
+                return child;
+            }
+            if (common < label.length()) {
+                return null;
+            }
+            depth += common;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * @brief Walks one subtree extending the edit-distance rows by its label
+     * @details row[j] is the distance between the first j characters of the query
+     *          and the key prefix read so far; previous is the row before it, used
+     *          for swapped letters. When row[m] is within maxEdits the whole subtree
+     *          matches, and its top list is recorded with that distance. Deeper
+     *          nodes are only visited while they could match more closely than bound,
+     *          the distance already matched on the way down, because the names of a
+     *          matched subtree that its top list leaves out are outranked by it.
+     */
+    private void fuzzy(Node node, String query, int[] previous, int[] row, char last,
+                       int maxEdits, int bound, Map<Integer, Integer> distances) {
+        int m = query.length();
+        int[] before = previous;
+        int[] current = row;
+        char lastChar = last;
+        int best = bound;
+        for (int i = 0; i < node.label.length() && lowerBound(before, current) < Math.min(best, maxEdits + 1); i++) {
+            char c = node.label.charAt(i);
+            int[] next = new int[m + 1];
+            next[0] = current[0] + 1;
+            for (int j = 1; j <= m; j++) {
+                char q = query.charAt(j - 1);
+                int cost = q == c ? 0 : 1;
+                int value = Math.min(Math.min(next[j - 1] + 1, current[j] + 1), current[j - 1] + cost);
+                if (before != null && j > 1 && q == lastChar && query.charAt(j - 2) == c) {
+                    value = Math.min(value, before[j - 2] + 1);
+                }
+                next[j] = value;
+            }
+            before = current;
+            current = next;
+            lastChar = c;
+            best = Math.min(best, current[m]);
+        }
+        if (best < bound && best <= maxEdits) {
+            for (int id : node.top) {
+                Integer known = distances.get(id);
+                if (known == null || known > best) {
+                    distances.put(id, best);
+                }
+            }
+        }
+        if (lowerBound(before, current) >= Math.min(best, maxEdits + 1)) {
+            return;
+        }
+        for (Node child : node.children) {
+            fuzzy(child, query, before, current, lastChar, maxEdits, best, distances);
+        }
+    }
+
+    /**
+     * @brief Smallest distance any longer key prefix can reach from these rows
+     */
+    private static int lowerBound(int[] before, int[] current) {
+        int lowest = Integer.MAX_VALUE;
+        for (int value : current) {
+            lowest = Math.min(lowest, value);
+        }
+        if (before != null) {
+            for (int value : before) {
+                lowest = Math.min(lowest, value + 1);
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * @brief Inserts a new key, splitting an edge where it diverges
+     *
+     * @param path Receives the nodes from the root to the key's node, or null
+     * @return ID of the new name
+     */
+    private int insert(String name, String key, List<Node> path) {
+        int id = displayNames.size();
+        displayNames.add(name);
+        keys.add(key);
+        if (id == popularity.length) {
+            popularity = Arrays.copyOf(popularity, id * 2);
+        }
+        idsByKey.put(key, id);
+        liveNames++;
+
+        Node node = root;
+        if (path != null) {
+            path.add(root);
+        }
+        int depth = 0;
+        while (depth < key.length()) {
+            Node child = node.child(key.charAt(depth));
+            if (child == null) {
+                child = new Node(key.substring(depth));
+                node.addChild(child);
+                depth = key.length();
+            } else {
+                String label = child.label;
+                int common = 0;
+                while (common < label.length() && depth + common < key.length()
+                       && label.charAt(common) == key.charAt(depth + common)) {
+                    common++;
+                }
+                if (common < label.length()) {
+                    Node split = new Node(label.substring(0, common));
+                    node.replaceChild(child, split);
+                    child.label = label.substring(common);
+                    split.addChild(child);
+                    split.top = child.top.clone();
+                    child = split;
+                }
+                depth += common;
+            }
+            node = child;
+            if (path != null) {
+                path.add(node);
+            }
+        }
+        node.nameId = id;
+        return id;
+    }
+
+    /**
+     * @brief Lists the nodes from the root to the node of an indexed key
+     */
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int depth = 0;
+        while (depth < key.length()) {
+            node = node.child(key.charAt(depth));
+            depth += node.label.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    /**
+     * @brief Moves a new or more popular name up in the top lists along its path
+     * @details Other names keep their popularity, so the name either moves up in a
+     *          list it is already in or takes a place in one it now qualifies for.
+     */
+    private void promote(List<Node> path, int id) {
+        for (Node node : path) {
+            int[] top = node.top;
+            int at = 0;
+            while (at < top.length && top[at] != id) {
+                at++;
+            }
+            int[] updated;
+            if (at < top.length) {
+                updated = top;
+            } else if (top.length < topK) {
+                updated = Arrays.copyOf(top, top.length + 1);
+                at = top.length;
+            } else if (compareIds(id, top[top.length - 1]) < 0) {
+                updated = top.clone();
+                at = top.length - 1;
+            } else {
+                continue;
+            }
+            while (at > 0 && compareIds(id, updated[at - 1]) < 0) {
+                updated[at] = updated[at - 1];
+                at--;
+            }
+            updated[at] = id;
+            node.top = updated;
+        }
+    }
+
+    /**
+     * @brief Recomputes the top lists along a path, deepest node first
+     */
+    private void refresh(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            computeTop(path.get(i));
+        }
+    }
+
+    /**
+     * @brief Recomputes every top list below a node after a bulk load
+     */
+    private void rebuildTop(Node node) {
+        for (Node child : node.children) {
+            rebuildTop(child);
+        }
+        computeTop(node);
+    }
+
+    /**
+     * @brief Picks a node's top list from its own name and its children's lists
+     */
+    private void computeTop(Node node) {
+        int count = node.nameId >= 0 ? 1 : 0;
+        for (Node child : node.children) {
+            count += child.top.length;
+        }
+        // The children's lists are sorted already, so merge their heads
+        int[] heads = new int[node.children.length];
+        boolean ownTaken = node.nameId < 0;
+        int[] top = new int[Math.min(topK, count)];
+        for (int i = 0; i < top.length; i++) {
+            int best = -1;
+            int bestChild = -1;
+            if (!ownTaken) {
+                best = node.nameId;
+            }
+            for (int c = 0; c < heads.length; c++) {
+                int[] childTop = node.children[c].top;
+                if (heads[c] < childTop.length && (best < 0 || compareIds(childTop[heads[c]], best) < 0)) {
+                    best = childTop[heads[c]];
+                    bestChild = c;
+                }
+            }
+            if (bestChild < 0) {
+                ownTaken = true;
+            } else {
+                heads[bestChild]++;
+            }
+            top[i] = best;
+        }
+        node.top = top;
+    }
+
+    /**
+     * @brief Orders names by popularity, then alphabetically
+     */
+    private int compareIds(int a, int b) {
+        int byPopularity = Long.compare(popularity[b], popularity[a]);
+        return byPopularity != 0 ? byPopularity : keys.get(a).compareTo(keys.get(b));
+    }
+}
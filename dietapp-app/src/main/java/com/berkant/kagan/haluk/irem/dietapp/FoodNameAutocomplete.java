@@ -0,0 +1,253 @@
+/**
+ * @file FoodNameAutocomplete.java
+ * @brief Suggestion popup for food name text fields
+ *
+ * @details The FoodNameAutocomplete class attaches to a food name field and, on
+ *          every keystroke, shows the names suggested for the typed text in a
+ *          popup list below the field. The arrow keys move through the list, Enter
+ *          or a click takes the selected name and Escape closes the popup. The
+ *          suggestion source is loaded on a background thread when the field is
+ *          created and refreshed each time the field gains the focus.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * @class FoodNameAutocomplete
+ * @brief Keystroke-driven suggestion list for a JTextField
+ *
+ * @details Suggestions are only looked up while the field has the focus, so text
+ *          set by the program (clearing the form, for example) does not open the
+ *          popup. The lookup runs on the event dispatch thread and should be an
+ *          in-memory one such as MealPlanningService.suggestFoods; the loader,
+ *          such as MealPlanningService.refreshAutocompleteIndex, runs in a
+ *          SwingWorker instead. Until the first load finishes the lookup is
+ *          expected to return no names.
+ */
+public class FoodNameAutocomplete {
+    /** @brief Number of suggestions shown */
+    public static final int DEFAULT_SUGGESTIONS = 8;
+
+    /** @brief Field the suggestions are for */
+    private final JTextField field;
+    /** @brief Looks up the suggestions for the typed text */
+    private final Function<String, List<String>> suggestions;
+    /** @brief Loads or refreshes the suggestion source, or null */
+    private final Runnable loader;
+    /** @brief Running load, or null */
+    private SwingWorker<Void, Void> loading;
+    /** @brief Suggestions currently listed */
+    private final DefaultListModel<String> model = new DefaultListModel<>();
+    /** @brief List shown in the popup */
+    private final JList<String> list = new JList<>(model);
+    /** @brief Popup below the field */
+    private final JPopupMenu popup = new JPopupMenu();
+    /** @brief Set while a suggestion is written into the field */
+    private boolean accepting;
+
+    /**
+     * @brief Constructor for FoodNameAutocomplete
+     *
+     * @param field Food name field to complete
+     * @param suggestions Returns the suggested names for the typed text
+     */
+    public FoodNameAutocomplete(JTextField field, Function<String, List<String>> suggestions) {
+        this(field, suggestions, null);
+    }
+
+    /**
+     * @brief Constructor for FoodNameAutocomplete with a background loader
+     *
+     * @param field Food name field to complete
+     * @param suggestions Returns the suggested names for the typed text
+     * @param loader Loads or refreshes what suggestions reads; run off the event
+     *               dispatch thread now and whenever the field gains the focus.
+     *               May be null
+     */
+    public FoodNameAutocomplete(JTextField field, Function<String, List<String>> suggestions, Runnable loader) {
+        this.field = field;
+        this.suggestions = suggestions;
+        this.loader = loader;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not alter the text
+            }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                int selected = list.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        select(Math.min(selected + 1, model.size() - 1));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        select(Math.max(selected - 1, 0));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (selected >= 0) {
+                            accept(model.get(selected));
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                load();
+            }
+
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    accept(model.get(index));
+                }
+            }
+        });
+        load();
+    }
+
+    /**
+     * @brief Runs the loader in a SwingWorker unless one is still running
+     */
+    private void load() {
+        if (loader == null || (loading != null && !loading.isDone())) {
+            return;
+        }
+        loading = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                loader.run();
+                return null;
+            }
+        };
+        loading.execute();
+    }
+
+    /**
+     * @brief Looks up suggestions after the user changed the text
+     */
+    private void textChanged() {
+        if (!accepting && field.isFocusOwner()) {
+            refresh(field.getText());
+        }
+    }
+
+    /**
+     * @brief Lists the suggestions for a text and shows or hides the popup
+     *
+     * @param text Typed text
+     */
+    void refresh(String text) {
+        model.clear();
+        if (text != null && !text.trim().isEmpty()) {
+            for (String name : suggestions.apply(text)) {
+                model.addElement(name);
+            }
+        }
+        if (model.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setVisibleRowCount(Math.min(model.size(), DEFAULT_SUGGESTIONS));
+        if (field.isShowing()) {
+            popup.pack();
+            popup.show(field, 0, field.getHeight());
+        }
+    }
+
+    private void select(int index) {
+        if (index >= 0) {
+            list.setSelectedIndex(index);
+            list.ensureIndexIsVisible(index);
+        }
+    }
+
+    /**
+     * @brief Writes a suggestion into the field and closes the popup
+     *
+     * @param name Suggested name
+     */
+    void accept(String name) {
+        accepting = true;
+        try {
+            field.setText(name);
+        } finally {
+            accepting = false;
+        }
+        popup.setVisible(false);
+    }
+
+    /**
+     * @brief Gets the suggestions currently listed
+     * @return Listed names, best first
+     */
+    List<String> getSuggestions() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            names.add(model.get(i));
+        }
+        return names;
+    }
+}
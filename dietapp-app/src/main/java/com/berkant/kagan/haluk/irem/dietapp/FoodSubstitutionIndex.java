@@ -0,0 +1,507 @@
+/**
+ * @file FoodSubstitutionIndex.java
+ * @brief Nearest-neighbour search for similar foods over nutrient vectors
+ *
+ * @details The FoodSubstitutionIndex class stores every food as a vector of
+ *          calories, protein, carbohydrates, fat, fiber, sugar and sodium per 100 g,
+ *          scaled by the standard deviation of each nutrient, in a k-d tree. It
+ *          answers "foods most like this one" queries, optionally restricted to a
+ *          nutrient range (for example less fat) or a meal type, without scanning
+ *          the whole catalogue.
+ *
+ * @author kagan
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @class FoodSubstitutionIndex
+ * @brief Static k-d tree over per-100 g nutrient vectors
+ *
+ * @details The tree is stored implicitly: the node of a range [lo, hi) of the order
+ *          array is its middle element, split on the dimension with the largest
+ *          spread. Range constraints prune whole subtrees. Instances are immutable
+ *          and safe for concurrent queries.
+ */
+public class FoodSubstitutionIndex {
+    /** @brief Number of nutrient dimensions */
+    public static final int DIMENSIONS = 7;
+    /** @brief Dimension of calories per 100 g */
+    public static final int CALORIES = 0;
+    /** @brief Dimension of protein grams per 100 g */
+    public static final int PROTEIN = 1;
+    /** @brief Dimension of carbohydrate grams per 100 g */
+    public static final int CARBS = 2;
+    /** @brief Dimension of fat grams per 100 g */
+    public static final int FAT = 3;
+    /** @brief Dimension of fiber grams per 100 g */
+    public static final int FIBER = 4;
+    /** @brief Dimension of sugar grams per 100 g */
+    public static final int SUGAR = 5;
+    /** @brief Dimension of sodium milligrams per 100 g */
+    public static final int SODIUM = 6;
+
+    /**
+     * @brief Query for loading the index
+     * @details Nutrients saved through MealPlanningService live in food_nutrients,
+     *          while foods added elsewhere keep them in the foods columns. The latest
+     *          food_nutrients row of a food wins, then the foods column, then zero.
+     */
+    static final String LOAD_SQL =
+        "SELECT f.name, f.grams, f.calories, " +
+        "COALESCE(fn.protein, f.protein, 0) AS protein, COALESCE(fn.carbs, f.carbs, 0) AS carbs, " +
+        "COALESCE(fn.fat, f.fat, 0) AS fat, COALESCE(fn.fiber, f.fiber, 0) AS fiber, " +
+        "COALESCE(fn.sugar, f.sugar, 0) AS sugar, COALESCE(fn.sodium, f.sodium, 0) AS sodium, f.meal_type " +
+        "FROM foods f " +
+        "LEFT JOIN food_nutrients fn ON fn.id = " +
+        "(SELECT MAX(id) FROM food_nutrients WHERE food_id = f.id) " +
+        "ORDER BY f.id";
+
+    private final FoodNutrient[] foods;
+    private final String[] mealTypes;
+    /** @brief Position of the first food with each lower-case name */
+    private final Map<String, Integer> byName = new HashMap<>();
+    /** @brief Raw per-100 g values, DIMENSIONS per food */
+    private final double[] raw;
+    /** @brief Scaled values used for distances, DIMENSIONS per food */
+    private final double[] scaled;
+    private final double[] scale = new double[DIMENSIONS];
+    /** @brief Food positions in tree order */
+    private final int[] order;
+    /** @brief Split dimension of the node stored at each position of order */
+    private final byte[] splitDim;
+
+    /**
+     * @brief Builds the index
+     *
+     * @param foods Foods to index
+     * @param mealTypes Meal type of each food, or null if unknown; may be null
+     * @throws IllegalArgumentException if the lists differ in size
+     */
+    public FoodSubstitutionIndex(List<FoodNutrient> foods, List<String> mealTypes) {
+        if (mealTypes != null && mealTypes.size() != foods.size()) {
+            throw new IllegalArgumentException("Meal types must match the foods");
+        }
+        int n = foods.size();
+        this.foods = foods.toArray(new FoodNutrient[0]);
+        this.mealTypes = new String[n];
+        this.raw = new double[n * DIMENSIONS];
+        this.scaled = new double[n * DIMENSIONS];
+        for (int i = 0; i < n; i++) {
+            this.mealTypes[i] = mealTypes != null ? mealTypes.get(i) : null;
+            byName.putIfAbsent(this.foods[i].getName().toLowerCase(), i);
+            per100g(this.foods[i], raw, i * DIMENSIONS);
+        }
+
+        // Scale every dimension by its standard deviation so sodium does not dominate
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double sum = 0;
+            double sumSq = 0;
+            for (int i = 0; i < n; i++) {
+                double v = raw[i * DIMENSIONS + d];
+                sum += v;
+                sumSq += v * v;
+            }
+            double mean = n > 0 ? sum / n : 0;
+            double variance = n > 0 ? sumSq / n - mean * mean : 0;
+            scale[d] = variance > 1e-12 ? 1.0 / Math.sqrt(variance) : 1.0;
+        }
+        for (int i = 0; i < raw.length; i++) {
+            scaled[i] = raw[i] * scale[i % DIMENSIONS];
+        }
+
+        order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        splitDim = new byte[n];
+        build(0, n);
+    }
+
+    /**
+     * @brief Loads all foods from the database into a new index
+     *
+     * @param conn Connection to read from
+     * @return The index
+     * @throws SQLException if the foods or food_nutrients table cannot be read
+     */
+    public static FoodSubstitutionIndex load(Connection conn) throws SQLException {
+        List<FoodNutrient> foods = new ArrayList<>();
+        List<String> mealTypes = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAD_SQL)) {
+            while (rs.next()) {
+                foods.add(new FoodNutrient(
+                    rs.getString("name"),
+                    rs.getDouble("grams"),
+                    rs.getInt("calories"),
+                    rs.getDouble("protein"),
+                    rs.getDouble("carbs"),
+                    rs.getDouble("fat"),
+                    rs.getDouble("fiber"),
+                    rs.getDouble("sugar"),
+                    rs.getDouble("sodium")));
+                mealTypes.add(rs.getString("meal_type"));
+            }
+        }
+        return new FoodSubstitutionIndex(foods, mealTypes);
+    }
+
+    /**
+     * @brief Gets the number of indexed foods
+     * @return Food count
+     */
+    public int size() {
+        return foods.length;
+    }
+
+    /**
+     * @brief Finds an indexed food by name, ignoring case
+     *
+     * @param name Name of the food
+     * @return The first food with that name, or null
+     */
+    public FoodNutrient findByName(String name) {
+        int i = indexOf(name);
+        return i >= 0 ? foods[i] : null;
+    }
+
+    /**
+     * @brief Gets the meal type of an indexed food
+     *
+     * @param name Name of the food
+     * @return Meal type of the first food with that name, or null
+     */
+    public String getMealType(String name) {
+        int i = indexOf(name);
+        return i >= 0 ? mealTypes[i] : null;
+    }
+
+    /**
+     * @brief Finds the foods nearest to a reference food
+     * @details Foods with the same name as the reference are never returned.
+     *
+     * @param reference Food to find substitutes for
+     * @param query Number of results and constraints
+     * @return Up to query.getLimit() substitutes, nearest first
+     */
+    public List<Substitute> findNearest(FoodNutrient reference, Query query) {
+        double[] target = new double[DIMENSIONS];
+        per100g(reference, target, 0);
+        for (int d = 0; d < DIMENSIONS; d++) {
+            target[d] *= scale[d];
+        }
+
+        // Max-heap on distance holding the best matches found so far
+        PriorityQueue<Substitute> best = new PriorityQueue<>(
+            Math.max(1, query.limit), (a, b) -> Double.compare(b.distance, a.distance));
+        if (query.limit > 0 && foods.length > 0) {
+            search(0, foods.length, target, reference.getName(), query, best);
+        }
+
+        List<Substitute> result = new ArrayList<>(best);
+        result.sort((a, b) -> Double.compare(a.distance, b.distance));
+        return result;
+    }
+
+    /**
+     * @brief Builds the subtree of order[lo, hi)
+     */
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int dim = widestDimension(lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, dim);
+        splitDim[mid] = (byte) dim;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    private int widestDimension(int lo, int hi) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = lo; i < hi; i++) {
+                double v = scaled[order[i] * DIMENSIONS + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = d;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * @brief Quickselect: puts the k-th smallest element of order[lo..hi] on dim at k
+     */
+    private void select(int lo, int hi, int k, int dim) {
+        while (lo < hi) {
+            double pivot = scaled[order[(lo + hi) >>> 1] * DIMENSIONS + dim];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (scaled[order[i] * DIMENSIONS + dim] < pivot) {
+                    i++;
+                }
+                while (scaled[order[j] * DIMENSIONS + dim] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @brief Branch-and-bound search of the subtree of order[lo, hi)
+     */
+    private void search(int lo, int hi, double[] target, String excludedName, Query query,
+                        PriorityQueue<Substitute> best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int food = order[mid];
+        consider(food, target, excludedName, query, best);
+        if (hi - lo == 1) {
+            return;
+        }
+
+        int dim = splitDim[mid];
+        double split = scaled[food * DIMENSIONS + dim];
+        double rawSplit = raw[food * DIMENSIONS + dim];
+        // Left holds values <= split, right values >= split
+        boolean leftPossible = rawSplit >= query.min[dim];
+        boolean rightPossible = rawSplit <= query.max[dim];
+        double diff = target[dim] - split;
+        boolean leftFirst = diff <= 0;
+
+        if (leftFirst ? leftPossible : rightPossible) {
+            if (leftFirst) {
+                search(lo, mid, target, excludedName, query, best);
+            } else {
+                search(mid + 1, hi, target, excludedName, query, best);
+            }
+        }
+        boolean farPossible = leftFirst ? rightPossible : leftPossible;
+        if (farPossible && (best.size() < query.limit || diff * diff < best.peek().distance)) {
+            if (leftFirst) {
+                search(mid + 1, hi, target, excludedName, query, best);
+            } else {
+                search(lo, mid, target, excludedName, query, best);
+            }
+        }
+    }
+
+    private void consider(int food, double[] target, String excludedName, Query query,
+                          PriorityQueue<Substitute> best) {
+        int base = food * DIMENSIONS;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double v = raw[base + d];
+            if (v < query.min[d] || v > query.max[d]) {
+                return;
+            }
+        }
+        if (query.mealType != null && !query.mealType.equalsIgnoreCase(mealTypes[food])) {
+            return;
+        }
+        if (excludedName != null && excludedName.equalsIgnoreCase(foods[food].getName())) {
+            return;
+        }
+        double distance = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double diff = scaled[base + d] - target[d];
+            distance += diff * diff;
+        }
+        if (best.size() < query.limit) {
+            best.add(new Substitute(foods[food], mealTypes[food], distance));
+        } else if (distance < best.peek().distance) {
+            best.poll();
+            best.add(new Substitute(foods[food], mealTypes[food], distance));
+        }
+    }
+
+    private int indexOf(String name) {
+        Integer i = name != null ? byName.get(name.toLowerCase()) : null;
+        return i != null ? i : -1;
+    }
+
+    /**
+     * @brief Writes a food's nutrients per 100 g into out starting at offset
+     */
+    static void per100g(FoodNutrient food, double[] out, int offset) {
+        double factor = food.getGrams() > 0 ? 100.0 / food.getGrams() : 0;
+        out[offset + CALORIES] = food.getCalories() * factor;
+        out[offset + PROTEIN] = food.getProtein() * factor;
+        out[offset + CARBS] = food.getCarbs() * factor;
+        out[offset + FAT] = food.getFat() * factor;
+        out[offset + FIBER] = food.getFiber() * factor;
+        out[offset + SUGAR] = food.getSugar() * factor;
+        out[offset + SODIUM] = food.getSodium() * factor;
+    }
+
+    /**
+     * @class Query
+     * @brief Number of results and constraints of a substitution search
+     */
+    public static class Query {
+        private final int limit;
+        private final double[] min = new double[DIMENSIONS];
+        private final double[] max = new double[DIMENSIONS];
+        private String mealType;
+
+        /**
+         * @brief Creates an unconstrained query
+         *
+         * @param limit Maximum number of results
+         */
+        public Query(int limit) {
+            this.limit = Math.max(0, limit);
+            Arrays.fill(min, -Double.MAX_VALUE);
+            Arrays.fill(max, Double.MAX_VALUE);
+        }
+
+        /**
+         * @brief Gets the maximum number of results
+         * @return Result limit
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * @brief Gets the inclusive lower bound of a nutrient
+         *
+         * @param dimension Nutrient dimension such as PROTEIN
+         * @return Lower bound per 100 g, -Double.MAX_VALUE if unconstrained
+         */
+        public double getMin(int dimension) {
+            return min[dimension];
+        }
+
+        /**
+         * @brief Gets the inclusive upper bound of a nutrient
+         *
+         * @param dimension Nutrient dimension such as FAT
+         * @return Upper bound per 100 g, Double.MAX_VALUE if unconstrained
+         */
+        public double getMax(int dimension) {
+            return max[dimension];
+        }
+
+        /**
+         * @brief Gets the required meal type
+         * @return Meal type, or null if any meal type is accepted
+         */
+        public String getMealType() {
+            return mealType;
+        }
+
+        /**
+         * @brief Requires at most a value per 100 g of a nutrient
+         *
+         * @param dimension Nutrient dimension such as FAT
+         * @param value Inclusive upper bound per 100 g
+         * @return This query
+         */
+        public Query atMost(int dimension, double value) {
+            max[dimension] = Math.min(max[dimension], value);
+            return this;
+        }
+
+        /**
+         * @brief Requires at least a value per 100 g of a nutrient
+         *
+         * @param dimension Nutrient dimension such as PROTEIN
+         * @param value Inclusive lower bound per 100 g
+         * @return This query
+         */
+        public Query atLeast(int dimension, double value) {
+            min[dimension] = Math.max(min[dimension], value);
+            return this;
+        }
+
+        /**
+         * @brief Requires a meal type
+         *
+         * @param mealType Meal type such as "lunch", compared ignoring case
+         * @return This query
+         */
+        public Query mealType(String mealType) {
+            this.mealType = mealType;
+            return this;
+        }
+    }
+
+    /**
+     * @class Substitute
+     * @brief A food found by a substitution search
+     */
+    public static class Substitute {
+        private final FoodNutrient food;
+        private final String mealType;
+        private final double distance;
+
+        Substitute(FoodNutrient food, String mealType, double distance) {
+            this.food = food;
+            this.mealType = mealType;
+            this.distance = distance;
+        }
+
+        /**
+         * @brief Gets the substitute food
+         * @return Food with its stored portion and nutrients
+         */
+        public FoodNutrient getFood() {
+            return food;
+        }
+
+        /**
+         * @brief Gets the meal type of the substitute
+         * @return Meal type, or null if unknown
+         */
+        public String getMealType() {
+            return mealType;
+        }
+
+        /**
+         * @brief Gets the distance to the reference food
+         * @return Euclidean distance between the scaled per-100 g vectors
+         */
+        public double getDistance() {
+            return Math.sqrt(distance);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/**
+ * @file FoodTagIndex.java
+ * @brief Tag bitsets and inverted index for dietary restriction filtering
+ *
+ * @details The FoodTagIndex class tags each food once from the words of its name
+ *          (meat, poultry, fish, shellfish, dairy, egg, gluten, nuts, soy) into a
+ *          bitset. Diet types and excluded foods compile to a bitmask of forbidden
+ *          tags, so checking a food is a single AND instead of a chain of substring
+ *          searches. Words are matched whole, so "Eggplant" is not an egg dish and
+ *          "Peanut Butter" is not dairy.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @class FoodTagIndex
+ * @brief Per-food tag bitsets with one posting bitmap per tag
+ *
+ * @details Tags of each food are computed once, when an index over a list of foods
+ *          is built. The index keeps, for every tag, a bitmap of the foods carrying
+ *          it; the candidates for a restriction are all foods minus the union of the
+ *          forbidden tags' bitmaps. Since tags depend only on names, an index can be
+ *          reused for any later list with the same names. Instances are immutable.
+ */
+public class FoodTagIndex {
+    /** @brief Red meat such as beef, lamb or pork */
+    public static final long MEAT = 1L;
+    /** @brief Chicken, turkey and other poultry */
+    public static final long POULTRY = 1L << 1;
+    /** @brief Fish */
+    public static final long FISH = 1L << 2;
+    /** @brief Shrimp, crab, mussels and other shellfish */
+    public static final long SHELLFISH = 1L << 3;
+    /** @brief Milk and milk products */
+    public static final long DAIRY = 1L << 4;
+    /** @brief Eggs */
+    public static final long EGG = 1L << 5;
+    /** @brief Wheat and other gluten grains */
+    public static final long GLUTEN = 1L << 6;
+    /** @brief Tree nuts and peanuts */
+    public static final long NUTS = 1L << 7;
+    /** @brief Soy products */
+    public static final long SOY = 1L << 8;
+
+    /** @brief Number of tags */
+    private static final int TAG_COUNT = 9;
+
+    /** @brief Tags forbidden by a vegetarian diet */
+    public static final long NOT_VEGETARIAN = MEAT | POULTRY | FISH | SHELLFISH;
+    /** @brief Tags forbidden by a vegan diet */
+    public static final long NOT_VEGAN = NOT_VEGETARIAN | DAIRY | EGG;
+
+    /** @brief Tags of single words */
+    private static final Map<String, Long> WORD_TAGS = new HashMap<>();
+    /** @brief Tags of two-word phrases, which take precedence over their words */
+    private static final Map<String, Long> PHRASE_TAGS = new HashMap<>();
+    /** @brief Tags an excluded-food entry stands for when it names a whole group */
+    private static final Map<String, Long> GROUP_TAGS = new HashMap<>();
+
+    static {
+        words(MEAT, "meat", "beef", "steak", "lamb", "pork", "bacon", "ham", "sausage", "meatball",
+              "burger", "veal", "mutton", "salami", "pepperoni", "chorizo", "kebab", "bolognese");
+        words(POULTRY, "chicken", "turkey", "duck", "poultry");
+        words(FISH, "fish", "salmon", "tuna", "cod", "trout", "sardine", "anchovy", "mackerel",
+              "halibut", "tilapia", "sushi");
+        words(SHELLFISH, "shellfish", "shrimp", "prawn", "crab", "lobster", "mussel", "oyster",
+              "clam", "scallop", "calamari", "squid");
+        words(DAIRY, "dairy", "milk", "cheese", "yogurt", "yoghurt", "butter", "cream", "kefir",
+              "whey", "parmesan", "mozzarella", "feta", "ricotta", "latte", "custard", "paneer");
+        words(EGG, "egg", "eggs", "omelet", "omelette", "frittata", "quiche", "mayonnaise");
+        words(GLUTEN, "gluten", "wheat", "bread", "toast", "pasta", "spaghetti", "noodle", "sandwich",
+              "wrap", "pancake", "waffle", "bagel", "pizza", "couscous", "burrito", "cracker",
+              "croissant", "muffin", "granola", "barley", "rye", "seitan", "tortilla", "lasagna");
+        words(NUTS, "nut", "nuts", "almond", "walnut", "cashew", "pecan", "hazelnut", "pistachio",
+              "peanut", "macadamia", "praline");
+        words(SOY, "soy", "soya", "tofu", "tempeh", "edamame", "miso");
+
+        PHRASE_TAGS.put("peanut butter", NUTS);
+        PHRASE_TAGS.put("almond butter", NUTS);
+        PHRASE_TAGS.put("almond milk", NUTS);
+        PHRASE_TAGS.put("cashew milk", NUTS);
+        PHRASE_TAGS.put("soy milk", SOY);
+        PHRASE_TAGS.put("coconut milk", 0L);
+        PHRASE_TAGS.put("oat milk", 0L);
+        PHRASE_TAGS.put("cocoa butter", 0L);
+        PHRASE_TAGS.put("veggie burger", GLUTEN);
+        PHRASE_TAGS.put("egg free", 0L);
+        PHRASE_TAGS.put("gluten free", 0L);
+        PHRASE_TAGS.put("dairy free", 0L);
+
+        GROUP_TAGS.put("meat", MEAT | POULTRY);
+        GROUP_TAGS.put("red meat", MEAT);
+        GROUP_TAGS.put("poultry", POULTRY);
+        GROUP_TAGS.put("fish", FISH);
+        GROUP_TAGS.put("seafood", FISH | SHELLFISH);
+        GROUP_TAGS.put("shellfish", SHELLFISH);
+        GROUP_TAGS.put("dairy", DAIRY);
+        GROUP_TAGS.put("lactose", DAIRY);
+        GROUP_TAGS.put("egg", EGG);
+        GROUP_TAGS.put("eggs", EGG);
+        GROUP_TAGS.put("gluten", GLUTEN);
+        GROUP_TAGS.put("wheat", GLUTEN);
+        GROUP_TAGS.put("nuts", NUTS);
+        GROUP_TAGS.put("tree nuts", NUTS);
+        GROUP_TAGS.put("peanuts", NUTS);
+        GROUP_TAGS.put("soy", SOY);
+    }
+
+    private final Food[] foods;
+    private final long[] tags;
+    /** @brief postings[t] has bit i set if foods[i] carries tag 1 << t */
+    private final BitSet[] postings = new BitSet[TAG_COUNT];
+
+    /**
+     * @brief Builds the index over a list of foods
+     *
+     * @param foods Foods to index; the array is not copied
+     */
+    public FoodTagIndex(Food[] foods) {
+        this.foods = foods;
+        this.tags = new long[foods.length];
+        for (int t = 0; t < TAG_COUNT; t++) {
+            postings[t] = new BitSet(foods.length);
+        }
+        for (int i = 0; i < foods.length; i++) {
+            long foodTags = tagsOf(foods[i].getName());
+            tags[i] = foodTags;
+            for (int t = 0; t < TAG_COUNT; t++) {
+                if ((foodTags & (1L << t)) != 0) {
+                    postings[t].set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Gets the tags of one indexed food
+     *
+     * @param index Position of the food in the indexed array
+     * @return Tag bitset
+     */
+    public long getTags(int index) {
+        return tags[index];
+    }
+
+    /**
+     * @brief Gets the foods carrying none of the forbidden tags
+     *
+     * @param forbidden Bitmask of forbidden tags
+     * @return Bitmap of candidate food positions
+     */
+    public BitSet candidates(long forbidden) {
+        BitSet result = new BitSet(foods.length);
+        result.set(0, foods.length);
+        for (int t = 0; t < TAG_COUNT; t++) {
+            if ((forbidden & (1L << t)) != 0) {
+                result.andNot(postings[t]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @brief Gets the foods allowed by a restriction, in their original order
+     *
+     * @param restriction Compiled restriction
+     * @return Allowed foods
+     */
+    public Food[] filter(Restriction restriction) {
+        return filter(foods, restriction);
+    }
+
+    /**
+     * @brief Gets the foods of an equally named list allowed by a restriction
+     * @details Lets an index built once filter later copies of the same list, such
+     *          as options reloaded from the database, and return those copies.
+     *
+     * @param sameNames Foods for which hasSameNames is true
+     * @param restriction Compiled restriction
+     * @return Allowed foods of sameNames, in their original order
+     * @throws IllegalArgumentException if the names differ from the indexed ones
+     */
+    public Food[] filter(Food[] sameNames, Restriction restriction) {
+        if (!hasSameNames(sameNames)) {
+            throw new IllegalArgumentException("Foods differ from the indexed ones");
+        }
+        BitSet allowed = candidates(restriction.getForbiddenTags());
+        List<Food> result = new ArrayList<>(allowed.cardinality());
+        for (int i = allowed.nextSetBit(0); i >= 0; i = allowed.nextSetBit(i + 1)) {
+            if (!restriction.excludesByName(sameNames[i].getName())) {
+                result.add(sameNames[i]);
+            }
+        }
+        return result.toArray(new Food[0]);
+    }
+
+    /**
+     * @brief Checks whether a list has the indexed food names in the same order
+     *
+     * @param other Foods to compare
+     * @return true if the index applies to other
+     */
+    public boolean hasSameNames(Food[] other) {
+        if (other == foods) {
+            return true;
+        }
+        if (other == null || other.length != foods.length) {
+            return false;
+        }
+        for (int i = 0; i < foods.length; i++) {
+            String name = foods[i].getName();
+            if (name == null ? other[i].getName() != null : !name.equals(other[i].getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @brief Gets the tags of a food name
+     * @details Computed on every call; indexes keep the tags of their foods.
+     *
+     * @param foodName Name of the food
+     * @return Tag bitset, 0 for null or unknown names
+     */
+    public static long tagsOf(String foodName) {
+        if (foodName == null) {
+            return 0L;
+        }
+        return computeTags(foodName);
+    }
+
+    /**
+     * @brief Compiles a diet type and excluded foods into a restriction
+     * @details Excluded entries that name a food group (dairy, nuts, gluten, ...)
+     *          become tag bits. Other entries, such as "mushrooms", keep the old
+     *          behaviour of excluding every food whose name contains them.
+     *
+     * @param dietType Diet type, may be null
+     * @param excludedFoods Excluded foods, may be null
+     * @return Compiled restriction
+     */
+    public static Restriction compile(PersonalizedDietRecommendationService.DietType dietType,
+                                      List<String> excludedFoods) {
+        long forbidden = 0L;
+        if (dietType == PersonalizedDietRecommendationService.DietType.VEGETARIAN) {
+            forbidden |= NOT_VEGETARIAN;
+        } else if (dietType == PersonalizedDietRecommendationService.DietType.VEGAN) {
+            forbidden |= NOT_VEGAN;
+        }
+        List<String> terms = new ArrayList<>();
+        if (excludedFoods != null) {
+            for (String excluded : excludedFoods) {
+                if (excluded == null || excluded.trim().isEmpty()) {
+                    continue;
+                }
+                String term = excluded.trim().toLowerCase();
+                Long group = GROUP_TAGS.get(term);
+                if (group != null) {
+                    forbidden |= group;
+                } else {
+                    terms.add(term);
+                }
+            }
+        }
+        return new Restriction(forbidden, terms);
+    }
+
+    /**
+     * @brief Splits a name into words and looks up their tags
+     */
+    private static long computeTags(String foodName) {
+        String[] words = foodName.toLowerCase().split("[^a-z]+");
+        long result = 0L;
+        int i = 0;
+        while (i < words.length) {
+            if (words[i].isEmpty()) {
+                i++;
+                continue;
+            }
+            if (i + 1 < words.length) {
+                Long phrase = PHRASE_TAGS.get(words[i] + " " + words[i + 1]);
+                if (phrase != null) {
+                    result |= phrase;
+                    i += 2;
+                    continue;
+                }
+            }
+            result |= wordTags(words[i]);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * @brief Looks up a word, falling back to its singular form
+     */
+    private static long wordTags(String word) {
+        Long tagsOfWord = WORD_TAGS.get(word);
+        if (tagsOfWord == null && word.endsWith("es")) {
+            tagsOfWord = WORD_TAGS.get(word.substring(0, word.length() - 2));
+        }
+        if (tagsOfWord == null && word.endsWith("s")) {
+            tagsOfWord = WORD_TAGS.get(word.substring(0, word.length() - 1));
+        }
+        return tagsOfWord != null ? tagsOfWord : 0L;
+    }
+
+    private static void words(long tag, String... words) {
+        for (String word : words) {
+            WORD_TAGS.merge(word, tag, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * @class Restriction
+     * @brief Forbidden tags plus excluded terms that name no food group
+     */
+    public static class Restriction {
+        private final long forbiddenTags;
+        private final List<String> excludedTerms;
+
+        /**
+         * @brief Constructor for Restriction
+         *
+         * @param forbiddenTags Bitmask of forbidden tags
+         * @param excludedTerms Lower-case terms excluded by substring match
+         */
+        public Restriction(long forbiddenTags, List<String> excludedTerms) {
+            this.forbiddenTags = forbiddenTags;
+            this.excludedTerms = Collections.unmodifiableList(new ArrayList<>(excludedTerms));
+        }
+
+        /**
+         * @brief Gets the forbidden tags
+         * @return Tag bitmask
+         */
+        public long getForbiddenTags() {
+            return forbiddenTags;
+        }
+
+        /**
+         * @brief Gets the excluded terms that name no food group
+         * @return Lower-case terms
+         */
+        public List<String> getExcludedTerms() {
+            return excludedTerms;
+        }
+
+        /**
+         * @brief Checks whether a food is allowed
+         *
+         * @param food Food to check
+         * @return true if the food carries no forbidden tag and matches no excluded term
+         */
+        public boolean allows(Food food) {
+            return (tagsOf(food.getName()) & forbiddenTags) == 0 && !excludesByName(food.getName());
+        }
+
+        private boolean excludesByName(String foodName) {
+            if (excludedTerms.isEmpty()) {
+                return false;
+            }
+            String lower = foodName.toLowerCase();
+            for (String term : excludedTerms) {
+                if (lower.contains(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ * @file HealthRuleEngine.java
+ * @brief Health-condition rules compiled to nutrient limits
+ *
+ * @details The HealthRuleEngine class reads health condition rules from a data file
+ *          (health_rules.txt on the classpath). Each rule bounds nutrients per 100 g,
+ *          for example a sodium cap for hypertension, and carries the guideline
+ *          lines shown to the user. A list of health conditions compiles once into
+ *          a Restriction: one lower and one upper bound per nutrient, checked for a
+ *          whole option list at a time during candidate filtering.
+ *
+ * @author irem
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @class HealthRuleEngine
+ * @brief Parsed health rules with a cache of compiled restrictions
+ *
+ * @details Nutrients are the dimensions of FoodSubstitutionIndex (calories, protein,
+ *          carbs, fat, fiber, sugar, sodium per 100 g). Instances are immutable apart
+ *          from the restriction cache and safe for concurrent use.
+ */
+public class HealthRuleEngine {
+    /** @brief Classpath location of the default rules */
+    public static final String DEFAULT_RESOURCE = "/health_rules.txt";
+
+    /** @brief Nutrient names used in limit lines, indexed by dimension */
+    private static final String[] NUTRIENTS = {"calories", "protein", "carbs", "fat", "fiber", "sugar", "sodium"};
+
+    /** @brief Rules in file order */
+    private final List<Rule> rules;
+
+    /** @brief Compiled restrictions keyed by the lower-case condition list */
+    private final Map<String, Restriction> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * @brief Rules loaded from DEFAULT_RESOURCE when the class is first used
+     */
+    private static class DefaultHolder {
+        static final HealthRuleEngine INSTANCE = loadDefault();
+    }
+
+    private HealthRuleEngine(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @brief Gets the engine holding the default rules
+     * @details The rules file is read and parsed once. A missing or malformed file
+     *          is reported and leaves the engine without rules.
+     *
+     * @return Shared default engine
+     */
+    public static HealthRuleEngine getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static HealthRuleEngine loadDefault() {
+        try (InputStream in = HealthRuleEngine.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                System.out.println("Health rules not found: " + DEFAULT_RESOURCE);
+                return new HealthRuleEngine(Collections.emptyList());
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not load health rules: " + e.getMessage());
+            return new HealthRuleEngine(Collections.emptyList());
+        }
+    }
+
+    /**
+     * @brief Parses rules in the health_rules.txt format
+     *
+     * @param reader Source of the rules
+     * @return Engine holding the parsed rules
+     * @throws IOException if the source cannot be read
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static HealthRuleEngine parse(Reader reader) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        Rule rule = null;
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                rule = new Rule(line.substring(1, line.length() - 1).trim());
+                rules.add(rule);
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (rule == null || eq <= 0) {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected [rule] or key = value");
+            }
+            String key = line.substring(0, eq).trim();
+            String value = line.substring(eq + 1).trim();
+            switch (key) {
+                case "match":
+                    for (String word : value.split(",")) {
+                        if (!word.trim().isEmpty()) {
+                            rule.keywords.add(word.trim().toLowerCase());
+                        }
+                    }
+                    break;
+                case "limit":
+                    rule.addLimit(value, lineNumber);
+                    break;
+                case "guideline":
+                    rule.guidelines.add(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("line " + lineNumber + ": unknown key " + key);
+            }
+        }
+        return new HealthRuleEngine(rules);
+    }
+
+    /**
+     * @brief Gets the number of rules
+     * @return Rule count
+     */
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * @brief Compiles health conditions into nutrient bounds
+     * @details Each condition selects the first rule with a matching word; the
+     *          bounds of all selected rules are intersected and their guidelines
+     *          concatenated. Results are cached per condition list.
+     *
+     * @param conditions Health conditions of a user, may be null
+     * @return Compiled restriction
+     */
+    public Restriction compile(List<String> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return Restriction.NONE;
+        }
+        StringBuilder key = new StringBuilder();
+        for (String condition : conditions) {
+            key.append(condition == null ? "" : condition.toLowerCase()).append('\n');
+        }
+        return compiled.computeIfAbsent(key.toString(), k -> build(conditions));
+    }
+
+    private Restriction build(List<String> conditions) {
+        double[] min = new double[NUTRIENTS.length];
+        double[] max = new double[NUTRIENTS.length];
+        Arrays.fill(min, Double.NEGATIVE_INFINITY);
+        Arrays.fill(max, Double.POSITIVE_INFINITY);
+        List<String> guidelines = new ArrayList<>();
+        for (String condition : conditions) {
+            Rule rule = match(condition);
+            if (rule == null) {
+                continue;
+            }
+            for (int d = 0; d < NUTRIENTS.length; d++) {
+                min[d] = Math.max(min[d], rule.min[d]);
+                max[d] = Math.min(max[d], rule.max[d]);
+            }
+            guidelines.addAll(rule.guidelines);
+        }
+        return new Restriction(min, max, guidelines);
+    }
+
+    private Rule match(String condition) {
+        if (condition == null) {
+            return null;
+        }
+        String lower = condition.toLowerCase();
+        for (Rule rule : rules) {
+            for (String keyword : rule.keywords) {
+                if (lower.contains(keyword)) {
+                    return rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @class Rule
+     * @brief One parsed rule of the data file
+     */
+    private static class Rule {
+        private final String name;
+        private final List<String> keywords = new ArrayList<>();
+        private final double[] min = new double[NUTRIENTS.length];
+        private final double[] max = new double[NUTRIENTS.length];
+        private final List<String> guidelines = new ArrayList<>();
+
+        Rule(String name) {
+            this.name = name;
+            Arrays.fill(min, Double.NEGATIVE_INFINITY);
+            Arrays.fill(max, Double.POSITIVE_INFINITY);
+        }
+
+        void addLimit(String text, int lineNumber) {
+            String[] parts = text.split("\\s+");
+            int dimension = parts.length == 3 ? Arrays.asList(NUTRIENTS).indexOf(parts[0].toLowerCase()) : -1;
+            if (dimension < 0 || !(parts[1].equals("<=") || parts[1].equals(">="))) {
+                throw new IllegalArgumentException("line " + lineNumber + ": bad limit in rule " + name + ": " + text);
+            }
+            double value;
+            try {
+                value = Double.parseDouble(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("line " + lineNumber + ": bad number in rule " + name + ": " + text);
+            }
+            if (parts[1].equals("<=")) {
+                max[dimension] = Math.min(max[dimension], value);
+            } else {
+                min[dimension] = Math.max(min[dimension], value);
+            }
+        }
+    }
+
+    /**
+     * @class Restriction
+     * @brief Nutrient bounds and guidelines compiled from a list of conditions
+     *
+     * @details A food passes when each of its nutrients per 100 g lies within the
+     *          bounds. Plain Food objects only carry calories; their other nutrients
+     *          are unknown and not checked.
+     */
+    public static class Restriction {
+        /** @brief Restriction of a profile without health conditions */
+        static final Restriction NONE = new Restriction(null, null, Collections.emptyList());
+
+        private final double[] min;
+        private final double[] max;
+        /** @brief Dimensions with at least one finite bound */
+        private final int[] bounded;
+        private final List<String> guidelines;
+
+        private Restriction(double[] min, double[] max, List<String> guidelines) {
+            this.min = min;
+            this.max = max;
+            this.guidelines = Collections.unmodifiableList(new ArrayList<>(guidelines));
+            int count = 0;
+            int[] dims = new int[NUTRIENTS.length];
+            for (int d = 0; min != null && d < NUTRIENTS.length; d++) {
+                if (min[d] != Double.NEGATIVE_INFINITY || max[d] != Double.POSITIVE_INFINITY) {
+                    dims[count++] = d;
+                }
+            }
+            this.bounded = Arrays.copyOf(dims, count);
+        }
+
+        /**
+         * @brief Gets the guidelines of the matched rules
+         * @return Unmodifiable guideline lines in rule order
+         */
+        public List<String> getGuidelines() {
+            return guidelines;
+        }
+
+        /**
+         * @brief Checks whether the restriction bounds any nutrient
+         * @return true if no nutrient is bounded
+         */
+        public boolean isUnrestricted() {
+            return bounded.length == 0;
+        }
+
+        /**
+         * @brief Gets the upper bound of a nutrient
+         * @param dimension Nutrient dimension, e.g. FoodSubstitutionIndex.SODIUM
+         * @return Upper bound per 100 g, positive infinity if none
+         */
+        public double getMax(int dimension) {
+            return max != null ? max[dimension] : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @brief Gets the lower bound of a nutrient
+         * @param dimension Nutrient dimension, e.g. FoodSubstitutionIndex.FIBER
+         * @return Lower bound per 100 g, negative infinity if none
+         */
+        public double getMin(int dimension) {
+            return min != null ? min[dimension] : Double.NEGATIVE_INFINITY;
+        }
+
+        /**
+         * @brief Checks a single food
+         * @param food Food to check
+         * @return true if the food is within all bounds
+         */
+        public boolean allows(Food food) {
+            return filter(new Food[] {food}).length == 1;
+        }
+
+        /**
+         * @brief Keeps the foods within all bounds
+         * @details Nutrients are laid out per dimension and each bounded dimension is
+         *          checked for the whole list in one pass.
+         *
+         * @param foods Foods to filter
+         * @return Passing foods in their original order
+         */
+        public Food[] filter(Food[] foods) {
+            if (bounded.length == 0 || foods.length == 0) {
+                return foods;
+            }
+            int n = foods.length;
+            double[] values = new double[n * FoodSubstitutionIndex.DIMENSIONS];
+            boolean[] known = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                if (foods[i] instanceof FoodNutrient) {
+                    FoodSubstitutionIndex.per100g((FoodNutrient) foods[i], values, i * FoodSubstitutionIndex.DIMENSIONS);
+                    known[i] = true;
+                } else if (foods[i] != null) {
+                    double factor = foods[i].getGrams() > 0 ? 100.0 / foods[i].getGrams() : 0;
+                    values[i * FoodSubstitutionIndex.DIMENSIONS] = foods[i].getCalories() * factor;
+                }
+            }
+
+            boolean[] rejected = new boolean[n];
+            for (int d : bounded) {
+                double low = min[d];
+                double high = max[d];
+                boolean always = d == FoodSubstitutionIndex.CALORIES;
+                for (int i = 0, offset = d; i < n; i++, offset += FoodSubstitutionIndex.DIMENSIONS) {
+                    if ((always || known[i]) && (values[offset] < low || values[offset] > high)) {
+                        rejected[i] = true;
+                    }
+                }
+            }
+
+            List<Food> kept = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                if (!rejected[i] && foods[i] != null) {
+                    kept.add(foods[i]);
+                }
+            }
+            return kept.size() == n ? foods : kept.toArray(new Food[0]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * @file Household.java
+ * @brief Household representation for the Diet Planner application
+ *
+ * @details The Household class groups users who shop together, so that one
+ *          shopping list can be generated from the meal plans of all members.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Arrays;
+
+/**
+ * @class Household
+ * @brief Immutable household with the ids of its member users
+ */
+public class Household {
+    /** @brief The household id */
+    private final int id;
+    /** @brief The household name */
+    private final String name;
+    /** @brief Member user ids in ascending order */
+    private final int[] memberIds;
+
+    /**
+     * @brief Constructor for Household
+     *
+     * @param id The household id
+     * @param name The household name
+     * @param memberIds The ids of the member users
+     */
+    public Household(int id, String name, int[] memberIds) {
+        this.id = id;
+        this.name = name != null ? name : "";
+        this.memberIds = memberIds != null ? memberIds.clone() : new int[0];
+        Arrays.sort(this.memberIds);
+    }
+
+    /** @brief Gets the household id @return Id */
+    public int getId() {
+        return id;
+    }
+
+    /** @brief Gets the household name @return Name */
+    public String getName() {
+        return name;
+    }
+
+    /** @brief Gets the member user ids @return Copy of the ids in ascending order */
+    public int[] getMemberIds() {
+        return memberIds.clone();
+    }
+
+    /** @brief Gets the number of members @return Member count */
+    public int getMemberCount() {
+        return memberIds.length;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + memberIds.length + " members)";
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * @file HouseholdService.java
+ * @brief Household management for the Diet Planner application
+ *
+ * @details The HouseholdService class creates households and manages their
+ *          members. Households are stored in the households table and their
+ *          members in household_members, one row per household and user.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @class HouseholdService
+ * @brief Creates households and adds or removes their members
+ *
+ * @details Errors are printed and reported through the return value, like the
+ *          other services.
+ */
+public class HouseholdService {
+    private static final String CREATE_HOUSEHOLDS_SQL =
+        "CREATE TABLE IF NOT EXISTS households (" +
+        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+        "name TEXT UNIQUE NOT NULL" +
+        ");";
+
+    private static final String CREATE_MEMBERS_SQL =
+        "CREATE TABLE IF NOT EXISTS household_members (" +
+        "household_id INTEGER NOT NULL," +
+        "user_id INTEGER NOT NULL," +
+        "PRIMARY KEY(household_id, user_id)," +
+        "FOREIGN KEY(household_id) REFERENCES households(id)," +
+        "FOREIGN KEY(user_id) REFERENCES users(id)" +
+        ") WITHOUT ROWID;";
+
+    /**
+     * @brief Creates the household tables if they do not exist
+     *
+     * @param stmt Statement to execute the DDL with
+     * @throws SQLException if a table cannot be created
+     */
+    static void createTables(Statement stmt) throws SQLException {
+        stmt.execute(CREATE_HOUSEHOLDS_SQL);
+        stmt.execute(CREATE_MEMBERS_SQL);
+    }
+
+    /**
+     * @brief Creates a household without members
+     *
+     * @param name Unique household name
+     * @return Id of the new household, -1 if the name is empty or already used
+     */
+    public int createHousehold(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return -1;
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseHelper.getConnection();
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO households (name) VALUES (?)")) {
+                pstmt.setString(1, name.trim());
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not create household: " + e.getMessage());
+            return -1;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * @brief Adds a user to a household
+     *
+     * @param householdId Id of the household
+     * @param username Username of the new member
+     * @return true if the user is a member afterwards, false if the household or
+     *         user does not exist
+     */
+    public boolean addMember(int householdId, String username) {
+        return updateMember(householdId, username,
+            "INSERT OR IGNORE INTO household_members (household_id, user_id) " +
+            "SELECT h.id, u.id FROM households h, users u WHERE h.id = ? AND u.username = ?", true);
+    }
+
+    /**
+     * @brief Removes a user from a household
+     *
+     * @param householdId Id of the household
+     * @param username Username of the member
+     * @return true if the user was a member
+     */
+    public boolean removeMember(int householdId, String username) {
+        return updateMember(householdId, username,
+            "DELETE FROM household_members WHERE household_id = ? " +
+            "AND user_id = (SELECT id FROM users WHERE username = ?)", false);
+    }
+
+    private boolean updateMember(int householdId, String username, String sql, boolean adding) {
+        if (username == null) {
+            return false;
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseHelper.getConnection();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, householdId);
+                pstmt.setString(2, username);
+                if (pstmt.executeUpdate() > 0) {
+                    return true;
+                }
+            }
+            // An existing membership is ignored by the insert
+            return adding && isMember(conn, householdId, username);
+        } catch (SQLException e) {
+            System.out.println("Could not update household members: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    private static boolean isMember(Connection conn, int householdId, String username) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM household_members m JOIN users u ON u.id = m.user_id " +
+                "WHERE m.household_id = ? AND u.username = ?")) {
+            pstmt.setInt(1, householdId);
+            pstmt.setString(2, username);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * @brief Gets a household with its members
+     *
+     * @param householdId Id of the household
+     * @return The household, null if it does not exist
+     */
+    public Household getHousehold(int householdId) {
+        Connection conn = null;
+        try {
+            conn = DatabaseHelper.getConnection();
+            String name;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM households WHERE id = ?")) {
+                pstmt.setInt(1, householdId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    name = rs.getString("name");
+                }
+            }
+            List<Integer> members = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT user_id FROM household_members WHERE household_id = ? ORDER BY user_id")) {
+                pstmt.setInt(1, householdId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        members.add(rs.getInt(1));
+                    }
+                }
+            }
+            int[] memberIds = new int[members.size()];
+            for (int i = 0; i < memberIds.length; i++) {
+                memberIds[i] = members.get(i);
+            }
+            return new Household(householdId, name, memberIds);
+        } catch (SQLException e) {
+            System.out.println("Could not get household: " + e.getMessage());
+            return null;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * @brief Deletes a household and its memberships
+     *
+     * @param householdId Id of the household
+     * @return true if the household existed
+     */
+    public boolean deleteHousehold(int householdId) {
+        Connection conn = null;
+        try {
+            conn = DatabaseHelper.getConnection();
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "DELETE FROM household_members WHERE household_id = ?")) {
+                pstmt.setInt(1, householdId);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM households WHERE id = ?")) {
+                pstmt.setInt(1, householdId);
+                return pstmt.executeUpdate() > 0;
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not delete household: " + e.getMessage());
+            return false;
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/**
+ * @file HouseholdShoppingListMerger.java
+ * @brief Parallel merge of the shopping lists of many users into one
+ *
+ * @details The HouseholdShoppingListMerger class builds the combined shopping
+ *          list of a household. The member ids are split into slices that are
+ *          processed on a fork/join pool; each leaf takes its own read connection,
+ *          runs the per-user ingredient query for each of its users and adds the
+ *          rows to an ingredient vector, a primitive open-addressing map from
+ *          ingredient id and base unit to amount and cost. Vectors are combined
+ *          pairwise on the way back up the task tree, so the reduction runs in
+ *          parallel as well. Names are only resolved for the final vector.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @class HouseholdShoppingListMerger
+ * @brief Fork/join merge of per-user ingredient vectors
+ *
+ * @details Amounts and costs follow ShoppingListService.generateShoppingList for
+ *          one user: registered units are converted to their base unit and
+ *          costed through UnitRegistry, unregistered units stay separate items.
+ *          The merged list equals the sum of the members' lists.
+ */
+public class HouseholdShoppingListMerger {
+    /** @brief Default number of users queried by one leaf task */
+    public static final int DEFAULT_PARTITION_SIZE = 8;
+
+    private static final String USER_INGREDIENTS_SQL =
+        "SELECT ri.ingredient_id, i.price, ri.unit, SUM(ri.amount) AS total_amount " +
+        "FROM meal_plans mp " +
+        "JOIN recipes r ON r.food_id = mp.food_id " +
+        "JOIN recipe_ingredients ri ON ri.recipe_id = r.id " +
+        "JOIN ingredients i ON i.id = ri.ingredient_id " +
+        "WHERE mp.user_id = ? AND mp.date BETWEEN ? AND ? " +
+        "GROUP BY ri.ingredient_id, ri.unit";
+
+    /** @brief Maximum number of ingredient names resolved per query */
+    private static final int NAME_BATCH_SIZE = 500;
+
+    private final ConnectionFactory connectionFactory;
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+    private final UnitRegistry units;
+
+    /**
+     * @brief Slot of every unregistered unit name seen so far
+     * @details Registered units use the code of their base unit as slot, so
+     *          unregistered ones are numbered from the registry size upwards.
+     */
+    private final Map<String, Integer> unknownUnitSlots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextUnknownSlot = new AtomicInteger();
+
+    /**
+     * @brief Creates a merger on the application database
+     * @details Runs on the common fork/join pool with DEFAULT_PARTITION_SIZE.
+     */
+    public HouseholdShoppingListMerger() {
+        this(DatabaseHelper::openDedicatedConnection);
+    }
+
+    /**
+     * @brief Creates a merger that runs on the common fork/join pool
+     *
+     * @param connectionFactory Factory used for every worker connection
+     */
+    public HouseholdShoppingListMerger(ConnectionFactory connectionFactory) {
+        this(connectionFactory, ForkJoinPool.commonPool(), DEFAULT_PARTITION_SIZE);
+    }
+
+    /**
+     * @brief Creates a merger with explicit settings
+     * @details The merger keeps its own pool of the given size for all merges;
+     *          idle workers end by themselves.
+     *
+     * @param connectionFactory Factory used for every worker connection
+     * @param parallelism Number of fork/join worker threads
+     * @param partitionSize Maximum number of users queried by one leaf task
+     */
+    public HouseholdShoppingListMerger(ConnectionFactory connectionFactory,
+                                       int parallelism, int partitionSize) {
+        this(connectionFactory, new ForkJoinPool(Math.max(1, parallelism)), partitionSize);
+    }
+
+    private HouseholdShoppingListMerger(ConnectionFactory connectionFactory,
+                                        ForkJoinPool pool, int partitionSize) {
+        this.connectionFactory = connectionFactory;
+        this.pool = pool;
+        this.partitionSize = Math.max(1, partitionSize);
+        this.units = UnitRegistry.getDefault();
+    }
+
+    /**
+     * @brief Generates the combined shopping list of a household
+     *
+     * @param household The household whose members' meal plans are used
+     * @param fromDate First date of the range (yyyy-MM-dd), inclusive
+     * @param toDate Last date of the range (yyyy-MM-dd), inclusive
+     * @return The merged shopping list, empty if no member has plans in the range
+     * @throws SQLException if the meal plans cannot be read
+     */
+    public ShoppingListService.ShoppingList merge(Household household, String fromDate, String toDate)
+            throws SQLException {
+        return merge(household != null ? household.getMemberIds() : new int[0], fromDate, toDate);
+    }
+
+    /**
+     * @brief Generates the combined shopping list of a group of users
+     *
+     * @param userIds Ids of the users; a user listed twice is counted twice
+     * @param fromDate First date of the range (yyyy-MM-dd), inclusive
+     * @param toDate Last date of the range (yyyy-MM-dd), inclusive
+     * @return The merged shopping list, items ordered by ingredient name and unit
+     * @throws SQLException if the meal plans cannot be read
+     */
+    public ShoppingListService.ShoppingList merge(int[] userIds, String fromDate, String toDate)
+            throws SQLException {
+        if (userIds == null || userIds.length == 0 || fromDate == null || toDate == null) {
+            return new ShoppingListService.ShoppingList(new ArrayList<>());
+        }
+
+        IngredientVector merged;
+        try {
+            merged = pool.invoke(new MergeTask(userIds, 0, userIds.length, fromDate, toDate));
+        } catch (RuntimeException e) {
+            // Fork/join may re-wrap worker exceptions, so look down the cause chain
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+            }
+            throw e;
+        }
+        return toShoppingList(merged);
+    }
+
+    /**
+     * @brief Adds one user's ingredient rows to a vector
+     *
+     * @param pstmt Prepared USER_INGREDIENTS_SQL
+     * @param userId Id of the user
+     * @param vector Vector to add to
+     * @throws SQLException if the query fails
+     */
+    private void addUser(PreparedStatement pstmt, int userId, String fromDate, String toDate,
+                         IngredientVector vector) throws SQLException {
+        pstmt.setInt(1, userId);
+        pstmt.setString(2, fromDate);
+        pstmt.setString(3, toDate);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                String unitName = rs.getString(3);
+                if (unitName == null) {
+                    continue;
+                }
+                int unit = units.codeOf(unitName);
+                int slot = unit == UnitRegistry.UNKNOWN ? unknownUnitSlot(unitName)
+                                                        : units.codeOf(units.baseUnitOf(unit));
+                double amount = rs.getDouble(4);
+                vector.add(IngredientVector.key(rs.getInt(1), slot),
+                           units.toBase(amount, unit), units.costOf(amount, unit, rs.getDouble(2)));
+            }
+        }
+    }
+
+    private int unknownUnitSlot(String unitName) {
+        return unknownUnitSlots.computeIfAbsent(unitName, k -> units.size() + nextUnknownSlot.getAndIncrement());
+    }
+
+    /**
+     * @brief Resolves ingredient names and builds the sorted shopping list
+     *
+     * @param vector The merged vector
+     * @return Shopping list with one item per ingredient and unit
+     * @throws SQLException if the names cannot be read
+     */
+    private ShoppingListService.ShoppingList toShoppingList(IngredientVector vector) throws SQLException {
+        long[] keys = vector.keys();
+        String[] unitNames = new String[units.size() + nextUnknownSlot.get()];
+        for (int code = 0; code < units.size(); code++) {
+            unitNames[code] = units.nameOf(code);
+        }
+        for (Map.Entry<String, Integer> entry : unknownUnitSlots.entrySet()) {
+            unitNames[entry.getValue()] = entry.getKey();
+        }
+
+        int[] ids = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ids[i] = IngredientVector.ingredientOf(keys[i]);
+        }
+        Map<Integer, String> names = loadNames(ids);
+
+        List<ShoppingListService.ShoppingItem> items = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            String name = names.get(IngredientVector.ingredientOf(key));
+            if (name != null) {
+                items.add(new ShoppingListService.ShoppingItem(name, vector.amountOf(key),
+                                                               unitNames[IngredientVector.slotOf(key)],
+                                                               vector.costOf(key)));
+            }
+        }
+        items.sort((a, b) -> {
+            int byName = a.getName().compareTo(b.getName());
+            return byName != 0 ? byName : a.getUnit().compareTo(b.getUnit());
+        });
+        return new ShoppingListService.ShoppingList(items);
+    }
+
+    private Map<Integer, String> loadNames(int[] ids) throws SQLException {
+        Map<Integer, String> names = new HashMap<>();
+        int[] distinct = Arrays.stream(ids).distinct().toArray();
+        if (distinct.length == 0) {
+            return names;
+        }
+        Connection conn = connectionFactory.open();
+        try {
+            for (int from = 0; from < distinct.length; from += NAME_BATCH_SIZE) {
+                int to = Math.min(distinct.length, from + NAME_BATCH_SIZE);
+                StringBuilder sql = new StringBuilder("SELECT id, name FROM ingredients WHERE id IN (");
+                for (int i = from; i < to; i++) {
+                    sql.append(i == from ? "?" : ", ?");
+                }
+                sql.append(')');
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = from; i < to; i++) {
+                        pstmt.setInt(i - from + 1, distinct[i]);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            names.put(rs.getInt(1), rs.getString(2));
+                        }
+                    }
+                }
+            }
+        } finally {
+            connectionFactory.release(conn);
+        }
+        return names;
+    }
+
+    /**
+     * @class MergeTask
+     * @brief Recursive task over a slice of the user id array
+     *
+     * @details Slices larger than the partition size are split in half and the
+     *          two halves' vectors are combined. A leaf queries its users one by
+     *          one on its own connection.
+     */
+    private class MergeTask extends RecursiveTask<IngredientVector> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] userIds;
+        private final int from;
+        private final int to;
+        private final String fromDate;
+        private final String toDate;
+
+        MergeTask(int[] userIds, int from, int to, String fromDate, String toDate) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        @Override
+        protected IngredientVector compute() {
+            if (to - from > partitionSize) {
+                int mid = (from + to) >>> 1;
+                MergeTask left = new MergeTask(userIds, from, mid, fromDate, toDate);
+                left.fork();
+                IngredientVector right = new MergeTask(userIds, mid, to, fromDate, toDate).compute();
+                return IngredientVector.combine(left.join(), right);
+            }
+
+            IngredientVector vector = new IngredientVector();
+            try {
+                Connection conn = connectionFactory.open();
+                try (PreparedStatement pstmt = conn.prepareStatement(USER_INGREDIENTS_SQL)) {
+                    for (int i = from; i < to; i++) {
+                        addUser(pstmt, userIds[i], fromDate, toDate, vector);
+                    }
+                } finally {
+                    connectionFactory.release(conn);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Error merging shopping lists: " + e.getMessage(), e);
+            }
+            return vector;
+        }
+    }
+
+    /**
+     * @class IngredientVector
+     * @brief Open-addressing map from ingredient id and unit slot to amount and cost
+     *
+     * @details Keys, amounts and costs live in parallel primitive arrays probed
+     *          linearly, so adding a row does not allocate. The table doubles when
+     *          it is half full. Not thread-safe; each task owns its vectors.
+     */
+    static final class IngredientVector {
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private double[] amounts;
+        private double[] costs;
+        private int size;
+
+        IngredientVector() {
+            this(16);
+        }
+
+        IngredientVector(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            amounts = new double[capacity];
+            costs = new double[capacity];
+        }
+
+        /**
+         * @brief Packs an ingredient id and unit slot into a key
+         * @param ingredientId Ingredient id, not negative
+         * @param slot Unit slot, below 65536
+         * @return Key
+         */
+        static long key(int ingredientId, int slot) {
+            return ((long) ingredientId << 16) | slot;
+        }
+
+        static int ingredientOf(long key) {
+            return (int) (key >>> 16);
+        }
+
+        static int slotOf(long key) {
+            return (int) (key & 0xFFFF);
+        }
+
+        /** @brief Gets the number of keys @return Key count */
+        int size() {
+            return size;
+        }
+
+        /**
+         * @brief Adds an amount and cost to a key
+         * @param key Key built by key()
+         * @param amount Amount to add
+         * @param cost Cost to add
+         */
+        void add(long key, double amount, double cost) {
+            int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                keys[index] = key;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length * 2);
+                    index = indexOf(key);
+                }
+            }
+            amounts[index] += amount;
+            costs[index] += cost;
+        }
+
+        /** @brief Gets the amount of a key @return Amount, 0 if absent */
+        double amountOf(long key) {
+            int index = indexOf(key);
+            return keys[index] == EMPTY ? 0.0 : amounts[index];
+        }
+
+        /** @brief Gets the cost of a key @return Cost, 0 if absent */
+        double costOf(long key) {
+            int index = indexOf(key);
+            return keys[index] == EMPTY ? 0.0 : costs[index];
+        }
+
+        /** @brief Gets all keys @return Keys in table order */
+        long[] keys() {
+            long[] result = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != EMPTY) {
+                    result[n++] = key;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @brief Combines two vectors
+         * @details Adds the smaller vector into the larger one and returns it.
+         *
+         * @param a First vector
+         * @param b Second vector
+         * @return The vector holding the sums, either a or b
+         */
+        static IngredientVector combine(IngredientVector a, IngredientVector b) {
+            IngredientVector into = a.size >= b.size ? a : b;
+            IngredientVector from = into == a ? b : a;
+            for (int i = 0; i < from.keys.length; i++) {
+                if (from.keys[i] != EMPTY) {
+                    into.add(from.keys[i], from.amounts[i], from.costs[i]);
+                }
+            }
+            return into;
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            int index = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            double[] oldAmounts = amounts;
+            double[] oldCosts = costs;
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            amounts = new double[capacity];
+            costs = new double[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    amounts[index] = oldAmounts[i];
+                    costs[index] = oldCosts[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * @file HyperLogLog.java
+ * @brief HyperLogLog sketch for approximate distinct counts
+ *
+ * @details The HyperLogLog class estimates the number of distinct keys it has seen
+ *          using 2^precision one-byte registers. The standard error is about
+ *          1.04 / sqrt(2^precision), for example 1.6% at precision 12. Sketches with
+ *          the same precision merge by taking the register-wise maximum.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * @class HyperLogLog
+ * @brief Distinct count estimator with linear counting for small cardinalities
+ *
+ * @details Instances are not thread-safe.
+ */
+public class HyperLogLog {
+    /** @brief Number of hash bits used to select a register */
+    private final int precision;
+    /** @brief Registers holding the maximum observed rank */
+    private final byte[] registers;
+
+    /**
+     * @brief Constructor for HyperLogLog
+     *
+     * @param precision Register index bits, between 4 and 16
+     * @throws IllegalArgumentException if precision is out of range
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @brief Adds a key to the sketch
+     *
+     * @param key Key to add
+     */
+    public void add(String key) {
+        long hash = SketchHash.hash64(key);
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * @brief Estimates the number of distinct keys added
+     *
+     * @return Estimated distinct count
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @brief Merges another sketch into this one
+     *
+     * @param other Sketch with the same precision
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the precision of the sketch.
+     * @return Register index bits
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @brief Writes the sketch to a stream
+     *
+     * @param out Stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    /**
+     * @brief Reads a sketch written by writeTo
+     *
+     * @param in Stream to read from
+     * @return The restored sketch
+     * @throws IOException if reading fails
+     */
+    public static HyperLogLog readFrom(DataInputStream in) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(in.readByte());
+        in.readFully(sketch.registers);
+        return sketch;
+    }
+
+    /**
+     * @brief Bias correction constant for m registers
+     */
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
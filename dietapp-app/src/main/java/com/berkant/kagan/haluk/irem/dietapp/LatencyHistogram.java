@@ -0,0 +1,159 @@
+/**
+ * @file LatencyHistogram.java
+ * @brief Lock-free latency histogram with percentile queries
+ *
+ * @details The LatencyHistogram class records durations in nanoseconds into
+ *          log-linear buckets: every power of two is split into 8 equal
+ *          sub-buckets, so a percentile is reported at most 12.5% above the true
+ *          value while the whole range from 1 ns to about 2 minutes fits in a few
+ *          hundred counters. Recording is a single atomic increment, so the
+ *          histogram can be updated from request threads and read by a metrics
+ *          scraper at the same time.
+ *
+ * @author berkant
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @class LatencyHistogram
+ * @brief Log-linear bucketed counts of recorded durations
+ */
+public class LatencyHistogram {
+    /** @brief Sub-buckets per power of two, as a power of two */
+    private static final int SUB_BUCKET_BITS = 3;
+    /** @brief Sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** @brief Largest recordable value; longer durations are clamped */
+    public static final long MAX_VALUE_NANOS = (1L << 37) - 1;
+    /** @brief Quantiles reported by writePrometheus */
+    private static final double[] REPORTED_QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketOf(MAX_VALUE_NANOS) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @brief Records one duration
+     * @param nanos Duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE_NANOS));
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @brief Gets the number of recorded durations
+     * @return Record count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @brief Gets the sum of the recorded durations
+     * @return Sum in nanoseconds
+     */
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    /**
+     * @brief Gets the longest recorded duration
+     * @return Maximum in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @brief Gets the duration at a percentile
+     * @details Returns the upper edge of the bucket holding the percentile, capped
+     *          at the maximum recorded value.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return Duration in nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * total);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperEdgeOf(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @brief Appends the histogram as a Prometheus summary in seconds
+     * @details Writes name{labels,quantile="..."} lines for p50, p90, p99 and p99.9
+     *          followed by name_sum and name_count.
+     *
+     * @param out Buffer to append to
+     * @param name Metric name
+     * @param labels Label list without braces, e.g. stage="solve"; may be empty
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        String prefix = labels == null || labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : REPORTED_QUANTILES) {
+            out.append(name).append("{").append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+               .append(seconds(getValueAtPercentile(quantile * 100))).append('\n');
+        }
+        String suffix = prefix.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffix).append(' ').append(seconds(getSumNanos())).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(getCount()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    /**
+     * @brief Maps a value to its bucket
+     * @details Values below SUB_BUCKETS get one bucket each; above that, the top
+     *          SUB_BUCKET_BITS bits after the leading one select the sub-bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+        return SUB_BUCKETS + exponent * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @brief Gets the largest value mapped to a bucket
+     */
+    static long upperEdgeOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
@@ -96,7 +96,8 @@ public class MainFrame extends JFrame {
         calorieTrackingPanel = new CalorieTrackingPanel(calorieService);
         mealPlanningPanel = new MealPlanningPanel(mealService);
         personalizedDietPanel = new PersonalizedDietPanel(dietService);
-        shoppingListPanel = new ShoppingListPanel(shoppingService);
+        shoppingListPanel = new ShoppingListPanel(shoppingService,
+            () -> authService.isUserLoggedIn() ? authService.getCurrentUser().getUsername() : null);
 
         // Create navigation buttons
         buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
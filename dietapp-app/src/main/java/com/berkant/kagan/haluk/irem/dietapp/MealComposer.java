@@ -0,0 +1,542 @@
+/**
+ * @file MealComposer.java
+ * @brief Chooses foods and portion sizes that best match a meal's nutrition targets
+ *
+ * @details The MealComposer class picks up to a few foods from a list of options,
+ *          each with a portion multiplier, so that the meal's calories, protein,
+ *          carbohydrates and fat are as close as possible to the targets. It uses
+ *          a beam search over (food, portion) items with a wall-clock budget, so it
+ *          stays within a few milliseconds even for a thousand candidate foods.
+ *
+ * @author berkant
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @class MealComposer
+ * @brief Beam search over food and portion combinations
+ *
+ * @details The distance to the targets is the weighted root mean square of the
+ *          relative errors of calories, protein, carbohydrates and fat, so 0 is a
+ *          perfect match and 0.1 means about 10% off on average. Plain Food options
+ *          without nutrient details only contribute calories. Each search level adds
+ *          one more item to the best partial meals found so far; the best meal of
+ *          any level is returned. Instances are thread-safe; apart from a cost
+ *          estimate used by budgeted calls they are immutable.
+ */
+public class MealComposer {
+    /** @brief Default portion multipliers tried for every food */
+    public static final double[] DEFAULT_PORTIONS = {0.5, 1.0, 1.5, 2.0};
+    /** @brief Default maximum number of foods in one meal */
+    public static final int DEFAULT_MAX_ITEMS = 3;
+    /** @brief Default number of partial meals kept per search level */
+    public static final int DEFAULT_BEAM_WIDTH = 16;
+    /** @brief Default wall-clock budget of one compose call */
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 4_000_000L;
+
+    /** @brief Number of evaluations that are never cut short by the time budget */
+    private static final long UNTIMED_EVALUATIONS = 20_000L;
+    /** @brief Fewest options a budgeted call samples a large option list down to */
+    private static final int MIN_SAMPLED_OPTIONS = 64;
+
+    /** @brief Running estimate of the cost of one evaluation, used to size samples */
+    private volatile double nanosPerEvaluation = 20.0;
+
+    private final double[] portions;
+    private final int maxItems;
+    private final int beamWidth;
+    private final long timeBudgetNanos;
+    private final double calorieWeight;
+    private final double proteinWeight;
+    private final double carbWeight;
+    private final double fatWeight;
+
+    /**
+     * @brief Creates a composer with the default settings
+     * @details Calories weigh twice as much as each macronutrient.
+     */
+    public MealComposer() {
+        this(DEFAULT_PORTIONS, DEFAULT_MAX_ITEMS, DEFAULT_BEAM_WIDTH, DEFAULT_TIME_BUDGET_NANOS,
+             1.0, 0.5, 0.5, 0.5);
+    }
+
+    /**
+     * @brief Creates a composer with custom settings
+     *
+     * @param portions Portion multipliers tried for every food
+     * @param maxItems Maximum number of foods in one meal
+     * @param beamWidth Number of partial meals kept per search level
+     * @param timeBudgetNanos Wall-clock budget of one compose call
+     * @param calorieWeight Weight of the calorie error
+     * @param proteinWeight Weight of the protein error
+     * @param carbWeight Weight of the carbohydrate error
+     * @param fatWeight Weight of the fat error
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public MealComposer(double[] portions, int maxItems, int beamWidth, long timeBudgetNanos,
+                        double calorieWeight, double proteinWeight, double carbWeight, double fatWeight) {
+        if (portions == null || portions.length == 0 || maxItems <= 0 || beamWidth <= 0) {
+            throw new IllegalArgumentException("Portions, item count and beam width must be positive");
+        }
+        double weightSum = calorieWeight + proteinWeight + carbWeight + fatWeight;
+        if (calorieWeight < 0 || proteinWeight < 0 || carbWeight < 0 || fatWeight < 0 || weightSum <= 0) {
+            throw new IllegalArgumentException("Weights must be non-negative and not all zero");
+        }
+        this.portions = portions.clone();
+        this.maxItems = maxItems;
+        this.beamWidth = beamWidth;
+        this.timeBudgetNanos = timeBudgetNanos;
+        this.calorieWeight = calorieWeight / weightSum;
+        this.proteinWeight = proteinWeight / weightSum;
+        this.carbWeight = carbWeight / weightSum;
+        this.fatWeight = fatWeight / weightSum;
+    }
+
+    /**
+     * @brief Composes the meal closest to the targets
+     * @details Always returns at least one food when options are available, even
+     *          when the time budget runs out.
+     *
+     * @param options Candidate foods
+     * @param targetCalories Target calories
+     * @param targetProtein Target protein in grams
+     * @param targetCarbs Target carbohydrates in grams
+     * @param targetFat Target fat in grams
+     * @return The composed meal and how close it is to the targets
+     */
+    public Composition compose(Food[] options, int targetCalories, int targetProtein,
+                               int targetCarbs, int targetFat) {
+        return compose(options, targetCalories, targetProtein, targetCarbs, targetFat,
+                       System.nanoTime(), timeBudgetNanos, UNTIMED_EVALUATIONS);
+    }
+
+    /**
+     * @brief Composes the best meal found within an explicit time budget
+     * @details Unlike compose(Food[], int, int, int, int) the clock is honoured from
+     *          the first search level on, so the call returns the best meal found so
+     *          far when the budget expires, however many options there are. The
+     *          first beam state is always expanded, so a meal is still returned when
+     *          options are available. Expanding it touches every option, so a list too
+     *          long to expand within half the budget is first thinned to an evenly
+     *          spaced sample, sized from the measured cost of earlier calls.
+     *
+     * @param options Candidate foods
+     * @param targetCalories Target calories
+     * @param targetProtein Target protein in grams
+     * @param targetCarbs Target carbohydrates in grams
+     * @param targetFat Target fat in grams
+     * @param timeBudgetNanos Wall-clock budget of this call; 0 or less expands only the first state
+     * @return The composed meal and how close it is to the targets
+     */
+    public Composition compose(Food[] options, int targetCalories, int targetProtein,
+                               int targetCarbs, int targetFat, long timeBudgetNanos) {
+        long start = System.nanoTime();
+        Food[] foods = options != null ? options : new Food[0];
+        double affordable = Math.max(0, timeBudgetNanos) / 2.0 / (nanosPerEvaluation * portions.length);
+        int limit = (int) Math.max(MIN_SAMPLED_OPTIONS, Math.min(Integer.MAX_VALUE, affordable));
+        if (foods.length > limit) {
+            Food[] sample = new Food[limit];
+            for (int k = 0; k < limit; k++) {
+                sample[k] = foods[(int) ((long) k * foods.length / limit)];
+            }
+            foods = sample;
+        }
+        Composition composition = compose(foods, targetCalories, targetProtein, targetCarbs, targetFat,
+                                          start, timeBudgetNanos, 1);
+        if (composition.getEvaluatedStates() > 0) {
+            double observed = (double) composition.getElapsedNanos() / composition.getEvaluatedStates();
+            nanosPerEvaluation = 0.9 * nanosPerEvaluation + 0.1 * observed;
+        }
+        return composition;
+    }
+
+    private Composition compose(Food[] options, int targetCalories, int targetProtein, int targetCarbs,
+                                int targetFat, long start, long timeBudgetNanos, long untimedEvaluations) {
+        Food[] foods = options != null ? options : new Food[0];
+        Search search = new Search(foods, targetCalories, targetProtein, targetCarbs, targetFat);
+        boolean timedOut = false;
+
+        while (search.depth < maxItems && search.itemCount > 0 && !timedOut) {
+            search.beginLevel();
+            for (int b = 0; b < search.beamSize; b++) {
+                // The clock is read between beam states so the scoring loop stays small;
+                // small searches always finish so their result does not depend on timing
+                if (search.evaluated >= untimedEvaluations && System.nanoTime() - start > timeBudgetNanos) {
+                    timedOut = true;
+                    break;
+                }
+                search.expand(b);
+            }
+            if (!search.endLevel()) {
+                break;
+            }
+        }
+
+        int portionCount = portions.length;
+        List<Food> chosen = new ArrayList<>(search.bestLength);
+        double[] multipliers = new double[search.bestLength];
+        double[] totals = new double[4];
+        for (int k = 0; k < search.bestLength; k++) {
+            int i = search.bestItems[k];
+            multipliers[k] = portions[i % portionCount];
+            chosen.add(scale(foods[i / portionCount], multipliers[k]));
+            totals[0] += search.itemCalories[i];
+            totals[1] += search.itemProtein[i];
+            totals[2] += search.itemCarbs[i];
+            totals[3] += search.itemFat[i];
+        }
+        double distance = search.bestLength > 0 ? Math.sqrt(search.bestDistance) : 1.0;
+        return new Composition(chosen, multipliers, totals, distance, targetCalories, targetProtein,
+                               targetCarbs, targetFat, search.evaluated, timedOut, System.nanoTime() - start);
+    }
+
+    /**
+     * @class Search
+     * @brief State of one compose call
+     * @details Item i is food i / portionCount at portion i % portionCount. The beam
+     *          holds partial meals as sorted item indexes with their nutrient sums.
+     */
+    private final class Search {
+        final int portionCount = portions.length;
+        final int itemCount;
+        final int[] itemFood;
+        final double[] itemCalories;
+        final double[] itemProtein;
+        final double[] itemCarbs;
+        final double[] itemFat;
+
+        final double targetCalories;
+        final double targetProtein;
+        final double targetCarbs;
+        final double targetFat;
+        final double invCalories;
+        final double invProtein;
+        final double invCarbs;
+        final double invFat;
+
+        int[][] beamItems = new int[beamWidth][maxItems];
+        double[][] beamSums = new double[beamWidth][4];
+        int beamSize = 1;
+        int depth = 0;
+
+        int[][] nextItems = new int[beamWidth][maxItems];
+        double[][] nextSums = new double[beamWidth][4];
+        final double[] nextScore = new double[beamWidth];
+        int nextSize;
+        int worst;
+        boolean lastLevel;
+        double growth;
+
+        final int[] bestItems = new int[maxItems];
+        int bestLength = 0;
+        double bestDistance = Double.MAX_VALUE;
+        long evaluated = 0;
+        final int[] candidate = new int[maxItems];
+
+        Search(Food[] foods, int targetCalories, int targetProtein, int targetCarbs, int targetFat) {
+            itemCount = foods.length * portionCount;
+            itemFood = new int[itemCount];
+            itemCalories = new double[itemCount];
+            itemProtein = new double[itemCount];
+            itemCarbs = new double[itemCount];
+            itemFat = new double[itemCount];
+            for (int f = 0; f < foods.length; f++) {
+                Food food = foods[f];
+                double protein = 0;
+                double carbs = 0;
+                double fat = 0;
+                if (food instanceof FoodNutrient) {
+                    FoodNutrient nutrient = (FoodNutrient) food;
+                    protein = nutrient.getProtein();
+                    carbs = nutrient.getCarbs();
+                    fat = nutrient.getFat();
+                }
+                for (int p = 0; p < portionCount; p++) {
+                    int i = f * portionCount + p;
+                    itemFood[i] = f;
+                    itemCalories[i] = food.getCalories() * portions[p];
+                    itemProtein[i] = protein * portions[p];
+                    itemCarbs[i] = carbs * portions[p];
+                    itemFat[i] = fat * portions[p];
+                }
+            }
+            this.targetCalories = targetCalories;
+            this.targetProtein = targetProtein;
+            this.targetCarbs = targetCarbs;
+            this.targetFat = targetFat;
+            invCalories = 1.0 / Math.max(1, targetCalories);
+            invProtein = 1.0 / Math.max(1, targetProtein);
+            invCarbs = 1.0 / Math.max(1, targetCarbs);
+            invFat = 1.0 / Math.max(1, targetFat);
+        }
+
+        void beginLevel() {
+            nextSize = 0;
+            worst = -1;
+            lastLevel = depth + 1 == maxItems;
+            // A partial meal is also ranked as the first part of a meal with one more food
+            growth = (depth + 2.0) / (depth + 1);
+        }
+
+        /**
+         * @brief Scores every item added to one partial meal of the beam
+         */
+        void expand(int b) {
+            int[] items = beamItems[b];
+            double[] sums = beamSums[b];
+            int length = depth + 1;
+            for (int i = 0; i < itemCount; i++) {
+                if (depth > 0 && usesFood(items, depth, itemFood[i])) {
+                    continue;
+                }
+                evaluated++;
+                double c = sums[0] + itemCalories[i];
+                double p = sums[1] + itemProtein[i];
+                double cb = sums[2] + itemCarbs[i];
+                double ft = sums[3] + itemFat[i];
+                double distance = distance(c - targetCalories, p - targetProtein,
+                                           cb - targetCarbs, ft - targetFat);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    System.arraycopy(items, 0, bestItems, 0, depth);
+                    bestItems[depth] = i;
+                    bestLength = length;
+                }
+                if (lastLevel) {
+                    continue;
+                }
+
+                double score = distance;
+                if (nextSize == beamWidth && score >= nextScore[worst]) {
+                    score = Math.min(score, distance(c * growth - targetCalories, p * growth - targetProtein,
+                                                     cb * growth - targetCarbs, ft * growth - targetFat));
+                    if (score >= nextScore[worst]) {
+                        continue;
+                    }
+                }
+                offer(items, i, c, p, cb, ft, score);
+            }
+        }
+
+        /**
+         * @brief Adds a partial meal to the next beam, replacing the worst one if full
+         */
+        private void offer(int[] items, int item, double c, double p, double cb, double ft, double score) {
+            int length = depth + 1;
+            System.arraycopy(items, 0, candidate, 0, depth);
+            candidate[depth] = item;
+            Arrays.sort(candidate, 0, length);
+            if (containsState(nextItems, nextSize, candidate, length)) {
+                return;
+            }
+            int slot = nextSize < beamWidth ? nextSize++ : worst;
+            System.arraycopy(candidate, 0, nextItems[slot], 0, length);
+            nextSums[slot][0] = c;
+            nextSums[slot][1] = p;
+            nextSums[slot][2] = cb;
+            nextSums[slot][3] = ft;
+            nextScore[slot] = score;
+            if (nextSize == beamWidth) {
+                worst = 0;
+                for (int k = 1; k < beamWidth; k++) {
+                    if (nextScore[k] > nextScore[worst]) {
+                        worst = k;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @brief Makes the next beam current
+         * @return false if there is nothing left to expand
+         */
+        boolean endLevel() {
+            if (nextSize == 0) {
+                return false;
+            }
+            depth++;
+            int[][] swapItems = beamItems;
+            beamItems = nextItems;
+            nextItems = swapItems;
+            double[][] swapSums = beamSums;
+            beamSums = nextSums;
+            nextSums = swapSums;
+            beamSize = nextSize;
+            return true;
+        }
+
+        /**
+         * @brief Weighted sum of squared relative errors
+         */
+        private double distance(double calories, double protein, double carbs, double fat) {
+            double dc = calories * invCalories;
+            double dp = protein * invProtein;
+            double dcb = carbs * invCarbs;
+            double dft = fat * invFat;
+            return calorieWeight * dc * dc + proteinWeight * dp * dp + carbWeight * dcb * dcb + fatWeight * dft * dft;
+        }
+
+        /**
+         * @brief Checks whether a partial meal already contains a food at any portion
+         */
+        private boolean usesFood(int[] items, int length, int food) {
+            for (int k = 0; k < length; k++) {
+                if (itemFood[items[k]] == food) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @brief Checks whether the next beam already holds the same sorted item set
+     */
+    private static boolean containsState(int[][] states, int size, int[] candidate, int length) {
+        for (int s = 0; s < size; s++) {
+            int[] state = states[s];
+            int k = 0;
+            while (k < length && state[k] == candidate[k]) {
+                k++;
+            }
+            if (k == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @brief Creates a copy of a food scaled to a portion multiplier
+     */
+    private static Food scale(Food food, double multiplier) {
+        if (multiplier == 1.0) {
+            return food;
+        }
+        int calories = (int) Math.round(food.getCalories() * multiplier);
+        if (food instanceof FoodNutrient) {
+            FoodNutrient n = (FoodNutrient) food;
+            return new FoodNutrient(n.getName(), n.getGrams() * multiplier, calories,
+                                    n.getProtein() * multiplier, n.getCarbs() * multiplier,
+                                    n.getFat() * multiplier, n.getFiber() * multiplier,
+                                    n.getSugar() * multiplier, n.getSodium() * multiplier);
+        }
+        return new Food(food.getName(), food.getGrams() * multiplier, calories);
+    }
+
+    /**
+     * @class Composition
+     * @brief A composed meal and how close it came to its targets
+     */
+    public static class Composition {
+        private final List<Food> foods;
+        private final double[] multipliers;
+        private final double[] totals;
+        private final double distance;
+        private final int[] targets;
+        private final long evaluatedStates;
+        private final boolean timedOut;
+        private final long elapsedNanos;
+
+        /**
+         * @brief Constructor for Composition
+         */
+        Composition(List<Food> foods, double[] multipliers, double[] totals, double distance,
+                    int targetCalories, int targetProtein, int targetCarbs, int targetFat,
+                    long evaluatedStates, boolean timedOut, long elapsedNanos) {
+            this.foods = Collections.unmodifiableList(foods);
+            this.multipliers = multipliers;
+            this.totals = totals;
+            this.distance = distance;
+            this.targets = new int[] {targetCalories, targetProtein, targetCarbs, targetFat};
+            this.evaluatedStates = evaluatedStates;
+            this.timedOut = timedOut;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** @brief Gets the chosen foods, already scaled to their portions @return Foods */
+        public List<Food> getFoods() {
+            return foods;
+        }
+
+        /** @brief Gets the portion multiplier of a chosen food @param index Food index @return Multiplier */
+        public double getMultiplier(int index) {
+            return multipliers[index];
+        }
+
+        /** @brief Gets the meal's calories @return Total calories */
+        public double getTotalCalories() {
+            return totals[0];
+        }
+
+        /** @brief Gets the meal's protein @return Total protein in grams */
+        public double getTotalProtein() {
+            return totals[1];
+        }
+
+        /** @brief Gets the meal's carbohydrates @return Total carbohydrates in grams */
+        public double getTotalCarbs() {
+            return totals[2];
+        }
+
+        /** @brief Gets the meal's fat @return Total fat in grams */
+        public double getTotalFat() {
+            return totals[3];
+        }
+
+        /**
+         * @brief Gets the weighted RMS relative error to the targets
+         * @return 0 for a perfect match, 1 if no food could be chosen
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /** @brief Gets the calorie deviation @return Signed percentage off the calorie target */
+        public double getCalorieDeviation() {
+            return deviation(0);
+        }
+
+        /** @brief Gets the protein deviation @return Signed percentage off the protein target */
+        public double getProteinDeviation() {
+            return deviation(1);
+        }
+
+        /** @brief Gets the carbohydrate deviation @return Signed percentage off the carbohydrate target */
+        public double getCarbDeviation() {
+            return deviation(2);
+        }
+
+        /** @brief Gets the fat deviation @return Signed percentage off the fat target */
+        public double getFatDeviation() {
+            return deviation(3);
+        }
+
+        /** @brief Gets the number of partial meals evaluated @return State count */
+        public long getEvaluatedStates() {
+            return evaluatedStates;
+        }
+
+        /** @brief Tells whether the time budget cut the search short @return true if timed out */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /** @brief Gets the search duration @return Elapsed nanoseconds */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        private double deviation(int index) {
+            return (totals[index] - targets[index]) * 100.0 / Math.max(1, targets[index]);
+        }
+    }
+}
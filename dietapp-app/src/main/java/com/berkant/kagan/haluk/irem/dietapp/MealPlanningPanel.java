@@ -36,6 +36,9 @@ public class MealPlanningPanel extends JPanel {
     /** @brief Text field for entering meal name */
     private JTextField nameField;
     
+    /** @brief Food name suggestions shown while typing */
+    private FoodNameAutocomplete nameAutocomplete;
+    
     /** @brief Text field for entering calorie count */
     private JTextField caloriesField;
     
@@ -69,6 +72,18 @@ public class MealPlanningPanel extends JPanel {
     /** @brief Button for deleting a meal */
     private JButton deleteButton;
     
+    /** @brief Button for showing the next page of the weekly plan */
+    private JButton moreButton;
+    
+    /** @brief Meals shown per page of the weekly plan */
+    static final int PLAN_PAGE_SIZE = 50;
+    
+    /** @brief Week position of the last meal shown */
+    private long weeklyPlanKey;
+    
+    /** @brief Day of the last meal shown, or null before the first page */
+    private String weeklyPlanDay;
+    
     /**
      * @brief Constructs a new MealPlanningPanel
      * @param planningService The service to handle meal planning operations
@@ -88,6 +103,9 @@ public class MealPlanningPanel extends JPanel {
      */
     private void initializeComponents() {
         nameField = new JTextField(20);
+        nameAutocomplete = new FoodNameAutocomplete(nameField,
+            text -> planningService.suggestFoods(text, FoodNameAutocomplete.DEFAULT_SUGGESTIONS),
+            () -> planningService.refreshAutocompleteIndex());
         caloriesField = new JTextField(10);
         proteinField = new JTextField(10);
         carbsField = new JTextField(10);
@@ -108,6 +126,8 @@ public class MealPlanningPanel extends JPanel {
         addButton = new JButton("Add Meal");
         viewButton = new JButton("View Weekly Plan");
         deleteButton = new JButton("Delete Meal");
+        moreButton = new JButton("More");
+        moreButton.setEnabled(false);
     }
     
     /**
@@ -183,6 +203,7 @@ public class MealPlanningPanel extends JPanel {
         JPanel weeklyPlanPanel = new JPanel(new BorderLayout());
         weeklyPlanPanel.setBorder(BorderFactory.createTitledBorder("Weekly Meal Plan"));
         weeklyPlanPanel.add(new JScrollPane(weeklyPlanArea), BorderLayout.CENTER);
+        weeklyPlanPanel.add(moreButton, BorderLayout.SOUTH);
         
         // Add all panels to main panel
         JPanel leftPanel = new JPanel(new BorderLayout());
@@ -233,6 +254,11 @@ public class MealPlanningPanel extends JPanel {
             updateWeeklyPlan();
         });
         
+        // More Button
+        moreButton.addActionListener(e -> {
+            showNextWeeklyPlanPage();
+        });
+        
         // Delete Meal Button
         deleteButton.addActionListener(e -> {
             try {
@@ -265,14 +291,31 @@ public class MealPlanningPanel extends JPanel {
     /**
      * @brief Updates the weekly meal plan display
      * 
-     * Retrieves the current weekly meal plan from the service and
-     * updates the display area. Handles any errors that occur during
-     * the update process.
+     * Clears the display area and shows the first page of the
+     * current weekly meal plan.
      */
     private void updateWeeklyPlan() {
+        weeklyPlanKey = 0;
+        weeklyPlanDay = null;
+        weeklyPlanArea.setText("");
+        showNextWeeklyPlanPage();
+    }
+    
+    /**
+     * @brief Appends the next page of the weekly meal plan to the display area
+     * 
+     * Only PLAN_PAGE_SIZE meals are read at a time; the More button stays
+     * enabled while further meals follow. A day header is shown whenever the
+     * day changes, also between pages.
+     */
+    private void showNextWeeklyPlanPage() {
         try {
-            String weeklyPlan = planningService.getWeeklyMealPlan();
-            weeklyPlanArea.setText(weeklyPlan);
+            Page<String, Long> page = planningService.getWeeklyMealPlan(weeklyPlanKey, PLAN_PAGE_SIZE);
+            StringBuilder meals = new StringBuilder();
+            weeklyPlanDay = MealPlanningService.appendWeeklyPlanPage(page.getItems(), weeklyPlanDay, meals);
+            weeklyPlanArea.append(meals.toString());
+            weeklyPlanKey = page.getNextKey();
+            moreButton.setEnabled(page.hasMore());
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Error retrieving weekly plan: " + e.getMessage());
         }
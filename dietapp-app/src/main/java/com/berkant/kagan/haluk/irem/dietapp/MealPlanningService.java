@@ -22,7 +22,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 
 /**
@@ -39,9 +43,89 @@ import java.time.LocalDate;
  */
 public class MealPlanningService {
     
+    /** @brief Lower bound used when a date range has no start */
+    private static final String RANGE_START = "0000-01-01";
+
+    /** @brief Upper bound used when a date range has no end */
+    private static final String RANGE_END = "9999-12-31";
+
+    /** @brief Factor placing a meal plan's day and meal slot above every id in its week position */
+    private static final long WEEK_SLOT_FACTOR = 1L << 40;
+
+    /** @brief Joins the latest food_nutrients row of food f, at most one per food */
+    private static final String LATEST_NUTRIENTS_JOIN =
+        "LEFT JOIN food_nutrients fn ON fn.id = " +
+        "(SELECT MAX(id) FROM food_nutrients WHERE food_id = f.id) ";
+
+    /** @brief Columns read by mapFood, preferring the latest food_nutrients row; protein stays NULL without nutrients */
+    private static final String FOOD_COLUMNS =
+        "f.name, f.grams, f.calories, " +
+        "COALESCE(fn.protein, f.protein) AS protein, COALESCE(fn.carbs, f.carbs) AS carbs, " +
+        "COALESCE(fn.fat, f.fat) AS fat, COALESCE(fn.fiber, f.fiber) AS fiber, " +
+        "COALESCE(fn.sugar, f.sugar) AS sugar, COALESCE(fn.sodium, f.sodium) AS sodium ";
+
     /** @brief Database connection for performing operations */
     private Connection connection;
-    
+
+    /** @brief Population analytics fed by logFood */
+    private PopulationAnalytics populationAnalytics = PopulationAnalytics.getShared();
+
+    /** @brief In-memory autocomplete index kept current by this service */
+    private FoodAutocompleteIndex autocompleteIndex = FoodAutocompleteIndex.getShared();
+
+    /** @brief Full-text matches read per requested search result */
+    private static final int SEARCH_WINDOW_FACTOR = 8;
+
+    /** @brief Minimum number of full-text matches read by a search */
+    private static final int SEARCH_MIN_WINDOW = 64;
+
+    /** @brief Cleared when the database has no usable foods_fts table */
+    private volatile boolean fullTextSearchAvailable = true;
+
+    /** @brief Listeners told about every planned and removed meal */
+    private final List<MealPlanListener> mealPlanListeners = new CopyOnWriteArrayList<>();
+
+    /** @brief Listeners told about every logged food */
+    private final List<FoodLogListener> foodLogListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @interface MealPlanListener
+     * @brief Receives meal plan changes as they are written
+     * @details Called after the meal_plans row is inserted or deleted, on the
+     *          thread that made the change, once per row.
+     */
+    public interface MealPlanListener {
+        /**
+         * @brief Called after a meal plan row was added
+         * @param userId ID of the user
+         * @param foodId ID of the planned food
+         */
+        void mealPlanned(int userId, int foodId);
+
+        /**
+         * @brief Called after a meal plan row was deleted
+         * @param userId ID of the user
+         * @param foodId ID of the food that was planned
+         */
+        void mealUnplanned(int userId, int foodId);
+    }
+
+    /**
+     * @interface FoodLogListener
+     * @brief Receives food log entries as they are written
+     * @details Called after the food_logs row is inserted, on the thread that
+     *          logged the food, once per row.
+     */
+    public interface FoodLogListener {
+        /**
+         * @brief Called after a food log row was added
+         * @param username Username of the user
+         * @param date Logged date in YYYY-MM-DD format
+         * @param foodId ID of the logged food
+         */
+        void foodLogged(String username, String date, int foodId);
+    }
+
     /**
      * @brief Constructs a new MealPlanningService instance
      * @details Initializes the service with a database connection for data storage
@@ -52,6 +136,81 @@ public class MealPlanningService {
         this.connection = connection;
     }
     
+    /**
+     * @brief Sets the analytics instance fed by logFood
+     * @details Defaults to PopulationAnalytics.getShared(). Pass null to stop
+     *          recording logged foods.
+     * 
+     * @param populationAnalytics Analytics to feed, may be null
+     */
+    public void setPopulationAnalytics(PopulationAnalytics populationAnalytics) {
+        this.populationAnalytics = populationAnalytics;
+    }
+
+    /**
+     * @brief Sets the autocomplete index fed with inserted and used foods
+     * @details Defaults to FoodAutocompleteIndex.getShared(). Pass null to stop
+     *          maintaining an index; suggestFoods then returns nothing.
+     * 
+     * @param autocompleteIndex Index to maintain, may be null
+     */
+    public void setAutocompleteIndex(FoodAutocompleteIndex autocompleteIndex) {
+        this.autocompleteIndex = autocompleteIndex;
+    }
+
+    /**
+     * @brief Registers a listener for meal plan changes
+     * @details addMealPlan, addMealToPlan, addMeal and deleteMeal report each
+     *          row they write to the registered listeners.
+     * 
+     * @param listener Listener to add, ignored if null
+     */
+    public void addMealPlanListener(MealPlanListener listener) {
+        if (listener != null) {
+            mealPlanListeners.add(listener);
+        }
+    }
+
+    /**
+     * @brief Unregisters a listener for meal plan changes
+     * @param listener Listener to remove
+     */
+    public void removeMealPlanListener(MealPlanListener listener) {
+        mealPlanListeners.remove(listener);
+    }
+
+    /**
+     * @brief Registers a listener for logged foods
+     * @details logFood reports each row it writes to the registered listeners.
+     * 
+     * @param listener Listener to add, ignored if null
+     */
+    public void addFoodLogListener(FoodLogListener listener) {
+        if (listener != null) {
+            foodLogListeners.add(listener);
+        }
+    }
+
+    /**
+     * @brief Unregisters a listener for logged foods
+     * @param listener Listener to remove
+     */
+    public void removeFoodLogListener(FoodLogListener listener) {
+        foodLogListeners.remove(listener);
+    }
+
+    private void fireMealPlanned(int userId, int foodId) {
+        for (MealPlanListener listener : mealPlanListeners) {
+            listener.mealPlanned(userId, foodId);
+        }
+    }
+
+    private void fireMealUnplanned(int userId, int foodId) {
+        for (MealPlanListener listener : mealPlanListeners) {
+            listener.mealUnplanned(userId, foodId);
+        }
+    }
+    
     /**
      * @brief Adds a meal plan for a specific date
      * @details Creates a meal plan entry in the database:
@@ -97,6 +256,10 @@ public class MealPlanningService {
                 pstmt.setInt(4, foodId);
                 
                 int rowsAffected = pstmt.executeUpdate();
+                if (rowsAffected > 0) {
+                    fireMealPlanned(userId, foodId);
+                    foodUsed(food.getName());
+                }
                 
                 return rowsAffected > 0;
             }
@@ -190,8 +353,8 @@ public class MealPlanningService {
                      ResultSet rs2 = stmt.executeQuery("SELECT last_insert_rowid()")) {
                     if (rs2.next()) {
                         int foodId = rs2.getInt(1);
+                        foodInserted(food.getName());
 
-                        
                         if (food instanceof FoodNutrient) {
                             FoodNutrient fn = (FoodNutrient) food;
                             saveFoodNutrients(conn, foodId, fn);
@@ -225,10 +388,12 @@ public class MealPlanningService {
             ResultSet rs = checkStmt.executeQuery();
             
             if (rs.next()) {
-                // Update existing nutrients
+                // Update existing nutrients, rows already holding these values are left alone
                 try (PreparedStatement updateStmt = conn.prepareStatement(
                     "UPDATE food_nutrients SET protein = ?, carbs = ?, fat = ?, " +
-                    "fiber = ?, sugar = ?, sodium = ? WHERE food_id = ?")) {
+                    "fiber = ?, sugar = ?, sodium = ? WHERE food_id = ? " +
+                    "AND (protein IS NOT ? OR carbs IS NOT ? OR fat IS NOT ? " +
+                    "OR fiber IS NOT ? OR sugar IS NOT ? OR sodium IS NOT ?)")) {
                     
                     updateStmt.setDouble(1, fn.getProtein());
                     updateStmt.setDouble(2, fn.getCarbs());
@@ -237,12 +402,21 @@ public class MealPlanningService {
                     updateStmt.setDouble(5, fn.getSugar());
                     updateStmt.setDouble(6, fn.getSodium());
                     updateStmt.setInt(7, foodId);
+                    updateStmt.setDouble(8, fn.getProtein());
+                    updateStmt.setDouble(9, fn.getCarbs());
+                    updateStmt.setDouble(10, fn.getFat());
+                    updateStmt.setDouble(11, fn.getFiber());
+                    updateStmt.setDouble(12, fn.getSugar());
+                    updateStmt.setDouble(13, fn.getSodium());
                     
-                    updateStmt.executeUpdate();
+                    if (updateStmt.executeUpdate() > 0) {
+                        DatabaseHelper.foodValuesChanged();
+                    }
                 }
             } else {
                 // Insert new nutrients
                 saveFoodNutrients(conn, foodId, fn);
+                DatabaseHelper.foodValuesChanged();
             }
         }
     }
@@ -274,6 +448,7 @@ public class MealPlanningService {
             
             pstmt.executeUpdate();
         }
+        DatabaseHelper.foodDataChanged();
     }
     
     /**
@@ -320,6 +495,15 @@ public class MealPlanningService {
                 
                 int affectedRows = logStmt.executeUpdate();
                 
+                if (affectedRows > 0 && populationAnalytics != null) {
+                    populationAnalytics.recordFoodLog(username, food.getName(), food.getCalories());
+                }
+                if (affectedRows > 0) {
+                    foodUsed(food.getName());
+                    for (FoodLogListener listener : foodLogListeners) {
+                        listener.foodLogged(username, date, foodId);
+                    }
+                }
                 return affectedRows > 0;
             }
             
@@ -370,27 +554,7 @@ public class MealPlanningService {
                 ResultSet rs = pstmt.executeQuery();
                 
                 while (rs.next()) {
-                    if (rs.getObject("protein") != null) {
-                        // This food has nutrition data
-                        mealPlan.add(new FoodNutrient(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories"),
-                            rs.getDouble("protein"),
-                            rs.getDouble("carbs"),
-                            rs.getDouble("fat"),
-                            rs.getDouble("fiber"),
-                            rs.getDouble("sugar"),
-                            rs.getDouble("sodium")
-                        ));
-                    } else {
-                        // Basic food without nutrition data
-                        mealPlan.add(new Food(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories")
-                        ));
-                    }
+                    mealPlan.add(mapFood(rs));
                 }
             }
             
@@ -427,9 +591,9 @@ public class MealPlanningService {
             }
             
             try (PreparedStatement pstmt = connection.prepareStatement(
-                "SELECT f.*, fn.* FROM food_logs fl " +
+                "SELECT " + FOOD_COLUMNS + "FROM food_logs fl " +
                 "JOIN foods f ON fl.food_id = f.id " +
-                "LEFT JOIN food_nutrients fn ON f.id = fn.food_id " +
+                LATEST_NUTRIENTS_JOIN +
                 "WHERE fl.user_id = ? AND fl.date = ?")) {
                 
                 pstmt.setInt(1, userId);
@@ -438,37 +602,204 @@ public class MealPlanningService {
                 ResultSet rs = pstmt.executeQuery();
                 
                 while (rs.next()) {
-                    if (rs.getObject("protein") != null) {
-                        // This food has nutrition data
-                        foodLog.add(new FoodNutrient(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories"),
-                            rs.getDouble("protein"),
-                            rs.getDouble("carbs"),
-                            rs.getDouble("fat"),
-                            rs.getDouble("fiber"),
-                            rs.getDouble("sugar"),
-                            rs.getDouble("sodium")
-                        ));
-                    } else {
-                        // Basic food without nutrition data
-                        foodLog.add(new Food(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories")
-                        ));
-                    }
+                    foodLog.add(mapFood(rs));
                 }
             }
             
         } catch (SQLException e) {
 
         }
-        
+
         return foodLog;
     }
-    
+
+    /**
+     * @brief Gets one page of a user's food log for a specific date
+     * @details Keyset-paginated variant of getFoodLog:
+     *          - Entries are ordered by insertion order
+     *          - Each page starts after the log entry id of the previous one
+     *          - The (user_id, date) index ends in the row id, so every page is a
+     *            single index seek
+     * 
+     * @param username The username of the user
+     * @param date The date in format YYYY-MM-DD
+     * @param afterLogId Log entry id of the previous page's last row, 0 for the first page
+     * @param pageSize Maximum number of foods on the page
+     * @return Page of consumed foods keyed by log entry id, empty if the user is unknown
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<Food, Long> getFoodLog(String username, String date, long afterLogId, int pageSize) {
+        Page.checkPageSize(pageSize);
+        Page<Food, Long> empty = new Page<>(new ArrayList<>(), afterLogId, false);
+        if (username == null || date == null) {
+            return empty;
+        }
+        
+        try {
+            int userId = getUserId(connection, username);
+            if (userId == -1) {
+                return empty;
+            }
+            
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT fl.id AS log_id, " + FOOD_COLUMNS + "FROM food_logs fl " +
+                "JOIN foods f ON fl.food_id = f.id " +
+                LATEST_NUTRIENTS_JOIN +
+                "WHERE fl.user_id = ? AND fl.date = ? AND fl.id > ? " +
+                "ORDER BY fl.id LIMIT ?")) {
+                pstmt.setInt(1, userId);
+                pstmt.setString(2, date);
+                pstmt.setLong(3, afterLogId);
+                pstmt.setInt(4, pageSize + 1);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return Page.read(rs, pageSize, afterLogId, this::mapFood, row -> row.getLong("log_id"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not retrieve food log page: " + e.getMessage());
+            return empty;
+        }
+    }
+
+    /**
+     * @brief Streams a user's food log over a date range
+     * @details Cursor-backed variant of getFoodLog for exports and multi-year history:
+     *          - Rows are read lazily from a live ResultSet
+     *          - Entries are ordered by date, then by insertion order
+     *          - A null bound leaves that side of the range open
+     *          The caller must close the returned stream to release the cursor.
+     *
+     * @param username The username of the user
+     * @param fromDate First date to include in format YYYY-MM-DD, or null
+     * @param toDate Last date to include in format YYYY-MM-DD, or null
+     * @param fetchSize Rows fetched per round trip (0 for the default)
+     * @return Stream of Food objects consumed, empty if the user is unknown
+     */
+    public Stream<Food> streamFoodLog(String username, String fromDate, String toDate, int fetchSize) {
+        if (username == null) {
+            return Stream.empty();
+        }
+
+        try {
+            int userId = getUserId(connection, username);
+            if (userId == -1) {
+                return Stream.empty();
+            }
+
+            PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT f.name, f.grams, f.calories, fn.protein, fn.carbs, fn.fat, " +
+                "fn.fiber, fn.sugar, fn.sodium FROM food_logs fl " +
+                "JOIN foods f ON fl.food_id = f.id " +
+                "LEFT JOIN food_nutrients fn ON f.id = fn.food_id " +
+                "WHERE fl.user_id = ? AND fl.date >= ? AND fl.date <= ? " +
+                "ORDER BY fl.date, fl.id");
+            bindRange(pstmt, userId, fromDate, toDate);
+            return ResultSetStreams.stream(pstmt, fetchSize, this::mapFood, null);
+        } catch (SQLException e) {
+            System.out.println("Could not stream food log: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * @brief Streams a user's planned meals over a date range
+     * @details Cursor-backed variant of getMealPlan covering every meal type:
+     *          - Rows are read lazily from a live ResultSet
+     *          - Entries are ordered by date, then by insertion order
+     *          - A null bound leaves that side of the range open
+     *          The caller must close the returned stream to release the cursor.
+     *
+     * @param username The username of the user
+     * @param fromDate First date to include in format YYYY-MM-DD, or null
+     * @param toDate Last date to include in format YYYY-MM-DD, or null
+     * @param fetchSize Rows fetched per round trip (0 for the default)
+     * @return Stream of planned Food objects, empty if the user is unknown
+     */
+    public Stream<Food> streamMealPlan(String username, String fromDate, String toDate, int fetchSize) {
+        if (username == null) {
+            return Stream.empty();
+        }
+
+        try {
+            int userId = getUserId(connection, username);
+            if (userId == -1) {
+                return Stream.empty();
+            }
+
+            PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT f.name, f.grams, f.calories, fn.protein, fn.carbs, fn.fat, " +
+                "fn.fiber, fn.sugar, fn.sodium FROM meal_plans mp " +
+                "JOIN foods f ON mp.food_id = f.id " +
+                "LEFT JOIN food_nutrients fn ON f.id = fn.food_id " +
+                "WHERE mp.user_id = ? AND mp.date >= ? AND mp.date <= ? " +
+                "ORDER BY mp.date, mp.id");
+            bindRange(pstmt, userId, fromDate, toDate);
+            return ResultSetStreams.stream(pstmt, fetchSize, this::mapFood, null);
+        } catch (SQLException e) {
+            System.out.println("Could not stream meal plan: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * @brief Binds the user and date range of a streaming query
+     * @details Closes the statement if a parameter cannot be bound, since the
+     *          stream that would own it is never created.
+     *
+     * @param pstmt Query with the user id and both dates as parameters
+     * @param userId ID of the user
+     * @param fromDate First date to include, or null for an open start
+     * @param toDate Last date to include, or null for an open end
+     * @throws SQLException If a parameter cannot be bound
+     */
+    private static void bindRange(PreparedStatement pstmt, int userId, String fromDate, String toDate)
+            throws SQLException {
+        try {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, fromDate != null ? fromDate : RANGE_START);
+            pstmt.setString(3, toDate != null ? toDate : RANGE_END);
+        } catch (SQLException e) {
+            try {
+                pstmt.close();
+            } catch (SQLException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @brief Maps the current row to a Food or FoodNutrient
+     * @details Rows that carry nutrient columns become FoodNutrient objects,
+     *          rows without nutrient data become plain Food objects.
+     *
+     * @param rs Result set positioned on a food row
+     * @return Food built from the row
+     * @throws SQLException If a column cannot be read
+     */
+    private Food mapFood(ResultSet rs) throws SQLException {
+        if (rs.getObject("protein") != null) {
+            // This food has nutrition data
+            return new FoodNutrient(
+                rs.getString("name"),
+                rs.getDouble("grams"),
+                rs.getInt("calories"),
+                rs.getDouble("protein"),
+                rs.getDouble("carbs"),
+                rs.getDouble("fat"),
+                rs.getDouble("fiber"),
+                rs.getDouble("sugar"),
+                rs.getDouble("sodium")
+            );
+        }
+        // Basic food without nutrition data
+        return new Food(
+            rs.getString("name"),
+            rs.getDouble("grams"),
+            rs.getInt("calories")
+        );
+    }
+
     /**
      * @brief Calculates total calories for a specific date
      * @details Sums up calories from all consumed foods:
@@ -797,8 +1128,12 @@ public class MealPlanningService {
         
         try {
             try (PreparedStatement pstmt = connection.prepareStatement(
-                 "SELECT f.*, fn.* FROM foods f " +
-                 "LEFT JOIN food_nutrients fn ON f.id = fn.food_id " +
+                 "SELECT f.name, f.grams, f.calories, " +
+                 "COALESCE(fn.protein, f.protein, 0) AS protein, COALESCE(fn.carbs, f.carbs, 0) AS carbs, " +
+                 "COALESCE(fn.fat, f.fat, 0) AS fat, COALESCE(fn.fiber, f.fiber, 0) AS fiber, " +
+                 "COALESCE(fn.sugar, f.sugar, 0) AS sugar, COALESCE(fn.sodium, f.sodium, 0) AS sodium " +
+                 "FROM foods f " +
+                 LATEST_NUTRIENTS_JOIN +
                  "WHERE f.meal_type = ? " +
                  "LIMIT 8")) {
                 
@@ -806,27 +1141,7 @@ public class MealPlanningService {
                 ResultSet rs = pstmt.executeQuery();
                 
                 while (rs.next()) {
-                    if (rs.getObject("protein") != null) {
-                        // This food has nutrition data
-                        options.add(new FoodNutrient(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories"),
-                            rs.getDouble("protein"),
-                            rs.getDouble("carbs"),
-                            rs.getDouble("fat"),
-                            rs.getDouble("fiber"),
-                            rs.getDouble("sugar"),
-                            rs.getDouble("sodium")
-                        ));
-                    } else {
-                        // Basic food without nutrition data
-                        options.add(new Food(
-                            rs.getString("name"),
-                            rs.getDouble("grams"),
-                            rs.getInt("calories")
-                        ));
-                    }
+                    options.add(mapFood(rs));
                 }
             }
             
@@ -869,6 +1184,7 @@ public class MealPlanningService {
             ResultSet rs = pstmt.getGeneratedKeys();
             if (rs.next()) {
                 int foodId = rs.getInt(1);
+                foodInserted(food.getName());
                 
                 // If this is a FoodNutrient, save the nutrients
                 if (food instanceof FoodNutrient) {
@@ -897,6 +1213,195 @@ public class MealPlanningService {
         return foods;
     }
 
+    /**
+     * @brief Gets one page of the distinct food names in the catalog
+     * @details Keyset-paginated variant of getAllFoods. Names are in alphabetical
+     *          order and each page starts after the last name of the previous one,
+     *          read from the foods name index.
+     *
+     * @param afterName Last name of the previous page, or null for the first page
+     * @param pageSize Maximum number of names on the page
+     * @return Page of distinct food names keyed by name
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<String, String> getAllFoods(String afterName, int pageSize) {
+        Page.checkPageSize(pageSize);
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                 "SELECT DISTINCT name FROM foods WHERE name > ? ORDER BY name LIMIT ?")) {
+            pstmt.setString(1, afterName != null ? afterName : "");
+            pstmt.setInt(2, pageSize + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return Page.read(rs, pageSize, afterName, row -> row.getString("name"), row -> row.getString("name"));
+            }
+        } catch (SQLException e) {
+            System.out.println("Foods could not be retrieved: " + e.getMessage());
+            return new Page<>(new ArrayList<>(), afterName, false);
+        }
+    }
+
+    /**
+     * @brief Streams the distinct food names in the catalog
+     * @details Cursor-backed variant of getAllFoods. The caller must close the
+     *          returned stream to release the cursor.
+     *
+     * @param fetchSize Rows fetched per round trip (0 for the default)
+     * @return Stream of distinct food names
+     */
+    public Stream<String> streamAllFoods(int fetchSize) {
+        try {
+            PreparedStatement pstmt = connection.prepareStatement("SELECT DISTINCT name FROM foods");
+            return ResultSetStreams.stream(pstmt, fetchSize, rs -> rs.getString("name"), null);
+        } catch (SQLException e) {
+            System.out.println("Foods could not be streamed: " + e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * @brief Searches food names for type-ahead completion
+     * @details Results are ranked in two tiers. First come names that start with
+     *          the typed text, in alphabetical order, read from the name index.
+     *          The remaining places are filled from the full-text index with names
+     *          in which every typed word starts some word, so "gri chi" finds
+     *          "Grilled Chicken". Only a bounded window of full-text matches is
+     *          read and ranked by shortest name, which keeps the cost independent
+     *          of how many foods match a short prefix. Without the full-text
+     *          index only the first tier is returned; if the full-text query fails
+     *          for another reason, such as a locked database, only that call falls
+     *          back to the first tier.
+     * 
+     * @param prefix The typed text, case-insensitive
+     * @param limit Maximum number of names to return
+     * @return Distinct matching food names, best first; empty if nothing matches
+     */
+    public List<String> searchFoods(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        if (prefix == null || prefix.trim().isEmpty() || limit <= 0) {
+            return result;
+        }
+        String text = prefix.trim();
+        Set<String> names = new LinkedHashSet<>();
+
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT DISTINCT name FROM foods WHERE name LIKE ? ESCAPE '\\' " +
+                "ORDER BY name COLLATE NOCASE LIMIT ?")) {
+            pstmt.setString(1, text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString("name"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Foods could not be searched: " + e.getMessage());
+            return result;
+        }
+
+        String match = toFullTextQuery(text);
+        if (names.size() < limit && match != null && fullTextSearchAvailable) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                    "SELECT f.name FROM (SELECT rowid FROM foods_fts WHERE foods_fts MATCH ? LIMIT ?) m " +
+                    "JOIN foods f ON f.id = m.rowid ORDER BY length(f.name), f.name")) {
+                pstmt.setString(1, match);
+                pstmt.setInt(2, Math.max(SEARCH_MIN_WINDOW, limit * SEARCH_WINDOW_FACTOR));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (names.size() < limit && rs.next()) {
+                        names.add(rs.getString("name"));
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("Full-text food search failed: " + e.getMessage());
+                if (isFullTextSearchMissing(e)) {
+                    fullTextSearchAvailable = false;
+                }
+            }
+        }
+        result.addAll(names);
+        return result;
+    }
+
+    /**
+     * @brief Checks whether a full-text query failed because FTS5 or foods_fts is missing
+     * @param e The error of the full-text query
+     * @return true if retrying on this database cannot succeed
+     */
+    static boolean isFullTextSearchMissing(SQLException e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("no such module") || message.contains("no such table"));
+    }
+
+    /**
+     * @brief Loads the autocomplete index, or reloads it if foods were added
+     * @details Reads the database through this service's connection, so it is
+     *          meant for a background thread; the food name fields call it off the
+     *          event dispatch thread when they are created and focused.
+     * 
+     * @return true if the index is loaded
+     */
+    public boolean refreshAutocompleteIndex() {
+        FoodAutocompleteIndex index = autocompleteIndex;
+        if (index == null) {
+            return false;
+        }
+        try {
+            index.reloadIfChanged(connection);
+        } catch (SQLException e) {
+            System.out.println("Food names could not be loaded: " + e.getMessage());
+        }
+        return index.isLoaded();
+    }
+
+    /**
+     * @brief Suggests food names from the in-memory autocomplete index
+     * @details Meant to be called on every keystroke, so no query touches the
+     *          database; refreshAutocompleteIndex loads the index. Names starting
+     *          with the text come first, most logged and planned first, followed by
+     *          names within a typo or two of it.
+     * 
+     * @param text The typed text, case-insensitive
+     * @param limit Maximum number of names to return
+     * @return Suggested food names, best first; empty if none or if the index is
+     *         not loaded yet
+     */
+    public List<String> suggestFoods(String text, int limit) {
+        FoodAutocompleteIndex index = autocompleteIndex;
+        if (index == null || !index.isLoaded()) {
+            return new ArrayList<>();
+        }
+        return index.suggest(text, limit);
+    }
+
+    private void foodInserted(String name) {
+        DatabaseHelper.foodDataChanged();
+        if (autocompleteIndex != null) {
+            autocompleteIndex.add(name);
+        }
+    }
+
+    private void foodUsed(String name) {
+        if (autocompleteIndex != null) {
+            autocompleteIndex.recordUse(name);
+        }
+    }
+
+    /**
+     * @brief Builds an FTS5 query matching every word of the text as a prefix
+     * @param text The typed text
+     * @return The MATCH expression, or null if the text has no letters or digits
+     */
+    static String toFullTextQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(word).append("\"*");
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
     /**
      * @brief Adds meal to plan
      * @details Creates new meal plan entry:
@@ -941,6 +1446,7 @@ public class MealPlanningService {
                              ResultSet rs2 = stmt.executeQuery("SELECT last_insert_rowid()")) {
                             if (rs2.next()) {
                                 foodId = rs2.getInt(1);
+                                foodInserted(foodName);
                             }
                         }
                     }
@@ -961,6 +1467,10 @@ public class MealPlanningService {
                 pstmt.setInt(4, foodId);
                 pstmt.setString(5, day);
                 int affectedRows = pstmt.executeUpdate();
+                if (affectedRows > 0) {
+                    fireMealPlanned(userId, foodId);
+                    foodUsed(foodName);
+                }
                 return affectedRows > 0;
             }
         } catch (SQLException e) {
@@ -1017,6 +1527,7 @@ public class MealPlanningService {
                              ResultSet rs2 = stmt.executeQuery("SELECT last_insert_rowid()")) {
                             if (rs2.next()) {
                                 foodId = rs2.getInt(1);
+                                foodInserted(foodName);
                             }
                         }
                     }
@@ -1039,6 +1550,8 @@ public class MealPlanningService {
                 nutrientStmt.setDouble(7, 0); // sodium
                 nutrientStmt.executeUpdate();
             }
+            // An existing food now reads its values from the new row
+            DatabaseHelper.foodValuesChanged();
 
             String date = LocalDate.now().toString();
             String sql = "INSERT INTO meal_plans (user_id, date, meal_type, food_id) VALUES (?, ?, ?, ?)";
@@ -1047,7 +1560,10 @@ public class MealPlanningService {
                 stmt.setString(2, date);
                 stmt.setString(3, mealType);
                 stmt.setInt(4, foodId);
-                stmt.executeUpdate();
+                if (stmt.executeUpdate() > 0) {
+                    fireMealPlanned(userId, foodId);
+                    foodUsed(foodName);
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error adding meal to plan: " + e.getMessage());
@@ -1067,12 +1583,50 @@ public class MealPlanningService {
     public void deleteMeal(String day, String mealType) {
         String sql = "DELETE FROM meal_plans WHERE day = ? AND meal_type = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, day);
-            stmt.setString(2, mealType);
-            stmt.executeUpdate();
+        List<int[]> removed = new ArrayList<>();
+        boolean deleted;
+        boolean autoCommit = true;
+        try {
+            // Read and delete the rows in one transaction, so listeners are told
+            // exactly what was removed even if meals are planned concurrently
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (!mealPlanListeners.isEmpty()) {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT user_id, food_id FROM meal_plans WHERE day = ? AND meal_type = ?")) {
+                    select.setString(1, day);
+                    select.setString(2, mealType);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            removed.add(new int[] {rs.getInt(1), rs.getInt(2)});
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, day);
+                stmt.setString(2, mealType);
+                deleted = stmt.executeUpdate() > 0;
+            }
+            connection.commit();
         } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ex) {
+                System.out.println("Could not roll back meal deletion: " + ex.getMessage());
+            }
             throw new RuntimeException("Error deleting meal: " + e.getMessage());
+        } finally {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                System.out.println("Failed to reset auto-commit: " + e.getMessage());
+            }
+        }
+        if (deleted) {
+            for (int[] row : removed) {
+                fireMealUnplanned(row[0], row[1]);
+            }
         }
     }
 
@@ -1094,7 +1648,7 @@ public class MealPlanningService {
                     "COALESCE(fn.fat, 0) as fat " +
                     "FROM meal_plans mp " +
                     "JOIN foods f ON mp.food_id = f.id " +
-                    "LEFT JOIN food_nutrients fn ON f.id = fn.food_id " +
+                    LATEST_NUTRIENTS_JOIN +
                     "WHERE mp.day IS NOT NULL " +
                     "ORDER BY CASE mp.day " +
                     "WHEN 'Monday' THEN 1 " +
@@ -1132,6 +1686,102 @@ public class MealPlanningService {
         return plan.toString();
     }
 
+    /**
+     * @brief Gets one page of the weekly meal plan
+     * @details Keyset-paginated variant of getWeeklyMealPlan:
+     *          - Meals are in the same day and meal type order
+     *          - Each meal is keyed by its week position, which combines that order
+     *            with the meal plan id
+     *          - A partial index on the week position lets every page seek
+     *            straight to the previous page's last meal
+     * 
+     * @param afterPosition Week position of the previous page's last meal, 0 for the first page
+     * @param pageSize Maximum number of meals on the page
+     * @return Page of meals formatted as "Day - MealType: Food (Calories: ...)";
+     *         appendWeeklyPlanPage lays them out under day headers
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    public Page<String, Long> getWeeklyMealPlan(long afterPosition, int pageSize) {
+        Page.checkPageSize(pageSize);
+        String position = weekPositionSql("mp.");
+        String sql = "SELECT " + position + " AS position, mp.day, mp.meal_type, f.name AS food_name, f.calories, " +
+                    "COALESCE(fn.protein, 0) as protein, " +
+                    "COALESCE(fn.carbs, 0) as carbs, " +
+                    "COALESCE(fn.fat, 0) as fat " +
+                    "FROM meal_plans mp " +
+                    "JOIN foods f ON mp.food_id = f.id " +
+                    LATEST_NUTRIENTS_JOIN +
+                    "WHERE mp.day IS NOT NULL AND " + position + " > ? " +
+                    "ORDER BY position LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, afterPosition);
+            stmt.setInt(2, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return Page.read(rs, pageSize, afterPosition,
+                    row -> row.getString("day") + " - " + row.getString("meal_type") + ": " +
+                           row.getString("food_name") +
+                           " (Calories: " + row.getInt("calories") +
+                           ", Protein: " + row.getDouble("protein") + "g" +
+                           ", Carbs: " + row.getDouble("carbs") + "g" +
+                           ", Fat: " + row.getDouble("fat") + "g)",
+                    row -> row.getLong("position"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error retrieving weekly meal plan: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @brief Appends a page of the weekly meal plan in the layout of getWeeklyMealPlan()
+     * @details Each meal of getWeeklyMealPlan(long, int) is written below a day
+     *          header, which is started whenever the day differs from the previous
+     *          meal's. Passing the returned day to the next call keeps a day that
+     *          spans two pages under one header. Lines without a day are appended
+     *          unchanged.
+     * 
+     * @param meals Meals of one page, formatted as "Day - MealType: Food (...)"
+     * @param previousDay Day of the meal appended before this page, or null
+     * @param plan Text to append to
+     * @return Day of the last appended meal
+     */
+    public static String appendWeeklyPlanPage(List<String> meals, String previousDay, StringBuilder plan) {
+        String currentDay = previousDay;
+        for (String meal : meals) {
+            int separator = meal.indexOf(" - ");
+            if (separator < 0) {
+                plan.append(meal).append("\n");
+                continue;
+            }
+            String day = meal.substring(0, separator);
+            if (!day.equals(currentDay)) {
+                plan.append("\n").append(day).append(":\n");
+                currentDay = day;
+            }
+            plan.append("  ").append(meal, separator + 3, meal.length()).append("\n");
+        }
+        return currentDay;
+    }
+
+    /**
+     * @brief Builds the week position of a meal plan row
+     * @details Orders rows by day, then by meal type as getWeeklyMealPlan does,
+     *          then by id. Unknown days and meal types come first, like the NULLs
+     *          of the original ordering. The expression must match the partial
+     *          index created by DatabaseHelper for the index to be used.
+     * 
+     * @param alias Table alias followed by a dot, or an empty string
+     * @return SQL expression of the week position
+     */
+    static String weekPositionSql(String alias) {
+        return "((CASE " + alias + "day " +
+               "WHEN 'Monday' THEN 1 WHEN 'Tuesday' THEN 2 WHEN 'Wednesday' THEN 3 " +
+               "WHEN 'Thursday' THEN 4 WHEN 'Friday' THEN 5 WHEN 'Saturday' THEN 6 " +
+               "WHEN 'Sunday' THEN 7 ELSE 0 END) * 8 + " +
+               "(CASE " + alias + "meal_type " +
+               "WHEN 'Breakfast' THEN 1 WHEN 'Lunch' THEN 2 WHEN 'Snack' THEN 3 " +
+               "WHEN 'Dinner' THEN 4 ELSE 0 END)) * " + WEEK_SLOT_FACTOR + " + " + alias + "id";
+    }
+
     /**
      * @brief Gets meals for specific day
      * @details Retrieves all meals for a day:
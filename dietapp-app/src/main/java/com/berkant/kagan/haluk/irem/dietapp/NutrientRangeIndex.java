@@ -0,0 +1,308 @@
+/**
+ * @file NutrientRangeIndex.java
+ * @brief Multi-attribute index for nutrient range queries
+ *
+ * @details The NutrientRangeIndex class answers queries such as "protein at least
+ *          20 g, calories at most 300 and sodium at most 200 mg per 100 g" without
+ *          scanning every food. Each nutrient of FoodSubstitutionIndex has its own
+ *          sorted column, so the foods inside one bound are a contiguous run found
+ *          by binary search. The runs are combined starting with the most selective
+ *          one, either as bitmaps or by checking the few remaining candidates
+ *          directly.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * @class NutrientRangeIndex
+ * @brief Per-nutrient sorted columns intersected by selectivity
+ *
+ * @details Values are per 100 g, as in FoodSubstitutionIndex, and queries use its
+ *          Query class. For every constrained nutrient the number of foods inside
+ *          the bounds is known exactly from the two binary searches; nutrients are
+ *          then applied from the fewest matches up. While the candidates are many,
+ *          each nutrient's run is turned into a bitmap and intersected; once checking
+ *          the remaining nutrients of each candidate is cheaper than another bitmap,
+ *          the candidates are checked directly. Instances are immutable and safe for
+ *          concurrent queries.
+ */
+public class NutrientRangeIndex {
+    /** @brief Query for loading the index, with nutrients from food_nutrients as in FoodSubstitutionIndex */
+    private static final String LOAD_SQL = FoodSubstitutionIndex.LOAD_SQL;
+
+    private static final int DIMENSIONS = FoodSubstitutionIndex.DIMENSIONS;
+
+    /** @brief Scan every food when the narrowest bound keeps more than 1/SCAN_FRACTION of them */
+    private static final int SCAN_FRACTION = 4;
+
+    /** @brief Check candidates directly once the next bound keeps BITMAP_RATIO times as many foods */
+    private static final int BITMAP_RATIO = 4;
+
+    private final FoodNutrient[] foods;
+    private final String[] mealTypes;
+    /** @brief Per-100 g values, DIMENSIONS per food */
+    private final double[] values;
+    /** @brief sortedValues[d] holds every food's value of nutrient d in ascending order */
+    private final double[][] sortedValues = new double[DIMENSIONS][];
+    /** @brief sortedFoods[d][i] is the food whose value is sortedValues[d][i] */
+    private final int[][] sortedFoods = new int[DIMENSIONS][];
+
+    /**
+     * @brief Builds the index
+     *
+     * @param foods Foods to index
+     * @param mealTypes Meal type of each food, or null if unknown; may be null
+     * @throws IllegalArgumentException if the lists differ in size
+     */
+    public NutrientRangeIndex(List<FoodNutrient> foods, List<String> mealTypes) {
+        if (mealTypes != null && mealTypes.size() != foods.size()) {
+            throw new IllegalArgumentException("Meal types must match the foods");
+        }
+        int n = foods.size();
+        this.foods = foods.toArray(new FoodNutrient[0]);
+        this.mealTypes = new String[n];
+        this.values = new double[n * DIMENSIONS];
+        for (int i = 0; i < n; i++) {
+            this.mealTypes[i] = mealTypes != null ? mealTypes.get(i) : null;
+            FoodSubstitutionIndex.per100g(this.foods[i], values, i * DIMENSIONS);
+        }
+
+        int[] scratch = new int[n];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            int[] column = new int[n];
+            for (int i = 0; i < n; i++) {
+                column[i] = i;
+            }
+            sortColumn(column, scratch, 0, n, d);
+            sortedFoods[d] = column;
+            sortedValues[d] = new double[n];
+            for (int i = 0; i < n; i++) {
+                sortedValues[d][i] = values[column[i] * DIMENSIONS + d];
+            }
+        }
+    }
+
+    /**
+     * @brief Loads all foods from the database into a new index
+     *
+     * @param conn Connection to read foods and food_nutrients from
+     * @return The index
+     * @throws SQLException if the foods table cannot be read
+     */
+    public static NutrientRangeIndex load(Connection conn) throws SQLException {
+        List<FoodNutrient> foods = new ArrayList<>();
+        List<String> mealTypes = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAD_SQL)) {
+            while (rs.next()) {
+                foods.add(new FoodNutrient(
+                    rs.getString("name"),
+                    rs.getDouble("grams"),
+                    rs.getInt("calories"),
+                    rs.getDouble("protein"),
+                    rs.getDouble("carbs"),
+                    rs.getDouble("fat"),
+                    rs.getDouble("fiber"),
+                    rs.getDouble("sugar"),
+                    rs.getDouble("sodium")));
+                mealTypes.add(rs.getString("meal_type"));
+            }
+        }
+        return new NutrientRangeIndex(foods, mealTypes);
+    }
+
+    /**
+     * @brief Gets the number of indexed foods
+     * @return Food count
+     */
+    public int size() {
+        return foods.length;
+    }
+
+    /**
+     * @brief Finds the foods inside every bound of a query
+     *
+     * @param query Nutrient bounds per 100 g, meal type and maximum number of results
+     * @return Up to query.getLimit() matching foods in catalogue order
+     */
+    public List<FoodNutrient> find(FoodSubstitutionIndex.Query query) {
+        List<FoodNutrient> result = new ArrayList<>();
+        int limit = query.getLimit();
+        if (limit <= 0 || foods.length == 0) {
+            return result;
+        }
+
+        // Run of matching foods in each constrained column, fewest matches first
+        int[][] runs = new int[DIMENSIONS][];
+        int count = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double min = query.getMin(d);
+            double max = query.getMax(d);
+            if (min == -Double.MAX_VALUE && max == Double.MAX_VALUE) {
+                continue;
+            }
+            int from = lowerBound(sortedValues[d], min);
+            int to = upperBound(sortedValues[d], max);
+            if (from >= to) {
+                return result;
+            }
+            runs[count++] = new int[] {d, from, to};
+        }
+        int[][] ordered = Arrays.copyOf(runs, count);
+        Arrays.sort(ordered, (a, b) -> Integer.compare(a[2] - a[1], b[2] - b[1]));
+        int n = foods.length;
+        int candidates = count > 0 ? ordered[0][2] - ordered[0][1] : n;
+
+        // Expected matches if the nutrients were independent; a scan in catalogue
+        // order reaches the limit after about limit / selectivity foods
+        double selectivity = 1;
+        for (int[] run : ordered) {
+            selectivity *= (double) (run[2] - run[1]) / n;
+        }
+        double scanLength = Math.min(n, limit / Math.max(selectivity, 1.0 / n));
+        if (candidates > n / SCAN_FRACTION || scanLength < candidates) {
+            for (int food = 0; food < n && result.size() < limit; food++) {
+                if (matches(food, ordered, 0, query)) {
+                    result.add(foods[food]);
+                }
+            }
+            return result;
+        }
+
+        if (count == 1 || candidates <= (ordered[1][2] - ordered[1][1]) / BITMAP_RATIO) {
+            // Few enough to check the other bounds food by food, then restore catalogue order
+            int[] first = ordered[0];
+            int[] found = new int[candidates];
+            int size = 0;
+            for (int i = first[1]; i < first[2]; i++) {
+                int food = sortedFoods[first[0]][i];
+                if (matches(food, ordered, 1, query)) {
+                    found[size++] = food;
+                }
+            }
+            Arrays.sort(found, 0, size);
+            for (int i = 0; i < size && result.size() < limit; i++) {
+                result.add(foods[found[i]]);
+            }
+            return result;
+        }
+
+        // Several wide bounds: intersect bitmaps while the next bound is not much wider
+        BitSet bits = bitmap(ordered[0]);
+        int next = 1;
+        while (next < count && candidates > (ordered[next][2] - ordered[next][1]) / BITMAP_RATIO) {
+            bits.and(bitmap(ordered[next]));
+            candidates = bits.cardinality();
+            next++;
+        }
+        for (int food = bits.nextSetBit(0); food >= 0 && result.size() < limit; food = bits.nextSetBit(food + 1)) {
+            if (matches(food, ordered, next, query)) {
+                result.add(foods[food]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @brief Checks the bounds of the runs from index from on, and the meal type
+     */
+    private boolean matches(int food, int[][] ordered, int from, FoodSubstitutionIndex.Query query) {
+        int offset = food * DIMENSIONS;
+        for (int r = from; r < ordered.length; r++) {
+            int d = ordered[r][0];
+            double value = values[offset + d];
+            if (value < query.getMin(d) || value > query.getMax(d)) {
+                return false;
+            }
+        }
+        return matchesMealType(food, query);
+    }
+
+    private boolean matchesMealType(int food, FoodSubstitutionIndex.Query query) {
+        return query.getMealType() == null || query.getMealType().equalsIgnoreCase(mealTypes[food]);
+    }
+
+    private BitSet bitmap(int[] run) {
+        BitSet bits = new BitSet(foods.length);
+        int[] column = sortedFoods[run[0]];
+        for (int i = run[1]; i < run[2]; i++) {
+            bits.set(column[i]);
+        }
+        return bits;
+    }
+
+    /**
+     * @brief Merge sorts food positions by one nutrient without boxing them
+     *
+     * @details The sort is stable, so foods with equal values stay in catalogue order.
+     */
+    private void sortColumn(int[] column, int[] scratch, int from, int to, int d) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sortColumn(column, scratch, from, mid, d);
+        sortColumn(column, scratch, mid, to, d);
+        if (values[column[mid - 1] * DIMENSIONS + d] <= values[column[mid] * DIMENSIONS + d]) {
+            return;
+        }
+        System.arraycopy(column, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid
+                    && values[scratch[left] * DIMENSIONS + d] <= values[scratch[right] * DIMENSIONS + d])) {
+                column[i] = scratch[left++];
+            } else {
+                column[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * @brief Finds the first position whose value is at least min
+     */
+    private static int lowerBound(double[] sorted, double min) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @brief Finds the first position whose value is greater than max
+     */
+    private static int upperBound(double[] sorted, double max) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= max) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
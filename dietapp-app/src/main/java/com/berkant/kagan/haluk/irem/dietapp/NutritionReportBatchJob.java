@@ -0,0 +1,403 @@
+/**
+ * @file NutritionReportBatchJob.java
+ * @brief Parallel batch generation of daily nutrition reports for all users
+ *
+ * @details The NutritionReportBatchJob class produces the daily adherence report of
+ *          every registered user in one run. Users are split into id partitions that
+ *          are processed on a fork/join pool; each worker opens its own read connection
+ *          and aggregates its whole partition with a single set-based query instead of
+ *          calling getNutritionReport once per user. Results are written to the
+ *          daily_nutrition_reports table.
+ *
+ * @author irem
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @class NutritionReportBatchJob
+ * @brief Fork/join job that writes one nutrition report row per user and date
+ *
+ * @details Reads run concurrently on per-worker connections. Writes go through a
+ *          single writer connection, one transaction per partition, because SQLite
+ *          only allows one writer at a time. Users without nutrition goals get the
+ *          same defaults as CalorieNutrientTrackingService.getNutritionGoals.
+ */
+public class NutritionReportBatchJob {
+    /** @brief Default number of users aggregated by one leaf task */
+    public static final int DEFAULT_PARTITION_SIZE = 256;
+
+    private static final int DEFAULT_CALORIE_GOAL = 2000;
+    private static final double DEFAULT_PROTEIN_GOAL = 50;
+    private static final double DEFAULT_CARB_GOAL = 250;
+    private static final double DEFAULT_FAT_GOAL = 70;
+
+    private static final String CREATE_REPORT_TABLE_SQL =
+        "CREATE TABLE IF NOT EXISTS daily_nutrition_reports (" +
+        "user_id INTEGER NOT NULL," +
+        "date TEXT NOT NULL," +
+        "entry_count INTEGER NOT NULL," +
+        "total_calories INTEGER NOT NULL," +
+        "total_protein REAL NOT NULL," +
+        "total_carbs REAL NOT NULL," +
+        "total_fat REAL NOT NULL," +
+        "total_fiber REAL NOT NULL," +
+        "total_sugar REAL NOT NULL," +
+        "total_sodium REAL NOT NULL," +
+        "calorie_goal INTEGER NOT NULL," +
+        "protein_goal REAL NOT NULL," +
+        "carb_goal REAL NOT NULL," +
+        "fat_goal REAL NOT NULL," +
+        "calorie_percentage REAL NOT NULL," +
+        "PRIMARY KEY(user_id, date)," +
+        "FOREIGN KEY(user_id) REFERENCES users(id)" +
+        ");";
+
+    private static final String PARTITION_REPORT_SQL =
+        "SELECT u.id AS user_id, COUNT(fl.id) AS entry_count, " +
+        "COALESCE(SUM(f.calories), 0) AS total_calories, " +
+        "COALESCE(SUM(fn.protein), 0) AS total_protein, " +
+        "COALESCE(SUM(fn.carbs), 0) AS total_carbs, " +
+        "COALESCE(SUM(fn.fat), 0) AS total_fat, " +
+        "COALESCE(SUM(fn.fiber), 0) AS total_fiber, " +
+        "COALESCE(SUM(fn.sugar), 0) AS total_sugar, " +
+        "COALESCE(SUM(fn.sodium), 0) AS total_sodium, " +
+        "g.calorie_goal, g.protein_goal, g.carb_goal, g.fat_goal " +
+        "FROM users u " +
+        "LEFT JOIN food_logs fl ON fl.user_id = u.id AND fl.date = ? " +
+        "LEFT JOIN foods f ON f.id = fl.food_id " +
+        "LEFT JOIN food_nutrients fn ON fn.food_id = f.id " +
+        "LEFT JOIN nutrition_goals g ON g.id = " +
+        "(SELECT MAX(id) FROM nutrition_goals WHERE user_id = u.id) " +
+        "WHERE u.id BETWEEN ? AND ? " +
+        "GROUP BY u.id";
+
+    private static final String UPSERT_REPORT_SQL =
+        "INSERT OR REPLACE INTO daily_nutrition_reports (user_id, date, entry_count, " +
+        "total_calories, total_protein, total_carbs, total_fat, total_fiber, total_sugar, " +
+        "total_sodium, calorie_goal, protein_goal, carb_goal, fat_goal, calorie_percentage) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * @interface ProgressListener
+     * @brief Receives progress updates while the job runs
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @brief Called after each partition has been written
+         * @details May be called from worker threads.
+         *
+         * @param processedUsers Number of users processed so far
+         * @param totalUsers Total number of users in this run
+         */
+        void onProgress(int processedUsers, int totalUsers);
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int parallelism;
+    private final int partitionSize;
+
+    /**
+     * @brief Creates a job on the application database
+     * @details Uses one worker per available processor and DEFAULT_PARTITION_SIZE.
+     */
+    public NutritionReportBatchJob() {
+        this(DatabaseHelper::openDedicatedConnection,
+             Runtime.getRuntime().availableProcessors(), DEFAULT_PARTITION_SIZE);
+    }
+
+    /**
+     * @brief Creates a job with explicit settings
+     *
+     * @param connectionFactory Factory used for the writer and every worker connection
+     * @param parallelism Number of fork/join worker threads
+     * @param partitionSize Maximum number of users aggregated by one leaf task
+     */
+    public NutritionReportBatchJob(ConnectionFactory connectionFactory, int parallelism, int partitionSize) {
+        this.connectionFactory = connectionFactory;
+        this.parallelism = Math.max(1, parallelism);
+        this.partitionSize = Math.max(1, partitionSize);
+    }
+
+    /**
+     * @brief Creates the report table if it does not exist
+     * @details Called by DatabaseHelper when the database is initialized, so readers
+     *          such as AdherenceScoringEngine.DailyRollups work before the first run.
+     *
+     * @param stmt Statement to execute the DDL with
+     * @throws SQLException if the table cannot be created
+     */
+    static void createTables(Statement stmt) throws SQLException {
+        stmt.execute(CREATE_REPORT_TABLE_SQL);
+    }
+
+    /**
+     * @brief Generates the reports of all users for one date
+     *
+     * @param date The date in YYYY-MM-DD format
+     * @param listener Progress listener, may be null
+     * @return Summary of the run including throughput
+     * @throws SQLException if reading or writing the reports fails
+     */
+    public BatchResult run(String date, ProgressListener listener) throws SQLException {
+        if (date == null || date.trim().isEmpty()) {
+            throw new IllegalArgumentException("Date cannot be empty");
+        }
+
+        long start = System.nanoTime();
+        try (Connection writer = connectionFactory.open()) {
+            try (Statement stmt = writer.createStatement()) {
+                createTables(stmt);
+            }
+
+            int[] userIds = loadUserIds(writer);
+            AtomicInteger processed = new AtomicInteger();
+            AtomicInteger written = new AtomicInteger();
+
+            if (userIds.length > 0) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    pool.invoke(new PartitionTask(date, userIds, 0, userIds.length,
+                                                  writer, listener, processed, written));
+                } catch (RuntimeException e) {
+                    // Fork/join may re-wrap worker exceptions, so look down the cause chain
+                    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                        if (cause instanceof SQLException) {
+                            throw (SQLException) cause;
+                        }
+                    }
+                    throw e;
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            long elapsedNanos = System.nanoTime() - start;
+            return new BatchResult(date, processed.get(), written.get(), elapsedNanos);
+        }
+    }
+
+    /**
+     * @brief Loads all user ids in ascending order
+     *
+     * @param conn Connection to read from
+     * @return Sorted array of user ids
+     * @throws SQLException if the query fails
+     */
+    private int[] loadUserIds(Connection conn) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM users ORDER BY id")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @class PartitionTask
+     * @brief Recursive task over a slice of the sorted user id array
+     *
+     * @details Slices larger than the partition size are split in half. A leaf
+     *          aggregates the id range [first, last] with one query on its own
+     *          connection and then writes the rows through the shared writer.
+     */
+    private class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String date;
+        private final int[] userIds;
+        private final int from;
+        private final int to;
+        private final transient Connection writer;
+        private final transient ProgressListener listener;
+        private final AtomicInteger processed;
+        private final AtomicInteger written;
+
+        PartitionTask(String date, int[] userIds, int from, int to, Connection writer,
+                      ProgressListener listener, AtomicInteger processed, AtomicInteger written) {
+            this.date = date;
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.writer = writer;
+            this.listener = listener;
+            this.processed = processed;
+            this.written = written;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > partitionSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PartitionTask(date, userIds, from, mid, writer, listener, processed, written),
+                          new PartitionTask(date, userIds, mid, to, writer, listener, processed, written));
+                return;
+            }
+
+            try {
+                List<Object[]> rows = aggregate();
+                int count = write(rows);
+                written.addAndGet(count);
+                int done = processed.addAndGet(to - from);
+                if (listener != null) {
+                    listener.onProgress(done, userIds.length);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Error generating nutrition reports: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @brief Aggregates the partition on a dedicated read connection
+         * @return One value row per user, in UPSERT_REPORT_SQL parameter order
+         * @throws SQLException if the query fails
+         */
+        private List<Object[]> aggregate() throws SQLException {
+            List<Object[]> rows = new ArrayList<>(to - from);
+            try (Connection conn = connectionFactory.open();
+                 PreparedStatement pstmt = conn.prepareStatement(PARTITION_REPORT_SQL)) {
+                pstmt.setString(1, date);
+                pstmt.setInt(2, userIds[from]);
+                pstmt.setInt(3, userIds[to - 1]);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int calories = rs.getInt("total_calories");
+                        int calorieGoal = rs.getInt("calorie_goal");
+                        boolean hasGoals = !rs.wasNull();
+                        if (!hasGoals) {
+                            calorieGoal = DEFAULT_CALORIE_GOAL;
+                        }
+                        rows.add(new Object[] {
+                            rs.getInt("user_id"),
+                            date,
+                            rs.getInt("entry_count"),
+                            calories,
+                            rs.getDouble("total_protein"),
+                            rs.getDouble("total_carbs"),
+                            rs.getDouble("total_fat"),
+                            rs.getDouble("total_fiber"),
+                            rs.getDouble("total_sugar"),
+                            rs.getDouble("total_sodium"),
+                            calorieGoal,
+                            hasGoals ? rs.getDouble("protein_goal") : DEFAULT_PROTEIN_GOAL,
+                            hasGoals ? rs.getDouble("carb_goal") : DEFAULT_CARB_GOAL,
+                            hasGoals ? rs.getDouble("fat_goal") : DEFAULT_FAT_GOAL,
+                            calorieGoal > 0 ? (double) calories / calorieGoal * 100 : 0.0
+                        });
+                    }
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * @brief Writes the partition rows in one transaction on the writer connection
+         * @param rows Rows produced by aggregate()
+         * @return Number of rows written
+         * @throws SQLException if the write fails
+         */
+        private int write(List<Object[]> rows) throws SQLException {
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            synchronized (writer) {
+                boolean autoCommit = writer.getAutoCommit();
+                writer.setAutoCommit(false);
+                try (PreparedStatement pstmt = writer.prepareStatement(UPSERT_REPORT_SQL)) {
+                    for (Object[] row : rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            pstmt.setObject(i + 1, row[i]);
+                        }
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    writer.commit();
+                } catch (SQLException e) {
+                    writer.rollback();
+                    throw e;
+                } finally {
+                    writer.setAutoCommit(autoCommit);
+                }
+            }
+            return rows.size();
+        }
+    }
+
+    /**
+     * @class BatchResult
+     * @brief Summary and throughput of one batch run
+     */
+    public static class BatchResult {
+        private final String date;
+        private final int usersProcessed;
+        private final int reportsWritten;
+        private final long elapsedNanos;
+
+        /**
+         * @brief Constructor for BatchResult
+         *
+         * @param date Report date
+         * @param usersProcessed Number of users aggregated
+         * @param reportsWritten Number of report rows written
+         * @param elapsedNanos Wall clock duration of the run
+         */
+        public BatchResult(String date, int usersProcessed, int reportsWritten, long elapsedNanos) {
+            this.date = date;
+            this.usersProcessed = usersProcessed;
+            this.reportsWritten = reportsWritten;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** @brief Gets the report date @return Date in YYYY-MM-DD format */
+        public String getDate() {
+            return date;
+        }
+
+        /** @brief Gets the number of users aggregated @return User count */
+        public int getUsersProcessed() {
+            return usersProcessed;
+        }
+
+        /** @brief Gets the number of report rows written @return Row count */
+        public int getReportsWritten() {
+            return reportsWritten;
+        }
+
+        /** @brief Gets the run duration @return Elapsed milliseconds */
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000L;
+        }
+
+        /** @brief Gets the throughput of the run @return Users processed per second */
+        public double getUsersPerSecond() {
+            return elapsedNanos > 0 ? usersProcessed * 1_000_000_000.0 / elapsedNanos : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d users, %d reports for %s in %d ms (%.1f users/sec)",
+                                 usersProcessed, reportsWritten, date, getElapsedMillis(),
+                                 getUsersPerSecond());
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/**
+ * @file PackageCostOptimizer.java
+ * @brief Cheapest package selection covering the quantities of a shopping list
+ *
+ * @details The PackageCostOptimizer class picks, for every ingredient, the
+ *          cheapest combination of the package sizes on sale whose total is at
+ *          least the required quantity, with the least waste among equally cheap
+ *          combinations. Each ingredient is a small bounded covering knapsack:
+ *          quantities are counted in steps of the greatest common divisor of the
+ *          package sizes, package counts are split into powers of two, and one
+ *          table of cents per covered step is filled per ingredient.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @class PackageCostOptimizer
+ * @brief Bounded knapsack per ingredient over package sizes and prices
+ *
+ * @details Quantities and package sizes are canonical amounts in the base unit of
+ *          the ingredient (g, ml or unit). Fractional amounts, such as 2.3 units
+ *          bought loose, are counted in tenths, hundredths or thousandths of the
+ *          base unit, so they are compared exactly; a package holding the whole
+ *          quantity by itself always counts as covering it. Prices are compared
+ *          in whole cents. Instances hold no state and can be shared between
+ *          threads.
+ */
+public class PackageCostOptimizer {
+    /** @brief Package count meaning any number of packages can be bought */
+    public static final int UNLIMITED = -1;
+
+    private static final long INFEASIBLE = Long.MAX_VALUE / 4;
+
+    /** @brief Finest fraction of a base unit that amounts are counted in */
+    private static final long MAX_SCALE = 1000;
+
+    /**
+     * @class PackageOption
+     * @brief One package size of an ingredient on sale
+     */
+    public static class PackageOption {
+        private final double size;
+        private final double price;
+        private final int available;
+
+        /**
+         * @brief Creates a package option without a stock limit
+         *
+         * @param size Package content in the ingredient's base unit
+         * @param price Price of one package
+         */
+        public PackageOption(double size, double price) {
+            this(size, price, UNLIMITED);
+        }
+
+        /**
+         * @brief Creates a package option
+         *
+         * @param size Package content in the ingredient's base unit, must be positive
+         * @param price Price of one package, must not be negative
+         * @param available Number of packages that can be bought, or UNLIMITED
+         */
+        public PackageOption(double size, double price, int available) {
+            if (!(size > 0) || !(price >= 0)) {
+                throw new IllegalArgumentException("Package size must be positive and price not negative");
+            }
+            this.size = size;
+            this.price = price;
+            this.available = available;
+        }
+
+        /** @brief Gets the package content @return Size in the base unit */
+        public double getSize() {
+            return size;
+        }
+
+        /** @brief Gets the package price @return Price of one package */
+        public double getPrice() {
+            return price;
+        }
+
+        /** @brief Gets the stock limit @return Package count, or UNLIMITED */
+        public int getAvailable() {
+            return available;
+        }
+    }
+
+    /**
+     * @class Need
+     * @brief Required quantity of one ingredient and its package options
+     */
+    public static class Need {
+        private final String ingredient;
+        private final double quantity;
+        private final String unit;
+        private final List<PackageOption> options;
+
+        /**
+         * @brief Creates a need
+         *
+         * @param ingredient Ingredient name
+         * @param quantity Required quantity in the base unit
+         * @param unit Base unit, used for display only
+         * @param options Package options; an empty list cannot cover the need
+         */
+        public Need(String ingredient, double quantity, String unit, List<PackageOption> options) {
+            this.ingredient = ingredient;
+            this.quantity = Math.max(0, quantity);
+            this.unit = unit;
+            this.options = options != null ? new ArrayList<>(options) : new ArrayList<>();
+        }
+
+        /** @brief Gets the ingredient name @return Name */
+        public String getIngredient() {
+            return ingredient;
+        }
+
+        /** @brief Gets the required quantity @return Quantity in the base unit */
+        public double getQuantity() {
+            return quantity;
+        }
+
+        /** @brief Gets the base unit @return Unit name */
+        public String getUnit() {
+            return unit;
+        }
+
+        /** @brief Gets the package options @return Options in the given order */
+        public List<PackageOption> getOptions() {
+            return options;
+        }
+    }
+
+    /**
+     * @class Purchase
+     * @brief Packages chosen for one need
+     */
+    public static class Purchase {
+        private final Need need;
+        private final int[] counts;
+        private final double cost;
+        private final double purchased;
+        private final boolean covered;
+
+        Purchase(Need need, int[] counts, boolean covered) {
+            this.need = need;
+            this.counts = counts;
+            this.covered = covered;
+            double totalCost = 0;
+            double totalSize = 0;
+            for (int i = 0; i < counts.length; i++) {
+                totalCost += counts[i] * need.options.get(i).price;
+                totalSize += counts[i] * need.options.get(i).size;
+            }
+            this.cost = totalCost;
+            this.purchased = totalSize;
+        }
+
+        /** @brief Gets the need this purchase covers @return Need */
+        public Need getNeed() {
+            return need;
+        }
+
+        /**
+         * @brief Gets the number of packages bought of an option
+         * @param option Index into the need's options
+         * @return Package count
+         */
+        public int getCount(int option) {
+            return counts[option];
+        }
+
+        /** @brief Gets the price of the chosen packages @return Cost */
+        public double getCost() {
+            return cost;
+        }
+
+        /** @brief Gets the bought quantity @return Quantity in the base unit */
+        public double getPurchasedQuantity() {
+            return purchased;
+        }
+
+        /**
+         * @brief Gets the bought quantity beyond the need
+         * @return Waste in the base unit, 0 if the need is not covered
+         */
+        public double getWaste() {
+            return Math.max(0, purchased - need.quantity);
+        }
+
+        /**
+         * @brief Checks whether the packages cover the need
+         * @return false if the available packages are not enough; then all of
+         *         them are bought
+         */
+        public boolean isCovered() {
+            return covered;
+        }
+    }
+
+    /**
+     * @class Plan
+     * @brief Purchases for a whole shopping list
+     */
+    public static class Plan {
+        private final List<Purchase> purchases;
+        private final double totalCost;
+        private final double totalWaste;
+
+        Plan(List<Purchase> purchases) {
+            this.purchases = Collections.unmodifiableList(purchases);
+            double cost = 0;
+            double waste = 0;
+            for (Purchase purchase : purchases) {
+                cost += purchase.getCost();
+                waste += purchase.getWaste();
+            }
+            this.totalCost = cost;
+            this.totalWaste = waste;
+        }
+
+        /** @brief Gets the purchases @return One purchase per need, in order */
+        public List<Purchase> getPurchases() {
+            return purchases;
+        }
+
+        /** @brief Gets the price of all packages @return Total cost */
+        public double getTotalCost() {
+            return totalCost;
+        }
+
+        /**
+         * @brief Gets the bought quantity beyond the needs
+         * @details Sums base units of different ingredients, so it is only a rough
+         *          measure; see Purchase.getWaste for each ingredient.
+         * @return Total waste
+         */
+        public double getTotalWaste() {
+            return totalWaste;
+        }
+    }
+
+    /**
+     * @brief Chooses packages for every need
+     *
+     * @param needs Required quantities with their package options
+     * @return Plan with one purchase per need
+     */
+    public Plan optimize(List<Need> needs) {
+        List<Purchase> purchases = new ArrayList<>(needs.size());
+        for (Need need : needs) {
+            purchases.add(optimize(need));
+        }
+        return new Plan(purchases);
+    }
+
+    /**
+     * @brief Chooses packages for one need
+     * @details Minimizes cost in cents, then bought quantity.
+     *
+     * @param need Required quantity with its package options
+     * @return Cheapest covering purchase
+     */
+    public Purchase optimize(Need need) {
+        List<PackageOption> options = need.options;
+        int n = options.size();
+        long scale = scale(need);
+        long required = (long) Math.ceil(need.quantity * scale - 1e-6);
+        if (required <= 0) {
+            return new Purchase(need, new int[n], true);
+        }
+
+        // Package sizes in whole scaled units and their common step
+        long[] sizes = new long[n];
+        long step = 0;
+        for (int i = 0; i < n; i++) {
+            double size = options.get(i).size;
+            sizes[i] = Math.max(1, Math.round(size * scale));
+            if (size >= need.quantity - 1e-9) {
+                sizes[i] = Math.max(sizes[i], required);
+            }
+            step = gcd(step, sizes[i]);
+        }
+        if (n == 0 || !canCover(options, sizes, required)) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = Math.max(0, options.get(i).available);
+            }
+            return new Purchase(need, all, false);
+        }
+
+        int target = (int) ((required + step - 1) / step);
+
+        // Split each option's count into packs of 1, 2, 4, ... packages
+        List<int[]> packs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int units = (int) (sizes[i] / step);
+            int needed = (target + units - 1) / units;
+            int count = options.get(i).available == UNLIMITED ? needed
+                                                               : Math.min(needed, options.get(i).available);
+            for (int k = 1; count > 0; k <<= 1) {
+                int take = Math.min(k, count);
+                packs.add(new int[] {i, take});
+                count -= take;
+            }
+        }
+
+        // cost[q]: cents to cover at least q steps; bought[q]: steps bought for it
+        long[] cost = new long[target + 1];
+        long[] bought = new long[target + 1];
+        Arrays.fill(cost, 1, target + 1, INFEASIBLE);
+        boolean[][] taken = new boolean[packs.size()][target + 1];
+        for (int p = 0; p < packs.size(); p++) {
+            int option = packs.get(p)[0];
+            int take = packs.get(p)[1];
+            int packSteps = (int) Math.min(Integer.MAX_VALUE, sizes[option] / step * take);
+            long packCents = Math.round(options.get(option).price * 100) * take;
+            boolean[] packTaken = taken[p];
+            for (int q = target; q > 0; q--) {
+                int rest = Math.max(0, q - packSteps);
+                if (cost[rest] == INFEASIBLE) {
+                    continue;
+                }
+                long candidate = cost[rest] + packCents;
+                long candidateSize = bought[rest] + packSteps;
+                if (candidate < cost[q] || (candidate == cost[q] && candidateSize < bought[q])) {
+                    cost[q] = candidate;
+                    bought[q] = candidateSize;
+                    packTaken[q] = true;
+                }
+            }
+        }
+
+        int[] counts = new int[n];
+        int q = target;
+        for (int p = packs.size() - 1; p >= 0 && q > 0; p--) {
+            if (taken[p][q]) {
+                int option = packs.get(p)[0];
+                int take = packs.get(p)[1];
+                counts[option] += take;
+                q = (int) Math.max(0, q - sizes[option] / step * take);
+            }
+        }
+        return new Purchase(need, counts, true);
+    }
+
+    /**
+     * @brief Finds the smallest power of ten, up to MAX_SCALE, that makes the
+     *        quantity and every package size whole
+     */
+    private static long scale(Need need) {
+        long scale = 1;
+        while (scale < MAX_SCALE && !isWhole(need.quantity * scale)) {
+            scale *= 10;
+        }
+        for (PackageOption option : need.options) {
+            while (scale < MAX_SCALE && !isWhole(option.size * scale)) {
+                scale *= 10;
+            }
+        }
+        return scale;
+    }
+
+    private static boolean isWhole(double value) {
+        return Math.abs(value - Math.rint(value)) < 1e-6;
+    }
+
+    private static boolean canCover(List<PackageOption> options, long[] sizes, long required) {
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (options.get(i).available == UNLIMITED) {
+                return true;
+            }
+            total += sizes[i] * Math.max(0, options.get(i).available);
+            if (total >= required) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * @file Page.java
+ * @brief One page of a keyset-paginated list
+ *
+ * @details The Page class holds the rows returned by the paged service methods,
+ *          such as CalorieNutrientTrackingService.viewFoodEntries(long, int).
+ *          Instead of an offset, each page remembers the key of its last row;
+ *          passing that key back returns the rows after it. The query then seeks
+ *          straight to the key in an index, so the hundredth page costs the same
+ *          as the first, and rows added or removed meanwhile do not shift later
+ *          pages.
+ *
+ * @author berkant
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @class Page
+ * @brief Rows of one page plus the key to continue after them
+ *
+ * @param <T> Type of the rows
+ * @param <K> Type of the key the rows are ordered by
+ */
+public final class Page<T, K> {
+    private final List<T> items;
+    private final K nextKey;
+    private final boolean hasMore;
+
+    /**
+     * @brief Constructor for Page
+     *
+     * @param items Rows of the page
+     * @param nextKey Key of the last row, to pass when asking for the next page
+     * @param hasMore Whether rows follow this page
+     */
+    public Page(List<T> items, K nextKey, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextKey = nextKey;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @brief Gets the rows of the page
+     * @return Unmodifiable list of rows, empty past the last page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @brief Gets the key to continue from
+     * @return Key of the last row, or the key the page was requested after if it is empty
+     */
+    public K getNextKey() {
+        return nextKey;
+    }
+
+    /**
+     * @brief Checks whether another page follows
+     * @return true if rows follow this page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * @brief Checks a requested page size
+     *
+     * @param pageSize Requested number of rows per page
+     * @throws IllegalArgumentException if pageSize is not positive
+     */
+    static void checkPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+    }
+
+    /**
+     * @brief Reads a page from a keyset query
+     * @details The query must be ordered by the key and limited to pageSize + 1
+     *          rows; the extra row only tells whether another page follows.
+     *
+     * @param rs Result of the query
+     * @param pageSize Number of rows per page
+     * @param afterKey Key the page was requested after
+     * @param item Maps a row to a page row
+     * @param key Reads the key of a row
+     * @return The page
+     * @throws SQLException if a column cannot be read
+     */
+    static <T, K> Page<T, K> read(ResultSet rs, int pageSize, K afterKey,
+                                  ResultSetStreams.RowMapper<T> item,
+                                  ResultSetStreams.RowMapper<K> key) throws SQLException {
+        List<T> items = new ArrayList<>(Math.min(pageSize, 1024));
+        K last = afterKey;
+        while (rs.next()) {
+            if (items.size() == pageSize) {
+                return new Page<>(items, last, true);
+            }
+            items.add(item.map(rs));
+            last = key.map(rs);
+        }
+        return new Page<>(items, last, false);
+    }
+}
@@ -11,10 +11,22 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
 import com.berkant.kagan.haluk.irem.dietapp.PersonalizedDietRecommendationService.DietType;
 import com.berkant.kagan.haluk.irem.dietapp.PersonalizedDietRecommendationService.WeightGoal;
 
@@ -37,6 +49,57 @@ public class PersonalizedDietRecommendationService {
     /** @brief Service for meal planning operations */
     private MealPlanningService mealService;
     
+    /** @brief Sampler used to pick meal suggestions below a calorie limit */
+    private CalorieSampler calorieSampler = new CalorieSampler();
+
+    /** @brief Number of days in a weekly plan */
+    private static final int DAYS_PER_WEEK = 7;
+    
+    /** @brief Meal types of a daily plan */
+    private static final String[] MEAL_TYPES = {"Breakfast", "Lunch", "Dinner", "Snack"};
+    
+    /** @brief Share of the daily calories and macros of each meal type */
+    private static final double[] MEAL_SHARES = {0.25, 0.35, 0.30, 0.10};
+    
+    /** @brief Composer choosing foods and portions for each meal of a plan */
+    private MealComposer mealComposer = new MealComposer();
+    
+    /** @brief Nutrient index used to find food substitutes, loaded on first use */
+    private FoodSubstitutionIndex substitutionIndex;
+    
+    /** @brief DatabaseHelper.getFoodDataVersion() when the substitution index was loaded */
+    private long substitutionIndexVersion;
+    
+    /** @brief Nutrient range index over the foods table, loaded on first use */
+    private NutrientRangeIndex rangeIndex;
+    
+    /** @brief DatabaseHelper.getFoodDataVersion() when the range index was loaded */
+    private long rangeIndexVersion;
+    
+    /** @brief Tag indexes of recently filtered option lists, one per meal type in steady use */
+    private final FoodTagIndex[] optionIndexes = new FoodTagIndex[MEAL_TYPES.length];
+    
+    /** @brief Entry of optionIndexes replaced by the next new option list */
+    private int nextOptionIndex;
+    
+    /** @brief Pool the days of a weekly plan and the users of a batch are solved on */
+    private ForkJoinPool weeklyPlanPool = ForkJoinPool.commonPool();
+    
+    /** @brief Health condition rules limiting the nutrients of selected foods */
+    private HealthRuleEngine healthRules = HealthRuleEngine.getDefault();
+    
+    /** @brief Time budget value meaning the composer's own per-meal budget */
+    private static final long NO_TIME_BUDGET = -1;
+    
+    /** @brief Latency of each recommendation stage */
+    private final Map<Stage, LatencyHistogram> stageLatency = new EnumMap<>(Stage.class);
+    
+    /** @brief Most users whose profiles are loaded by one query, bound three times each */
+    private static final int PROFILE_QUERY_CHUNK = 300;
+    
+    /** @brief Loaded diet profiles keyed by username */
+    private final Map<String, UserDietProfile> dietProfiles = new ConcurrentHashMap<>();
+    
     /**
      * @enum DietType
      * @brief Enumeration of available diet types for personalized recommendations
@@ -67,36 +130,60 @@ public class PersonalizedDietRecommendationService {
         GAIN
     }
     
+    /**
+     * @enum Stage
+     * @brief Stages of a recommendation whose latency is recorded
+     * @details SOLVE and GUIDELINES are recorded for every user solved, including
+     *          batches and incremental plans; the other stages for single-user
+     *          generateRecommendations calls.
+     */
+    public enum Stage {
+        /** @brief Reading the user's diet profile */
+        PROFILE,
+        /** @brief Reading the meal options */
+        CANDIDATES,
+        /** @brief Filtering the options for the profile */
+        FILTER,
+        /** @brief Composing the meals */
+        SOLVE,
+        /** @brief Building the dietary guidelines */
+        GUIDELINES,
+        /** @brief The whole request */
+        TOTAL
+    }
+    
     /**
      * @class UserDietProfile
      * @brief Class representing a user's diet preferences and restrictions
+     * @details Instances are immutable so that loaded profiles can be cached and
+     *          shared between recommendation calls.
      */
     public class UserDietProfile {
         /** @brief The type of diet the user follows */
-        private DietType dietType;
+        private final DietType dietType;
         
         /** @brief List of user's health conditions */
-        private List<String> healthConditions;
+        private final List<String> healthConditions;
         
         /** @brief User's weight management goal */
-        private WeightGoal weightGoal;
+        private final WeightGoal weightGoal;
         
         /** @brief List of foods to be excluded from recommendations */
-        private List<String> excludedFoods;
+        private final List<String> excludedFoods;
         
         /**
          * @brief Constructs a new UserDietProfile
          * @param dietType The type of diet
-         * @param healthConditions List of health conditions
+         * @param healthConditions List of health conditions, copied
          * @param weightGoal Weight management goal
-         * @param excludedFoods List of excluded foods
+         * @param excludedFoods List of excluded foods, copied
          */
         public UserDietProfile(DietType dietType, List<String> healthConditions, 
                                WeightGoal weightGoal, List<String> excludedFoods) {
             this.dietType = dietType;
-            this.healthConditions = healthConditions;
+            this.healthConditions = copyOf(healthConditions);
             this.weightGoal = weightGoal;
-            this.excludedFoods = excludedFoods;
+            this.excludedFoods = copyOf(excludedFoods);
         }
         
         /**
@@ -109,7 +196,7 @@ public class PersonalizedDietRecommendationService {
         
         /**
          * @brief Gets the health conditions
-         * @return List of health conditions
+         * @return Unmodifiable list of health conditions
          */
         public List<String> getHealthConditions() {
             return healthConditions;
@@ -125,13 +212,25 @@ public class PersonalizedDietRecommendationService {
         
         /**
          * @brief Gets the excluded foods
-         * @return List of excluded foods
+         * @return Unmodifiable list of excluded foods
          */
         public List<String> getExcludedFoods() {
             return excludedFoods;
         }
     }
 
+    /**
+     * @brief Makes an unmodifiable copy of a profile list
+     * @param values List to copy, may be null
+     * @return Unmodifiable copy, empty for null
+     */
+    private static List<String> copyOf(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
     /**
      * @brief Constructs a new PersonalizedDietRecommendationService
      * @param calorieService Service for tracking calories and nutrients
@@ -141,6 +240,43 @@ public class PersonalizedDietRecommendationService {
         this.connection = DatabaseHelper.getConnection();
         this.calorieService = calorieService;
         this.mealService = mealService;
+        for (Stage stage : Stage.values()) {
+            stageLatency.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @brief Sets the sampler used for meal suggestions
+     * @details Pass a CalorieSampler with a seeded Random to make the suggestions
+     *          of generateRecommendations reproducible.
+     * @param calorieSampler Sampler to use
+     */
+    public void setCalorieSampler(CalorieSampler calorieSampler) {
+        this.calorieSampler = calorieSampler;
+    }
+
+    /**
+     * @brief Sets the composer used to build the meals of a plan
+     * @param mealComposer Composer to use
+     */
+    public void setMealComposer(MealComposer mealComposer) {
+        this.mealComposer = mealComposer;
+    }
+
+    /**
+     * @brief Sets the health condition rules
+     * @param healthRules Rules to filter options and add guidelines with
+     */
+    public void setHealthRules(HealthRuleEngine healthRules) {
+        this.healthRules = healthRules;
+    }
+
+    /**
+     * @brief Sets the fork/join pool used by generateWeeklyPlan and generateRecommendationsBatch
+     * @param weeklyPlanPool Pool to solve the days and users on
+     */
+    public void setWeeklyPlanPool(ForkJoinPool weeklyPlanPool) {
+        this.weeklyPlanPool = weeklyPlanPool;
     }
 
     /**
@@ -191,22 +327,17 @@ public class PersonalizedDietRecommendationService {
         recommendations.add(String.format("Carbohydrate Need: %.0f grams", (dailyCalories * 0.5) / 4));
         recommendations.add(String.format("Fat Need: %.0f grams", (dailyCalories * 0.3) / 9));
 
-        // Get suitable meal recommendations from database
-        String sql = "SELECT name AS meal_name, calories, protein, carbs, fat FROM foods WHERE calories <= ? ORDER BY RANDOM() LIMIT 5";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setDouble(1, dailyCalories / 3); // Maximum calories per meal
-            try (ResultSet rs = stmt.executeQuery()) {
-                recommendations.add("\nRecommended Meals:");
-                while (rs.next()) {
-                    String meal = String.format("%s - Calories: %d, Protein: %.1fg, Carbs: %.1fg, Fat: %.1fg",
-                        rs.getString("meal_name"),
-                        rs.getInt("calories"),
-                        rs.getDouble("protein"),
-                        rs.getDouble("carbs"),
-                        rs.getDouble("fat"));
-                    recommendations.add(meal);
-                }
-            }
+        // Get suitable meal recommendations from the calorie-sorted sampler
+        List<FoodNutrient> meals = calorieSampler.sample(connection, dailyCalories / 3, 5); // Maximum calories per meal
+        recommendations.add("\nRecommended Meals:");
+        for (FoodNutrient food : meals) {
+            String meal = String.format("%s - Calories: %d, Protein: %.1fg, Carbs: %.1fg, Fat: %.1fg",
+                food.getName(),
+                food.getCalories(),
+                food.getProtein(),
+                food.getCarbs(),
+                food.getFat());
+            recommendations.add(meal);
         }
 
         return recommendations;
@@ -295,6 +426,9 @@ public class PersonalizedDietRecommendationService {
         /** @brief Target fat content */
         private int targetFat;
         
+        /** @brief How the foods were chosen, null if they were not composed */
+        private MealComposer.Composition composition;
+        
         /**
          * @brief Constructs a new RecommendedMeal
          * @param mealType Type of meal
@@ -314,6 +448,30 @@ public class PersonalizedDietRecommendationService {
             this.targetFat = targetFat;
         }
         
+        /**
+         * @brief Constructs a new RecommendedMeal from a composition
+         * @param mealType Type of meal
+         * @param composition Composed foods and their distance to the targets
+         * @param targetCalories Target calories
+         * @param targetProtein Target protein
+         * @param targetCarbs Target carbohydrates
+         * @param targetFat Target fat
+         */
+        public RecommendedMeal(String mealType, MealComposer.Composition composition, int targetCalories,
+                             int targetProtein, int targetCarbs, int targetFat) {
+            this(mealType, new ArrayList<>(composition.getFoods()), targetCalories,
+                 targetProtein, targetCarbs, targetFat);
+            this.composition = composition;
+        }
+        
+        /**
+         * @brief Gets the composition the foods were chosen by
+         * @return Portions, totals and deviations from the targets, or null
+         */
+        public MealComposer.Composition getComposition() {
+            return composition;
+        }
+        
         /**
          * @brief Gets the meal type
          * @return Type of meal
@@ -440,8 +598,402 @@ public class PersonalizedDietRecommendationService {
         }
     }
     
+    /**
+     * @class WeeklyPlan
+     * @brief Class representing seven days of recommended meals
+     */
+    public class WeeklyPlan {
+        /** @brief Daily calorie target */
+        private int dailyCalories;
+        
+        /** @brief Daily macronutrient distribution */
+        private MacronutrientDistribution macros;
+        
+        /** @brief Meals of each day, Monday first */
+        private List<List<RecommendedMeal>> days;
+        
+        /** @brief Maximum number of times a food may appear in the week */
+        private int maxRepeatsPerWeek;
+        
+        /** @brief Number of times each food appears in the week, keyed by lower-case name */
+        private Map<String, Integer> foodCounts;
+        
+        /** @brief Number of meals re-composed while merging the days */
+        private int repairedMeals;
+        
+        /**
+         * @brief Constructs a new WeeklyPlan
+         * @param dailyCalories Daily calorie target
+         * @param macros Daily macronutrient distribution
+         * @param days Meals of each day
+         * @param maxRepeatsPerWeek Maximum repeats of a food per week
+         * @param foodCounts Occurrences of each food
+         * @param repairedMeals Number of meals re-composed while merging
+         */
+        public WeeklyPlan(int dailyCalories, MacronutrientDistribution macros, List<List<RecommendedMeal>> days,
+                          int maxRepeatsPerWeek, Map<String, Integer> foodCounts, int repairedMeals) {
+            this.dailyCalories = dailyCalories;
+            this.macros = macros;
+            this.days = days;
+            this.maxRepeatsPerWeek = maxRepeatsPerWeek;
+            this.foodCounts = foodCounts;
+            this.repairedMeals = repairedMeals;
+        }
+        
+        /**
+         * @brief Gets the daily calorie target
+         * @return Daily calories
+         */
+        public int getDailyCalories() {
+            return dailyCalories;
+        }
+        
+        /**
+         * @brief Gets the daily macronutrient distribution
+         * @return Macronutrient distribution
+         */
+        public MacronutrientDistribution getMacros() {
+            return macros;
+        }
+        
+        /**
+         * @brief Gets the meals of all days
+         * @return Seven lists of meals, Monday first
+         */
+        public List<List<RecommendedMeal>> getDays() {
+            return days;
+        }
+        
+        /**
+         * @brief Gets the meals of one day
+         * @param day Day index from 0 to 6
+         * @return Meals of the day
+         */
+        public List<RecommendedMeal> getDay(int day) {
+            return days.get(day);
+        }
+        
+        /**
+         * @brief Gets the maximum number of times a food may appear in the week
+         * @return Maximum repeats per week
+         */
+        public int getMaxRepeatsPerWeek() {
+            return maxRepeatsPerWeek;
+        }
+        
+        /**
+         * @brief Gets how often a food appears in the week
+         * @param foodName Name of the food
+         * @return Number of meals containing the food
+         */
+        public int getFoodCount(String foodName) {
+            Integer count = foodCounts.get(foodName.toLowerCase());
+            return count != null ? count : 0;
+        }
+        
+        /**
+         * @brief Gets the number of meals re-composed while merging the days
+         * @return Repaired meal count
+         */
+        public int getRepairedMeals() {
+            return repairedMeals;
+        }
+    }
+
+    /**
+     * @class UserInput
+     * @brief Body measurements of one user in a recommendation batch
+     */
+    public static class UserInput {
+        /** @brief Username of the user */
+        private final String username;
+        
+        /** @brief User's gender */
+        private final char gender;
+        
+        /** @brief User's age */
+        private final int age;
+        
+        /** @brief User's height in centimeters */
+        private final double heightCm;
+        
+        /** @brief User's weight in kilograms */
+        private final double weightKg;
+        
+        /** @brief User's activity level */
+        private final int activityLevel;
+        
+        /**
+         * @brief Constructs a new UserInput
+         * @param username Username of the user
+         * @param gender User's gender
+         * @param age User's age
+         * @param heightCm User's height in centimeters
+         * @param weightKg User's weight in kilograms
+         * @param activityLevel User's activity level
+         */
+        public UserInput(String username, char gender, int age, double heightCm,
+                         double weightKg, int activityLevel) {
+            this.username = username;
+            this.gender = gender;
+            this.age = age;
+            this.heightCm = heightCm;
+            this.weightKg = weightKg;
+            this.activityLevel = activityLevel;
+        }
+        
+        /**
+         * @brief Gets the username
+         * @return Username of the user
+         */
+        public String getUsername() {
+            return username;
+        }
+        
+        /**
+         * @brief Gets the gender
+         * @return User's gender
+         */
+        public char getGender() {
+            return gender;
+        }
+        
+        /**
+         * @brief Gets the age
+         * @return User's age
+         */
+        public int getAge() {
+            return age;
+        }
+        
+        /**
+         * @brief Gets the height
+         * @return Height in centimeters
+         */
+        public double getHeightCm() {
+            return heightCm;
+        }
+        
+        /**
+         * @brief Gets the weight
+         * @return Weight in kilograms
+         */
+        public double getWeightKg() {
+            return weightKg;
+        }
+        
+        /**
+         * @brief Gets the activity level
+         * @return User's activity level
+         */
+        public int getActivityLevel() {
+            return activityLevel;
+        }
+    }
+
+    /**
+     * @class IncrementalPlan
+     * @brief Daily plan that re-solves single meals against the leftover budget
+     * @details Keeps the filtered options, the daily targets and the running totals
+     *          of every meal. Replacing a meal composes only that slot, targeting the
+     *          daily budget minus what the other meals already provide, so the day
+     *          stays on target without recomposing the other meals.
+     */
+    public class IncrementalPlan {
+        /** @brief Daily calorie target */
+        private final int dailyCalories;
+        
+        /** @brief Daily macronutrient targets */
+        private final MacronutrientDistribution macros;
+        
+        /** @brief Dietary guidelines of the user */
+        private final List<String> guidelines;
+        
+        /** @brief Food options of each slot, indexed like MEAL_TYPES */
+        private final Food[][] options;
+        
+        /** @brief Current meal of each slot */
+        private final RecommendedMeal[] meals;
+        
+        /** @brief Calories, protein, carbs and fat of each slot's meal */
+        private final double[][] mealTotals;
+        
+        /** @brief Sum of mealTotals over all slots */
+        private final double[] planTotals = new double[4];
+        
+        /** @brief Lowercase names of the foods rejected in each slot */
+        private final List<Set<String>> rejected = new ArrayList<>();
+        
+        /**
+         * @brief Constructs an incremental plan from a generated recommendation
+         * @param recommendation Recommendation to start from
+         * @param options Food options the recommendation was composed from
+         */
+        IncrementalPlan(DietRecommendation recommendation, Food[][] options) {
+            this.dailyCalories = recommendation.getDailyCalories();
+            this.macros = recommendation.getMacros();
+            this.guidelines = recommendation.getDietaryGuidelines();
+            this.options = options;
+            this.meals = recommendation.getMeals().toArray(new RecommendedMeal[0]);
+            this.mealTotals = new double[meals.length][];
+            for (int slot = 0; slot < meals.length; slot++) {
+                rejected.add(new HashSet<>());
+                setMeal(slot, meals[slot]);
+            }
+        }
+        
+        /**
+         * @brief Replaces the meal of one slot
+         * @details The foods of the current meal are rejected for this slot, and the
+         *          slot is composed from the remaining options against the daily
+         *          targets minus the totals of the other meals.
+         * @param slot Index of the meal, in MEAL_TYPES order
+         * @return The new meal
+         * @throws IllegalArgumentException if the slot does not exist
+         */
+        public RecommendedMeal replaceMeal(int slot) {
+            if (slot < 0 || slot >= meals.length) {
+                throw new IllegalArgumentException("No meal slot " + slot);
+            }
+            Set<String> slotRejected = rejected.get(slot);
+            for (Food food : meals[slot].getFoods()) {
+                slotRejected.add(food.getName().toLowerCase());
+            }
+            List<Food> remaining = new ArrayList<>(options[slot].length);
+            for (Food food : options[slot]) {
+                if (!slotRejected.contains(food.getName().toLowerCase())) {
+                    remaining.add(food);
+                }
+            }
+            
+            int calories = (int) Math.round(getCalorieBudget(slot));
+            int protein = (int) Math.round(getProteinBudget(slot));
+            int carbs = (int) Math.round(getCarbBudget(slot));
+            int fat = (int) Math.round(getFatBudget(slot));
+            MealComposer.Composition composition = mealComposer.compose(
+                remaining.toArray(new Food[0]), calories, protein, carbs, fat);
+            RecommendedMeal meal = new RecommendedMeal(meals[slot].getMealType(), composition,
+                                                       calories, protein, carbs, fat);
+            setMeal(slot, meal);
+            return meal;
+        }
+        
+        /**
+         * @brief Stores a slot's meal and updates the running totals
+         * @param slot Index of the meal
+         * @param meal New meal of the slot
+         */
+        private void setMeal(int slot, RecommendedMeal meal) {
+            double[] totals = new double[4];
+            MealComposer.Composition composition = meal.getComposition();
+            if (composition != null) {
+                totals[0] = composition.getTotalCalories();
+                totals[1] = composition.getTotalProtein();
+                totals[2] = composition.getTotalCarbs();
+                totals[3] = composition.getTotalFat();
+            } else {
+                for (Food food : meal.getFoods()) {
+                    totals[0] += food.getCalories();
+                    if (food instanceof FoodNutrient) {
+                        totals[1] += ((FoodNutrient) food).getProtein();
+                        totals[2] += ((FoodNutrient) food).getCarbs();
+                        totals[3] += ((FoodNutrient) food).getFat();
+                    }
+                }
+            }
+            for (int i = 0; i < totals.length; i++) {
+                planTotals[i] += totals[i] - (mealTotals[slot] != null ? mealTotals[slot][i] : 0);
+            }
+            mealTotals[slot] = totals;
+            meals[slot] = meal;
+        }
+        
+        /**
+         * @brief Gets the current plan as a recommendation
+         * @return Recommendation holding the current meals
+         */
+        public DietRecommendation getRecommendation() {
+            return new DietRecommendation(dailyCalories, macros, new ArrayList<>(Arrays.asList(meals)), guidelines);
+        }
+        
+        /**
+         * @brief Gets the calories a slot may use
+         * @param slot Index of the meal
+         * @return Daily calorie target minus the calories of the other meals, at least 0
+         */
+        public double getCalorieBudget(int slot) {
+            return budget(dailyCalories, 0, slot);
+        }
+        
+        /**
+         * @brief Gets the protein a slot may use
+         * @param slot Index of the meal
+         * @return Daily protein target minus the protein of the other meals, at least 0
+         */
+        public double getProteinBudget(int slot) {
+            return budget(macros.getProteinGrams(), 1, slot);
+        }
+        
+        /**
+         * @brief Gets the carbohydrates a slot may use
+         * @param slot Index of the meal
+         * @return Daily carb target minus the carbs of the other meals, at least 0
+         */
+        public double getCarbBudget(int slot) {
+            return budget(macros.getCarbGrams(), 2, slot);
+        }
+        
+        /**
+         * @brief Gets the fat a slot may use
+         * @param slot Index of the meal
+         * @return Daily fat target minus the fat of the other meals, at least 0
+         */
+        public double getFatBudget(int slot) {
+            return budget(macros.getFatGrams(), 3, slot);
+        }
+        
+        /**
+         * @brief Gets the calories of the whole plan
+         * @return Sum of the meal calories
+         */
+        public double getTotalCalories() {
+            return planTotals[0];
+        }
+        
+        /**
+         * @brief Gets the protein of the whole plan
+         * @return Sum of the meal protein in grams
+         */
+        public double getTotalProtein() {
+            return planTotals[1];
+        }
+        
+        /**
+         * @brief Gets the carbohydrates of the whole plan
+         * @return Sum of the meal carbs in grams
+         */
+        public double getTotalCarbs() {
+            return planTotals[2];
+        }
+        
+        /**
+         * @brief Gets the fat of the whole plan
+         * @return Sum of the meal fat in grams
+         */
+        public double getTotalFat() {
+            return planTotals[3];
+        }
+        
+        private double budget(double dailyTarget, int nutrient, int slot) {
+            return Math.max(0, dailyTarget - (planTotals[nutrient] - mealTotals[slot][nutrient]));
+        }
+    }
+    
     /**
      * @brief Sets the user's diet profile
+     * @details The profile row and its health condition and excluded food rows are
+     *          written in one transaction, replacing the previous profile of the user.
+     *          The cached profile is updated after the commit.
      * @param username Username of the user
      * @param dietType Type of diet
      * @param healthConditions List of health conditions
@@ -453,9 +1005,32 @@ public class PersonalizedDietRecommendationService {
                                    List<String> healthConditions,
                                    WeightGoal weightGoal,
                                    List<String> excludedFoods) {
+        if (dietType == null || weightGoal == null) {
+            return false;
+        }
         try {
-            // Implement database logic to store user diet profile
-            // This is a stub implementation
+            int userId = getUserId(connection, username);
+            if (userId == -1) {
+                System.out.println("User not found: " + username);
+                return false;
+            }
+            
+            UserDietProfile profile = new UserDietProfile(dietType, healthConditions, weightGoal, excludedFoods);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                int profileId = saveProfileRow(userId, profile);
+                saveProfileValues("health_conditions", "condition_name", profileId, profile.getHealthConditions());
+                saveProfileValues("excluded_foods", "food_name", profileId, profile.getExcludedFoods());
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            
+            dietProfiles.put(username, profile);
             return true;
         } catch (Exception e) {
             System.out.println("Error occurred while updating diet profile: " + e.getMessage());
@@ -463,23 +1038,233 @@ public class PersonalizedDietRecommendationService {
         }
     }
     
+    /**
+     * @brief Updates the user's profile row, inserting it if the user has none
+     * @param userId Id of the user
+     * @param profile Profile to store
+     * @return Id of the profile row, with its child rows deleted
+     * @throws SQLException if database access error occurs
+     */
+    private int saveProfileRow(int userId, UserDietProfile profile) throws SQLException {
+        int profileId = -1;
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                 "SELECT MAX(id) FROM diet_profiles WHERE user_id = ?")) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getObject(1) != null) {
+                    profileId = rs.getInt(1);
+                }
+            }
+        }
+        
+        if (profileId == -1) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                     "INSERT INTO diet_profiles (user_id, diet_type, weight_goal) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, userId);
+                pstmt.setString(2, profile.getDietType().name());
+                pstmt.setString(3, profile.getWeightGoal().name());
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                profileId = rs.getInt(1);
+            }
+        } else {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                     "UPDATE diet_profiles SET diet_type = ?, weight_goal = ? WHERE id = ?")) {
+                pstmt.setString(1, profile.getDietType().name());
+                pstmt.setString(2, profile.getWeightGoal().name());
+                pstmt.setInt(3, profileId);
+                pstmt.executeUpdate();
+            }
+        }
+        
+        // Also clears orphaned rows left under a newly assigned id
+        for (String table : new String[] {"health_conditions", "excluded_foods"}) {
+            try (PreparedStatement pstmt = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE profile_id = ?")) {
+                pstmt.setInt(1, profileId);
+                pstmt.executeUpdate();
+            }
+        }
+        return profileId;
+    }
+    
+    /**
+     * @brief Inserts the child rows of a profile as one batch
+     * @param table Child table to insert into
+     * @param column Column holding the value
+     * @param profileId Id of the profile row
+     * @param values Values to insert
+     * @throws SQLException if database access error occurs
+     */
+    private void saveProfileValues(String table, String column, int profileId,
+                                   List<String> values) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                 "INSERT INTO " + table + " (profile_id, " + column + ") VALUES (?, ?)")) {
+            for (String value : values) {
+                pstmt.setInt(1, profileId);
+                pstmt.setString(2, value);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
     /**
      * @brief Gets the user's diet profile
+     * @details Profiles are cached per user. A miss loads the profile row together
+     *          with its health conditions and excluded foods in a single query.
+     *          Users without a stored profile get the balanced, maintain-weight default.
      * @param username Username of the user
      * @return User's diet profile
      */
     public UserDietProfile getUserDietProfile(String username) {
         try {
-            // Implement database logic to retrieve user diet profile
-            // This is a stub implementation
-            return new UserDietProfile(DietType.BALANCED, new ArrayList<>(), 
-                                  WeightGoal.MAINTAIN, new ArrayList<>());
+            if (username == null) {
+                return new UserDietProfile(DietType.BALANCED, null, WeightGoal.MAINTAIN, null);
+            }
+            UserDietProfile profile = dietProfiles.get(username);
+            if (profile == null) {
+                profile = loadUserDietProfiles(Collections.singletonList(username)).get(username);
+                dietProfiles.putIfAbsent(username, profile);
+            }
+            return profile;
         } catch (Exception e) {
             System.out.println("Error occurred while retrieving diet profile: " + e.getMessage());
             return null;
         }
     }
     
+    /**
+     * @brief Drops the cached diet profile of a user
+     * @details Call after the profile tables were changed other than through
+     *          setUserDietProfile, so the next request reloads the profile.
+     * @param username Username of the user
+     */
+    public void invalidateUserDietProfile(String username) {
+        if (username != null) {
+            dietProfiles.remove(username);
+        }
+    }
+    
+    /**
+     * @brief Gets the diet profiles of many users
+     * @details Cached profiles are reused; the others are loaded with one query per
+     *          PROFILE_QUERY_CHUNK users and added to the cache.
+     * @param usernames Usernames of the users
+     * @return Profiles keyed by username, the default profile for users without one
+     */
+    private Map<String, UserDietProfile> getUserDietProfiles(List<String> usernames) {
+        Map<String, UserDietProfile> profiles = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String username : usernames) {
+            if (username == null || profiles.containsKey(username)) {
+                continue;
+            }
+            UserDietProfile profile = dietProfiles.get(username);
+            profiles.put(username, profile);
+            if (profile == null) {
+                missing.add(username);
+            }
+        }
+        
+        try {
+            for (int from = 0; from < missing.size(); from += PROFILE_QUERY_CHUNK) {
+                List<String> chunk = missing.subList(from, Math.min(missing.size(), from + PROFILE_QUERY_CHUNK));
+                for (Map.Entry<String, UserDietProfile> entry : loadUserDietProfiles(chunk).entrySet()) {
+                    dietProfiles.putIfAbsent(entry.getKey(), entry.getValue());
+                    profiles.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error occurred while retrieving diet profiles: " + e.getMessage());
+        }
+        return profiles;
+    }
+    
+    /**
+     * @brief Loads diet profiles from the database
+     * @details One statement returns the whole profiles: a row for the latest
+     *          profile of each user followed by one row per health condition and
+     *          excluded food. Every branch of the union joins the selected profiles
+     *          itself, so only their child rows are read.
+     * @param usernames Usernames of the users, at most PROFILE_QUERY_CHUNK
+     * @return Stored profiles keyed by username, the default profile for users without one
+     * @throws SQLException if database access error occurs
+     */
+    private Map<String, UserDietProfile> loadUserDietProfiles(List<String> usernames) throws SQLException {
+        StringBuilder in = new StringBuilder("u.username IN (");
+        for (int i = 0; i < usernames.size(); i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+        in.append(")");
+        // Each branch reaches its child rows through idx_*_profile from the selected
+        // profiles only; the first one keeps profiles without any child rows
+        String latestProfiles = "FROM users u " +
+            "JOIN diet_profiles p ON p.id = " +
+            "(SELECT MAX(id) FROM diet_profiles WHERE user_id = u.id) ";
+        String sql =
+            "SELECT u.username, p.diet_type, p.weight_goal, -1 AS kind, 0 AS row_id, NULL AS value " +
+            latestProfiles + "WHERE " + in + " " +
+            "UNION ALL " +
+            "SELECT u.username, p.diet_type, p.weight_goal, 0, h.id, h.condition_name " +
+            latestProfiles + "JOIN health_conditions h ON h.profile_id = p.id WHERE " + in + " " +
+            "UNION ALL " +
+            "SELECT u.username, p.diet_type, p.weight_goal, 1, e.id, e.food_name " +
+            latestProfiles + "JOIN excluded_foods e ON e.profile_id = p.id WHERE " + in + " " +
+            "ORDER BY 1, 4, 5";
+        
+        Map<String, DietType> dietTypes = new HashMap<>();
+        Map<String, WeightGoal> weightGoals = new HashMap<>();
+        Map<String, List<String>> healthConditions = new HashMap<>();
+        Map<String, List<String>> excludedFoods = new HashMap<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            int parameter = 1;
+            for (int branch = 0; branch < 3; branch++) {
+                for (String username : usernames) {
+                    pstmt.setString(parameter++, username);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String username = rs.getString("username");
+                    if (!dietTypes.containsKey(username)) {
+                        dietTypes.put(username, DietType.valueOf(rs.getString("diet_type")));
+                        weightGoals.put(username, WeightGoal.valueOf(rs.getString("weight_goal")));
+                        healthConditions.put(username, new ArrayList<>());
+                        excludedFoods.put(username, new ArrayList<>());
+                    }
+                    int kind = rs.getInt("kind");
+                    String value = rs.getString("value");
+                    if (kind < 0 || value == null) {
+                        continue;
+                    }
+                    if (kind == 0) {
+                        healthConditions.get(username).add(value);
+                    } else {
+                        excludedFoods.get(username).add(value);
+                    }
+                }
+            }
+        }
+        
+        Map<String, UserDietProfile> profiles = new HashMap<>();
+        for (String username : usernames) {
+            if (dietTypes.containsKey(username)) {
+                profiles.put(username, new UserDietProfile(dietTypes.get(username), healthConditions.get(username),
+                                                           weightGoals.get(username), excludedFoods.get(username)));
+            } else {
+                profiles.put(username, new UserDietProfile(DietType.BALANCED, null, WeightGoal.MAINTAIN, null));
+            }
+        }
+        return profiles;
+    }
+    
     /**
      * @brief Generates personalized diet recommendations
      * @param username Username of the user
@@ -493,17 +1278,212 @@ public class PersonalizedDietRecommendationService {
     public DietRecommendation generateRecommendations(String username, char gender, int age, 
                                                   double heightCm, double weightKg, 
                                                   int activityLevel) {
-        // Get user diet profile
-        UserDietProfile profile = getUserDietProfile(username);
+        return recommend(new UserInput(username, gender, age, heightCm, weightKg, activityLevel), NO_TIME_BUDGET);
+    }
+    
+    /**
+     * @brief Generates personalized diet recommendations within a time budget
+     * @details Profile, option and filter stages run to completion; the meals then
+     *          share what is left of the budget, each meal getting an equal part of
+     *          the remainder. A meal whose part runs out gets the best composition
+     *          found so far, so a large catalogue lowers quality instead of raising
+     *          latency.
+     * @param username Username of the user
+     * @param gender User's gender
+     * @param age User's age
+     * @param heightCm User's height in centimeters
+     * @param weightKg User's weight in kilograms
+     * @param activityLevel User's activity level
+     * @param timeBudgetNanos Wall-clock budget of the whole call in nanoseconds
+     * @return Complete diet recommendation
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public DietRecommendation generateRecommendations(String username, char gender, int age,
+                                                  double heightCm, double weightKg,
+                                                  int activityLevel, long timeBudgetNanos) {
+        if (timeBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Time budget must be positive");
+        }
+        return recommend(new UserInput(username, gender, age, heightCm, weightKg, activityLevel), timeBudgetNanos);
+    }
+    
+    /**
+     * @brief Generates the recommendation of one user, recording stage latencies
+     * @param input Measurements of the user
+     * @param timeBudgetNanos Budget of the call, or NO_TIME_BUDGET
+     * @return Complete diet recommendation
+     */
+    private DietRecommendation recommend(UserInput input, long timeBudgetNanos) {
+        long start = System.nanoTime();
         
+        // Get user diet profile
+        UserDietProfile profile = getUserDietProfile(input.getUsername());
         if (profile == null) {
             // Create default profile if none exists
             profile = new UserDietProfile(DietType.BALANCED, new ArrayList<>(), 
                                       WeightGoal.MAINTAIN, new ArrayList<>());
         }
+        long profiled = System.nanoTime();
+        stageLatency.get(Stage.PROFILE).record(profiled - start);
+        
+        Food[][] candidates = {
+            mealService.getBreakfastOptions(),
+            mealService.getLunchOptions(),
+            mealService.getDinnerOptions(),
+            mealService.getSnackOptions()
+        };
+        long fetched = System.nanoTime();
+        stageLatency.get(Stage.CANDIDATES).record(fetched - profiled);
+        
+        Food[][] options = new Food[candidates.length][];
+        for (int slot = 0; slot < candidates.length; slot++) {
+            options[slot] = getAppropriateOptions(candidates[slot], profile);
+        }
+        stageLatency.get(Stage.FILTER).record(System.nanoTime() - fetched);
+        
+        DietRecommendation recommendation = buildRecommendation(input, profile, options, start, timeBudgetNanos);
+        stageLatency.get(Stage.TOTAL).record(System.nanoTime() - start);
+        return recommendation;
+    }
+    
+    /**
+     * @brief Gets the latency histogram of a recommendation stage
+     * @param stage Stage to get
+     * @return Live histogram of the stage
+     */
+    public LatencyHistogram getStageLatency(Stage stage) {
+        return stageLatency.get(stage);
+    }
+    
+    /**
+     * @brief Renders the stage latencies for a metrics scraper
+     * @return Prometheus text exposition of diet_recommendation_stage_seconds
+     */
+    public String scrapeLatencyMetrics() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP diet_recommendation_stage_seconds Latency of diet recommendation stages\n");
+        out.append("# TYPE diet_recommendation_stage_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            stageLatency.get(stage).writePrometheus(out, "diet_recommendation_stage_seconds",
+                                                    "stage=\"" + stage.name().toLowerCase() + "\"");
+        }
+        return out.toString();
+    }
+    
+    /**
+     * @brief Generates diet recommendations for many users at once
+     * @details The meal options are read and tagged once for the whole batch, the
+     *          profiles are read with bulk queries, and users sharing a diet type and
+     *          exclusion list share one filtered option set. The users are then solved
+     *          in parallel on the weekly plan pool.
+     * @param inputs Measurements of each user
+     * @return Recommendations in input order, null for null inputs
+     */
+    public List<DietRecommendation> generateRecommendationsBatch(List<UserInput> inputs) {
+        if (inputs == null || inputs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        List<String> usernames = new ArrayList<>();
+        for (UserInput input : inputs) {
+            if (input != null) {
+                usernames.add(input.getUsername());
+            }
+        }
+        Map<String, UserDietProfile> profiles = getUserDietProfiles(usernames);
+        
+        Food[][] candidates = {
+            mealService.getBreakfastOptions(),
+            mealService.getLunchOptions(),
+            mealService.getDinnerOptions(),
+            mealService.getSnackOptions()
+        };
+        FoodTagIndex[] indexes = new FoodTagIndex[candidates.length];
+        for (int slot = 0; slot < candidates.length; slot++) {
+            indexes[slot] = getOptionIndex(candidates[slot]);
+        }
+        Map<String, Food[][]> optionsByRestriction = new HashMap<>();
+        UserDietProfile[] batchProfiles = new UserDietProfile[inputs.size()];
+        Food[][][] batchOptions = new Food[inputs.size()][][];
+        for (int i = 0; i < inputs.size(); i++) {
+            if (inputs.get(i) == null) {
+                continue;
+            }
+            UserDietProfile profile = profiles.get(inputs.get(i).getUsername());
+            if (profile == null) {
+                profile = new UserDietProfile(DietType.BALANCED, null, WeightGoal.MAINTAIN, null);
+            }
+            batchProfiles[i] = profile;
+            String key = profile.getDietType() + "\n" + String.join("\n", profile.getExcludedFoods())
+                         + "\n\n" + String.join("\n", profile.getHealthConditions());
+            Food[][] options = optionsByRestriction.get(key);
+            if (options == null) {
+                FoodTagIndex.Restriction restriction =
+                    FoodTagIndex.compile(profile.getDietType(), profile.getExcludedFoods());
+                options = new Food[indexes.length][];
+                for (int slot = 0; slot < indexes.length; slot++) {
+                    options[slot] = applyHealthLimits(indexes[slot].filter(candidates[slot], restriction), profile);
+                }
+                optionsByRestriction.put(key, options);
+            }
+            batchOptions[i] = options;
+        }
+        
+        DietRecommendation[] results = new DietRecommendation[inputs.size()];
+        weeklyPlanPool.invoke(new BatchTask(inputs, batchProfiles, batchOptions, results, 0, inputs.size()));
+        return new ArrayList<>(Arrays.asList(results));
+    }
+    
+    /**
+     * @brief Generates a daily plan whose meals can be replaced one at a time
+     * @param username Username of the user
+     * @param gender User's gender
+     * @param age User's age
+     * @param heightCm User's height in centimeters
+     * @param weightKg User's weight in kilograms
+     * @param activityLevel User's activity level
+     * @return Incremental plan holding the generated recommendation
+     */
+    public IncrementalPlan startIncrementalPlan(String username, char gender, int age,
+                                               double heightCm, double weightKg, int activityLevel) {
+        UserDietProfile profile = getUserDietProfile(username);
+        if (profile == null) {
+            profile = new UserDietProfile(DietType.BALANCED, null, WeightGoal.MAINTAIN, null);
+        }
+        Food[][] options = getMealOptions(profile);
+        DietRecommendation recommendation = buildRecommendation(
+            new UserInput(username, gender, age, heightCm, weightKg, activityLevel), profile, options);
+        return new IncrementalPlan(recommendation, options);
+    }
+    
+    /**
+     * @brief Builds the recommendation of one user
+     * @param input Measurements of the user
+     * @param profile User's diet profile
+     * @param options Food options filtered for the profile, indexed like MEAL_TYPES
+     * @return Complete diet recommendation
+     */
+    private DietRecommendation buildRecommendation(UserInput input, UserDietProfile profile, Food[][] options) {
+        return buildRecommendation(input, profile, options, System.nanoTime(), NO_TIME_BUDGET);
+    }
+    
+    /**
+     * @brief Builds the recommendation of one user within a time budget
+     * @param input Measurements of the user
+     * @param profile User's diet profile
+     * @param options Food options filtered for the profile, indexed like MEAL_TYPES
+     * @param start System.nanoTime() the budget started at
+     * @param timeBudgetNanos Budget from start, or NO_TIME_BUDGET
+     * @return Complete diet recommendation
+     */
+    private DietRecommendation buildRecommendation(UserInput input, UserDietProfile profile, Food[][] options,
+                                                   long start, long timeBudgetNanos) {
+        long solveStart = System.nanoTime();
         
         // Calculate suggested calories using calorie service
-        int baseCalories = calorieService.calculateSuggestedCalories(gender, age, heightCm, weightKg, activityLevel);
+        int baseCalories = calorieService.calculateSuggestedCalories(input.getGender(), input.getAge(),
+                                                                     input.getHeightCm(), input.getWeightKg(),
+                                                                     input.getActivityLevel());
         
         // Adjust calories based on weight goal
         int adjustedCalories = adjustCaloriesForWeightGoal(baseCalories, profile.getWeightGoal());
@@ -512,15 +1492,165 @@ public class PersonalizedDietRecommendationService {
         MacronutrientDistribution macros = calculateMacronutrients(adjustedCalories, profile.getDietType());
         
         // Generate meal plan
-        List<RecommendedMeal> meals = generateMealPlan(adjustedCalories, macros, profile);
+        List<RecommendedMeal> meals = generateMealPlan(adjustedCalories, macros, options, start, timeBudgetNanos);
+        long solved = System.nanoTime();
+        stageLatency.get(Stage.SOLVE).record(solved - solveStart);
         
         // Generate dietary guidelines
         List<String> guidelines = generateDietaryGuidelines(profile);
+        stageLatency.get(Stage.GUIDELINES).record(System.nanoTime() - solved);
         
         // Create and return diet recommendation
         return new DietRecommendation(adjustedCalories, macros, meals, guidelines);
     }
     
+    /**
+     * @brief Generates a seven-day plan in which no food repeats too often
+     * @details Every food is granted maxRepeatsPerWeek days of the week, spread evenly,
+     *          so the days can be solved independently on the fork/join pool. The day
+     *          plans are then merged in day order: a meal that came out empty, or that
+     *          would push a food over its weekly limit, is re-composed from foods that
+     *          still have unused repeats. As long as every meal is composed within the
+     *          composer's time budget, the result does not depend on thread timing.
+     * @param username Username of the user
+     * @param gender User's gender
+     * @param age User's age
+     * @param heightCm User's height in centimeters
+     * @param weightKg User's weight in kilograms
+     * @param activityLevel User's activity level
+     * @param maxRepeatsPerWeek Maximum number of meals per week a food may appear in
+     * @return Weekly plan
+     * @throws IllegalArgumentException if maxRepeatsPerWeek is not positive
+     */
+    public WeeklyPlan generateWeeklyPlan(String username, char gender, int age,
+                                         double heightCm, double weightKg,
+                                         int activityLevel, int maxRepeatsPerWeek) {
+        if (maxRepeatsPerWeek <= 0) {
+            throw new IllegalArgumentException("Maximum repeats per week must be positive");
+        }
+        UserDietProfile profile = getUserDietProfile(username);
+        if (profile == null) {
+            profile = new UserDietProfile(DietType.BALANCED, new ArrayList<>(), 
+                                      WeightGoal.MAINTAIN, new ArrayList<>());
+        }
+        
+        int baseCalories = calorieService.calculateSuggestedCalories(gender, age, heightCm, weightKg, activityLevel);
+        int calories = adjustCaloriesForWeightGoal(baseCalories, profile.getWeightGoal());
+        MacronutrientDistribution macros = calculateMacronutrients(calories, profile.getDietType());
+        
+        // Options are read once on this thread; the services are not thread-safe
+        Food[][] options = getMealOptions(profile);
+        WeekContext week = new WeekContext(options, calories, macros, maxRepeatsPerWeek);
+        
+        List<DayTask> tasks = new ArrayList<>(DAYS_PER_WEEK);
+        for (int day = 0; day < DAYS_PER_WEEK; day++) {
+            tasks.add(new DayTask(week, day));
+        }
+        weeklyPlanPool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        
+        List<List<RecommendedMeal>> solved = new ArrayList<>(DAYS_PER_WEEK);
+        for (DayTask task : tasks) {
+            solved.add(task.join());
+        }
+        return week.merge(solved);
+    }
+    
+    /**
+     * @brief Finds foods with a similar nutrient profile
+     * @details Searches a k-d tree over every food's nutrients per 100 g. The index
+     *          is rebuilt when foods have been added or removed since it was loaded.
+     * @param foodName Name of the food to replace
+     * @param count Maximum number of substitutes
+     * @param lowerFat Only return foods with less fat per 100 g
+     * @param sameMealType Only return foods of the same meal type
+     * @return Substitutes, most similar first; empty if the food is unknown
+     * @throws SQLException if the foods table cannot be read
+     */
+    public List<FoodSubstitutionIndex.Substitute> findSubstitutes(String foodName, int count,
+                                                                  boolean lowerFat, boolean sameMealType)
+            throws SQLException {
+        FoodSubstitutionIndex index = getSubstitutionIndex();
+        FoodNutrient reference = index.findByName(foodName);
+        if (reference == null) {
+            return new ArrayList<>();
+        }
+        FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(count);
+        if (lowerFat) {
+            double fatPer100g = reference.getGrams() > 0 ? reference.getFat() * 100.0 / reference.getGrams() : 0;
+            query.atMost(FoodSubstitutionIndex.FAT, Math.nextDown(fatPer100g));
+        }
+        if (sameMealType) {
+            String mealType = index.getMealType(foodName);
+            if (mealType != null) {
+                query.mealType(mealType);
+            }
+        }
+        return index.findNearest(reference, query);
+    }
+    
+    /**
+     * @brief Finds foods similar to a food under custom constraints
+     * @param food Food to replace, which need not be in the database
+     * @param query Number of results and constraints
+     * @return Substitutes, most similar first
+     * @throws SQLException if the foods table cannot be read
+     */
+    public List<FoodSubstitutionIndex.Substitute> findSubstitutes(FoodNutrient food,
+                                                                  FoodSubstitutionIndex.Query query)
+            throws SQLException {
+        return getSubstitutionIndex().findNearest(food, query);
+    }
+    
+    /**
+     * @brief Finds the foods whose nutrients per 100 g lie inside every bound of a query
+     * @details Uses a nutrient range index instead of scanning every food. The most
+     *          selective bound is applied first, so a query such as protein at least
+     *          20 g, calories at most 300 and sodium at most 200 mg only touches the
+     *          foods inside its narrowest bound. The index is rebuilt when foods or
+     *          their nutrients have changed since it was loaded.
+     * @param query Bounds, meal type and maximum number of results
+     * @return Matching foods in the order they were added
+     * @throws SQLException if the foods table cannot be read
+     */
+    public List<FoodNutrient> findFoodsByNutrientRange(FoodSubstitutionIndex.Query query) throws SQLException {
+        return getRangeIndex().find(query);
+    }
+    
+    /**
+     * @brief Gets the substitution index, reloading it if foods were written since
+     * @details Compares DatabaseHelper.getFoodDataVersion(), so checking costs no query.
+     * @return Current substitution index
+     * @throws SQLException if the foods table cannot be read
+     */
+    private synchronized FoodSubstitutionIndex getSubstitutionIndex() throws SQLException {
+        long version = DatabaseHelper.getFoodDataVersion();
+        if (substitutionIndex == null || version != substitutionIndexVersion) {
+            substitutionIndex = FoodSubstitutionIndex.load(connection);
+            substitutionIndexVersion = version;
+        }
+        return substitutionIndex;
+    }
+    
+    /**
+     * @brief Gets the nutrient range index, reloading it if foods were written since
+     * @details Compares DatabaseHelper.getFoodDataVersion(), so checking costs no query.
+     * @return Current range index
+     * @throws SQLException if the foods table cannot be read
+     */
+    private synchronized NutrientRangeIndex getRangeIndex() throws SQLException {
+        long version = DatabaseHelper.getFoodDataVersion();
+        if (rangeIndex == null || version != rangeIndexVersion) {
+            rangeIndex = NutrientRangeIndex.load(connection);
+            rangeIndexVersion = version;
+        }
+        return rangeIndex;
+    }
+    
     /**
      * @brief Adjusts calories based on weight goal
      * @param baseCalories Base calorie requirement
@@ -582,58 +1712,55 @@ public class PersonalizedDietRecommendationService {
     }
     
     /**
-     * @brief Generates a meal plan
+     * @brief Generates a meal plan from already filtered options
      * @param calories Daily calorie target
      * @param macros Macronutrient distribution
-     * @param profile User's diet profile
+     * @param options Food options indexed like MEAL_TYPES
+     * @param start System.nanoTime() the budget started at
+     * @param timeBudgetNanos Budget from start, or NO_TIME_BUDGET
      * @return List of recommended meals
      */
-    private List<RecommendedMeal> generateMealPlan(int calories, MacronutrientDistribution macros, 
-                                             UserDietProfile profile) {
+    private List<RecommendedMeal> generateMealPlan(int calories, MacronutrientDistribution macros,
+                                             Food[][] options, long start, long timeBudgetNanos) {
         List<RecommendedMeal> meals = new ArrayList<>();
         
-        // Calculate calories for each meal
-        int breakfastCalories = (int)(calories * 0.25); // 25% of daily calories
-        int lunchCalories = (int)(calories * 0.35);     // 35% of daily calories
-        int dinnerCalories = (int)(calories * 0.30);    // 30% of daily calories
-        int snackCalories = (int)(calories * 0.10);     // 10% of daily calories
-        
-        // Calculate macros for each meal (proportional to calories)
-        int breakfastProtein = (int)(macros.getProteinGrams() * 0.25);
-        int breakfastCarbs = (int)(macros.getCarbGrams() * 0.25);
-        int breakfastFat = (int)(macros.getFatGrams() * 0.25);
-        
-        int lunchProtein = (int)(macros.getProteinGrams() * 0.35);
-        int lunchCarbs = (int)(macros.getCarbGrams() * 0.35);
-        int lunchFat = (int)(macros.getFatGrams() * 0.35);
-        
-        int dinnerProtein = (int)(macros.getProteinGrams() * 0.30);
-        int dinnerCarbs = (int)(macros.getCarbGrams() * 0.30);
-        int dinnerFat = (int)(macros.getFatGrams() * 0.30);
-        
-        int snackProtein = (int)(macros.getProteinGrams() * 0.10);
-        int snackCarbs = (int)(macros.getCarbGrams() * 0.10);
-        int snackFat = (int)(macros.getFatGrams() * 0.10);
-        
-        // Get food options for each meal type
-        Food[] breakfastOptions = getAppropriateOptions(mealService.getBreakfastOptions(), profile);
-        Food[] lunchOptions = getAppropriateOptions(mealService.getLunchOptions(), profile);
-        Food[] dinnerOptions = getAppropriateOptions(mealService.getDinnerOptions(), profile);
-        Food[] snackOptions = getAppropriateOptions(mealService.getSnackOptions(), profile);
-        
-        // Create meals
-        meals.add(createMealRecommendation("Breakfast", breakfastOptions, 
-                                      breakfastCalories, breakfastProtein, breakfastCarbs, breakfastFat));
-        meals.add(createMealRecommendation("Lunch", lunchOptions, 
-                                      lunchCalories, lunchProtein, lunchCarbs, lunchFat));
-        meals.add(createMealRecommendation("Dinner", dinnerOptions, 
-                                      dinnerCalories, dinnerProtein, dinnerCarbs, dinnerFat));
-        meals.add(createMealRecommendation("Snack", snackOptions, 
-                                      snackCalories, snackProtein, snackCarbs, snackFat));
+        // Each meal gets its share of the daily calories and macros
+        for (int slot = 0; slot < MEAL_TYPES.length; slot++) {
+            int targetCalories = (int)(calories * MEAL_SHARES[slot]);
+            int targetProtein = (int)(macros.getProteinGrams() * MEAL_SHARES[slot]);
+            int targetCarbs = (int)(macros.getCarbGrams() * MEAL_SHARES[slot]);
+            int targetFat = (int)(macros.getFatGrams() * MEAL_SHARES[slot]);
+            if (timeBudgetNanos == NO_TIME_BUDGET) {
+                meals.add(createMealRecommendation(MEAL_TYPES[slot], options[slot], targetCalories,
+                                                   targetProtein, targetCarbs, targetFat));
+            } else {
+                // The remaining meals split what is left of the budget evenly
+                long remaining = timeBudgetNanos - (System.nanoTime() - start);
+                MealComposer.Composition composition = mealComposer.compose(
+                    options[slot], targetCalories, targetProtein, targetCarbs, targetFat,
+                    remaining / (MEAL_TYPES.length - slot));
+                meals.add(new RecommendedMeal(MEAL_TYPES[slot], composition, targetCalories,
+                                              targetProtein, targetCarbs, targetFat));
+            }
+        }
         
         return meals;
     }
     
+    /**
+     * @brief Gets the food options of every meal type, filtered for the profile
+     * @param profile User's diet profile
+     * @return Options indexed like MEAL_TYPES
+     */
+    private Food[][] getMealOptions(UserDietProfile profile) {
+        return new Food[][] {
+            getAppropriateOptions(mealService.getBreakfastOptions(), profile),
+            getAppropriateOptions(mealService.getLunchOptions(), profile),
+            getAppropriateOptions(mealService.getDinnerOptions(), profile),
+            getAppropriateOptions(mealService.getSnackOptions(), profile)
+        };
+    }
+    
     /**
      * @brief Creates a meal recommendation
      * @param mealType Type of meal
@@ -647,23 +1774,223 @@ public class PersonalizedDietRecommendationService {
     private RecommendedMeal createMealRecommendation(String mealType, Food[] options, 
                                                int targetCalories, int targetProtein, 
                                                int targetCarbs, int targetFat) {
-        // Select appropriate foods to meet target calories and macros
-        List<Food> selectedFoods = new ArrayList<>();
+        // Pick foods and portions closest to the calorie and macro targets
+        MealComposer.Composition composition = mealComposer.compose(options, targetCalories,
+                                                                    targetProtein, targetCarbs, targetFat);
+        return new RecommendedMeal(mealType, composition, targetCalories,
+                                targetProtein, targetCarbs, targetFat);
+    }
+    
+    /**
+     * @class WeekContext
+     * @brief Shared, read-only inputs of a weekly plan and its merge step
+     * @details Foods are identified by lower-case name so a food offered for several
+     *          meal types counts once. Food f is granted the days d where
+     *          floor(r * N / 7) changes between r and r + 1, with r = (d + f) mod 7,
+     *          which is exactly N days spread over the week.
+     */
+    private class WeekContext {
+        private final Food[][] options;
+        private final int[][] optionIds;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final String[] names;
+        private final int calories;
+        private final MacronutrientDistribution macros;
+        private final int maxRepeats;
+        
+        WeekContext(Food[][] options, int calories, MacronutrientDistribution macros, int maxRepeats) {
+            this.options = options;
+            this.calories = calories;
+            this.macros = macros;
+            this.maxRepeats = maxRepeats;
+            
+            TreeSet<String> sorted = new TreeSet<>();
+            for (Food[] slotOptions : options) {
+                for (Food food : slotOptions) {
+                    sorted.add(food.getName().toLowerCase());
+                }
+            }
+            names = sorted.toArray(new String[0]);
+            for (int i = 0; i < names.length; i++) {
+                ids.put(names[i], i);
+            }
+            optionIds = new int[options.length][];
+            for (int slot = 0; slot < options.length; slot++) {
+                optionIds[slot] = new int[options[slot].length];
+                for (int i = 0; i < options[slot].length; i++) {
+                    optionIds[slot][i] = idOf(options[slot][i]);
+                }
+            }
+        }
         
-        // Simple food selection (just take first 1-3 items for demo)
-        int totalCalories = 0;
-        int count = 0;
+        int idOf(Food food) {
+            return ids.get(food.getName().toLowerCase());
+        }
         
-        for (Food food : options) {
-            if (count < 3 && totalCalories < targetCalories) {
-                selectedFoods.add(food);
-                totalCalories += food.getCalories();
-                count++;
+        boolean isGranted(int foodId, int day) {
+            if (maxRepeats >= DAYS_PER_WEEK) {
+                return true;
             }
+            int r = (day + foodId) % DAYS_PER_WEEK;
+            return (r + 1) * maxRepeats / DAYS_PER_WEEK != r * maxRepeats / DAYS_PER_WEEK;
         }
         
-        return new RecommendedMeal(mealType, selectedFoods, targetCalories, 
-                                targetProtein, targetCarbs, targetFat);
+        /**
+         * @brief Composes one meal from the options of a slot that pass a filter
+         */
+        RecommendedMeal compose(int slot, IntPredicate allowed) {
+            List<Food> pool = new ArrayList<>();
+            for (int i = 0; i < options[slot].length; i++) {
+                if (allowed.test(optionIds[slot][i])) {
+                    pool.add(options[slot][i]);
+                }
+            }
+            return createMealRecommendation(MEAL_TYPES[slot], pool.toArray(new Food[0]),
+                                            (int)(calories * MEAL_SHARES[slot]),
+                                            (int)(macros.getProteinGrams() * MEAL_SHARES[slot]),
+                                            (int)(macros.getCarbGrams() * MEAL_SHARES[slot]),
+                                            (int)(macros.getFatGrams() * MEAL_SHARES[slot]));
+        }
+        
+        /**
+         * @brief Solves one day from the foods granted to it
+         */
+        List<RecommendedMeal> solveDay(int day) {
+            boolean[] usedToday = new boolean[names.length];
+            List<RecommendedMeal> meals = new ArrayList<>(MEAL_TYPES.length);
+            for (int slot = 0; slot < MEAL_TYPES.length; slot++) {
+                RecommendedMeal meal = compose(slot, id -> !usedToday[id] && isGranted(id, day));
+                for (Food food : meal.getFoods()) {
+                    usedToday[idOf(food)] = true;
+                }
+                meals.add(meal);
+            }
+            return meals;
+        }
+        
+        /**
+         * @brief Merges the day plans in day order, enforcing the weekly limit
+         * @details Foods still planned for later days are reserved, so a repaired meal
+         *          prefers foods that will not push a later day over the limit.
+         */
+        WeeklyPlan merge(List<List<RecommendedMeal>> solved) {
+            int[] counts = new int[names.length];
+            int[] reserved = new int[names.length];
+            for (List<RecommendedMeal> meals : solved) {
+                for (RecommendedMeal meal : meals) {
+                    for (Food food : meal.getFoods()) {
+                        reserved[idOf(food)]++;
+                    }
+                }
+            }
+            
+            List<List<RecommendedMeal>> days = new ArrayList<>(solved.size());
+            int repaired = 0;
+            for (List<RecommendedMeal> planned : solved) {
+                boolean[] usedToday = new boolean[names.length];
+                List<RecommendedMeal> meals = new ArrayList<>(planned.size());
+                for (int slot = 0; slot < planned.size(); slot++) {
+                    RecommendedMeal meal = planned.get(slot);
+                    for (Food food : meal.getFoods()) {
+                        reserved[idOf(food)]--;
+                    }
+                    if (needsRepair(meal, slot, counts, usedToday)) {
+                        meal = compose(slot, id -> !usedToday[id] && counts[id] + reserved[id] < maxRepeats);
+                        if (meal.getFoods().isEmpty()) {
+                            meal = compose(slot, id -> !usedToday[id] && counts[id] < maxRepeats);
+                        }
+                        repaired++;
+                    }
+                    for (Food food : meal.getFoods()) {
+                        int id = idOf(food);
+                        counts[id]++;
+                        usedToday[id] = true;
+                    }
+                    meals.add(meal);
+                }
+                days.add(meals);
+            }
+            
+            Map<String, Integer> foodCounts = new HashMap<>();
+            for (int id = 0; id < names.length; id++) {
+                if (counts[id] > 0) {
+                    foodCounts.put(names[id], counts[id]);
+                }
+            }
+            return new WeeklyPlan(calories, macros, days, maxRepeats, foodCounts, repaired);
+        }
+        
+        private boolean needsRepair(RecommendedMeal meal, int slot, int[] counts, boolean[] usedToday) {
+            if (meal.getFoods().isEmpty()) {
+                return options[slot].length > 0;
+            }
+            for (Food food : meal.getFoods()) {
+                int id = idOf(food);
+                if (usedToday[id] || counts[id] >= maxRepeats) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * @class DayTask
+     * @brief Fork/join task solving one day of a weekly plan
+     */
+    private class DayTask extends RecursiveTask<List<RecommendedMeal>> {
+        private static final long serialVersionUID = 1L;
+        
+        private final WeekContext week;
+        private final int day;
+        
+        DayTask(WeekContext week, int day) {
+            this.week = week;
+            this.day = day;
+        }
+        
+        @Override
+        protected List<RecommendedMeal> compute() {
+            return week.solveDay(day);
+        }
+    }
+
+    /**
+     * @class BatchTask
+     * @brief Fork/join task solving a range of users of a recommendation batch
+     */
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<UserInput> inputs;
+        private final UserDietProfile[] profiles;
+        private final Food[][][] options;
+        private final DietRecommendation[] results;
+        private final int from;
+        private final int to;
+        
+        BatchTask(List<UserInput> inputs, UserDietProfile[] profiles, Food[][][] options,
+                  DietRecommendation[] results, int from, int to) {
+            this.inputs = inputs;
+            this.profiles = profiles;
+            this.options = options;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(inputs, profiles, options, results, from, mid),
+                          new BatchTask(inputs, profiles, options, results, mid, to));
+                return;
+            }
+            if (from < to && inputs.get(from) != null) {
+                results[from] = buildRecommendation(inputs.get(from), profiles[from], options[from]);
+            }
+        }
     }
     
     /**
@@ -673,49 +2000,49 @@ public class PersonalizedDietRecommendationService {
      * @return Filtered food options
      */
     private Food[] getAppropriateOptions(Food[] allOptions, UserDietProfile profile) {
-        List<Food> filteredOptions = new ArrayList<>();
-        
-        for (Food food : allOptions) {
-            boolean isAppropriate = true;
-            String foodName = food.getName().toLowerCase();
-            
-            // Check for excluded foods
-            for (String excludedFood : profile.getExcludedFoods()) {
-                if (foodName.contains(excludedFood.toLowerCase())) {
-                    isAppropriate = false;
-                    break;
-                }
-            }
-            
-            // Check for diet type restrictions
-            if (isAppropriate) {
-                switch (profile.getDietType()) {
-                    case VEGETARIAN:
-                        if (foodName.contains("chicken") || foodName.contains("beef") || 
-                            foodName.contains("fish") || foodName.contains("meat")) {
-                            isAppropriate = false;
-                        }
-                        break;
-                    case VEGAN:
-                        if (foodName.contains("chicken") || foodName.contains("beef") || 
-                            foodName.contains("fish") || foodName.contains("meat") || 
-                            foodName.contains("milk") || foodName.contains("cheese") || 
-                            foodName.contains("egg") || foodName.contains("yogurt")) {
-                            isAppropriate = false;
-                        }
-                        break;
-                    default:
-                        // No additional restrictions for other diet types
-                        break;
+        // Diet type and exclusions compile to a tag mask; foods are tagged once per option list
+        FoodTagIndex.Restriction restriction =
+            FoodTagIndex.compile(profile.getDietType(), profile.getExcludedFoods());
+        if (restriction.getForbiddenTags() == 0 && restriction.getExcludedTerms().isEmpty()) {
+            // Nothing to exclude, so skip tagging the options
+            return applyHealthLimits(allOptions.clone(), profile);
+        }
+        return applyHealthLimits(getOptionIndex(allOptions).filter(allOptions, restriction), profile);
+    }
+    
+    /**
+     * @brief Gets a tag index over an option list
+     * @details The options of each meal type are reloaded on every request but
+     *          rarely change, so an index is reused while a recent list has the same
+     *          names. New lists replace the cached indexes in turn, which keeps one
+     *          index per meal type.
+     * @param options Current options of a meal type
+     * @return Index whose names match the options
+     */
+    private FoodTagIndex getOptionIndex(Food[] options) {
+        synchronized (optionIndexes) {
+            for (FoodTagIndex index : optionIndexes) {
+                if (index != null && index.hasSameNames(options)) {
+                    return index;
                 }
             }
-            
-            if (isAppropriate) {
-                filteredOptions.add(food);
-            }
+            FoodTagIndex index = new FoodTagIndex(options);
+            optionIndexes[nextOptionIndex] = index;
+            nextOptionIndex = (nextOptionIndex + 1) % optionIndexes.length;
+            return index;
         }
-        
-        return filteredOptions.toArray(new Food[0]);
+    }
+    
+    /**
+     * @brief Keeps the options within the nutrient limits of the user's health conditions
+     * @param options Options allowed by the diet type and exclusions
+     * @param profile User's diet profile
+     * @return Options within the limits, or all options if none is
+     */
+    private Food[] applyHealthLimits(Food[] options, UserDietProfile profile) {
+        Food[] limited = healthRules.compile(profile.getHealthConditions()).filter(options);
+        // Limits that leave nothing to choose from are relaxed rather than emptying the meal
+        return limited.length > 0 ? limited : options;
     }
     
     /**
@@ -775,22 +2102,8 @@ public class PersonalizedDietRecommendationService {
                 break;
         }
         
-        // Add health condition specific guidelines
-        for (String condition : profile.getHealthConditions()) {
-            if (condition.toLowerCase().contains("diabetes")) {
-                guidelines.add("Monitor carbohydrate intake and focus on low glycemic index foods.");
-                guidelines.add("Maintain consistent meal timing to help regulate blood sugar levels.");
-                guidelines.add("Limit added sugars and highly processed foods.");
-            } else if (condition.toLowerCase().contains("hypertension")) {
-                guidelines.add("Limit sodium intake to less than 2,300 mg per day.");
-                guidelines.add("Focus on foods rich in potassium, magnesium, and calcium.");
-                guidelines.add("Include foods with heart-healthy omega-3 fatty acids like fatty fish.");
-            } else if (condition.toLowerCase().contains("cholesterol")) {
-                guidelines.add("Limit saturated and trans fats.");
-                guidelines.add("Include foods rich in soluble fiber like oats, beans, and fruits.");
-                guidelines.add("Consider plant sterols and stanols to help lower cholesterol.");
-            }
-        }
+        // Add health condition specific guidelines from the compiled rules
+        guidelines.addAll(healthRules.compile(profile.getHealthConditions()).getGuidelines());
         
         return guidelines;
     }
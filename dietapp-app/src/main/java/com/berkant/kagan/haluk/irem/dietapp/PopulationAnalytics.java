@@ -0,0 +1,301 @@
+/**
+ * @file PopulationAnalytics.java
+ * @brief Sketch-based analytics over all logged foods
+ *
+ * @details The PopulationAnalytics class answers population-wide questions that
+ *          would otherwise need full scans of food_logs: the most logged foods, the
+ *          number of distinct foods per user and overall, and percentiles of the
+ *          calories per logged food. It is fed from MealPlanningService.logFood and
+ *          keeps only fixed-size sketches, which can be saved to disk and merged
+ *          with snapshots from other instances.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @class PopulationAnalytics
+ * @brief Count-min sketch with heavy hitters, HyperLogLog and quantile sketch
+ *
+ * @details Top foods are tracked as a bounded candidate list whose counts come from
+ *          the count-min sketch, so they may be slightly overestimated. Distinct
+ *          counts use one HyperLogLog for all users plus a smaller one per user.
+ *          All public methods are synchronized.
+ */
+public class PopulationAnalytics {
+    /** @brief Default number of heavy hitter candidates kept */
+    public static final int DEFAULT_TOP_K = 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x44504131;
+    private static final int CMS_WIDTH = 2048;
+    private static final int CMS_DEPTH = 5;
+    private static final int GLOBAL_HLL_PRECISION = 12;
+    private static final int USER_HLL_PRECISION = 10;
+    private static final double QUANTILE_ACCURACY = 0.01;
+
+    /** @brief Instance fed by MealPlanningService when no other one is configured */
+    private static final PopulationAnalytics SHARED = new PopulationAnalytics(DEFAULT_TOP_K);
+
+    private final int topK;
+    private final CountMinSketch foodCounts;
+    private final Map<String, Long> heavyHitters = new HashMap<>();
+    private final HyperLogLog distinctFoods;
+    private final Map<String, HyperLogLog> distinctFoodsByUser = new HashMap<>();
+    private final QuantileSketch calorieDistribution;
+
+    /**
+     * @brief Constructor for PopulationAnalytics
+     *
+     * @param topK Number of heavy hitter candidates to keep
+     */
+    public PopulationAnalytics(int topK) {
+        this(topK, new CountMinSketch(CMS_WIDTH, CMS_DEPTH), new HyperLogLog(GLOBAL_HLL_PRECISION),
+             new QuantileSketch(QUANTILE_ACCURACY));
+    }
+
+    /**
+     * @brief Constructor used when restoring snapshots
+     */
+    private PopulationAnalytics(int topK, CountMinSketch foodCounts, HyperLogLog distinctFoods,
+                                QuantileSketch calorieDistribution) {
+        this.topK = Math.max(1, topK);
+        this.foodCounts = foodCounts;
+        this.distinctFoods = distinctFoods;
+        this.calorieDistribution = calorieDistribution;
+    }
+
+    /**
+     * @brief Gets the application-wide instance
+     * @return Shared PopulationAnalytics instance
+     */
+    public static PopulationAnalytics getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @brief Records one logged food
+     *
+     * @param username User who logged the food
+     * @param foodName Name of the food
+     * @param calories Calories of the logged portion
+     */
+    public synchronized void recordFoodLog(String username, String foodName, double calories) {
+        if (foodName == null) {
+            return;
+        }
+        String key = normalize(foodName);
+        foodCounts.add(key, 1);
+        distinctFoods.add(key);
+        if (username != null) {
+            distinctFoodsByUser.computeIfAbsent(username, u -> new HyperLogLog(USER_HLL_PRECISION)).add(key);
+        }
+        calorieDistribution.add(calories);
+        offerHeavyHitter(key, foodCounts.estimate(key));
+    }
+
+    /**
+     * @brief Gets the most logged foods
+     *
+     * @param limit Maximum number of foods to return
+     * @return Food names with estimated log counts, most logged first
+     */
+    public synchronized List<Map.Entry<String, Long>> getTopFoods(int limit) {
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+        result.sort((a, b) -> {
+            int byCount = Long.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+        });
+        return result.size() > limit ? new ArrayList<>(result.subList(0, Math.max(0, limit))) : result;
+    }
+
+    /**
+     * @brief Estimates how often a food has been logged
+     *
+     * @param foodName Name of the food
+     * @return Estimated log count, never lower than the true count
+     */
+    public synchronized long estimateFoodCount(String foodName) {
+        return foodName != null ? foodCounts.estimate(normalize(foodName)) : 0;
+    }
+
+    /**
+     * @brief Estimates the number of distinct foods logged by all users
+     * @return Estimated distinct food count
+     */
+    public synchronized long estimateDistinctFoods() {
+        return distinctFoods.estimate();
+    }
+
+    /**
+     * @brief Estimates the number of distinct foods logged by one user
+     *
+     * @param username The username of the user
+     * @return Estimated distinct food count, 0 for unknown users
+     */
+    public synchronized long estimateDistinctFoods(String username) {
+        HyperLogLog sketch = distinctFoodsByUser.get(username);
+        return sketch != null ? sketch.estimate() : 0;
+    }
+
+    /**
+     * @brief Gets an approximate percentile of calories per logged food
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return Approximate calories at the percentile, within 1% relative error
+     */
+    public synchronized double getCaloriePercentile(double percentile) {
+        return calorieDistribution.getQuantile(percentile / 100.0);
+    }
+
+    /**
+     * Gets the total number of food logs recorded.
+     * @return Log count
+     */
+    public synchronized long getTotalLogs() {
+        return foodCounts.getTotalCount();
+    }
+
+    /**
+     * @brief Merges another snapshot into this one
+     * @details Sketches are merged component-wise. Heavy hitter candidates of both
+     *          sides are re-estimated against the merged count-min sketch.
+     *
+     * @param other Analytics snapshot to merge in
+     */
+    public void merge(PopulationAnalytics other) {
+        if (other == this) {
+            return;
+        }
+        // Lock both instances in a fixed order so concurrent a.merge(b) and b.merge(a) cannot deadlock
+        boolean thisFirst = System.identityHashCode(this) <= System.identityHashCode(other);
+        Object first = thisFirst ? this : other;
+        Object second = thisFirst ? other : this;
+        synchronized (first) {
+            synchronized (second) {
+                foodCounts.merge(other.foodCounts);
+                distinctFoods.merge(other.distinctFoods);
+                for (Map.Entry<String, HyperLogLog> entry : other.distinctFoodsByUser.entrySet()) {
+                    distinctFoodsByUser.computeIfAbsent(entry.getKey(), u -> new HyperLogLog(USER_HLL_PRECISION))
+                                       .merge(entry.getValue());
+                }
+                calorieDistribution.merge(other.calorieDistribution);
+
+                Set<String> candidates = new HashSet<>(other.heavyHitters.keySet());
+                candidates.addAll(heavyHitters.keySet());
+                heavyHitters.clear();
+                for (String key : candidates) {
+                    offerHeavyHitter(key, foodCounts.estimate(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Saves a snapshot of all sketches to a file
+     *
+     * @param file File to write
+     * @throws IOException if writing fails
+     */
+    public synchronized void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(topK);
+            foodCounts.writeTo(out);
+            distinctFoods.writeTo(out);
+            calorieDistribution.writeTo(out);
+            out.writeInt(heavyHitters.size());
+            for (String key : heavyHitters.keySet()) {
+                out.writeUTF(key);
+            }
+            out.writeInt(distinctFoodsByUser.size());
+            for (Map.Entry<String, HyperLogLog> entry : distinctFoodsByUser.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * @brief Loads a snapshot written by save
+     *
+     * @param file File to read
+     * @return The restored analytics
+     * @throws IOException if reading fails or the file is not a snapshot
+     */
+    public static PopulationAnalytics load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a population analytics snapshot: " + file);
+            }
+            int topK = in.readInt();
+            PopulationAnalytics analytics = new PopulationAnalytics(topK, CountMinSketch.readFrom(in),
+                    HyperLogLog.readFrom(in), QuantileSketch.readFrom(in));
+            int candidates = in.readInt();
+            for (int i = 0; i < candidates; i++) {
+                String key = in.readUTF();
+                analytics.heavyHitters.put(key, analytics.foodCounts.estimate(key));
+            }
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                analytics.distinctFoodsByUser.put(in.readUTF(), HyperLogLog.readFrom(in));
+            }
+            return analytics;
+        }
+    }
+
+    /**
+     * @brief Updates the heavy hitter candidates with a new estimate for a key
+     * @details Keeps at most topK candidates; a new key replaces the current minimum
+     *          only if its estimate is larger.
+     */
+    private void offerHeavyHitter(String key, long estimate) {
+        if (heavyHitters.containsKey(key) || heavyHitters.size() < topK) {
+            heavyHitters.put(key, estimate);
+            return;
+        }
+        String minKey = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+            if (entry.getValue() < minCount) {
+                minCount = entry.getValue();
+                minKey = entry.getKey();
+            }
+        }
+        if (estimate > minCount) {
+            heavyHitters.remove(minKey);
+            heavyHitters.put(key, estimate);
+        }
+    }
+
+    /**
+     * @brief Normalizes food names so case and surrounding spaces do not split counts
+     */
+    private static String normalize(String foodName) {
+        return foodName.trim().toLowerCase(Locale.ROOT);
+    }
+}
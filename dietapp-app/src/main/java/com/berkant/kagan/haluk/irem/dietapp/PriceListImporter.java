@@ -0,0 +1,322 @@
+/**
+ * @file PriceListImporter.java
+ * @brief Streaming CSV import of ingredient prices into versioned snapshots
+ *
+ * @details The PriceListImporter class reads a price list of name,price rows
+ *          line by line and writes it in one transaction on its own connection:
+ *          every row upserts the current price in the ingredients table and
+ *          records the price under a new price_snapshots version. Statements are
+ *          sent in batches, so a list of tens of thousands of rows costs a few
+ *          dozen round trips. Snapshots are never changed after their import
+ *          commits, and with WAL journaling readers keep using the previous
+ *          snapshot while an import is running.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+/**
+ * @class PriceListImporter
+ * @brief Batched, transactional importer of CSV price lists
+ *
+ * @details The CSV has one ingredient per line: name,price. A first line whose
+ *          price column is not a number is treated as a header. Names may be
+ *          quoted with double quotes, doubling quotes inside. Blank lines are
+ *          ignored; lines without a name or with a negative or unparsable price
+ *          are counted as skipped. When a name occurs twice the last price wins.
+ */
+public class PriceListImporter {
+    /** @brief Default number of rows sent per batch */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final String CREATE_SNAPSHOTS_SQL =
+        "CREATE TABLE IF NOT EXISTS price_snapshots (" +
+        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+        "source TEXT," +
+        "created_at TEXT NOT NULL," +
+        "row_count INTEGER NOT NULL DEFAULT 0" +
+        ");";
+
+    private static final String CREATE_PRICES_SQL =
+        "CREATE TABLE IF NOT EXISTS ingredient_prices (" +
+        "snapshot_id INTEGER NOT NULL," +
+        "ingredient_id INTEGER NOT NULL," +
+        "price REAL NOT NULL," +
+        "PRIMARY KEY(snapshot_id, ingredient_id)," +
+        "FOREIGN KEY(snapshot_id) REFERENCES price_snapshots(id)," +
+        "FOREIGN KEY(ingredient_id) REFERENCES ingredients(id)" +
+        ") WITHOUT ROWID;";
+
+    /** @brief Finds the newest price of an ingredient up to a snapshot */
+    private static final String CREATE_PRICES_INDEX_SQL =
+        "CREATE INDEX IF NOT EXISTS idx_ingredient_prices_ingredient " +
+        "ON ingredient_prices(ingredient_id, snapshot_id);";
+
+    private static final String UPSERT_INGREDIENT_SQL =
+        "INSERT INTO ingredients (name, price) VALUES (?, ?) " +
+        "ON CONFLICT(name) DO UPDATE SET price = excluded.price";
+
+    private static final String INSERT_SNAPSHOT_PRICE_SQL =
+        "INSERT INTO ingredient_prices (snapshot_id, ingredient_id, price) " +
+        "SELECT ?, id, ? FROM ingredients WHERE name = ? " +
+        "ON CONFLICT(snapshot_id, ingredient_id) DO UPDATE SET price = excluded.price";
+
+    private final ConnectionFactory connectionFactory;
+    private final int batchSize;
+
+    /**
+     * @brief Creates an importer on the application database
+     * @details Uses a dedicated connection per import and DEFAULT_BATCH_SIZE.
+     */
+    public PriceListImporter() {
+        this(DatabaseHelper::openDedicatedConnection, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @brief Creates an importer with explicit settings
+     *
+     * @param connectionFactory Opens the connection an import writes through; it is
+     *                          closed when the import ends
+     * @param batchSize Number of rows sent per batch
+     */
+    public PriceListImporter(ConnectionFactory connectionFactory, int batchSize) {
+        this.connectionFactory = connectionFactory;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @brief Creates the snapshot tables if they do not exist
+     *
+     * @param stmt Statement to execute the DDL with
+     * @throws SQLException if a table cannot be created
+     */
+    static void createTables(Statement stmt) throws SQLException {
+        stmt.execute(CREATE_SNAPSHOTS_SQL);
+        stmt.execute(CREATE_PRICES_SQL);
+        stmt.execute(CREATE_PRICES_INDEX_SQL);
+    }
+
+    /**
+     * @brief Imports a price list as a new snapshot
+     * @details The rows are streamed from the reader; only one batch is held in
+     *          memory. Nothing is visible to other connections until the whole
+     *          list has been written, and a failure rolls everything back.
+     *
+     * @param in CSV source, read to the end but not closed
+     * @param source Description of the list stored with the snapshot, may be null
+     * @return Summary with the new snapshot id
+     * @throws IOException if the source cannot be read
+     * @throws SQLException if writing the prices fails
+     */
+    public ImportResult importCsv(Reader in, String source) throws IOException, SQLException {
+        if (in == null) {
+            throw new IllegalArgumentException("Price list cannot be null");
+        }
+
+        long start = System.nanoTime();
+        try (Connection conn = connectionFactory.open()) {
+            try (Statement stmt = conn.createStatement()) {
+                createTables(stmt);
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                int snapshotId = createSnapshot(conn, source);
+                int imported = 0;
+                int skipped = 0;
+                int pending = 0;
+
+                try (PreparedStatement upsert = conn.prepareStatement(UPSERT_INGREDIENT_SQL);
+                     PreparedStatement snapshotPrice = conn.prepareStatement(INSERT_SNAPSHOT_PRICE_SQL)) {
+                    BufferedReader reader = new BufferedReader(in);
+                    String line;
+                    boolean first = true;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.trim().isEmpty()) {
+                            continue;
+                        }
+                        String[] fields = parseLine(line);
+                        double price = parsePrice(fields);
+                        if (first) {
+                            first = false;
+                            if (Double.isNaN(price)) {
+                                continue; // header
+                            }
+                        }
+                        String name = fields[0].trim();
+                        if (name.isEmpty() || Double.isNaN(price) || price < 0) {
+                            skipped++;
+                            continue;
+                        }
+
+                        upsert.setString(1, name);
+                        upsert.setDouble(2, price);
+                        upsert.addBatch();
+                        snapshotPrice.setInt(1, snapshotId);
+                        snapshotPrice.setDouble(2, price);
+                        snapshotPrice.setString(3, name);
+                        snapshotPrice.addBatch();
+                        imported++;
+
+                        if (++pending == batchSize) {
+                            upsert.executeBatch();
+                            snapshotPrice.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        upsert.executeBatch();
+                        snapshotPrice.executeBatch();
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE price_snapshots SET row_count = ? WHERE id = ?")) {
+                    pstmt.setInt(1, imported);
+                    pstmt.setInt(2, snapshotId);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                ShoppingListTotals.recipeDataChanged();
+                return new ImportResult(snapshotId, imported, skipped, System.nanoTime() - start);
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @brief Gets the most recent snapshot
+     *
+     * @param conn Connection to read from
+     * @return Snapshot id, -1 if no price list was imported yet
+     * @throws SQLException if the query fails
+     */
+    public static int getLatestSnapshotId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM price_snapshots")) {
+            if (rs.next()) {
+                int id = rs.getInt(1);
+                return rs.wasNull() ? -1 : id;
+            }
+            return -1;
+        }
+    }
+
+    private int createSnapshot(Connection conn, String source) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO price_snapshots (source, created_at) VALUES (?, ?)")) {
+            pstmt.setString(1, source);
+            pstmt.setString(2, LocalDateTime.now().withNano(0).toString());
+            pstmt.executeUpdate();
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * @brief Splits a CSV line into name and price fields
+     * @return Two fields; the price field is empty if the line has no comma
+     */
+    static String[] parseLine(String line) {
+        int i = 0;
+        StringBuilder name = new StringBuilder();
+        while (i < line.length() && line.charAt(i) == ' ') {
+            i++;
+        }
+        if (i < line.length() && line.charAt(i) == '"') {
+            i++;
+            while (i < line.length()) {
+                char c = line.charAt(i++);
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        name.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                } else {
+                    name.append(c);
+                }
+            }
+            int comma = line.indexOf(',', i);
+            return new String[] {name.toString(), comma < 0 ? "" : line.substring(comma + 1)};
+        }
+        int comma = line.lastIndexOf(',');
+        if (comma < 0) {
+            return new String[] {line, ""};
+        }
+        return new String[] {line.substring(0, comma), line.substring(comma + 1)};
+    }
+
+    private static double parsePrice(String[] fields) {
+        try {
+            return Double.parseDouble(fields[1].trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @class ImportResult
+     * @brief Summary of one price list import
+     */
+    public static class ImportResult {
+        private final int snapshotId;
+        private final int importedRows;
+        private final int skippedRows;
+        private final long elapsedNanos;
+
+        /**
+         * @brief Constructor for ImportResult
+         *
+         * @param snapshotId Id of the snapshot written by the import
+         * @param importedRows Number of price rows written
+         * @param skippedRows Number of malformed rows
+         * @param elapsedNanos Wall clock duration of the import
+         */
+        public ImportResult(int snapshotId, int importedRows, int skippedRows, long elapsedNanos) {
+            this.snapshotId = snapshotId;
+            this.importedRows = importedRows;
+            this.skippedRows = skippedRows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** @brief Gets the snapshot id @return Id of the new snapshot */
+        public int getSnapshotId() {
+            return snapshotId;
+        }
+
+        /** @brief Gets the number of imported rows @return Row count */
+        public int getImportedRows() {
+            return importedRows;
+        }
+
+        /** @brief Gets the number of skipped rows @return Row count */
+        public int getSkippedRows() {
+            return skippedRows;
+        }
+
+        /** @brief Gets the duration of the import @return Nanoseconds */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
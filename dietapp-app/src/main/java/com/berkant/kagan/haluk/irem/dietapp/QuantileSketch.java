@@ -0,0 +1,209 @@
+/**
+ * @file QuantileSketch.java
+ * @brief Mergeable quantile sketch with relative error guarantees
+ *
+ * @details The QuantileSketch class stores non-negative values in logarithmically
+ *          sized buckets, so any reported quantile is within the configured relative
+ *          accuracy of the true value. Memory grows with the logarithm of the value
+ *          range rather than with the number of values, and two sketches with the
+ *          same accuracy merge by adding bucket counts.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @class QuantileSketch
+ * @brief Log-bucketed histogram for approximate percentiles
+ *
+ * @details Bucket i covers (gamma^(i-1), gamma^i] with gamma = (1 + a) / (1 - a)
+ *          for relative accuracy a. Values less than or equal to zero are kept in
+ *          a separate zero bucket. Instances are not thread-safe.
+ */
+public class QuantileSketch {
+    /** @brief Relative accuracy of reported quantiles */
+    private final double relativeAccuracy;
+    /** @brief Ratio between consecutive bucket bounds */
+    private final double gamma;
+    /** @brief 1 / ln(gamma), used to map values to buckets */
+    private final double multiplier;
+
+    /** @brief Bucket counts, counts[i] holds bucket minIndex + i */
+    private long[] counts = new long[0];
+    /** @brief Bucket index of counts[0] */
+    private int minIndex;
+    /** @brief Number of values less than or equal to zero */
+    private long zeroCount;
+    /** @brief Number of values added */
+    private long count;
+
+    /**
+     * @brief Constructor for QuantileSketch
+     *
+     * @param relativeAccuracy Relative accuracy between 0 and 1, for example 0.01
+     * @throws IllegalArgumentException if the accuracy is out of range
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+    }
+
+    /**
+     * @brief Adds a value to the sketch
+     *
+     * @param value Value to add, values less than or equal to zero count as zero
+     */
+    public void add(double value) {
+        addToBucket(value, 1);
+    }
+
+    /**
+     * @brief Gets the approximate value at a quantile
+     *
+     * @param quantile Quantile between 0 and 1, for example 0.5 for the median
+     * @return Approximate value, or 0 if the sketch is empty
+     * @throws IllegalArgumentException if the quantile is out of range
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return bucketValue(minIndex + i);
+            }
+        }
+        return bucketValue(minIndex + counts.length - 1);
+    }
+
+    /**
+     * @brief Adds all values of another sketch to this one
+     *
+     * @param other Sketch with the same relative accuracy
+     * @throws IllegalArgumentException if the accuracies differ
+     */
+    public void merge(QuantileSketch other) {
+        if (Double.compare(other.relativeAccuracy, relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy");
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                addToIndex(other.minIndex + i, other.counts[i]);
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.zeroCount;
+    }
+
+    /**
+     * Gets the number of values added.
+     * @return Value count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the relative accuracy of the sketch.
+     * @return Relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @brief Writes the sketch to a stream
+     *
+     * @param out Stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeDouble(relativeAccuracy);
+        out.writeLong(zeroCount);
+        out.writeInt(minIndex);
+        out.writeInt(counts.length);
+        for (long value : counts) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * @brief Reads a sketch written by writeTo
+     *
+     * @param in Stream to read from
+     * @return The restored sketch
+     * @throws IOException if reading fails
+     */
+    public static QuantileSketch readFrom(DataInputStream in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readDouble());
+        sketch.zeroCount = in.readLong();
+        sketch.count = sketch.zeroCount;
+        sketch.minIndex = in.readInt();
+        sketch.counts = new long[in.readInt()];
+        for (int i = 0; i < sketch.counts.length; i++) {
+            sketch.counts[i] = in.readLong();
+            sketch.count += sketch.counts[i];
+        }
+        return sketch;
+    }
+
+    /**
+     * @brief Adds occurrences of a value to its bucket
+     */
+    private void addToBucket(double value, long occurrences) {
+        if (value <= 0 || Double.isNaN(value)) {
+            zeroCount += occurrences;
+            count += occurrences;
+            return;
+        }
+        addToIndex((int) Math.ceil(Math.log(value) * multiplier), occurrences);
+    }
+
+    /**
+     * @brief Adds occurrences to a bucket index, growing the bucket array as needed
+     */
+    private void addToIndex(int index, long occurrences) {
+        if (counts.length == 0) {
+            counts = new long[16];
+            minIndex = index;
+        } else if (index < minIndex) {
+            int shift = minIndex - index;
+            long[] grown = new long[counts.length + shift];
+            System.arraycopy(counts, 0, grown, shift, counts.length);
+            counts = grown;
+            minIndex = index;
+        } else if (index - minIndex >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, index - minIndex + 1));
+        }
+        counts[index - minIndex] += occurrences;
+        count += occurrences;
+    }
+
+    /**
+     * @brief Representative value of a bucket, within relativeAccuracy of any value in it
+     */
+    private double bucketValue(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * @file ResultSetStreams.java
+ * @brief Cursor-backed streams over JDBC result sets
+ *
+ * @details The ResultSetStreams class turns an open PreparedStatement into a lazily
+ *          evaluated java.util.stream.Stream. Rows are mapped one at a time while the
+ *          caller consumes the stream, so exports over very large tables run in
+ *          constant memory instead of materializing a full List first.
+ *
+ * @author berkant
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @class ResultSetStreams
+ * @brief Utility for building closeable streams backed by a live ResultSet
+ *
+ * @details The returned stream owns the statement and its result set. Callers must
+ *          close the stream (ideally with try-with-resources) once they are done;
+ *          closing releases the JDBC resources and runs the supplied close hook,
+ *          which services use to hand pooled connections back to DatabaseHelper.
+ */
+public final class ResultSetStreams {
+    /** @brief Fetch size used when the caller does not request a specific one */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /**
+     * @interface RowMapper
+     * @brief Maps the current row of a ResultSet to an object
+     *
+     * @param <T> Type produced for each row
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        /**
+         * @brief Maps the row the cursor is positioned on
+         * @param rs Result set positioned on a valid row
+         * @return Object built from the row
+         * @throws SQLException if a column cannot be read
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * @brief Private constructor to prevent instantiation
+     */
+    private ResultSetStreams() {
+    }
+
+    /**
+     * @brief Executes a prepared query and exposes its rows as a stream
+     * @details Applies the fetch size, executes the statement and wraps the cursor in
+     *          a sequential, ordered stream. If the query itself fails, the statement
+     *          is closed and the close hook runs before the exception is rethrown.
+     *          SQL errors raised while iterating are wrapped in a RuntimeException.
+     *
+     * @param stmt Prepared statement with all parameters already bound
+     * @param fetchSize Number of rows the driver should fetch per round trip (values
+     *                  less than or equal to zero select DEFAULT_FETCH_SIZE)
+     * @param mapper Mapper applied to each row
+     * @param onClose Hook run after the statement is closed, may be null
+     * @param <T> Type produced for each row
+     * @return Stream that must be closed by the caller
+     * @throws SQLException if the query cannot be executed
+     */
+    public static <T> Stream<T> stream(PreparedStatement stmt, int fetchSize,
+                                       RowMapper<T> mapper, Runnable onClose) throws SQLException {
+        ResultSet rs;
+        try {
+            stmt.setFetchSize(fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(null, stmt, onClose);
+            throw e;
+        }
+
+        final ResultSet cursor = rs;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Error reading result row: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeQuietly(cursor, stmt, onClose));
+    }
+
+    /**
+     * @brief Closes the cursor and statement, then runs the close hook
+     *
+     * @param rs Result set to close, may be null
+     * @param stmt Statement to close, may be null
+     * @param onClose Hook to run last, may be null
+     */
+    private static void closeQuietly(ResultSet rs, PreparedStatement stmt, Runnable onClose) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not close result set: " + e.getMessage());
+        }
+        try {
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not close statement: " + e.getMessage());
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+}
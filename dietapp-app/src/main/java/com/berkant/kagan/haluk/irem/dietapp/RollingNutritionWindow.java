@@ -0,0 +1,210 @@
+/**
+ * @file RollingNutritionWindow.java
+ * @brief Fixed-size sliding window over daily nutrition totals
+ *
+ * @details The RollingNutritionWindow class keeps the last N calendar days of
+ *          calorie and macronutrient totals in ring buffers together with their
+ *          running sums. Moving the window forward by one day or replacing the
+ *          totals of a day inside the window costs O(1), so rolling averages never
+ *          have to be recomputed from the full history.
+ *
+ * @author irem
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * @class RollingNutritionWindow
+ * @brief Ring buffer of daily totals with running sums
+ *
+ * @details The window always spans windowDays consecutive days ending at the latest
+ *          date. Days without data count as zero, so averages are per calendar day.
+ *          Instances are not thread-safe; callers synchronize on the window.
+ */
+public class RollingNutritionWindow {
+    /** @brief Number of days in the window */
+    private final int windowDays;
+    /** @brief Daily calorie totals, indexed by ring position */
+    private final double[] calories;
+    /** @brief Daily protein totals in grams */
+    private final double[] protein;
+    /** @brief Daily carbohydrate totals in grams */
+    private final double[] carbs;
+    /** @brief Daily fat totals in grams */
+    private final double[] fat;
+
+    private double calorieSum;
+    private double proteinSum;
+    private double carbSum;
+    private double fatSum;
+
+    /** @brief Ring position of the latest day */
+    private int head;
+    /** @brief Latest day covered by the window, null while empty */
+    private LocalDate latestDate;
+
+    /**
+     * @brief Constructor for RollingNutritionWindow
+     *
+     * @param windowDays Number of days in the window, must be positive
+     * @throws IllegalArgumentException if windowDays is not positive
+     */
+    public RollingNutritionWindow(int windowDays) {
+        if (windowDays <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.windowDays = windowDays;
+        this.calories = new double[windowDays];
+        this.protein = new double[windowDays];
+        this.carbs = new double[windowDays];
+        this.fat = new double[windowDays];
+    }
+
+    /**
+     * @brief Clears the window and anchors it at a new latest date
+     *
+     * @param date New latest date of the window
+     */
+    public void reset(LocalDate date) {
+        for (int i = 0; i < windowDays; i++) {
+            calories[i] = 0;
+            protein[i] = 0;
+            carbs[i] = 0;
+            fat[i] = 0;
+        }
+        calorieSum = 0;
+        proteinSum = 0;
+        carbSum = 0;
+        fatSum = 0;
+        head = 0;
+        latestDate = date;
+    }
+
+    /**
+     * @brief Slides the window forward so that it ends at the given date
+     * @details Each day that enters the window starts at zero and evicts the oldest
+     *          day from the running sums. Moving by a full window or more is a reset.
+     *          Dates before the current latest date are ignored.
+     *
+     * @param date New latest date of the window
+     */
+    public void advanceTo(LocalDate date) {
+        if (latestDate == null) {
+            reset(date);
+            return;
+        }
+        long days = ChronoUnit.DAYS.between(latestDate, date);
+        if (days <= 0) {
+            return;
+        }
+        if (days >= windowDays) {
+            reset(date);
+            return;
+        }
+        for (long i = 0; i < days; i++) {
+            head = (head + 1) % windowDays;
+            setSlot(head, 0, 0, 0, 0);
+        }
+        latestDate = date;
+    }
+
+    /**
+     * @brief Replaces the totals of one day
+     * @details Moves the window forward first if the date is after the latest date.
+     *          Dates that have already left the window are ignored.
+     *
+     * @param date Day whose totals are replaced
+     * @param dayCalories Calories consumed that day
+     * @param dayProtein Protein consumed that day in grams
+     * @param dayCarbs Carbohydrates consumed that day in grams
+     * @param dayFat Fat consumed that day in grams
+     * @return true if the day is inside the window and was updated
+     */
+    public boolean setDay(LocalDate date, double dayCalories, double dayProtein,
+                          double dayCarbs, double dayFat) {
+        advanceTo(date);
+        long age = ChronoUnit.DAYS.between(date, latestDate);
+        if (age < 0 || age >= windowDays) {
+            return false;
+        }
+        int slot = (int) ((head - age + windowDays) % windowDays);
+        setSlot(slot, dayCalories, dayProtein, dayCarbs, dayFat);
+        return true;
+    }
+
+    /**
+     * @brief Overwrites one ring slot and adjusts the running sums
+     */
+    private void setSlot(int slot, double dayCalories, double dayProtein,
+                         double dayCarbs, double dayFat) {
+        calorieSum += dayCalories - calories[slot];
+        proteinSum += dayProtein - protein[slot];
+        carbSum += dayCarbs - carbs[slot];
+        fatSum += dayFat - fat[slot];
+        calories[slot] = dayCalories;
+        protein[slot] = dayProtein;
+        carbs[slot] = dayCarbs;
+        fat[slot] = dayFat;
+    }
+
+    /**
+     * Gets the number of days in the window.
+     * @return Window size in days
+     */
+    public int getWindowDays() {
+        return windowDays;
+    }
+
+    /**
+     * Gets the latest day covered by the window.
+     * @return Latest date, or null if the window has never been anchored
+     */
+    public LocalDate getLatestDate() {
+        return latestDate;
+    }
+
+    /**
+     * Gets the first day covered by the window.
+     * @return Oldest date in the window, or null if the window has never been anchored
+     */
+    public LocalDate getStartDate() {
+        return latestDate != null ? latestDate.minusDays(windowDays - 1) : null;
+    }
+
+    /**
+     * Gets the average daily calories over the window.
+     * @return Average calories per day
+     */
+    public double getAverageCalories() {
+        return calorieSum / windowDays;
+    }
+
+    /**
+     * Gets the average daily protein over the window.
+     * @return Average protein per day in grams
+     */
+    public double getAverageProtein() {
+        return proteinSum / windowDays;
+    }
+
+    /**
+     * Gets the average daily carbohydrates over the window.
+     * @return Average carbohydrates per day in grams
+     */
+    public double getAverageCarbs() {
+        return carbSum / windowDays;
+    }
+
+    /**
+     * Gets the average daily fat over the window.
+     * @return Average fat per day in grams
+     */
+    public double getAverageFat() {
+        return fatSum / windowDays;
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.util.List;
+import java.util.function.Supplier;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -32,6 +33,9 @@ public class ShoppingListPanel extends JPanel {
     /** @brief Service responsible for generating shopping lists */
     private final ShoppingListService shoppingService;
     
+    /** @brief Supplies the logged-in username, or null when nobody is logged in */
+    private final Supplier<String> currentUsername;
+    
     /** @brief Text area component for displaying the shopping list */
     private JTextArea shoppingListArea;
     
@@ -49,7 +53,20 @@ public class ShoppingListPanel extends JPanel {
      * event listeners for the buttons.
      */
     public ShoppingListPanel(ShoppingListService shoppingService) {
+        this(shoppingService, null);
+    }
+
+    /**
+     * @brief Constructs a new ShoppingListPanel for the logged-in user
+     * @param shoppingService The shopping list service to be used for generating lists
+     * @param currentUsername Supplies the logged-in username; may be null
+     * 
+     * When a user is logged in, the generate button shows that user's running
+     * ingredient totals instead of aggregating every meal plan again.
+     */
+    public ShoppingListPanel(ShoppingListService shoppingService, Supplier<String> currentUsername) {
         this.shoppingService = shoppingService;
+        this.currentUsername = currentUsername;
         initializeComponents();
         setupLayout();
         setupListeners();
@@ -94,15 +111,27 @@ public class ShoppingListPanel extends JPanel {
      * @brief Sets up event listeners for the panel's buttons
      * 
      * Configures action listeners for the generate and clear buttons.
-     * The generate button creates a new shopping list using the shopping service,
+     * The generate button shows the logged-in user's current shopping list, or a
+     * list for all meal plans when no user is known,
      * while the clear button empties the current shopping list display.
      */
     private void setupListeners() {
         generateButton.addActionListener(e -> {
             try {
-                List<String> shoppingList = shoppingService.generateShoppingList();
+                String username = currentUsername != null ? currentUsername.get() : null;
                 StringBuilder sb = new StringBuilder();
-                shoppingList.forEach(item -> sb.append(item).append("\n"));
+                if (username != null) {
+                    ShoppingListService.ShoppingList shoppingList = shoppingService.getCurrentShoppingList(username);
+                    for (ShoppingListService.ShoppingItem item : shoppingList.getItems()) {
+                        sb.append(String.format("%s - %.2f %s", item.getName(), item.getAmount(), item.getUnit()))
+                          .append("\n");
+                    }
+                    sb.append(String.format("\nToplam Tahmini Maliyet: %.2f TL", shoppingList.getTotalCost()))
+                      .append("\n");
+                } else {
+                    List<String> shoppingList = shoppingService.generateShoppingList();
+                    shoppingList.forEach(item -> sb.append(item).append("\n"));
+                }
                 shoppingListArea.setText(sb.toString());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this,
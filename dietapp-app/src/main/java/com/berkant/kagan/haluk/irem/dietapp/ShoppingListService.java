@@ -6,6 +6,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +21,27 @@ import java.util.Map;
 public class ShoppingListService {
     /** Service for accessing meal planning data and food options */
     private MealPlanningService mealPlanningService;
+    /** Units used to normalize amounts and calculate costs */
+    private final UnitRegistry units = UnitRegistry.getDefault();
+    /** Per-user ingredient totals updated by meal plan changes */
+    private final ShoppingListTotals totals = new ShoppingListTotals(units);
+    /** Merges the shopping lists of household members */
+    private final HouseholdShoppingListMerger householdMerger = new HouseholdShoppingListMerger(
+        new ConnectionFactory() {
+            @Override
+            public Connection open() throws SQLException {
+                Connection conn = getConnection();
+                if (conn == null) {
+                    throw new SQLException("Could not get database connection");
+                }
+                return conn;
+            }
+
+            @Override
+            public void release(Connection conn) {
+                DatabaseHelper.releaseConnection(conn);
+            }
+        });
     
     /**
      * Constructor for ShoppingListService class.
@@ -27,6 +50,9 @@ public class ShoppingListService {
      */
     public ShoppingListService(MealPlanningService mealPlanningService) {
         this.mealPlanningService = mealPlanningService;
+        if (mealPlanningService != null) {
+            mealPlanningService.addMealPlanListener(totals);
+        }
         
         // Create tables and sample data in the database if they exist
         try {
@@ -116,12 +142,13 @@ public class ShoppingListService {
             ingredientPrices.put("Cucumber", 0.90);
             // ...other foods...
             
-            // Insert each ingredient into the database
+            // Insert all ingredients in one batch
             for (Map.Entry<String, Double> entry : ingredientPrices.entrySet()) {
                 pstmt.setString(1, entry.getKey());
                 pstmt.setDouble(2, entry.getValue());
-                pstmt.executeUpdate();
+                pstmt.addBatch();
             }
+            pstmt.executeBatch();
             
             System.out.println("Ingredient prices saved to database.");
         }
@@ -141,11 +168,13 @@ public class ShoppingListService {
      */
     private int insertRecipe(Connection conn, String mealType, String recipeName) throws SQLException {
         try (PreparedStatement pstmt = conn.prepareStatement(
-            "INSERT INTO recipes (meal_type, name) VALUES (?, ?)",
+            "INSERT INTO recipes (meal_type, name, food_id) " +
+            "VALUES (?, ?, (SELECT f.id FROM foods f WHERE f.name = ?))",
             Statement.RETURN_GENERATED_KEYS)) {
             
             pstmt.setString(1, mealType);
             pstmt.setString(2, recipeName);
+            pstmt.setString(3, recipeName);
             
             int affectedRows = pstmt.executeUpdate();
             if (affectedRows == 0) {
@@ -282,30 +311,23 @@ public class ShoppingListService {
         double totalCost = 0.0;
         
         for (Ingredient ingredient : ingredients) {
-            String unit = ingredient.getUnit();
-            double amount = ingredient.getAmount();
-            double price = ingredient.getPrice();
-            
-            if ("unit".equals(unit)) {
-                // Direct price per unit (pieces)
-                totalCost += amount * price;
-            } 
-            else if ("g".equals(unit) || "ml".equals(unit)) {
-                // Price per 100 grams or milliliters
-                totalCost += (amount / 100.0) * price;
-            }
-            else {
-                // Default calculation for other units
-                totalCost += amount * price;
-            }
+            // Mass and volume prices are per 100 g or ml, counted units and
+            // unregistered units are charged per unit of amount
+            int unit = units.codeOf(ingredient.getUnit());
+            totalCost += units.costOf(ingredient.getAmount(), unit, ingredient.getPrice());
         }
         
         return totalCost;
     }
 
+    /**
+     * Generates a shopping list for the meal plans of all users.
+     * 
+     * @return Lines of the form "name - amount unit" followed by the total cost line
+     * @throws RuntimeException If the shopping list cannot be generated
+     */
     public List<String> generateShoppingList() {
         List<String> shoppingList = new ArrayList<>();
-        Map<String, Double> ingredientAmounts = new HashMap<>();
         Connection conn = null;
         
         try {
@@ -315,75 +337,424 @@ public class ShoppingListService {
             }
             
             // Collect ingredients from weekly meal plan
+            ShoppingList list;
             try (PreparedStatement pstmt = conn.prepareStatement(
-                    "SELECT ri.ingredient_id, i.name, SUM(ri.amount) as total_amount, ri.unit " +
-                    "FROM recipe_ingredients ri " +
+                    "SELECT i.name, i.price, SUM(ri.amount) as total_amount, ri.unit " +
+                    "FROM meal_plans mp " +
+                    "JOIN recipes r ON r.food_id = mp.food_id " +
+                    "JOIN recipe_ingredients ri ON ri.recipe_id = r.id " +
                     "JOIN ingredients i ON ri.ingredient_id = i.id " +
-                    "JOIN recipes r ON ri.recipe_id = r.id " +
-                    "JOIN meal_plans mp ON mp.food_id = (SELECT f.id FROM foods f WHERE f.name = r.name) " +
-                    "GROUP BY ri.ingredient_id, i.name, ri.unit")) {
-                
+                    "GROUP BY ri.ingredient_id, i.name, ri.unit " +
+                    "ORDER BY i.name, ri.unit");
+                 ResultSet rs = pstmt.executeQuery()) {
+                list = mergeByUnit(rs);
+            }
+            
+            for (ShoppingItem item : list.getItems()) {
+                shoppingList.add(String.format("%s - %.2f %s", item.getName(), item.getAmount(), item.getUnit()));
+            }
+            
+            // Add total cost to list
+            shoppingList.add(String.format("\nToplam Tahmini Maliyet: %.2f TL", list.getTotalCost()));
+            
+        } catch (SQLException e) {
+            System.err.println("Error generating shopping list: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Failed to generate shopping list", e);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        
+        return shoppingList;
+    }
+
+    /**
+     * Generates the shopping list for one user's meal plans in a date range.
+     * @details Amounts are summed per ingredient and unit in a single query over
+     *          the user's plans in the range, then merged per ingredient and
+     *          dimension in base units (g, ml, unit), so 500 g and 1 kg of flour
+     *          become one 1500 g item. Costs follow calculateTotalCost.
+     * 
+     * @param username The username whose meal plans are used
+     * @param fromDate First date of the range (yyyy-MM-dd), inclusive
+     * @param toDate Last date of the range (yyyy-MM-dd), inclusive
+     * @return The aggregated shopping list, empty if the user has no plans in the range
+     * @throws RuntimeException If the shopping list cannot be generated
+     */
+    public ShoppingList generateShoppingList(String username, String fromDate, String toDate) {
+        return generateShoppingList(username, fromDate, toDate, -1);
+    }
+
+    /**
+     * Generates the shopping list for one user's meal plans, costed at a price snapshot.
+     * @details Works like generateShoppingList(String, String, String) but takes
+     *          prices as of the given snapshot written by PriceListImporter: an
+     *          ingredient missing from it is priced by the newest earlier snapshot
+     *          that lists it, and only ingredients no snapshot up to it lists use
+     *          their current price. Snapshots do not change once imported, so
+     *          costing at a snapshot is not affected by a newer list being imported.
+     * 
+     * @param username The username whose meal plans are used
+     * @param fromDate First date of the range (yyyy-MM-dd), inclusive
+     * @param toDate Last date of the range (yyyy-MM-dd), inclusive
+     * @param snapshotId The price snapshot to use, or -1 for current prices
+     * @return The aggregated shopping list, empty if the user has no plans in the range
+     * @throws RuntimeException If the shopping list cannot be generated
+     */
+    public ShoppingList generateShoppingList(String username, String fromDate, String toDate, int snapshotId) {
+        if (username == null || fromDate == null || toDate == null) {
+            return new ShoppingList(new ArrayList<>());
+        }
+        String price = snapshotId > 0
+            ? "COALESCE((SELECT ip.price FROM ingredient_prices ip WHERE ip.ingredient_id = i.id " +
+              "AND ip.snapshot_id <= ? ORDER BY ip.snapshot_id DESC LIMIT 1), i.price)"
+            : "i.price";
+
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            if (conn == null) {
+                throw new SQLException("Failed to obtain database connection");
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT i.name, " + price + " AS price, ri.unit, SUM(ri.amount) AS total_amount " +
+                    "FROM users u " +
+                    "JOIN meal_plans mp ON mp.user_id = u.id AND mp.date BETWEEN ? AND ? " +
+                    "JOIN recipes r ON r.food_id = mp.food_id " +
+                    "JOIN recipe_ingredients ri ON ri.recipe_id = r.id " +
+                    "JOIN ingredients i ON i.id = ri.ingredient_id " +
+                    "WHERE u.username = ? " +
+                    "GROUP BY i.id, ri.unit ORDER BY i.name, ri.unit")) {
+                int index = 1;
+                if (snapshotId > 0) {
+                    pstmt.setInt(index++, snapshotId);
+                }
+                pstmt.setString(index++, fromDate);
+                pstmt.setString(index++, toDate);
+                pstmt.setString(index, username);
                 try (ResultSet rs = pstmt.executeQuery()) {
-                    while (rs.next()) {
-                        String ingredientName = rs.getString("name");
-                        Double amount = rs.getDouble("total_amount");
-                        String unit = rs.getString("unit");
-                        
-                        if (ingredientName != null && amount != null && unit != null) {
-                            // Combine ingredient amounts
-                            if (ingredientAmounts.containsKey(ingredientName)) {
-                                amount += ingredientAmounts.get(ingredientName);
-                            }
-                            ingredientAmounts.put(ingredientName, amount);
-                            
-                            // Add to shopping list
-                            shoppingList.add(String.format("%s - %.2f %s", 
-                                ingredientName, amount, unit));
-                        }
+                    return mergeByUnit(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error generating shopping list: " + e.getMessage());
+            throw new RuntimeException("Failed to generate shopping list", e);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Generates the combined shopping list of a household's meal plans in a date range.
+     * @details The members' ingredient totals are computed in parallel by
+     *          HouseholdShoppingListMerger on the common fork/join pool, each worker
+     *          on a connection from getConnection(), and added up per ingredient and
+     *          base unit, so the result equals the sum of the members' lists from
+     *          generateShoppingList(String, String, String).
+     * 
+     * @param householdId The household whose members' meal plans are used
+     * @param fromDate First date of the range (yyyy-MM-dd), inclusive
+     * @param toDate Last date of the range (yyyy-MM-dd), inclusive
+     * @return The merged shopping list, empty if the household does not exist
+     * @throws RuntimeException If the shopping list cannot be generated
+     */
+    public ShoppingList generateHouseholdShoppingList(int householdId, String fromDate, String toDate) {
+        Household household = new HouseholdService().getHousehold(householdId);
+        if (household == null) {
+            return new ShoppingList(new ArrayList<>());
+        }
+        try {
+            return householdMerger.merge(household, fromDate, toDate);
+        } catch (SQLException e) {
+            System.err.println("Error generating household shopping list: " + e.getMessage());
+            throw new RuntimeException("Failed to generate shopping list", e);
+        }
+    }
+
+    /**
+     * Gets the shopping list for all of a user's meal plans from the running totals.
+     * @details The first call compiles the recipe graph and seeds the user's totals
+     *          from the database. Later meal plan changes made through the meal
+     *          planning service update the totals, so this call only checks that
+     *          prices and recipes are unchanged and walks the ingredients. After a
+     *          price import or a recipe change the graph is compiled again.
+     * 
+     * @param username The username whose meal plans are used
+     * @return The current shopping list, empty if the user is unknown
+     * @throws RuntimeException If the totals cannot be loaded
+     */
+    public ShoppingList getCurrentShoppingList(String username) {
+        if (username == null) {
+            return new ShoppingList(new ArrayList<>());
+        }
+        
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            if (conn == null) {
+                throw new SQLException("Failed to obtain database connection");
+            }
+            int userId = -1;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM users WHERE username = ?")) {
+                pstmt.setString(1, username);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        userId = rs.getInt("id");
                     }
                 }
             }
-            
-            // Calculate total cost
-            double totalCost = 0.0;
-            try (PreparedStatement pstmt = conn.prepareStatement(
-                    "SELECT i.name, i.price, SUM(ri.amount) as total_amount " +
-                    "FROM recipe_ingredients ri " +
-                    "JOIN ingredients i ON ri.ingredient_id = i.id " +
-                    "JOIN recipes r ON ri.recipe_id = r.id " +
-                    "JOIN meal_plans mp ON mp.food_id = (SELECT f.id FROM foods f WHERE f.name = r.name) " +
-                    "GROUP BY i.name, i.price")) {
-                
+            if (userId == -1) {
+                return new ShoppingList(new ArrayList<>());
+            }
+            synchronized (totals) {
+                totals.reloadIfChanged(conn);
+                if (!totals.isSeeded(userId)) {
+                    totals.seedUser(conn, userId);
+                }
+                return totals.getShoppingList(userId);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading shopping list totals: " + e.getMessage());
+            throw new RuntimeException("Failed to generate shopping list", e);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Chooses the cheapest packages to buy for a shopping list.
+     * @details Package sizes come from the ingredient_packages table and are
+     *          converted to the base unit of each item; packages in another
+     *          dimension are ignored. Items without packages are bought loose at
+     *          their list cost.
+     * 
+     * @param list The shopping list to buy
+     * @return The purchase plan with total cost and waste
+     * @throws RuntimeException If the packages cannot be loaded
+     */
+    public PackageCostOptimizer.Plan optimizePackages(ShoppingList list) {
+        List<PackageCostOptimizer.Need> needs = new ArrayList<>();
+        if (list == null || list.isEmpty()) {
+            return new PackageCostOptimizer().optimize(needs);
+        }
+        
+        Map<String, List<PackageCostOptimizer.PackageOption>> packages = new HashMap<>();
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            if (conn == null) {
+                throw new SQLException("Failed to obtain database connection");
+            }
+            StringBuilder sql = new StringBuilder(
+                "SELECT i.name, p.size, p.unit, p.price, p.available " +
+                "FROM ingredient_packages p JOIN ingredients i ON i.id = p.ingredient_id " +
+                "WHERE i.name IN (");
+            for (int i = 0; i < list.getItems().size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(") ORDER BY p.id");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < list.getItems().size(); i++) {
+                    pstmt.setString(i + 1, list.getItems().get(i).getName());
+                }
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        Double price = rs.getDouble("price");
-                        Double amount = rs.getDouble("total_amount");
-                        
-                        if (price != null && amount != null) {
-                            totalCost += price * amount;
+                        int unit = units.codeOf(rs.getString("unit"));
+                        if (unit == UnitRegistry.UNKNOWN || rs.getDouble("size") <= 0 || rs.getDouble("price") < 0) {
+                            continue;
                         }
+                        String key = rs.getString("name") + '\u0000' + units.baseUnitOf(unit);
+                        packages.computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(new PackageCostOptimizer.PackageOption(units.toBase(rs.getDouble("size"), unit),
+                                                                        rs.getDouble("price"), rs.getInt("available")));
                     }
                 }
             }
-            
-            // Add total cost to list
-            shoppingList.add(String.format("\nToplam Tahmini Maliyet: %.2f TL", totalCost));
-            
         } catch (SQLException e) {
-            System.err.println("Error generating shopping list: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to generate shopping list", e);
+            System.err.println("Error loading ingredient packages: " + e.getMessage());
+            throw new RuntimeException("Failed to load ingredient packages", e);
         } finally {
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing connection: " + e.getMessage());
+            DatabaseHelper.releaseConnection(conn);
+        }
+        
+        for (ShoppingItem item : list.getItems()) {
+            List<PackageCostOptimizer.PackageOption> options = packages.get(item.getName() + '\u0000' + item.getUnit());
+            if (options == null && item.getAmount() > 0) {
+                // Bought loose: exactly the amount needed at its list cost
+                options = new ArrayList<>();
+                options.add(new PackageCostOptimizer.PackageOption(item.getAmount(), item.getCost(), 1));
+            }
+            needs.add(new PackageCostOptimizer.Need(item.getName(), item.getAmount(), item.getUnit(), options));
+        }
+        return new PackageCostOptimizer().optimize(needs);
+    }
+
+    /**
+     * Merges per-unit ingredient totals into one item per ingredient and dimension.
+     * @details Rows must have name, price, unit and total_amount columns. Registered
+     *          units are converted to their base unit; unregistered units stay
+     *          separate items in their own unit. Items keep the order of the rows.
+     * 
+     * @param rs The rows to merge
+     * @return The merged shopping list
+     * @throws SQLException If a row cannot be read
+     */
+    private ShoppingList mergeByUnit(ResultSet rs) throws SQLException {
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<String> itemUnits = new ArrayList<>();
+        double[] amounts = new double[16];
+        double[] costs = new double[16];
+        
+        while (rs.next()) {
+            String name = rs.getString("name");
+            String unitName = rs.getString("unit");
+            if (name == null || unitName == null) {
+                continue;
+            }
+            int unit = units.codeOf(unitName);
+            double amount = rs.getDouble("total_amount");
+            double price = rs.getDouble("price");
+            String baseUnit = unit == UnitRegistry.UNKNOWN ? unitName : units.baseUnitOf(unit);
+            
+            String key = name + '\u0000' + baseUnit;
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                slot = names.size();
+                slots.put(key, slot);
+                names.add(name);
+                itemUnits.add(baseUnit);
+                if (slot == amounts.length) {
+                    amounts = Arrays.copyOf(amounts, slot * 2);
+                    costs = Arrays.copyOf(costs, slot * 2);
                 }
             }
+            amounts[slot] += units.toBase(amount, unit);
+            costs[slot] += units.costOf(amount, unit, price);
         }
         
-        return shoppingList;
+        List<ShoppingItem> items = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            items.add(new ShoppingItem(names.get(i), amounts[i], itemUnits.get(i), costs[i]));
+        }
+        return new ShoppingList(items);
+    }
+
+    /**
+     * Aggregated shopping list with one item per ingredient and unit.
+     */
+    public static class ShoppingList {
+        /** The items ordered by ingredient name and unit */
+        private final List<ShoppingItem> items;
+        /** The sum of the item costs */
+        private final double totalCost;
+
+        /**
+         * Constructor for ShoppingList class.
+         * 
+         * @param items The aggregated items
+         */
+        public ShoppingList(List<ShoppingItem> items) {
+            this.items = Collections.unmodifiableList(new ArrayList<>(items));
+            double total = 0.0;
+            for (ShoppingItem item : items) {
+                total += item.getCost();
+            }
+            this.totalCost = total;
+        }
+
+        /**
+         * Gets the items of the shopping list.
+         * 
+         * @return Unmodifiable list of items
+         */
+        public List<ShoppingItem> getItems() {
+            return items;
+        }
+
+        /**
+         * Gets the estimated total cost.
+         * 
+         * @return The total cost
+         */
+        public double getTotalCost() {
+            return totalCost;
+        }
+
+        /**
+         * Checks whether the shopping list has no items.
+         * 
+         * @return true if there is nothing to buy
+         */
+        public boolean isEmpty() {
+            return items.isEmpty();
+        }
+    }
+
+    /**
+     * Total amount and cost of one ingredient in one unit.
+     */
+    public static class ShoppingItem {
+        /** The name of the ingredient */
+        private final String name;
+        /** The total amount needed */
+        private final double amount;
+        /** The unit of measurement (g, ml, unit, etc.) */
+        private final String unit;
+        /** The estimated cost of the total amount */
+        private final double cost;
+
+        /**
+         * Constructor for ShoppingItem class.
+         * 
+         * @param name The name of the ingredient
+         * @param amount The total amount
+         * @param unit The unit of measurement
+         * @param cost The estimated cost
+         */
+        public ShoppingItem(String name, double amount, String unit, double cost) {
+            this.name = name != null ? name : "";
+            this.amount = amount;
+            this.unit = unit != null ? unit : "";
+            this.cost = cost;
+        }
+
+        /**
+         * Gets the name of the ingredient.
+         * 
+         * @return The ingredient name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the total amount of the ingredient.
+         * 
+         * @return The amount
+         */
+        public double getAmount() {
+            return amount;
+        }
+
+        /**
+         * Gets the unit of measurement.
+         * 
+         * @return The unit
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * Gets the estimated cost of the total amount.
+         * 
+         * @return The cost
+         */
+        public double getCost() {
+            return cost;
+        }
     }
 
     /**
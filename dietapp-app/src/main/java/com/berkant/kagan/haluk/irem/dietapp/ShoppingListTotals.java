@@ -0,0 +1,335 @@
+/**
+ * @file ShoppingListTotals.java
+ * @brief Per-user ingredient totals kept up to date from meal plan changes
+ *
+ * @details The ShoppingListTotals class compiles the recipes into a graph from
+ *          food id to ingredient slots, one slot per ingredient and base unit
+ *          (g, ml, unit) with canonical amounts and costs precomputed through
+ *          UnitRegistry. The ingredient totals of a user are seeded once from the
+ *          user's meal plans; after that every planned or removed meal applies
+ *          the recipe of its food as a delta, and reading a shopping list walks
+ *          the slots only.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class ShoppingListTotals
+ * @brief Compiled recipe graph with incrementally maintained per-user totals
+ *
+ * @details Deltas for users that were never seeded are ignored, since seeding
+ *          reads the meal plans as they are at that moment. The recipe graph is
+ *          compiled by loadRecipes and recompiled by reloadIfChanged once prices or
+ *          recipes have changed. All methods are synchronized.
+ */
+public class ShoppingListTotals implements MealPlanningService.MealPlanListener {
+    /** @brief Count of price and recipe writes made by this process, see readVersion */
+    private static final AtomicLong dataVersion = new AtomicLong();
+
+    /** @brief Units used to convert recipe amounts */
+    private final UnitRegistry units;
+
+    /** @brief Compiled recipe per food id, null until loadRecipes */
+    private Map<Integer, Recipe> recipes;
+    /** @brief Version of the prices and recipes the graph was compiled from */
+    private long[] recipesVersion;
+    /** @brief Ingredient name per slot */
+    private String[] slotNames = new String[0];
+    /** @brief Base unit per slot */
+    private String[] slotUnits = new String[0];
+
+    /** @brief Totals of the seeded users */
+    private final Map<Integer, UserTotals> users = new HashMap<>();
+
+    /**
+     * @brief Compiled ingredients of one food's recipes
+     */
+    private static class Recipe {
+        private final int[] slots;
+        private final double[] amounts;
+        private final double[] costs;
+
+        Recipe(int[] slots, double[] amounts, double[] costs) {
+            this.slots = slots;
+            this.amounts = amounts;
+            this.costs = costs;
+        }
+    }
+
+    /**
+     * @brief Ingredient totals of one user, indexed by slot
+     * @details refs counts the planned meals contributing to a slot so that a
+     *          slot drops back to exactly zero when its last meal is removed.
+     */
+    private static class UserTotals {
+        private final double[] amounts;
+        private final double[] costs;
+        private final int[] refs;
+
+        UserTotals(int slotCount) {
+            amounts = new double[slotCount];
+            costs = new double[slotCount];
+            refs = new int[slotCount];
+        }
+
+        void apply(Recipe recipe, int sign) {
+            for (int i = 0; i < recipe.slots.length; i++) {
+                int slot = recipe.slots[i];
+                refs[slot] += sign;
+                if (refs[slot] <= 0) {
+                    refs[slot] = 0;
+                    amounts[slot] = 0;
+                    costs[slot] = 0;
+                } else {
+                    amounts[slot] += sign * recipe.amounts[i];
+                    costs[slot] += sign * recipe.costs[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Creates totals using the default unit registry
+     */
+    public ShoppingListTotals() {
+        this(UnitRegistry.getDefault());
+    }
+
+    /**
+     * @brief Creates totals using a unit registry
+     * @param units Units used to convert recipe amounts
+     */
+    public ShoppingListTotals(UnitRegistry units) {
+        this.units = units;
+    }
+
+    /**
+     * @brief Compiles the recipe graph and drops all seeded users
+     *
+     * @param conn Database connection
+     * @throws SQLException If the recipes cannot be read
+     */
+    public synchronized void loadRecipes(Connection conn) throws SQLException {
+        // Read first, so changes made while compiling show up on the next check
+        long[] version = readVersion(conn);
+        Map<String, Integer> slotIndex = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<String> baseUnits = new ArrayList<>();
+        // Per food: slot and canonical amount and cost of every ingredient row
+        Map<Integer, List<double[]>> rows = new HashMap<>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT r.food_id, i.name, i.price, ri.unit, ri.amount " +
+                 "FROM recipes r " +
+                 "JOIN recipe_ingredients ri ON ri.recipe_id = r.id " +
+                 "JOIN ingredients i ON i.id = ri.ingredient_id " +
+                 "WHERE r.food_id IS NOT NULL " +
+                 "ORDER BY i.name, ri.unit")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                String unitName = rs.getString("unit");
+                if (name == null || unitName == null) {
+                    continue;
+                }
+                int unit = units.codeOf(unitName);
+                String baseUnit = unit == UnitRegistry.UNKNOWN ? unitName : units.baseUnitOf(unit);
+                String key = name + '\u0000' + baseUnit;
+                Integer slot = slotIndex.get(key);
+                if (slot == null) {
+                    slot = names.size();
+                    slotIndex.put(key, slot);
+                    names.add(name);
+                    baseUnits.add(baseUnit);
+                }
+                double amount = rs.getDouble("amount");
+                rows.computeIfAbsent(rs.getInt("food_id"), k -> new ArrayList<>())
+                    .add(new double[] {slot, units.toBase(amount, unit),
+                                       units.costOf(amount, unit, rs.getDouble("price"))});
+            }
+        }
+
+        Map<Integer, Recipe> compiled = new HashMap<>();
+        for (Map.Entry<Integer, List<double[]>> entry : rows.entrySet()) {
+            List<double[]> list = entry.getValue();
+            int[] slots = new int[list.size()];
+            double[] amounts = new double[list.size()];
+            double[] costs = new double[list.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = (int) list.get(i)[0];
+                amounts[i] = list.get(i)[1];
+                costs[i] = list.get(i)[2];
+            }
+            compiled.put(entry.getKey(), new Recipe(slots, amounts, costs));
+        }
+
+        recipes = compiled;
+        recipesVersion = version;
+        slotNames = names.toArray(new String[0]);
+        slotUnits = baseUnits.toArray(new String[0]);
+        users.clear();
+    }
+
+    /**
+     * @brief Compiles the recipe graph unless it is current
+     * @details Recompiling drops all seeded users, who are seeded again on their
+     *          next shopping list.
+     *
+     * @param conn Database connection
+     * @return true if the graph was compiled
+     * @throws SQLException If the recipes cannot be read
+     */
+    public synchronized boolean reloadIfChanged(Connection conn) throws SQLException {
+        if (recipes != null && Arrays.equals(readVersion(conn), recipesVersion)) {
+            return false;
+        }
+        loadRecipes(conn);
+        return true;
+    }
+
+    /**
+     * @brief Records that ingredient prices or recipes were written
+     * @details Called by PriceListImporter, which updates prices in place. Added
+     *          ingredients and recipes, from any process, are seen through the
+     *          highest ids in readVersion; call this after changing prices or
+     *          recipes in place some other way.
+     */
+    static void recipeDataChanged() {
+        dataVersion.incrementAndGet();
+    }
+
+    /**
+     * @brief Reads a cheap version of the prices and recipes
+     * @details Highest ids of ingredients, recipes and recipe_ingredients, each a
+     *          single index lookup, plus the writes recorded by recipeDataChanged.
+     */
+    private static long[] readVersion(Connection conn) throws SQLException {
+        long written = dataVersion.get();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT (SELECT COALESCE(MAX(id), 0) FROM ingredients), " +
+                 "(SELECT COALESCE(MAX(id), 0) FROM recipes), " +
+                 "(SELECT COALESCE(MAX(id), 0) FROM recipe_ingredients)")) {
+            rs.next();
+            return new long[] {rs.getLong(1), rs.getLong(2), rs.getLong(3), written};
+        }
+    }
+
+    /**
+     * @brief Checks whether the recipe graph was compiled
+     * @return true after loadRecipes succeeded
+     */
+    public synchronized boolean isLoaded() {
+        return recipes != null;
+    }
+
+    /**
+     * @brief Checks whether a user's totals are maintained
+     * @param userId ID of the user
+     * @return true if the user was seeded
+     */
+    public synchronized boolean isSeeded(int userId) {
+        return users.containsKey(userId);
+    }
+
+    /**
+     * @brief Seeds a user's totals from the meal plans in the database
+     * @details Counts the planned meals per food and applies each food's recipe
+     *          that many times. Replaces earlier totals of the user.
+     *
+     * @param conn Database connection
+     * @param userId ID of the user
+     * @throws SQLException If the meal plans cannot be read
+     * @throws IllegalStateException If the recipes were not loaded
+     */
+    public synchronized void seedUser(Connection conn, int userId) throws SQLException {
+        if (recipes == null) {
+            throw new IllegalStateException("Recipes are not loaded");
+        }
+        UserTotals totals = new UserTotals(slotNames.length);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT food_id, COUNT(*) FROM meal_plans WHERE user_id = ? GROUP BY food_id")) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Recipe recipe = recipes.get(rs.getInt(1));
+                    for (int n = rs.getInt(2); recipe != null && n > 0; n--) {
+                        totals.apply(recipe, 1);
+                    }
+                }
+            }
+        }
+        users.put(userId, totals);
+    }
+
+    /**
+     * @brief Gets the current shopping list of a seeded user
+     * @details Runs in time linear in the number of ingredient slots.
+     *
+     * @param userId ID of the user
+     * @return Items with a planned amount, in ingredient name order; null if the
+     *         user was not seeded
+     */
+    public synchronized ShoppingListService.ShoppingList getShoppingList(int userId) {
+        UserTotals totals = users.get(userId);
+        if (totals == null) {
+            return null;
+        }
+        List<ShoppingListService.ShoppingItem> items = new ArrayList<>();
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (totals.refs[slot] > 0) {
+                items.add(new ShoppingListService.ShoppingItem(slotNames[slot], totals.amounts[slot],
+                                                               slotUnits[slot], totals.costs[slot]));
+            }
+        }
+        return new ShoppingListService.ShoppingList(items);
+    }
+
+    /**
+     * @brief Adds the recipe of a planned food to the user's totals
+     */
+    @Override
+    public synchronized void mealPlanned(int userId, int foodId) {
+        apply(userId, foodId, 1);
+    }
+
+    /**
+     * @brief Removes the recipe of an unplanned food from the user's totals
+     */
+    @Override
+    public synchronized void mealUnplanned(int userId, int foodId) {
+        apply(userId, foodId, -1);
+    }
+
+    private void apply(int userId, int foodId, int sign) {
+        UserTotals totals = users.get(userId);
+        Recipe recipe = recipes != null ? recipes.get(foodId) : null;
+        if (totals != null && recipe != null) {
+            totals.apply(recipe, sign);
+        }
+    }
+
+    /**
+     * @brief Gets the number of ingredient slots in the recipe graph
+     * @return Slot count, 0 before loadRecipes
+     */
+    public synchronized int getSlotCount() {
+        return slotNames.length;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * @file SketchHash.java
+ * @brief 64-bit string hashing shared by the probabilistic sketches
+ *
+ * @details The SketchHash class provides a stable 64-bit hash for food names and
+ *          other keys. Sketch snapshots are persisted to disk and merged across
+ *          runs, so the hash must not depend on String.hashCode or on the JVM.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @class SketchHash
+ * @brief FNV-1a over UTF-8 bytes followed by the MurmurHash3 64-bit finalizer
+ */
+final class SketchHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * @brief Private constructor to prevent instantiation
+     */
+    private SketchHash() {
+    }
+
+    /**
+     * @brief Hashes a string to 64 well-mixed bits
+     *
+     * @param value String to hash, null hashes like the empty string
+     * @return 64-bit hash
+     */
+    static long hash64(String value) {
+        long h = FNV_OFFSET;
+        if (value != null) {
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                h ^= (b & 0xff);
+                h *= FNV_PRIME;
+            }
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
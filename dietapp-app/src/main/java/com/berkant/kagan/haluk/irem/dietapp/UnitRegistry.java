@@ -0,0 +1,186 @@
+/**
+ * @file UnitRegistry.java
+ * @brief Registry of measurement units with canonical conversion factors
+ *
+ * @details The UnitRegistry class maps unit names used in recipes (g, kg, ml, l,
+ *          piece, ...) to small integer codes. Each code belongs to a dimension
+ *          (mass, volume or count) and carries a precomputed factor to the base
+ *          unit of that dimension (g, ml or unit) and a cost factor matching the
+ *          way ingredient prices are quoted: per 100 g, per 100 ml or per piece.
+ *          Lookups happen once per unit string; conversions and costing are then
+ *          plain multiplications on doubles.
+ *
+ * @author haluk
+ * @version 1.0
+ * @date 2024
+ * @copyright Diet Planner Application
+ */
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class UnitRegistry
+ * @brief Unit codes, dimensions and conversion factors
+ *
+ * @details Units that are not registered, such as tbsp or cup, keep their own
+ *          identity: they are never merged with other units and their cost is
+ *          amount times price, as before the registry existed.
+ */
+public final class UnitRegistry {
+    /** @brief Code returned for units that are not registered */
+    public static final int UNKNOWN = -1;
+
+    /** @brief Dimension of mass units, base unit g */
+    public static final int MASS = 0;
+    /** @brief Dimension of volume units, base unit ml */
+    public static final int VOLUME = 1;
+    /** @brief Dimension of counted units, base unit "unit" */
+    public static final int COUNT = 2;
+
+    /** @brief Base unit name per dimension */
+    private static final String[] BASE_UNITS = {"g", "ml", "unit"};
+    /** @brief Base quantity an ingredient price refers to, per dimension */
+    private static final double[] PRICE_QUANTITIES = {100.0, 100.0, 1.0};
+
+    /** @brief Lower-case unit name to code */
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] dimensions = new int[16];
+    /** @brief Base quantity of one unit, per code */
+    private double[] factors = new double[16];
+    /** @brief Price multiples of one unit, per code */
+    private double[] costFactors = new double[16];
+    private int size;
+
+    /**
+     * @brief Units registered when the class is first used
+     */
+    private static class DefaultHolder {
+        static final UnitRegistry INSTANCE = createDefault();
+    }
+
+    private UnitRegistry() {
+    }
+
+    /**
+     * @brief Gets the registry of the units used by the application
+     * @return Shared default registry
+     */
+    public static UnitRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static UnitRegistry createDefault() {
+        UnitRegistry registry = new UnitRegistry();
+        registry.register(MASS, 1.0, "g", "gr", "gram", "grams");
+        registry.register(MASS, 1000.0, "kg", "kilogram", "kilograms");
+        registry.register(MASS, 0.001, "mg");
+        registry.register(VOLUME, 1.0, "ml", "milliliter", "milliliters");
+        registry.register(VOLUME, 10.0, "cl");
+        registry.register(VOLUME, 100.0, "dl");
+        registry.register(VOLUME, 1000.0, "l", "lt", "liter", "liters", "litre");
+        registry.register(COUNT, 1.0, "unit", "units", "piece", "pieces", "pcs", "adet");
+        return registry;
+    }
+
+    /**
+     * @brief Registers a unit under one or more names
+     *
+     * @param dimension Dimension of the unit
+     * @param factor Base quantity of one unit
+     * @param aliases Unit names, the first one is the display name
+     */
+    private void register(int dimension, double factor, String... aliases) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            dimensions = Arrays.copyOf(dimensions, size * 2);
+            factors = Arrays.copyOf(factors, size * 2);
+            costFactors = Arrays.copyOf(costFactors, size * 2);
+        }
+        int code = size++;
+        names[code] = aliases[0];
+        dimensions[code] = dimension;
+        factors[code] = factor;
+        costFactors[code] = factor / PRICE_QUANTITIES[dimension];
+        for (String alias : aliases) {
+            codes.put(alias, code);
+        }
+    }
+
+    /**
+     * @brief Gets the number of registered units
+     * @return Unit count, aliases not included
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @brief Looks up the code of a unit name
+     * @param unit Unit name, case and surrounding spaces are ignored
+     * @return Unit code, UNKNOWN if the unit is null or not registered
+     */
+    public int codeOf(String unit) {
+        if (unit == null) {
+            return UNKNOWN;
+        }
+        Integer code = codes.get(unit.trim().toLowerCase(Locale.ROOT));
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * @brief Gets the display name of a unit
+     * @param code Unit code
+     * @return Unit name, null for UNKNOWN
+     */
+    public String nameOf(int code) {
+        return code == UNKNOWN ? null : names[code];
+    }
+
+    /**
+     * @brief Gets the dimension of a unit
+     * @param code Unit code
+     * @return MASS, VOLUME or COUNT, UNKNOWN for UNKNOWN
+     */
+    public int dimensionOf(int code) {
+        return code == UNKNOWN ? UNKNOWN : dimensions[code];
+    }
+
+    /**
+     * @brief Gets the base unit a unit converts to
+     * @param code Unit code
+     * @return g, ml or unit, null for UNKNOWN
+     */
+    public String baseUnitOf(int code) {
+        return code == UNKNOWN ? null : BASE_UNITS[dimensions[code]];
+    }
+
+    /**
+     * @brief Converts an amount to the base unit of its dimension
+     *
+     * @param amount Amount in the given unit
+     * @param code Unit code
+     * @return Amount in the base unit, unchanged for UNKNOWN
+     */
+    public double toBase(double amount, int code) {
+        return code == UNKNOWN ? amount : amount * factors[code];
+    }
+
+    /**
+     * @brief Calculates the cost of an amount
+     * @details Prices are quoted per 100 g, per 100 ml or per piece. Unknown units
+     *          are charged the price once per unit of amount.
+     *
+     * @param amount Amount in the given unit
+     * @param code Unit code
+     * @param price Ingredient price
+     * @return Cost of the amount
+     */
+    public double costOf(double amount, int code, double price) {
+        return code == UNKNOWN ? amount * price : amount * costFactors[code] * price;
+    }
+}
@@ -0,0 +1,57 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+/**
+ * Benchmark for AdherenceScoringEngine over synthetic rollups.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.AdherenceScoringBenchmark
+ */
+public class AdherenceScoringBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final int DAYS = 365;
+    private static final int BLOCK = 5_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        AdherenceScoringEngine engine = new AdherenceScoringEngine();
+        AdherenceScoringEngine.DailyRollups rollups = new AdherenceScoringEngine.DailyRollups(BLOCK, DAYS);
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine.AdherenceScores(BLOCK);
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            long evalNanos = 0;
+            double checksum = 0;
+            long start = System.nanoTime();
+            for (int first = 0; first < USERS; first += BLOCK) {
+                int count = Math.min(BLOCK, USERS - first);
+                fillBlock(rollups, first, count);
+                long evalStart = System.nanoTime();
+                engine.evaluate(rollups, scores);
+                evalNanos += System.nanoTime() - evalStart;
+                for (int u = 0; u < count; u++) {
+                    checksum += scores.getScore(u);
+                }
+            }
+            long totalNanos = System.nanoTime() - start;
+            double userDays = (double) USERS * DAYS;
+            System.out.printf("%s: scoring %.0f ms (%.1f M user-days/s), with block fill %.0f ms, checksum %.3f%n",
+                              round == 0 ? "warmup" : "round " + round,
+                              evalNanos / 1e6, userDays / (evalNanos / 1e9) / 1e6,
+                              totalNanos / 1e6, checksum);
+        }
+    }
+
+    private static void fillBlock(AdherenceScoringEngine.DailyRollups rollups, int first, int count) {
+        rollups.setUserCount(count);
+        for (int u = 0; u < count; u++) {
+            int userId = first + u + 1;
+            rollups.setUser(u, userId, 1800 + userId % 7 * 100, 60, 220, 65);
+            int seed = userId * 1103515245 + 12345;
+            for (int d = 0; d < DAYS; d++) {
+                seed = seed * 1103515245 + 12345;
+                int noise = (seed >>> 16) % 1400;
+                double calories = noise < 100 ? 0 : 1300 + noise;
+                rollups.setDay(u, d, calories, 40 + noise % 50, 180 + noise % 90, 50 + noise % 30);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the AdherenceScoringEngine class.
+ */
+public class AdherenceScoringEngineTest {
+
+    private static final double[] WEEK = {2000, 2050, 0, 2600, 1950, 2000, 1500};
+
+    private AdherenceScoringEngine.DailyRollups weekRollups() {
+        AdherenceScoringEngine.DailyRollups rollups = new AdherenceScoringEngine.DailyRollups(2, WEEK.length);
+        rollups.setUser(0, 11, 2000, 50, 250, 70);
+        rollups.setUser(1, 12, 2000, 50, 250, 70);
+        for (int d = 0; d < WEEK.length; d++) {
+            rollups.setDay(0, d, WEEK[d], 50, 250, 70);
+            rollups.setDay(1, d, 2000, 50, 250, 70);
+        }
+        return rollups;
+    }
+
+    @Test
+    public void testStreaksAndTargetDays() {
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine().evaluate(weekRollups());
+        assertEquals(2, scores.getUserCount());
+        assertEquals(11, scores.getUserId(0));
+        assertEquals(6, scores.getDaysLogged(0));
+        assertEquals(4, scores.getDaysOnTarget(0));
+        assertEquals(1, scores.getDaysOver(0));
+        assertEquals(1, scores.getDaysUnder(0));
+        assertEquals(2, scores.getLongestStreak(0));
+        assertEquals(0, scores.getCurrentStreak(0));
+
+        assertEquals(7, scores.getLongestStreak(1));
+        assertEquals(7, scores.getCurrentStreak(1));
+        assertEquals(100.0, scores.getScore(1), 0.0001);
+    }
+
+    @Test
+    public void testCompositeScore() {
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine().evaluate(weekRollups());
+        // 4/7 on target, 6/7 logged, perfect macros on logged days
+        double expected = 50.0 * 4 / 7 + 20.0 * 6 / 7 + 30.0;
+        assertEquals(expected, scores.getScore(0), 0.0001);
+    }
+
+    @Test
+    public void testToleranceWidensTarget() {
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine(0.5).evaluate(weekRollups());
+        assertEquals(6, scores.getDaysOnTarget(0));
+        assertEquals(0, scores.getDaysOver(0));
+    }
+
+    @Test
+    public void testMacroAccuracyLowersScore() {
+        AdherenceScoringEngine.DailyRollups rollups = new AdherenceScoringEngine.DailyRollups(1, 2);
+        rollups.setUser(0, 1, 2000, 50, 250, 70);
+        rollups.setDay(0, 0, 2000, 25, 250, 70);
+        rollups.setDay(0, 1, 2000, 100, 250, 70);
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine().evaluate(rollups);
+        // protein accuracy 0.5 and 0.0, others perfect
+        assertEquals(50 + 20 + 30 * ((2.5 / 3 + 2.0 / 3) / 2), scores.getScore(0), 0.0001);
+    }
+
+    @Test
+    public void testParallelBlockMatchesSequentialRows() {
+        int users = 3000;
+        int days = 30;
+        AdherenceScoringEngine.DailyRollups rollups = new AdherenceScoringEngine.DailyRollups(users, days);
+        for (int u = 0; u < users; u++) {
+            rollups.setUser(u, u + 1, 1800 + u % 5 * 100, 60, 200, 60);
+            for (int d = 0; d < days; d++) {
+                rollups.setDay(u, d, (u * 31 + d * 17) % 3000, 60, 200, 60);
+            }
+        }
+        AdherenceScoringEngine engine = new AdherenceScoringEngine();
+        AdherenceScoringEngine.AdherenceScores all = engine.evaluate(rollups);
+
+        AdherenceScoringEngine.DailyRollups single = new AdherenceScoringEngine.DailyRollups(1, days);
+        for (int u = 0; u < users; u += 499) {
+            single.setUser(0, u + 1, 1800 + u % 5 * 100, 60, 200, 60);
+            for (int d = 0; d < days; d++) {
+                single.setDay(0, d, (u * 31 + d * 17) % 3000, 60, 200, 60);
+            }
+            AdherenceScoringEngine.AdherenceScores one = engine.evaluate(single);
+            assertEquals(one.getScore(0), all.getScore(u), 0.0);
+            assertEquals(one.getLongestStreak(0), all.getLongestStreak(u));
+        }
+    }
+
+    @Test
+    public void testReusedBlockWithFewerUsers() {
+        AdherenceScoringEngine.DailyRollups rollups = weekRollups();
+        rollups.setUserCount(1);
+        AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine.AdherenceScores(2);
+        new AdherenceScoringEngine().evaluate(rollups, scores);
+        assertEquals(1, scores.getUserCount());
+        assertEquals(4, scores.getDaysOnTarget(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResultTooSmallRejected() {
+        new AdherenceScoringEngine().evaluate(weekRollups(), new AdherenceScoringEngine.AdherenceScores(1));
+    }
+
+    @Test
+    public void testLoadFromDailyReports() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE daily_nutrition_reports (user_id INTEGER, date TEXT, " +
+                         "total_calories INTEGER, total_protein REAL, total_carbs REAL, total_fat REAL, " +
+                         "calorie_goal INTEGER, protein_goal REAL, carb_goal REAL, fat_goal REAL)");
+            stmt.execute("INSERT INTO daily_nutrition_reports VALUES (7, '2025-01-01', 2000, 50, 250, 70, 2000, 50, 250, 70)");
+            stmt.execute("INSERT INTO daily_nutrition_reports VALUES (7, '2025-01-03', 2000, 50, 250, 70, 2000, 50, 250, 70)");
+            stmt.execute("INSERT INTO daily_nutrition_reports VALUES (9, '2025-01-02', 3000, 50, 250, 70, 1500, 50, 250, 70)");
+            stmt.execute("INSERT INTO daily_nutrition_reports VALUES (9, '2025-02-01', 3000, 50, 250, 70, 1500, 50, 250, 70)");
+
+            AdherenceScoringEngine.DailyRollups rollups =
+                AdherenceScoringEngine.DailyRollups.load(conn, "2025-01-01", "2025-01-03");
+            assertEquals(2, rollups.getUserCount());
+            assertEquals(3, rollups.getDays());
+
+            AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine().evaluate(rollups);
+            for (int u = 0; u < scores.getUserCount(); u++) {
+                if (scores.getUserId(u) == 7) {
+                    assertEquals(2, scores.getDaysOnTarget(u));
+                    assertEquals(1, scores.getCurrentStreak(u));
+                } else {
+                    assertEquals(9, scores.getUserId(u));
+                    assertEquals(1, scores.getDaysOver(u));
+                    assertEquals(1, scores.getDaysLogged(u));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLoadGrowsPastInitialCapacity() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE daily_nutrition_reports (user_id INTEGER, date TEXT, " +
+                         "total_calories INTEGER, total_protein REAL, total_carbs REAL, total_fat REAL, " +
+                         "calorie_goal INTEGER, protein_goal REAL, carb_goal REAL, fat_goal REAL)");
+            for (int user = 1; user <= 40; user++) {
+                stmt.execute("INSERT INTO daily_nutrition_reports VALUES (" + user + ", '2024-02-29', " +
+                             (1000 + user) + ", 50, 250, 70, 1000, 50, 250, 70)");
+                stmt.execute("INSERT INTO daily_nutrition_reports VALUES (" + user + ", '2024-03-01', " +
+                             "900, 50, 250, 70, " + (2000 + user) + ", 50, 250, 70)");
+            }
+
+            AdherenceScoringEngine.DailyRollups rollups =
+                AdherenceScoringEngine.DailyRollups.load(conn, "2024-02-28", "2024-03-01");
+            assertEquals(40, rollups.getUserCount());
+            assertEquals(3, rollups.getDays());
+            for (int u = 0; u < 40; u++) {
+                assertEquals(0, rollups.getCalories()[u * 3], 1e-9);
+                assertEquals(1001 + u, rollups.getCalories()[u * 3 + 1], 1e-9);
+                assertEquals(900, rollups.getCalories()[u * 3 + 2], 1e-9);
+            }
+
+            // Goals come from the latest report of each user
+            AdherenceScoringEngine.AdherenceScores scores = new AdherenceScoringEngine().evaluate(rollups);
+            assertEquals(40, scores.getUserCount());
+            assertEquals(40, scores.getUserId(39));
+            assertEquals(2, scores.getDaysUnder(39));
+        }
+    }
+
+    @Test
+    public void testEpochDayMatchesLocalDate() {
+        for (LocalDate day = LocalDate.of(1899, 12, 25); day.getYear() < 2101; day = day.plusDays(13)) {
+            assertEquals(day.toEpochDay(), AdherenceScoringEngine.DailyRollups.epochDay(day.toString()));
+        }
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), AdherenceScoringEngine.DailyRollups.epochDay("2000-02-29"));
+    }
+}
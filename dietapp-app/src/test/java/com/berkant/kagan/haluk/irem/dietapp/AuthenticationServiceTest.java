@@ -1016,4 +1016,34 @@ public class AuthenticationServiceTest {
             fail("Concurrent database operations test failed: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that paging through getAllUsers returns every user once, in id order
+     */
+    @Test
+    public void testGetAllUsersPagesMatchGetAllUsers() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(authService.register(testUsername + "_page" + i, TEST_PASSWORD,
+                                            "page" + i + "@example.com", TEST_NAME));
+        }
+
+        List<String> paged = new ArrayList<>();
+        long key = 0;
+        Page<User, Long> page;
+        do {
+            page = authService.getAllUsers(key, 2);
+            assertTrue(page.getItems().size() <= 2);
+            for (User user : page.getItems()) {
+                paged.add(user.getUsername());
+            }
+            key = page.getNextKey();
+        } while (page.hasMore());
+
+        List<String> expected = new ArrayList<>();
+        for (User user : authService.getAllUsers()) {
+            expected.add(user.getUsername());
+        }
+        assertEquals(expected, paged);
+        assertTrue(paged.indexOf(testUsername + "_page0") < paged.indexOf(testUsername + "_page2"));
+    }
+}
@@ -2,6 +2,7 @@ package com.berkant.kagan.haluk.irem.dietapp;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -1829,4 +1830,176 @@ public class CalorieNutrientTrackingServiceTest {
             
             }
         }
-    }
\ No newline at end of file
+
+        @Test
+        public void testRollingAveragesAreUpdatedIncrementally() throws SQLException {
+            String username = "rollinguser";
+            Connection conn = DatabaseHelper.getConnection();
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                                 "VALUES ('rollinguser', 'pw', 'rolling@example.com', 'Rolling User')");
+                    stmt.execute("DELETE FROM food_logs WHERE user_id = " +
+                                 "(SELECT id FROM users WHERE username = 'rollinguser')");
+                }
+                MealPlanningService planning = new MealPlanningService(conn);
+                CalorieNutrientTrackingService service = new CalorieNutrientTrackingService(planning);
+
+                planning.logFood(username, "2031-05-01", new Food("Rolling Oats", 100, 700));
+                planning.logFood(username, "2031-05-07", new Food("Rolling Rice", 100, 700));
+
+                CalorieNutrientTrackingService.RollingAverages week =
+                    service.getRollingAverages(username, 7, "2031-05-07");
+                assertEquals("2031-05-01", week.getStartDate());
+                assertEquals("2031-05-07", week.getEndDate());
+                assertEquals(200.0, week.getAverageCalories(), 0.001);
+                assertEquals(10.0, week.getCaloriePercentage(), 0.001);
+
+                // Food logged on the latest cached day is picked up
+                planning.logFood(username, "2031-05-07", new Food("Rolling Bread", 100, 700));
+                assertEquals(300.0, service.getRollingAverages(username, 7, "2031-05-07").getAverageCalories(), 0.001);
+
+                // Sliding forward evicts 2031-05-01
+                planning.logFood(username, "2031-05-08", new Food("Rolling Soup", 100, 70));
+                week = service.getRollingAverages(username, 7, "2031-05-08");
+                assertEquals("2031-05-02", week.getStartDate());
+                assertEquals(210.0, week.getAverageCalories(), 0.001);
+
+                // Food back-dated after the window was cached is picked up
+                planning.logFood(username, "2031-05-03", new Food("Rolling Pie", 100, 140));
+                assertEquals(230.0, service.getRollingAverages(username, 7, "2031-05-08").getAverageCalories(), 0.001);
+
+                // So is a removed food, even with the same end date
+                service.deleteFoodEntry("Rolling Soup");
+                assertEquals(220.0, service.getRollingAverages(username, 7, "2031-05-08").getAverageCalories(), 0.001);
+                planning.logFood(username, "2031-05-08", new Food("Rolling Soup", 100, 70));
+
+                // Windows of different sizes are tracked separately
+                assertEquals(2310.0 / 30, service.getRollingAverages(username, 30, "2031-05-08").getAverageCalories(), 0.001);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DELETE FROM food_logs WHERE user_id = " +
+                                 "(SELECT id FROM users WHERE username = 'rollinguser')");
+                }
+                DatabaseHelper.releaseConnection(conn);
+            }
+        }
+
+        @Test
+        public void testRollingAveragesForUnknownUser() {
+            CalorieNutrientTrackingService service = new CalorieNutrientTrackingService(mealPlanningService);
+            CalorieNutrientTrackingService.RollingAverages averages =
+                service.getRollingAverages("no_such_user", 30, "2031-05-08");
+            assertEquals(0.0, averages.getAverageCalories(), 0.0);
+            assertEquals(30, averages.getWindowDays());
+            assertEquals(0.0, service.getRollingAverages(null, 7, "2031-05-08").getAverageProtein(), 0.0);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testRollingAveragesRejectsInvalidDate() {
+            new CalorieNutrientTrackingService(mealPlanningService).getRollingAverages("testuser", 7, "not-a-date");
+        }
+
+        @Test
+        public void testFoodEntryPagesMatchViewFoodEntries() throws SQLException {
+            CalorieNutrientTrackingService service = new CalorieNutrientTrackingService(mealPlanningService);
+            service.setAutocompleteIndex(null);
+            service.addFoodEntry("Test Paged Entry 1", 100, 10, 20, 5);
+            service.addFoodEntry("Test Paged Entry 2", 200, 15, 30, 8);
+            service.addFoodEntry("Test Paged Entry 3", 300, 20, 40, 9);
+            try {
+                List<String> entries = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                long entryKey = 0;
+                long nameKey = 0;
+                Page<String, Long> entryPage;
+                Page<String, Long> namePage;
+                do {
+                    entryPage = service.viewFoodEntries(entryKey, 2);
+                    entries.addAll(entryPage.getItems());
+                    entryKey = entryPage.getNextKey();
+                } while (entryPage.hasMore());
+                do {
+                    namePage = service.getAllFoods(nameKey, 3);
+                    names.addAll(namePage.getItems());
+                    nameKey = namePage.getNextKey();
+                } while (namePage.hasMore());
+
+                assertEquals(service.viewFoodEntries(), entries);
+                // getAllFoods has no order, pages are in id order
+                List<String> allFoods = service.getAllFoods();
+                java.util.Collections.sort(allFoods);
+                java.util.Collections.sort(names);
+                assertEquals(allFoods, names);
+                assertTrue(entries.contains("Test Paged Entry 3, 300 kcal, 20.0g protein, 40.0g carbs, 9.0g fat"));
+                assertTrue(service.viewFoodEntries(entryKey, 2).getItems().isEmpty());
+            } finally {
+                service.deleteFoodEntry("Test Paged Entry 1");
+                service.deleteFoodEntry("Test Paged Entry 2");
+                service.deleteFoodEntry("Test Paged Entry 3");
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testFoodEntryPagesRejectNonPositivePageSize() throws SQLException {
+            new CalorieNutrientTrackingService(mealPlanningService).viewFoodEntries(0, 0);
+        }
+    
+
+        @Test
+        public void testAdherenceScoresFromDailyReports() throws SQLException {
+            DatabaseHelper.initializeDatabase();
+            Connection conn = DatabaseHelper.getConnection();
+            String user = "(SELECT id FROM users WHERE username = 'adherenceuser')";
+            String columns = "INSERT INTO daily_nutrition_reports (user_id, date, entry_count, total_calories, " +
+                             "total_protein, total_carbs, total_fat, total_fiber, total_sugar, total_sodium, " +
+                             "calorie_goal, protein_goal, carb_goal, fat_goal, calorie_percentage) VALUES (" + user;
+            try {
+                int userId;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                                 "VALUES ('adherenceuser', 'pw', 'adherence@example.com', 'Adherence User')");
+                    stmt.execute("DELETE FROM daily_nutrition_reports WHERE user_id = " + user);
+                    stmt.execute(columns + ", '2032-03-01', 3, 2000, 50, 250, 70, 0, 0, 0, 2000, 50, 250, 70, 100)");
+                    stmt.execute(columns + ", '2032-03-02', 3, 2600, 50, 250, 70, 0, 0, 0, 2000, 50, 250, 70, 130)");
+                    stmt.execute(columns + ", '2032-03-03', 3, 1950, 50, 250, 70, 0, 0, 0, 2000, 50, 250, 70, 97.5)");
+                    stmt.execute(columns + ", '2032-03-04', 3, 2050, 50, 250, 70, 0, 0, 0, 2000, 50, 250, 70, 102.5)");
+                    try (ResultSet rs = stmt.executeQuery("SELECT id FROM users WHERE username = 'adherenceuser'")) {
+                        assertTrue(rs.next());
+                        userId = rs.getInt(1);
+                    }
+                }
+
+                CalorieNutrientTrackingService service = new CalorieNutrientTrackingService(mealPlanningService);
+                AdherenceScoringEngine.AdherenceScores scores = service.getAdherenceScores("2032-03-01", "2032-03-05");
+                int row = -1;
+                for (int u = 0; u < scores.getUserCount(); u++) {
+                    if (scores.getUserId(u) == userId) {
+                        row = u;
+                    }
+                }
+                assertTrue(row >= 0);
+                assertEquals(4, scores.getDaysLogged(row));
+                assertEquals(3, scores.getDaysOnTarget(row));
+                assertEquals(1, scores.getDaysOver(row));
+                assertEquals(0, scores.getDaysUnder(row));
+                assertEquals(2, scores.getLongestStreak(row));
+                // 2032-03-05 has no report, so the streak does not reach the end of the range
+                assertEquals(0, scores.getCurrentStreak(row));
+                // 3/5 on target, 4/5 logged, perfect macros on logged days
+                assertEquals(50.0 * 3 / 5 + 20.0 * 4 / 5 + 30.0, scores.getScore(row), 0.001);
+
+                assertEquals(0, service.getAdherenceScores("2032-03-06", "2032-03-01").getUserCount());
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DELETE FROM daily_nutrition_reports WHERE user_id = " + user);
+                }
+                DatabaseHelper.releaseConnection(conn);
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void testAdherenceScoresRejectInvalidDate() {
+            new CalorieNutrientTrackingService(mealPlanningService).getAdherenceScores("2032-03-01", "not-a-date");
+        }
+}
@@ -0,0 +1,136 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the CalorieSampler class.
+ */
+public class CalorieSamplerTest {
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, " +
+                         "grams REAL NOT NULL, calories INTEGER NOT NULL, protein REAL DEFAULT 0, " +
+                         "carbs REAL DEFAULT 0, fat REAL DEFAULT 0, fiber REAL DEFAULT 0, " +
+                         "sugar REAL DEFAULT 0, sodium REAL DEFAULT 0)");
+            // Calories 10, 20, ..., 1000
+            for (int i = 100; i >= 1; i--) {
+                stmt.execute("INSERT INTO foods (name, grams, calories, protein) VALUES ('food" + i + "', 100, " +
+                             (i * 10) + ", " + i + ")");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testSampleRespectsLimitAndIsDistinct() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(1));
+        for (int round = 0; round < 50; round++) {
+            List<FoodNutrient> picks = sampler.sample(conn, 255, 5);
+            assertEquals(5, picks.size());
+            Set<String> names = new HashSet<>();
+            for (FoodNutrient food : picks) {
+                assertTrue(food.getCalories() <= 255);
+                assertTrue(names.add(food.getName()));
+            }
+        }
+        assertEquals(25, sampler.countAtMost(255));
+        assertEquals(0, sampler.countAtMost(5));
+        assertEquals(100, sampler.countAtMost(5000));
+    }
+
+    @Test
+    public void testSameSeedGivesSameSample() throws Exception {
+        List<FoodNutrient> first = new CalorieSampler(new Random(42)).sample(conn, 600, 5);
+        List<FoodNutrient> second = new CalorieSampler(new Random(42)).sample(conn, 600, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(first.get(i).getName(), second.get(i).getName());
+        }
+    }
+
+    @Test
+    public void testSampleIsRoughlyUniform() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(3));
+        int[] hits = new int[11];
+        int rounds = 20000;
+        for (int round = 0; round < rounds; round++) {
+            for (FoodNutrient food : sampler.sample(conn, 100, 3)) {
+                hits[food.getCalories() / 10]++;
+            }
+        }
+        // Each of the 10 qualifying foods is expected in 3/10 of the rounds
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(rounds * 0.3, hits[i], rounds * 0.03);
+        }
+    }
+
+    @Test
+    public void testFewerQualifyingFoodsThanRequested() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(5));
+        assertEquals(3, sampler.sample(conn, 30, 5).size());
+        assertTrue(sampler.sample(conn, 5, 5).isEmpty());
+        assertTrue(sampler.sample(conn, 500, 0).isEmpty());
+    }
+
+    @Test
+    public void testNutrientsAreCarried() throws Exception {
+        List<FoodNutrient> picks = new CalorieSampler(new Random(9)).sample(conn, 10, 1);
+        assertEquals("food1", picks.get(0).getName());
+        assertEquals(1.0, picks.get(0).getProtein(), 0.0);
+        assertEquals(100.0, picks.get(0).getGrams(), 0.0);
+    }
+
+    @Test
+    public void testInsertedFoodsArePickedUp() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(11));
+        assertTrue(sampler.sample(conn, 5, 1).isEmpty());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO foods (name, grams, calories) VALUES ('water', 250, 0)");
+        }
+        // Not seen until a write through the application moves the version
+        assertTrue(sampler.sample(conn, 5, 1).isEmpty());
+        DatabaseHelper.foodDataChanged();
+        assertEquals("water", sampler.sample(conn, 5, 1).get(0).getName());
+    }
+
+    @Test
+    public void testInvalidateReloadsEditedFoods() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(13));
+        sampler.sample(conn, 10, 1);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE foods SET calories = 1 WHERE name = 'food2'");
+        }
+        assertEquals(1, sampler.sample(conn, 10, 5).size());
+        sampler.invalidate();
+        assertEquals(2, sampler.sample(conn, 10, 5).size());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testClosedConnectionThrows() throws Exception {
+        CalorieSampler sampler = new CalorieSampler(new Random(17));
+        sampler.sample(conn, 100, 2);
+        conn.close();
+        sampler.sample(conn, 100, 2);
+    }
+}
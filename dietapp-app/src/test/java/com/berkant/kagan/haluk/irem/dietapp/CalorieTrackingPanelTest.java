@@ -190,9 +190,9 @@ public class CalorieTrackingPanelTest {
         }
 
         @Override
-        public List<String> viewFoodEntries() throws SQLException {
+        public Page<String, Long> viewFoodEntries(long afterId, int pageSize) throws SQLException {
             if (throwOnView) throw new SQLException("Test exception");
-            return entries;
+            return new Page<>(entries, (long) entries.size(), false);
         }
 
         @Override
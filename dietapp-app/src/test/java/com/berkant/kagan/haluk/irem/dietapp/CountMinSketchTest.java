@@ -0,0 +1,72 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the CountMinSketch class.
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void testEstimatesNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        for (int i = 0; i < 2000; i++) {
+            sketch.add("food" + (i % 500), 1);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(sketch.estimate("food" + i) >= 4);
+        }
+        assertEquals(2000, sketch.getTotalCount());
+    }
+
+    @Test
+    public void testEstimateIsCloseForFrequentKey() {
+        CountMinSketch sketch = new CountMinSketch(1024, 5);
+        sketch.add("apple", 1000);
+        for (int i = 0; i < 5000; i++) {
+            sketch.add("rare" + i, 1);
+        }
+        long estimate = sketch.estimate("apple");
+        assertTrue(estimate >= 1000);
+        // Error bound: e / width * total count
+        assertTrue(estimate <= 1000 + Math.E / 1024 * 6000);
+    }
+
+    @Test
+    public void testMergeAddsCounts() {
+        CountMinSketch a = new CountMinSketch(64, 3);
+        CountMinSketch b = new CountMinSketch(64, 3);
+        a.add("rice", 3);
+        b.add("rice", 4);
+        a.merge(b);
+        assertTrue(a.estimate("rice") >= 7);
+        assertEquals(7, a.getTotalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeRejectsDifferentDimensions() {
+        new CountMinSketch(64, 3).merge(new CountMinSketch(32, 3));
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(128, 4);
+        sketch.add("bread", 12);
+        sketch.add("milk", 5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        CountMinSketch restored = CountMinSketch.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.estimate("bread"), restored.estimate("bread"));
+        assertEquals(sketch.estimate("milk"), restored.estimate("milk"));
+        assertEquals(17, restored.getTotalCount());
+    }
+}
@@ -1793,4 +1793,16 @@ public class DatabaseHelperTest {
             fail("Test should not throw exception: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that initialization creates the tables written by the batch jobs
+     */
+    @Test
+    public void testInitializeCreatesBatchJobTables() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'daily_nutrition_reports'")) {
+            assertTrue("Report table should exist before the batch job first runs", rs.next());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for keystroke-by-keystroke autocomplete from the in-memory index on a
+ * 500k-food catalog with 500k logged foods, with exact prefixes and with misspelled
+ * ones. The index is loaded from a temporary database the way the services load it.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.FoodAutocompleteBenchmark
+ */
+public class FoodAutocompleteBenchmark {
+
+    private static final int FOODS = 500_000;
+    private static final int SAMPLED_NAMES = 300;
+    private static final int LIMIT = 8;
+    private static final int WARMUP_PASSES = 4;
+
+    private static final String[] BRANDS = {"", "", "", "Acme ", "Golden Farm ", "Nordic ", "Sunrise ", "Mediterra ",
+                                            "Anatolia ", "Green Valley ", "Daily ", "Prime ", "Homestyle "};
+    private static final String[] STYLES = {"", "Grilled ", "Fried ", "Baked ", "Raw ", "Boiled ", "Roasted ", "Smoked ",
+                                            "Steamed ", "Organic ", "Low Fat ", "Whole ", "Spicy ", "Sweet ", "Salted ",
+                                            "Dried ", "Frozen ", "Fresh ", "Light ", "Crispy "};
+    private static final String[] BASES = {"Chicken", "Beef", "Pork", "Turkey", "Salmon", "Tuna", "Cod", "Shrimp",
+                                           "Apple", "Banana", "Cheese", "Cheddar", "Chocolate", "Bread", "Rice", "Pasta",
+                                           "Yogurt", "Milk", "Egg", "Tomato", "Potato", "Carrot", "Oat", "Almond",
+                                           "Peanut", "Lentil", "Bean", "Corn", "Spinach", "Broccoli", "Orange", "Grape",
+                                           "Cherry", "Chickpea", "Quinoa", "Barley", "Mushroom", "Pepper", "Onion",
+                                           "Garlic", "Cabbage", "Zucchini", "Eggplant", "Avocado", "Mango", "Pear",
+                                           "Walnut", "Hazelnut", "Pistachio", "Honey", "Coconut", "Pumpkin", "Lamb",
+                                           "Duck", "Feta", "Mozzarella", "Tofu", "Tahini", "Bulgur", "Spelt"};
+    private static final String[] FORMS = {"", " Salad", " Soup", " Sandwich", " Bowl", " Wrap", " Pie", " Curry",
+                                           " Stew", " Bar", " Chips", " Sauce", " Juice", " Cake", " Muffin", " Burger",
+                                           " Pilaf", " Kebab", " Omelette", " Smoothie", " Spread", " Cookies",
+                                           " Noodles", " Pizza", " Risotto"};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(48);
+        List<String> names = new ArrayList<>();
+        List<String> sample = new ArrayList<>();
+        for (int i = 0; i < FOODS; i++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + STYLES[random.nextInt(STYLES.length)]
+                        + BASES[random.nextInt(BASES.length)] + FORMS[random.nextInt(FORMS.length)]
+                        + (random.nextInt(4) == 0 ? " " + (100 + random.nextInt(400)) + " g" : "");
+            names.add(name);
+            if (sample.size() < SAMPLED_NAMES && random.nextInt(FOODS / SAMPLED_NAMES) == 0) {
+                sample.add(name);
+            }
+        }
+
+        File dbFile = File.createTempFile("food-autocomplete", ".db");
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(FoodAutocompleteIndex.DEFAULT_TOP_K);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath())) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+                stmt.execute("CREATE TABLE food_logs (id INTEGER PRIMARY KEY, food_id INTEGER NOT NULL)");
+                stmt.execute("CREATE TABLE meal_plans (id INTEGER PRIMARY KEY, food_id INTEGER NOT NULL)");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement food = conn.prepareStatement("INSERT INTO foods (name) VALUES (?)");
+                 PreparedStatement log = conn.prepareStatement("INSERT INTO food_logs (food_id) VALUES (?)")) {
+                for (String name : names) {
+                    food.setString(1, name);
+                    food.addBatch();
+                    log.setInt(1, 1 + random.nextInt(FOODS));
+                    log.addBatch();
+                }
+                food.executeBatch();
+                log.executeBatch();
+            }
+            conn.commit();
+
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            index.load(conn);
+            long built = System.nanoTime() - start;
+            System.gc();
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+            System.out.printf("%d foods, %d distinct names, loaded in %.0f ms, about %d MB of heap%n",
+                              FOODS, index.size(), built / 1e6, (heapAfter - heapBefore) >> 20);
+        } finally {
+            dbFile.delete();
+        }
+
+        List<String> typed = new ArrayList<>();
+        List<String> typos = new ArrayList<>();
+        for (String name : sample) {
+            for (int length = 1; length <= Math.min(name.length(), 14); length++) {
+                typed.add(name.substring(0, length));
+            }
+            // Double one letter, as in "bananna"
+            String prefix = name.substring(0, Math.min(name.length(), 10));
+            int at = 1 + random.nextInt(prefix.length() - 1);
+            typos.add(prefix.substring(0, at) + prefix.charAt(at) + prefix.substring(at));
+        }
+
+        for (int pass = 0; pass <= WARMUP_PASSES; pass++) {
+            report(pass < WARMUP_PASSES ? "warmup typed" : "typed", index, typed);
+            report(pass < WARMUP_PASSES ? "warmup typos" : "typos", index, typos);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            index.add("Benchmark Food " + i);
+        }
+        System.out.printf("add: %.2f us per new name%n", (System.nanoTime() - start) / 1e3 / 10_000);
+        start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            index.recordUse(names.get(random.nextInt(FOODS)));
+        }
+        System.out.printf("recordUse: %.2f us per call%n", (System.nanoTime() - start) / 1e3 / 10_000);
+    }
+
+    private static void report(String label, FoodAutocompleteIndex index, List<String> queries) {
+        long[] times = new long[queries.size()];
+        long results = 0;
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            results += index.suggest(queries.get(i), LIMIT).size();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.printf("%s: %d queries, %.1f results avg, p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                          label, times.length, (double) results / times.length, times[times.length / 2] / 1e6,
+                          times[times.length * 95 / 100] / 1e6, times[times.length * 99 / 100] / 1e6,
+                          times[times.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,243 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the FoodAutocompleteIndex class.
+ */
+public class FoodAutocompleteIndexTest {
+
+    @Test
+    public void testPrefixSuggestionsByPopularity() {
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(3);
+        assertTrue(index.add("Apple Pie"));
+        assertTrue(index.add("Apple"));
+        assertTrue(index.add("Applesauce"));
+        assertTrue(index.add("Apricot Jam"));
+        assertTrue(index.add("Banana"));
+        assertFalse("Names differing in case share an entry", index.add("  apple  PIE"));
+        assertFalse(index.add(" "));
+        assertFalse(index.add(null));
+        assertEquals(5, index.size());
+
+        assertEquals(Arrays.asList("Apple", "Apple Pie", "Applesauce"), index.suggest("app", 10));
+        assertEquals(Arrays.asList("Apple", "Apple Pie", "Applesauce"), index.suggest("AP", 10));
+        assertEquals(Arrays.asList("Apple Pie"), index.suggest("apple   p", 10));
+        assertEquals(Arrays.asList("Apple"), index.suggest("a", 1));
+
+        index.recordUse("applesauce");
+        index.recordUse("Apricot Jam");
+        index.recordUse("Apricot Jam");
+        assertEquals(Arrays.asList("Apricot Jam", "Applesauce", "Apple"), index.suggest("a", 10));
+        assertEquals(Arrays.asList("Applesauce", "Apple", "Apple Pie"), index.suggest("appl", 10));
+
+        assertTrue(index.suggest("cherry", 10).isEmpty());
+        assertTrue(index.suggest("", 10).isEmpty());
+        assertTrue(index.suggest(null, 10).isEmpty());
+        assertTrue(index.suggest("a", 0).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(5);
+        index.add("Oat Milk");
+        index.add("Oatmeal");
+        index.add("Oat");
+        assertTrue(index.remove("OAT"));
+        assertFalse(index.remove("Oat"));
+        assertFalse(index.remove(null));
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList("Oat Milk", "Oatmeal"), index.suggest("oa", 10));
+
+        assertTrue(index.add("oat"));
+        assertEquals(Arrays.asList("oat", "Oat Milk", "Oatmeal"), index.suggest("oat", 10));
+    }
+
+    @Test
+    public void testTypoTolerantSuggestions() {
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(10);
+        index.add("Banana Smoothie");
+        index.add("Banana Bread");
+        index.add("Chicken Soup");
+        index.add("Grilled Chicken");
+        index.add("Bagel");
+        index.recordUse("Banana Bread");
+
+        assertEquals(Arrays.asList("Banana Bread", "Banana Smoothie"), index.suggest("bananna", 10));
+        assertEquals("Swapped letters", Arrays.asList("Chicken Soup"), index.suggest("chikcen", 10));
+        assertEquals("Missing letter", Arrays.asList("Chicken Soup"), index.suggest("chiken s", 10));
+        assertEquals("Two typos from eight characters",
+                     Arrays.asList("Grilled Chicken"), index.suggest("grilld chickn", 10));
+        assertTrue("Short text is matched exactly", index.suggest("bna", 10).isEmpty());
+        assertFalse(index.suggest("bananas", 10).isEmpty());
+        assertTrue(index.suggest("xyzzyqq", 10).isEmpty());
+
+        // Exact prefix matches come before near matches
+        index.add("Bananna Split");
+        assertEquals(Arrays.asList("Bananna Split", "Banana Bread", "Banana Smoothie"), index.suggest("bananna", 10));
+        assertEquals(Arrays.asList("Bananna Split", "Banana Bread"), index.suggest("bananna", 2));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(48);
+        String[] words = {"apple", "apricot", "ap", "banana", "bean", "be", "chicken", "chick", "chickpea",
+                          "cheese", "cheddar", "rice", "rye", "soup", "salad", "sauce"};
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(4);
+        Map<String, Integer> uses = new HashMap<>();
+        for (int i = 0; i < 600; i++) {
+            String name = words[random.nextInt(words.length)] + (random.nextBoolean() ? "" : " " + words[random.nextInt(words.length)]);
+            if (random.nextInt(4) == 0 && !uses.isEmpty()) {
+                List<String> known = new ArrayList<>(uses.keySet());
+                Collections.sort(known);
+                String used = known.get(random.nextInt(known.size()));
+                index.recordUse(used);
+                uses.merge(used, 1, Integer::sum);
+            } else if (random.nextInt(10) == 0 && uses.containsKey(name)) {
+                assertTrue(index.remove(name));
+                uses.remove(name);
+            } else {
+                assertEquals(!uses.containsKey(name), index.add(name));
+                uses.putIfAbsent(name, 0);
+            }
+
+            String prefix = name.substring(0, 1 + random.nextInt(Math.min(name.length(), 6))).trim();
+            List<String> expected = new ArrayList<>();
+            for (String known : uses.keySet()) {
+                if (known.startsWith(prefix)) {
+                    expected.add(known);
+                }
+            }
+            expected.sort((a, b) -> uses.get(a).equals(uses.get(b)) ? a.compareTo(b) : uses.get(b) - uses.get(a));
+            List<String> actual = index.suggest(prefix, 4);
+            // Near matches may follow the exact ones when there are fewer than four
+            int exact = Math.min(4, expected.size());
+            assertEquals(prefix, expected.subList(0, exact), actual.subList(0, Math.min(exact, actual.size())));
+        }
+        assertEquals(uses.size(), index.size());
+    }
+
+    @Test
+    public void testTypoMatchesBruteForce() {
+        Random random = new Random(480);
+        String[] words = {"banana", "bread", "bean", "berry", "chicken", "cheese", "chickpea", "soup", "sauce",
+                          "salad", "rice", "roll"};
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(5);
+        Map<String, Integer> uses = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            index.add(name);
+            int count = random.nextInt(5);
+            uses.merge(name, count, Integer::sum);
+            for (int c = 0; c < count; c++) {
+                index.recordUse(name);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            List<String> known = new ArrayList<>(uses.keySet());
+            Collections.sort(known);
+            StringBuilder query = new StringBuilder(known.get(random.nextInt(known.size())));
+            query.setLength(4 + random.nextInt(query.length() - 4));
+            for (int typo = 0; typo < 2; typo++) {
+                int at = random.nextInt(query.length());
+                switch (random.nextInt(3)) {
+                    case 0: query.setCharAt(at, (char) ('a' + random.nextInt(26))); break;
+                    case 1: query.insert(at, (char) ('a' + random.nextInt(26))); break;
+                    default: if (query.length() > 4) { query.deleteCharAt(at); } break;
+                }
+            }
+            String text = query.toString().trim();
+            int maxEdits = text.length() >= 8 ? 2 : text.length() >= 4 ? 1 : 0;
+            Map<String, Integer> distance = new HashMap<>();
+            for (String name : known) {
+                int d = name.startsWith(text) ? 0 : prefixDistance(text, name);
+                if (d <= maxEdits) {
+                    distance.put(name, d);
+                }
+            }
+            List<String> expected = new ArrayList<>(distance.keySet());
+            expected.sort((a, b) -> {
+                int byExact = Integer.compare(distance.get(a) == 0 ? 0 : 1, distance.get(b) == 0 ? 0 : 1);
+                if (byExact != 0) {
+                    return byExact;
+                }
+                int byDistance = Integer.compare(distance.get(a), distance.get(b));
+                if (byDistance != 0) {
+                    return byDistance;
+                }
+                return uses.get(a).equals(uses.get(b)) ? a.compareTo(b) : uses.get(b) - uses.get(a);
+            });
+            assertEquals(text, expected.subList(0, Math.min(5, expected.size())), index.suggest(text, 5));
+        }
+    }
+
+    /** Smallest edit distance, with swaps of adjacent letters, between a and any prefix of b */
+    private static int prefixDistance(String a, String b) {
+        int[][] d = new int[b.length() + 1][a.length() + 1];
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i <= b.length(); i++) {
+            for (int j = 0; j <= a.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    int cost = b.charAt(i - 1) == a.charAt(j - 1) ? 0 : 1;
+                    d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                    if (i > 1 && j > 1 && b.charAt(i - 1) == a.charAt(j - 2) && b.charAt(i - 2) == a.charAt(j - 1)) {
+                        d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                    }
+                }
+            }
+            best = Math.min(best, d[i][a.length()]);
+        }
+        return best;
+    }
+
+    @Test
+    public void testLoadCountsLogsAndPlans() throws Exception {
+        File dbFile = File.createTempFile("autocomplete", ".db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY, name TEXT)");
+            stmt.execute("CREATE TABLE food_logs (id INTEGER PRIMARY KEY, food_id INTEGER)");
+            stmt.execute("CREATE TABLE meal_plans (id INTEGER PRIMARY KEY, food_id INTEGER)");
+            stmt.execute("INSERT INTO foods VALUES (1, 'Lentil Soup'), (2, 'Lemon Cake'), (3, 'lentil soup'), " +
+                         "(4, 'Leek Pie'), (5, NULL)");
+            stmt.execute("INSERT INTO food_logs (food_id) VALUES (2), (2), (4)");
+            stmt.execute("INSERT INTO meal_plans (food_id) VALUES (1), (3), (3), (4)");
+
+            FoodAutocompleteIndex index = new FoodAutocompleteIndex(10);
+            index.add("Lemonade");
+            index.add("Leek Pie");
+            assertFalse(index.isLoaded());
+            index.load(conn);
+            assertTrue(index.isLoaded());
+            assertEquals(4, index.size());
+            assertEquals(Arrays.asList("Lentil Soup", "Leek Pie", "Lemon Cake", "Lemonade"), index.suggest("le", 10));
+
+            stmt.execute("INSERT INTO foods VALUES (6, 'Lettuce')");
+            index.load(conn);
+            assertEquals("Only the first load reads the database", 4, index.size());
+
+            assertTrue(index.reloadIfChanged(conn));
+            assertEquals(5, index.size());
+            assertEquals("Lettuce", index.suggest("lett", 10).get(0));
+            assertFalse("Unchanged foods are not read again", index.reloadIfChanged(conn));
+        } finally {
+            dbFile.delete();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the FoodNameAutocomplete class.
+ */
+public class FoodNameAutocompleteTest {
+
+    private JTextField field;
+    private FoodNameAutocomplete autocomplete;
+    private List<String> lookups;
+
+    @Before
+    public void setUp() {
+        field = new JTextField(20);
+        lookups = new ArrayList<>();
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(5);
+        index.add("Banana");
+        index.add("Banana Bread");
+        index.add("Bagel");
+        autocomplete = new FoodNameAutocomplete(field, text -> {
+            lookups.add(text);
+            return index.suggest(text, FoodNameAutocomplete.DEFAULT_SUGGESTIONS);
+        });
+    }
+
+    @Test
+    public void testRefreshListsSuggestions() {
+        autocomplete.refresh("ban");
+        assertEquals(Arrays.asList("Banana", "Banana Bread"), autocomplete.getSuggestions());
+        autocomplete.refresh("bananna");
+        assertEquals(Arrays.asList("Banana", "Banana Bread"), autocomplete.getSuggestions());
+        autocomplete.refresh("x");
+        assertTrue(autocomplete.getSuggestions().isEmpty());
+        autocomplete.refresh("  ");
+        assertTrue(autocomplete.getSuggestions().isEmpty());
+        assertEquals("Blank text is not looked up", Arrays.asList("ban", "bananna", "x"), lookups);
+    }
+
+    @Test
+    public void testLoaderRunsOffTheEventDispatchThread() throws InterruptedException {
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicBoolean onEventThread = new AtomicBoolean(true);
+        new FoodNameAutocomplete(new JTextField(20), text -> new ArrayList<>(), () -> {
+            onEventThread.set(SwingUtilities.isEventDispatchThread());
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertFalse(onEventThread.get());
+    }
+
+    @Test
+    public void testProgrammaticTextIsNotLookedUp() {
+        field.setText("ba");
+        autocomplete.accept("Bagel");
+        assertEquals("Bagel", field.getText());
+        assertTrue(lookups.isEmpty());
+    }
+}
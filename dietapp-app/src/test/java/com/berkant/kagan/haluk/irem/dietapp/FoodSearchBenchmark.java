@@ -0,0 +1,139 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for type-ahead food search on a 500k-food catalog. Every sampled
+ * name is typed one character at a time, and a second set of queries uses word
+ * prefixes in another order ("chi gri").
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.FoodSearchBenchmark
+ */
+public class FoodSearchBenchmark {
+
+    private static final int FOODS = 500_000;
+    private static final int SAMPLED_NAMES = 300;
+    private static final int LIMIT = 10;
+    private static final int WARMUP_PASSES = 4;
+    /** Runs per query; the best run filters out scheduler ticks on a busy single core */
+    private static final int REPEATS = 3;
+
+    private static final String[] BRANDS = {"", "", "", "Acme ", "Golden Farm ", "Nordic ", "Sunrise ", "Mediterra ",
+                                            "Anatolia ", "Green Valley ", "Daily ", "Prime ", "Homestyle "};
+    private static final String[] STYLES = {"", "Grilled ", "Fried ", "Baked ", "Raw ", "Boiled ", "Roasted ", "Smoked ",
+                                            "Steamed ", "Organic ", "Low Fat ", "Whole ", "Spicy ", "Sweet ", "Salted ",
+                                            "Dried ", "Frozen ", "Fresh ", "Light ", "Crispy "};
+    private static final String[] BASES = {"Chicken", "Beef", "Pork", "Turkey", "Salmon", "Tuna", "Cod", "Shrimp",
+                                           "Apple", "Banana", "Cheese", "Cheddar", "Chocolate", "Bread", "Rice", "Pasta",
+                                           "Yogurt", "Milk", "Egg", "Tomato", "Potato", "Carrot", "Oat", "Almond",
+                                           "Peanut", "Lentil", "Bean", "Corn", "Spinach", "Broccoli", "Orange", "Grape",
+                                           "Cherry", "Chickpea", "Quinoa", "Barley", "Mushroom", "Pepper", "Onion",
+                                           "Garlic", "Cabbage", "Zucchini", "Eggplant", "Avocado", "Mango", "Pear",
+                                           "Walnut", "Hazelnut", "Pistachio", "Honey", "Coconut", "Pumpkin", "Lamb",
+                                           "Duck", "Feta", "Mozzarella", "Tofu", "Tahini", "Bulgur", "Spelt"};
+    private static final String[] FORMS = {"", " Salad", " Soup", " Sandwich", " Bowl", " Wrap", " Pie", " Curry",
+                                           " Stew", " Bar", " Chips", " Sauce", " Juice", " Cake", " Muffin", " Burger",
+                                           " Pilaf", " Kebab", " Omelette", " Smoothie", " Spread", " Cookies",
+                                           " Noodles", " Pizza", " Risotto"};
+
+    public static void main(String[] args) throws Exception {
+        File dbFile = File.createTempFile("food-search", ".db");
+        Random random = new Random(47);
+        List<String> sample = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath())) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, " +
+                             "grams REAL NOT NULL, calories INTEGER NOT NULL)");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO foods (name, grams, calories) VALUES (?, 100, ?)")) {
+                for (int i = 0; i < FOODS; i++) {
+                    String name = BRANDS[random.nextInt(BRANDS.length)] + STYLES[random.nextInt(STYLES.length)]
+                                + BASES[random.nextInt(BASES.length)] + FORMS[random.nextInt(FORMS.length)]
+                                + (random.nextInt(4) == 0 ? " " + (100 + random.nextInt(400)) + " g" : "");
+                    pstmt.setString(1, name);
+                    pstmt.setInt(2, 50 + random.nextInt(600));
+                    pstmt.addBatch();
+                    if (i % 10_000 == 0) {
+                        pstmt.executeBatch();
+                    }
+                    if (sample.size() < SAMPLED_NAMES && random.nextInt(FOODS / SAMPLED_NAMES) == 0) {
+                        sample.add(name);
+                    }
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            long start = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                DatabaseHelper.createFoodSearchIndex(stmt);
+            }
+            System.out.printf("%d foods, index built in %.0f ms%n", FOODS, (System.nanoTime() - start) / 1e6);
+
+            List<String> typed = new ArrayList<>();
+            List<String> words = new ArrayList<>();
+            for (String name : sample) {
+                for (int length = 1; length <= Math.min(name.length(), 14); length++) {
+                    typed.add(name.substring(0, length));
+                }
+                String[] parts = name.split(" ");
+                if (parts.length >= 2) {
+                    String last = parts[parts.length - 1];
+                    String first = parts[0];
+                    words.add(last.substring(0, Math.min(3, last.length())) + " "
+                              + first.substring(0, Math.min(4, first.length())));
+                }
+            }
+
+            MealPlanningService service = new MealPlanningService(conn);
+            // Several warmup passes: on a single core, JIT compilation shows up as latency spikes
+            for (int pass = 0; pass <= WARMUP_PASSES; pass++) {
+                report(pass < WARMUP_PASSES ? "warmup typed" : "typed", service, typed);
+                report(pass < WARMUP_PASSES ? "warmup words" : "words", service, words);
+            }
+        } finally {
+            dbFile.delete();
+        }
+    }
+
+    private static void report(String label, MealPlanningService service, List<String> queries) {
+        long[] first = new long[queries.size()];
+        long[] best = new long[queries.size()];
+        long results = 0;
+        for (int i = 0; i < first.length; i++) {
+            best[i] = Long.MAX_VALUE;
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                long start = System.nanoTime();
+                int found = service.searchFoods(queries.get(i), LIMIT).size();
+                long elapsed = System.nanoTime() - start;
+                if (repeat == 0) {
+                    first[i] = elapsed;
+                    results += found;
+                }
+                best[i] = Math.min(best[i], elapsed);
+            }
+        }
+        Arrays.sort(first);
+        Arrays.sort(best);
+        System.out.printf("%s: %d queries, %.1f results avg, first run p50 %.3f ms, p95 %.3f ms, p99 %.3f ms; " +
+                          "best of %d p50 %.3f ms, p95 %.3f ms, p99 %.3f ms%n",
+                          label, first.length, (double) results / first.length, percentile(first, 50),
+                          percentile(first, 95), percentile(first, 99), REPEATS,
+                          percentile(best, 50), percentile(best, 95), percentile(best, 99));
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        return sorted[sorted.length * percent / 100] / 1e6;
+    }
+}
@@ -0,0 +1,184 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the FoodSubstitutionIndex class.
+ */
+public class FoodSubstitutionIndexTest {
+
+    private static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+
+    @Test
+    public void testNearestMatchesBruteForce() {
+        Random random = new Random(7);
+        List<FoodNutrient> foods = new ArrayList<>();
+        List<String> mealTypes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            foods.add(randomFood("Food" + i, random));
+            mealTypes.add(MEAL_TYPES[random.nextInt(MEAL_TYPES.length)]);
+        }
+        FoodSubstitutionIndex index = new FoodSubstitutionIndex(foods, mealTypes);
+        assertEquals(2000, index.size());
+
+        for (int q = 0; q < 200; q++) {
+            FoodNutrient reference = q % 2 == 0 ? foods.get(random.nextInt(foods.size()))
+                                                : randomFood("Query" + q, random);
+            FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(5);
+            if (q % 3 == 0) {
+                query.atMost(FoodSubstitutionIndex.FAT, reference.getFat() * 100.0 / reference.getGrams());
+            }
+            if (q % 4 == 0) {
+                query.mealType("LUNCH");
+            }
+            List<FoodSubstitutionIndex.Substitute> fast = index.findNearest(reference, query);
+            List<Double> slow = bruteForce(foods, mealTypes, reference, q);
+
+            assertEquals(slow.size(), fast.size());
+            for (int i = 0; i < fast.size(); i++) {
+                assertEquals(slow.get(i), fast.get(i).getDistance(), 1e-9);
+                assertNotEquals(reference.getName(), fast.get(i).getFood().getName());
+                if (q % 4 == 0) {
+                    assertEquals("lunch", fast.get(i).getMealType());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConstraintsAndEdgeCases() {
+        List<FoodNutrient> foods = new ArrayList<>();
+        foods.add(new FoodNutrient("Whole Milk", 100, 61, 3.2, 4.8, 3.3, 0, 5, 43));
+        foods.add(new FoodNutrient("Skim Milk", 200, 68, 6.8, 10, 0.2, 0, 10, 84));
+        foods.add(new FoodNutrient("Cheddar", 50, 201, 12.5, 0.7, 16.5, 0, 0.3, 310));
+        foods.add(new FoodNutrient("Semi Skimmed Milk", 100, 46, 3.4, 4.8, 1.7, 0, 5, 44));
+        FoodSubstitutionIndex index = new FoodSubstitutionIndex(foods, null);
+
+        FoodNutrient whole = index.findByName("WHOLE MILK");
+        assertNotNull(whole);
+        assertNull(index.getMealType("Whole Milk"));
+
+        List<FoodSubstitutionIndex.Substitute> similar = index.findNearest(whole, new FoodSubstitutionIndex.Query(1));
+        assertEquals(1, similar.size());
+        assertEquals("Semi Skimmed Milk", similar.get(0).getFood().getName());
+
+        FoodSubstitutionIndex.Query lowFat = new FoodSubstitutionIndex.Query(10)
+            .atMost(FoodSubstitutionIndex.FAT, 1.0);
+        List<FoodSubstitutionIndex.Substitute> skim = index.findNearest(whole, lowFat);
+        assertEquals(1, skim.size());
+        assertEquals("Skim Milk", skim.get(0).getFood().getName());
+
+        assertTrue(index.findNearest(whole, new FoodSubstitutionIndex.Query(0)).isEmpty());
+        assertTrue(new FoodSubstitutionIndex(new ArrayList<>(), null)
+                       .findNearest(whole, new FoodSubstitutionIndex.Query(3)).isEmpty());
+        assertNull(index.findByName("Soy Milk"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedMealTypesAreRejected() {
+        List<FoodNutrient> foods = new ArrayList<>();
+        foods.add(new FoodNutrient("Apple", 100, 52, 0.3, 14, 0.2, 2.4, 10, 1));
+        new FoodSubstitutionIndex(foods, new ArrayList<>());
+    }
+
+    @Test
+    public void testLoadFromDatabase() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, " +
+                         "grams REAL NOT NULL, calories INTEGER NOT NULL, protein REAL DEFAULT 0, " +
+                         "carbs REAL DEFAULT 0, fat REAL DEFAULT 0, fiber REAL DEFAULT 0, " +
+                         "sugar REAL DEFAULT 0, sodium REAL DEFAULT 0, meal_type TEXT)");
+            stmt.execute("INSERT INTO foods (name, grams, calories, protein, carbs, fat, meal_type) VALUES " +
+                         "('Pancakes', 150, 350, 8, 55, 10, 'breakfast'), " +
+                         "('Waffles', 150, 370, 9, 50, 14, 'breakfast'), " +
+                         "('Chocolate Cake', 150, 380, 5, 52, 17, 'snack'), " +
+                         "('Oatmeal', 250, 160, 6, 27, 3, 'breakfast')");
+            // Nutrients saved through MealPlanningService are kept in food_nutrients
+            stmt.execute("INSERT INTO foods (name, grams, calories, meal_type) VALUES ('Crepes', 150, 340, 'breakfast')");
+            stmt.execute("CREATE TABLE food_nutrients (id INTEGER PRIMARY KEY AUTOINCREMENT, food_id INTEGER NOT NULL, " +
+                         "protein REAL NOT NULL, carbs REAL NOT NULL, fat REAL NOT NULL, fiber REAL NOT NULL, " +
+                         "sugar REAL NOT NULL, sodium REAL NOT NULL)");
+            stmt.execute("INSERT INTO food_nutrients (food_id, protein, carbs, fat, fiber, sugar, sodium) VALUES " +
+                         "(5, 1, 1, 1, 0, 0, 0), (5, 8, 54, 11, 0, 0, 0)");
+
+            FoodSubstitutionIndex index = FoodSubstitutionIndex.load(conn);
+            assertEquals(5, index.size());
+            assertEquals("breakfast", index.getMealType("Waffles"));
+
+            FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(2).mealType("breakfast");
+            List<FoodSubstitutionIndex.Substitute> result = index.findNearest(index.findByName("Pancakes"), query);
+            assertEquals(2, result.size());
+            // The latest food_nutrients row of Crepes makes it closest to Pancakes
+            assertEquals("Crepes", result.get(0).getFood().getName());
+            assertEquals(8.0, result.get(0).getFood().getProtein(), 0.001);
+            assertEquals("Waffles", result.get(1).getFood().getName());
+            assertTrue(result.get(0).getDistance() < result.get(1).getDistance());
+        }
+    }
+
+    private static FoodNutrient randomFood(String name, Random random) {
+        return new FoodNutrient(name, 50 + random.nextInt(300), random.nextInt(800),
+                                random.nextDouble() * 40, random.nextDouble() * 90, random.nextDouble() * 40,
+                                random.nextDouble() * 12, random.nextDouble() * 50, random.nextDouble() * 900);
+    }
+
+    /**
+     * Linear scan with the same constraints and the same per-100 g, standard-deviation scaling.
+     */
+    private static List<Double> bruteForce(List<FoodNutrient> foods, List<String> mealTypes,
+                                           FoodNutrient reference, int q) {
+        int n = foods.size();
+        double[][] vectors = new double[n][];
+        for (int i = 0; i < n; i++) {
+            vectors[i] = per100g(foods.get(i));
+        }
+        double[] scale = new double[7];
+        for (int d = 0; d < 7; d++) {
+            double sum = 0;
+            double sumSq = 0;
+            for (double[] v : vectors) {
+                sum += v[d];
+                sumSq += v[d] * v[d];
+            }
+            double mean = sum / n;
+            scale[d] = 1.0 / Math.sqrt(sumSq / n - mean * mean);
+        }
+        double[] target = per100g(reference);
+        List<Double> distances = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (foods.get(i).getName().equals(reference.getName())) {
+                continue;
+            }
+            if (q % 3 == 0 && vectors[i][3] > target[3]) {
+                continue;
+            }
+            if (q % 4 == 0 && !"lunch".equals(mealTypes.get(i))) {
+                continue;
+            }
+            double sum = 0;
+            for (int d = 0; d < 7; d++) {
+                double diff = (vectors[i][d] - target[d]) * scale[d];
+                sum += diff * diff;
+            }
+            distances.add(Math.sqrt(sum));
+        }
+        distances.sort(null);
+        return distances.subList(0, Math.min(5, distances.size()));
+    }
+
+    private static double[] per100g(FoodNutrient food) {
+        double f = 100.0 / food.getGrams();
+        return new double[] {food.getCalories() * f, food.getProtein() * f, food.getCarbs() * f, food.getFat() * f,
+                             food.getFiber() * f, food.getSugar() * f, food.getSodium() * f};
+    }
+}
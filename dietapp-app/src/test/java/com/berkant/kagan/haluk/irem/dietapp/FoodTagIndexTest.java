@@ -0,0 +1,108 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.berkant.kagan.haluk.irem.dietapp.PersonalizedDietRecommendationService.DietType;
+
+/**
+ * Unit tests for the FoodTagIndex class.
+ */
+public class FoodTagIndexTest {
+
+    @Test
+    public void testTagsFromWholeWords() {
+        assertEquals(FoodTagIndex.POULTRY, FoodTagIndex.tagsOf("Grilled Chicken Salad"));
+        assertEquals(FoodTagIndex.DAIRY | FoodTagIndex.GLUTEN, FoodTagIndex.tagsOf("Cheese Sandwich"));
+        assertEquals(FoodTagIndex.EGG, FoodTagIndex.tagsOf("Scrambled Eggs"));
+        assertEquals(FoodTagIndex.NUTS, FoodTagIndex.tagsOf("Mixed Nuts"));
+        assertEquals(FoodTagIndex.SHELLFISH, FoodTagIndex.tagsOf("Garlic Shrimps"));
+        // Substring matching used to get these wrong
+        assertEquals(0L, FoodTagIndex.tagsOf("Roasted Eggplant"));
+        assertEquals(0L, FoodTagIndex.tagsOf("Oatmeal with Fruits"));
+        assertEquals(FoodTagIndex.NUTS, FoodTagIndex.tagsOf("Apple with Peanut Butter"));
+        assertEquals(FoodTagIndex.GLUTEN, FoodTagIndex.tagsOf("Egg-Free Pancakes"));
+        assertEquals(0L, FoodTagIndex.tagsOf(null));
+    }
+
+    @Test
+    public void testDietTypesCompileToMasks() {
+        assertEquals(FoodTagIndex.NOT_VEGETARIAN,
+                     FoodTagIndex.compile(DietType.VEGETARIAN, null).getForbiddenTags());
+        assertEquals(FoodTagIndex.NOT_VEGAN,
+                     FoodTagIndex.compile(DietType.VEGAN, Collections.emptyList()).getForbiddenTags());
+        assertEquals(0L, FoodTagIndex.compile(DietType.BALANCED, null).getForbiddenTags());
+        assertEquals(0L, FoodTagIndex.compile(null, null).getForbiddenTags());
+    }
+
+    @Test
+    public void testExclusionsCompileToGroupsOrTerms() {
+        FoodTagIndex.Restriction restriction = FoodTagIndex.compile(DietType.BALANCED,
+            Arrays.asList("Dairy", " nuts ", "mushrooms", ""));
+        assertEquals(FoodTagIndex.DAIRY | FoodTagIndex.NUTS, restriction.getForbiddenTags());
+        assertEquals(Collections.singletonList("mushrooms"), restriction.getExcludedTerms());
+
+        assertFalse(restriction.allows(new Food("Greek Yogurt", 150, 120)));
+        assertFalse(restriction.allows(new Food("Almond Cookies", 50, 220)));
+        assertFalse(restriction.allows(new Food("Stuffed Mushrooms", 200, 180)));
+        assertTrue(restriction.allows(new Food("Vegetable Soup", 300, 150)));
+    }
+
+    @Test
+    public void testCandidatesAndFilter() {
+        Food[] foods = {
+            new Food("Chicken Salad", 200, 300),
+            new Food("Tofu Stir Fry", 200, 280),
+            new Food("Greek Yogurt", 150, 120),
+            new Food("Fish Tacos", 220, 340),
+            new Food("Vegetable Curry", 250, 320)
+        };
+        FoodTagIndex index = new FoodTagIndex(foods);
+        assertEquals(FoodTagIndex.SOY, index.getTags(1));
+
+        BitSet vegetarian = index.candidates(FoodTagIndex.NOT_VEGETARIAN);
+        assertEquals("{1, 2, 4}", vegetarian.toString());
+
+        Food[] vegan = index.filter(FoodTagIndex.compile(DietType.VEGAN, null));
+        assertEquals(2, vegan.length);
+        assertSame(foods[1], vegan[0]);
+        assertSame(foods[4], vegan[1]);
+
+        Food[] veganNoSoy = index.filter(FoodTagIndex.compile(DietType.VEGAN, Arrays.asList("soy")));
+        assertEquals(1, veganNoSoy.length);
+        assertEquals("Vegetable Curry", veganNoSoy[0].getName());
+
+        assertEquals(0, new FoodTagIndex(new Food[0]).filter(FoodTagIndex.compile(DietType.VEGAN, null)).length);
+    }
+
+    @Test
+    public void testIndexReusedForReloadedOptions() {
+        FoodTagIndex index = new FoodTagIndex(new Food[] {
+            new Food("Chicken Salad", 200, 300),
+            new Food("Vegetable Curry", 250, 320)
+        });
+        Food[] reloaded = {
+            new Food("Chicken Salad", 200, 300),
+            new Food("Vegetable Curry", 250, 350)
+        };
+        assertTrue(index.hasSameNames(reloaded));
+        assertFalse(index.hasSameNames(new Food[] {new Food("Chicken Salad", 200, 300)}));
+        assertFalse(index.hasSameNames(new Food[] {reloaded[1], reloaded[0]}));
+
+        // The reloaded foods are returned, with their current values
+        Food[] vegetarian = index.filter(reloaded, FoodTagIndex.compile(DietType.VEGETARIAN, null));
+        assertEquals(1, vegetarian.length);
+        assertSame(reloaded[1], vegetarian[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFilterRejectsDifferentNames() {
+        new FoodTagIndex(new Food[] {new Food("Chicken Salad", 200, 300)})
+            .filter(new Food[] {new Food("Fish Tacos", 220, 340)}, FoodTagIndex.compile(DietType.VEGAN, null));
+    }
+}
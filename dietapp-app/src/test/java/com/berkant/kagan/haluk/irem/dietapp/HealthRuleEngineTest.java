@@ -0,0 +1,89 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the HealthRuleEngine class.
+ */
+public class HealthRuleEngineTest {
+
+    private static final String RULES =
+        "# test rules\n" +
+        "[kidney]\n" +
+        "match = kidney, renal\n" +
+        "limit = sodium <= 300\n" +
+        "limit = protein <= 20\n" +
+        "guideline = Watch protein.\n" +
+        "\n" +
+        "[heart]\n" +
+        "match = heart\n" +
+        "limit = sodium <= 500\n" +
+        "limit = fiber >= 2\n" +
+        "guideline = Eat fiber.\n";
+
+    @Test
+    public void testDefaultRulesAreLoaded() {
+        HealthRuleEngine engine = HealthRuleEngine.getDefault();
+        assertSame(engine, HealthRuleEngine.getDefault());
+        assertEquals(3, engine.size());
+
+        HealthRuleEngine.Restriction hypertension = engine.compile(Arrays.asList("Hypertension"));
+        assertEquals(400, hypertension.getMax(FoodSubstitutionIndex.SODIUM), 0);
+        assertEquals(Double.POSITIVE_INFINITY, hypertension.getMax(FoodSubstitutionIndex.SUGAR), 0);
+        assertTrue(hypertension.getGuidelines().get(0).contains("sodium"));
+        assertSame(hypertension, engine.compile(Arrays.asList("hypertension")));
+
+        assertTrue(engine.compile(null).isUnrestricted());
+        assertTrue(engine.compile(Arrays.asList("asthma")).isUnrestricted());
+        assertTrue(engine.compile(Arrays.asList("asthma")).getGuidelines().isEmpty());
+    }
+
+    @Test
+    public void testBoundsOfSeveralConditionsAreCombined() throws Exception {
+        HealthRuleEngine engine = HealthRuleEngine.parse(new StringReader(RULES));
+        assertEquals(2, engine.size());
+
+        HealthRuleEngine.Restriction both = engine.compile(Arrays.asList("Chronic renal failure", "heart disease"));
+        assertEquals(300, both.getMax(FoodSubstitutionIndex.SODIUM), 0);
+        assertEquals(20, both.getMax(FoodSubstitutionIndex.PROTEIN), 0);
+        assertEquals(2, both.getMin(FoodSubstitutionIndex.FIBER), 0);
+        assertEquals(Arrays.asList("Watch protein.", "Eat fiber."), both.getGuidelines());
+    }
+
+    @Test
+    public void testFilterChecksNutrientsPer100g() throws Exception {
+        HealthRuleEngine engine = HealthRuleEngine.parse(new StringReader(RULES));
+        HealthRuleEngine.Restriction heart = engine.compile(Collections.singletonList("heart"));
+
+        FoodNutrient soup = new FoodNutrient("Miso Soup", 250, 80, 5, 8, 2, 1, 2, 1600);
+        FoodNutrient oats = new FoodNutrient("Oatmeal", 200, 150, 5, 27, 3, 4, 1, 10);
+        FoodNutrient rice = new FoodNutrient("White Rice", 100, 130, 3, 28, 0.3, 0.4, 0, 1);
+        Food apple = new Food("Apple", 100, 52);
+
+        Food[] kept = heart.filter(new Food[] {soup, oats, rice, apple});
+        assertEquals(2, kept.length);
+        assertSame(oats, kept[0]);
+        assertSame(apple, kept[1]);
+        assertFalse(heart.allows(soup));
+        assertTrue(heart.allows(oats));
+
+        Food[] all = {soup, rice};
+        assertSame(all, engine.compile(Collections.singletonList("none")).filter(all));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedLimitIsRejected() throws Exception {
+        HealthRuleEngine.parse(new StringReader("[bad]\nlimit = sodium < 100\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineOutsideRuleIsRejected() throws Exception {
+        HealthRuleEngine.parse(new StringReader("match = nothing\n"));
+    }
+}
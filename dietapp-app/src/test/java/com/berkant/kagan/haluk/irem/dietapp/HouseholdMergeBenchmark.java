@@ -0,0 +1,154 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark comparing the parallel household merge with building every member's
+ * shopping list one after another and adding them up.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.HouseholdMergeBenchmark
+ */
+public class HouseholdMergeBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int INGREDIENTS = 400;
+    private static final int FOODS = 200;
+    private static final int PLANS_PER_USER = 28;
+    private static final int ROUNDS = 5;
+    private static final String[] UNITS = {"g", "kg", "ml", "l", "unit", "tbsp"};
+
+    public static void main(String[] args) throws Exception {
+        File dbFile = File.createTempFile("household-bench", ".db");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath() + "?journal_mode=WAL";
+        ConnectionFactory factory = () -> DriverManager.getConnection(url);
+        try {
+            populate(factory);
+            int[] users = new int[USERS];
+            for (int i = 0; i < USERS; i++) {
+                users[i] = i + 1;
+            }
+
+            int processors = Runtime.getRuntime().availableProcessors();
+            System.out.printf("%d users, %d plans each, %d processors%n", USERS, PLANS_PER_USER, processors);
+            for (int pass = 0; pass < 2; pass++) {
+                String label = pass == 0 ? "warmup" : "measured";
+                long sequential = best(() -> sequentialPerUser(factory, users));
+                long parallel1 = best(() -> new HouseholdShoppingListMerger(factory, 1, 8).merge(users, "2031-01-01", "2031-01-31"));
+                long parallel4 = best(() -> new HouseholdShoppingListMerger(factory, 4, 8).merge(users, "2031-01-01", "2031-01-31"));
+                long parallelN = best(() -> new HouseholdShoppingListMerger(factory, processors, 8).merge(users, "2031-01-01", "2031-01-31"));
+                System.out.printf("%s: sequential per-user %.1f ms, merger x1 %.1f ms (%.2fx), x4 %.1f ms (%.2fx), x%d %.1f ms (%.2fx)%n",
+                                  label, sequential / 1e6, parallel1 / 1e6, (double) sequential / parallel1,
+                                  parallel4 / 1e6, (double) sequential / parallel4,
+                                  processors, parallelN / 1e6, (double) sequential / parallelN);
+            }
+        } finally {
+            for (String suffix : new String[] {"", "-wal", "-shm"}) {
+                new File(dbFile.getAbsolutePath() + suffix).delete();
+            }
+        }
+    }
+
+    private interface Run {
+        ShoppingListService.ShoppingList run() throws SQLException;
+    }
+
+    private static long best(Run run) throws SQLException {
+        long best = Long.MAX_VALUE;
+        double checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += run.run().getTotalCost();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return best;
+    }
+
+    /**
+     * The per-user path: one shopping list per member, added up by name and unit.
+     */
+    private static ShoppingListService.ShoppingList sequentialPerUser(ConnectionFactory factory,
+                                                                      int[] users) throws SQLException {
+        HouseholdShoppingListMerger single = new HouseholdShoppingListMerger(factory, 1, 1);
+        Map<String, double[]> totals = new HashMap<>();
+        Map<String, String[]> keys = new HashMap<>();
+        for (int user : users) {
+            for (ShoppingListService.ShoppingItem item : single.merge(new int[] {user}, "2031-01-01", "2031-01-31").getItems()) {
+                String key = item.getName() + '\u0000' + item.getUnit();
+                keys.putIfAbsent(key, new String[] {item.getName(), item.getUnit()});
+                double[] total = totals.computeIfAbsent(key, k -> new double[2]);
+                total[0] += item.getAmount();
+                total[1] += item.getCost();
+            }
+        }
+        List<ShoppingListService.ShoppingItem> items = new ArrayList<>();
+        for (Map.Entry<String, double[]> entry : totals.entrySet()) {
+            String[] key = keys.get(entry.getKey());
+            items.add(new ShoppingListService.ShoppingItem(key[0], entry.getValue()[0], key[1], entry.getValue()[1]));
+        }
+        return new ShoppingListService.ShoppingList(items);
+    }
+
+    private static void populate(ConnectionFactory factory) throws SQLException {
+        Random random = new Random(46);
+        try (Connection conn = factory.open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE ingredients (id INTEGER PRIMARY KEY, name TEXT UNIQUE, price REAL)");
+            stmt.execute("CREATE TABLE recipes (id INTEGER PRIMARY KEY, food_id INTEGER, name TEXT)");
+            stmt.execute("CREATE TABLE recipe_ingredients (recipe_id INTEGER, ingredient_id INTEGER, amount REAL, unit TEXT)");
+            stmt.execute("CREATE TABLE meal_plans (id INTEGER PRIMARY KEY, user_id INTEGER, date TEXT, food_id INTEGER)");
+            stmt.execute("CREATE INDEX idx_meal_plans_user_date ON meal_plans(user_id, date)");
+            stmt.execute("CREATE INDEX idx_recipes_food ON recipes(food_id)");
+            stmt.execute("CREATE INDEX idx_recipe_ingredients_recipe ON recipe_ingredients(recipe_id)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement ingredient = conn.prepareStatement("INSERT INTO ingredients VALUES (?, ?, ?)");
+                 PreparedStatement recipe = conn.prepareStatement("INSERT INTO recipes VALUES (?, ?, ?)");
+                 PreparedStatement row = conn.prepareStatement("INSERT INTO recipe_ingredients VALUES (?, ?, ?, ?)");
+                 PreparedStatement plan = conn.prepareStatement("INSERT INTO meal_plans (user_id, date, food_id) VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= INGREDIENTS; i++) {
+                    ingredient.setInt(1, i);
+                    ingredient.setString(2, "Ingredient " + i);
+                    ingredient.setDouble(3, 0.1 + random.nextInt(500) / 100.0);
+                    ingredient.addBatch();
+                }
+                ingredient.executeBatch();
+                for (int f = 1; f <= FOODS; f++) {
+                    recipe.setInt(1, f);
+                    recipe.setInt(2, f);
+                    recipe.setString(3, "Food " + f);
+                    recipe.addBatch();
+                    for (int k = 0; k < 6 + random.nextInt(6); k++) {
+                        row.setInt(1, f);
+                        row.setInt(2, 1 + random.nextInt(INGREDIENTS));
+                        row.setDouble(3, 1 + random.nextInt(300));
+                        row.setString(4, UNITS[random.nextInt(UNITS.length)]);
+                        row.addBatch();
+                    }
+                }
+                recipe.executeBatch();
+                row.executeBatch();
+                for (int u = 1; u <= USERS; u++) {
+                    for (int p = 0; p < PLANS_PER_USER; p++) {
+                        plan.setInt(1, u);
+                        plan.setString(2, String.format("2031-01-%02d", 1 + p % 28));
+                        plan.setInt(3, 1 + random.nextInt(FOODS));
+                        plan.addBatch();
+                    }
+                }
+                plan.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+}
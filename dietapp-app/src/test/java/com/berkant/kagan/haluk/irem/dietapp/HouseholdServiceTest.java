@@ -0,0 +1,83 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the HouseholdService class.
+ */
+public class HouseholdServiceTest {
+
+    private HouseholdService householdService;
+    private int householdId = -1;
+
+    @Before
+    public void setUp() throws SQLException {
+        DatabaseHelper.initializeDatabase();
+        householdService = new HouseholdService();
+        execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                "VALUES ('householduser1', 'pw', 'h1@example.com', 'Household One')");
+        execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                "VALUES ('householduser2', 'pw', 'h2@example.com', 'Household Two')");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (householdId != -1) {
+            householdService.deleteHousehold(householdId);
+        }
+        execute("DELETE FROM users WHERE username IN ('householduser1', 'householduser2')");
+    }
+
+    private static void execute(String sql) throws SQLException {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testCreateHouseholdAndManageMembers() {
+        householdId = householdService.createHousehold("Test Household");
+        assertTrue(householdId > 0);
+        assertEquals("Names are unique", -1, householdService.createHousehold("Test Household"));
+
+        assertTrue(householdService.addMember(householdId, "householduser1"));
+        assertTrue(householdService.addMember(householdId, "householduser2"));
+        assertTrue("Adding a member twice keeps one membership",
+                   householdService.addMember(householdId, "householduser1"));
+        assertFalse(householdService.addMember(householdId, "nosuchhouseholduser"));
+        assertFalse(householdService.addMember(householdId + 1000, "householduser1"));
+
+        Household household = householdService.getHousehold(householdId);
+        assertEquals("Test Household", household.getName());
+        assertEquals(2, household.getMemberCount());
+        int[] members = household.getMemberIds();
+        assertEquals(DatabaseHelper.getUserId("householduser1"), members[0]);
+        assertEquals(DatabaseHelper.getUserId("householduser2"), members[1]);
+
+        assertTrue(householdService.removeMember(householdId, "householduser1"));
+        assertFalse(householdService.removeMember(householdId, "householduser1"));
+        assertEquals(1, householdService.getHousehold(householdId).getMemberCount());
+
+        assertTrue(householdService.deleteHousehold(householdId));
+        assertNull(householdService.getHousehold(householdId));
+        householdId = -1;
+    }
+
+    @Test
+    public void testInvalidNames() {
+        assertEquals(-1, householdService.createHousehold(null));
+        assertEquals(-1, householdService.createHousehold("   "));
+        assertFalse(householdService.addMember(1, null));
+    }
+}
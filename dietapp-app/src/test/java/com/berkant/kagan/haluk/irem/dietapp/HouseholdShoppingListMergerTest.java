@@ -0,0 +1,168 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the HouseholdShoppingListMerger class.
+ */
+public class HouseholdShoppingListMergerTest {
+
+    private File dbFile;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("household", ".db");
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE ingredients (id INTEGER PRIMARY KEY, name TEXT UNIQUE, price REAL)");
+            stmt.execute("CREATE TABLE recipes (id INTEGER PRIMARY KEY, food_id INTEGER, name TEXT)");
+            stmt.execute("CREATE TABLE recipe_ingredients (recipe_id INTEGER, ingredient_id INTEGER, " +
+                         "amount REAL, unit TEXT)");
+            stmt.execute("CREATE TABLE meal_plans (id INTEGER PRIMARY KEY, user_id INTEGER, date TEXT, food_id INTEGER)");
+            // Flour per 100 g, eggs per piece, oil charged per tbsp
+            stmt.execute("INSERT INTO ingredients VALUES (1, 'Flour', 0.5), (2, 'Egg', 2.0), (3, 'Oil', 0.25)");
+            // Food 10: pancake; food 20: bread
+            stmt.execute("INSERT INTO recipes VALUES (1, 10, 'Pancake'), (2, 20, 'Bread')");
+            stmt.execute("INSERT INTO recipe_ingredients VALUES (1, 1, 200, 'g'), (1, 2, 2, 'unit'), " +
+                         "(1, 3, 1, 'tbsp'), (2, 1, 0.5, 'kg')");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbFile.delete();
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    private void plan(int userId, String date, int foodId) throws SQLException {
+        try (Connection conn = open();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "INSERT INTO meal_plans (user_id, date, food_id) VALUES (?, ?, ?)")) {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, date);
+            pstmt.setInt(3, foodId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    @Test
+    public void testMergeAddsMembersPerIngredientAndUnit() throws Exception {
+        plan(1, "2031-01-01", 10);
+        plan(1, "2031-01-02", 20);
+        plan(2, "2031-01-01", 10);
+        plan(2, "2031-03-01", 20); // outside the range
+        plan(3, "2031-01-05", 20);
+
+        HouseholdShoppingListMerger merger = new HouseholdShoppingListMerger(this::open, 2, 1);
+        ShoppingListService.ShoppingList list =
+            merger.merge(new Household(1, "Home", new int[] {1, 2, 3}), "2031-01-01", "2031-01-31");
+
+        List<ShoppingListService.ShoppingItem> items = list.getItems();
+        assertEquals(3, items.size());
+        assertEquals("Egg", items.get(0).getName());
+        assertEquals(4.0, items.get(0).getAmount(), 1e-9);
+        assertEquals("unit", items.get(0).getUnit());
+        assertEquals(8.0, items.get(0).getCost(), 1e-9);
+        assertEquals("Flour", items.get(1).getName());
+        assertEquals("g and kg rows should merge", 1400.0, items.get(1).getAmount(), 1e-9);
+        assertEquals("g", items.get(1).getUnit());
+        assertEquals(7.0, items.get(1).getCost(), 1e-9);
+        assertEquals("Oil", items.get(2).getName());
+        assertEquals(2.0, items.get(2).getAmount(), 1e-9);
+        assertEquals("tbsp", items.get(2).getUnit());
+        assertEquals(0.5, items.get(2).getCost(), 1e-9);
+        assertEquals(15.5, list.getTotalCost(), 1e-9);
+    }
+
+    @Test
+    public void testMergeMatchesSumOfMembersForAnyParallelism() throws Exception {
+        int[] users = new int[40];
+        for (int u = 0; u < users.length; u++) {
+            users[u] = u + 1;
+            for (int d = 0; d <= u % 5; d++) {
+                plan(users[u], "2031-02-0" + (d + 1), d % 2 == 0 ? 10 : 20);
+            }
+        }
+
+        double expectedCost = 0;
+        double expectedFlour = 0;
+        HouseholdShoppingListMerger single = new HouseholdShoppingListMerger(this::open, 1, 1);
+        for (int user : users) {
+            ShoppingListService.ShoppingList own = single.merge(new int[] {user}, "2031-02-01", "2031-02-28");
+            expectedCost += own.getTotalCost();
+            for (ShoppingListService.ShoppingItem item : own.getItems()) {
+                if (item.getName().equals("Flour")) {
+                    expectedFlour += item.getAmount();
+                }
+            }
+        }
+
+        int[][] settings = {{1, 40}, {1, 1}, {4, 1}, {3, 7}};
+        for (int[] setting : settings) {
+            ShoppingListService.ShoppingList merged = new HouseholdShoppingListMerger(this::open, setting[0], setting[1])
+                .merge(users, "2031-02-01", "2031-02-28");
+            assertEquals(3, merged.getItems().size());
+            assertEquals(expectedCost, merged.getTotalCost(), 1e-6);
+            assertEquals(expectedFlour, merged.getItems().get(1).getAmount(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testEmptyInputs() throws Exception {
+        HouseholdShoppingListMerger merger = new HouseholdShoppingListMerger(this::open, 2, 4);
+        assertTrue(merger.merge(new int[0], "2031-01-01", "2031-01-31").isEmpty());
+        assertTrue(merger.merge((Household) null, "2031-01-01", "2031-01-31").isEmpty());
+        assertTrue(merger.merge(new int[] {1}, null, "2031-01-31").isEmpty());
+        assertTrue(merger.merge(new int[] {99}, "2031-01-01", "2031-01-31").isEmpty());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testQueryErrorsAreRethrown() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE meal_plans");
+        }
+        new HouseholdShoppingListMerger(this::open, 2, 1).merge(new int[] {1, 2, 3}, "2031-01-01", "2031-01-31");
+    }
+
+    @Test
+    public void testIngredientVectorGrowsAndCombines() {
+        HouseholdShoppingListMerger.IngredientVector a = new HouseholdShoppingListMerger.IngredientVector();
+        HouseholdShoppingListMerger.IngredientVector b = new HouseholdShoppingListMerger.IngredientVector(2);
+        for (int id = 1; id <= 1000; id++) {
+            a.add(HouseholdShoppingListMerger.IngredientVector.key(id, 0), id, 1.0);
+            if (id % 2 == 0) {
+                b.add(HouseholdShoppingListMerger.IngredientVector.key(id, 0), 1.0, 0.5);
+                b.add(HouseholdShoppingListMerger.IngredientVector.key(id, 4), 3.0, 0.0);
+            }
+        }
+        assertEquals(1000, a.size());
+        assertEquals(1000, b.size());
+
+        HouseholdShoppingListMerger.IngredientVector sum = HouseholdShoppingListMerger.IngredientVector.combine(a, b);
+        assertEquals(1500, sum.size());
+        long key = HouseholdShoppingListMerger.IngredientVector.key(500, 0);
+        assertEquals(501.0, sum.amountOf(key), 1e-9);
+        assertEquals(1.5, sum.costOf(key), 1e-9);
+        assertEquals(3.0, sum.amountOf(HouseholdShoppingListMerger.IngredientVector.key(500, 4)), 1e-9);
+        assertEquals(0.0, sum.amountOf(HouseholdShoppingListMerger.IngredientVector.key(501, 4)), 1e-9);
+        assertEquals(500, HouseholdShoppingListMerger.IngredientVector.ingredientOf(key));
+        assertEquals(4, HouseholdShoppingListMerger.IngredientVector.slotOf(
+            HouseholdShoppingListMerger.IngredientVector.key(7, 4)));
+    }
+}
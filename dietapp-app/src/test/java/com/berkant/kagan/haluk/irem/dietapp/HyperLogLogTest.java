@@ -0,0 +1,69 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the HyperLogLog class.
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallCardinalityIsNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("food" + i);
+            sketch.add("food" + i);
+        }
+        assertEquals(100, sketch.estimate(), 3);
+    }
+
+    @Test
+    public void testLargeCardinalityWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 100000; i++) {
+            sketch.add("item-" + i);
+        }
+        // Standard error at precision 12 is about 1.6%, allow five times that
+        assertEquals(100000, sketch.estimate(), 8000);
+    }
+
+    @Test
+    public void testMergeEstimatesUnion() {
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+        for (int i = 0; i < 3000; i++) {
+            a.add("x" + i);
+        }
+        for (int i = 2000; i < 5000; i++) {
+            b.add("x" + i);
+        }
+        a.merge(b);
+        assertEquals(5000, a.estimate(), 500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrecisionRejected() {
+        new HyperLogLog(3);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        HyperLogLog sketch = new HyperLogLog(8);
+        for (int i = 0; i < 500; i++) {
+            sketch.add("v" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        HyperLogLog restored = HyperLogLog.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(8, restored.getPrecision());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+}
@@ -0,0 +1,83 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Random;
+
+/**
+ * Benchmark for replacing one meal of an IncrementalPlan against regenerating the whole day.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.IncrementalPlanBenchmark
+ */
+public class IncrementalPlanBenchmark {
+
+    private static final int OPTIONS_PER_MEAL = 300;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) {
+        CalorieNutrientTrackingService calorieService = new CalorieNutrientTrackingService(null) {
+            @Override
+            public int calculateSuggestedCalories(char gender, int age, double heightCm, double weightKg, int activityLevel) {
+                return 2200;
+            }
+        };
+        Food[] breakfast = catalog("Breakfast", 1);
+        Food[] lunch = catalog("Lunch", 2);
+        Food[] dinner = catalog("Dinner", 3);
+        Food[] snack = catalog("Snack", 4);
+        MealPlanningService mealService = new MealPlanningService(null) {
+            @Override
+            public Food[] getBreakfastOptions() {
+                return breakfast;
+            }
+
+            @Override
+            public Food[] getLunchOptions() {
+                return lunch;
+            }
+
+            @Override
+            public Food[] getDinnerOptions() {
+                return dinner;
+            }
+
+            @Override
+            public Food[] getSnackOptions() {
+                return snack;
+            }
+        };
+        PersonalizedDietRecommendationService service =
+            new PersonalizedDietRecommendationService(calorieService, mealService);
+
+        for (int pass = 0; pass < 2; pass++) {
+            long full = 0;
+            long incremental = 0;
+            double fullError = 0;
+            double incrementalError = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                PersonalizedDietRecommendationService.IncrementalPlan regenerated =
+                    service.startIncrementalPlan("bench", 'F', 35, 168, 64, 3);
+                full += System.nanoTime() - start;
+                fullError += Math.abs(regenerated.getTotalCalories() - 2200);
+
+                start = System.nanoTime();
+                regenerated.replaceMeal(round % 4);
+                incremental += System.nanoTime() - start;
+                incrementalError += Math.abs(regenerated.getTotalCalories() - 2200);
+            }
+            System.out.printf("%s: full regeneration %.3f ms, replace one meal %.3f ms, "
+                              + "mean daily calorie error %.1f kcal vs %.1f kcal%n",
+                              pass == 0 ? "warmup" : "measured", full / 1e6 / ROUNDS, incremental / 1e6 / ROUNDS,
+                              fullError / ROUNDS, incrementalError / ROUNDS);
+        }
+    }
+
+    private static Food[] catalog(String prefix, long seed) {
+        Random random = new Random(seed);
+        Food[] foods = new Food[OPTIONS_PER_MEAL];
+        for (int i = 0; i < foods.length; i++) {
+            foods[i] = new FoodNutrient(prefix + " " + i, 100 + random.nextInt(200), 60 + random.nextInt(600),
+                                        random.nextInt(40), random.nextInt(80), random.nextInt(30), 0, 0, 0);
+        }
+        return foods;
+    }
+}
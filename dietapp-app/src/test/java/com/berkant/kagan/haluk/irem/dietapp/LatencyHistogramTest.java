@@ -0,0 +1,64 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the LatencyHistogram class.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperEdgeOf(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperEdgeOf(bucket - 1));
+        }
+        long max = LatencyHistogram.MAX_VALUE_NANOS;
+        assertEquals(max, LatencyHistogram.upperEdgeOf(LatencyHistogram.bucketOf(max)));
+    }
+
+    @Test
+    public void testPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500_000L, histogram.getSumNanos());
+        assertEquals(1_000_000L, histogram.getMaxNanos());
+
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000);
+        assertEquals(1_000_000L, histogram.getValueAtPercentile(100));
+        long p0 = histogram.getValueAtPercentile(0);
+        assertTrue(p0 >= 1000 && p0 <= 1125);
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE_NANOS, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testPrometheusSummary() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000_000);
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "latency_seconds", "stage=\"solve\"");
+        String text = out.toString();
+        assertTrue(text.contains("latency_seconds{stage=\"solve\",quantile=\"0.99\"} 0.002000000\n"));
+        assertTrue(text.contains("latency_seconds_sum{stage=\"solve\"} 0.002000000\n"));
+        assertTrue(text.contains("latency_seconds_count{stage=\"solve\"} 1\n"));
+    }
+}
@@ -0,0 +1,131 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the MealComposer class.
+ */
+public class MealComposerTest {
+
+    @Test
+    public void testExactCombinationIsFound() {
+        Food[] options = {
+            new FoodNutrient("Oatmeal", 100, 150, 5, 27, 3, 4, 1, 0),
+            new FoodNutrient("Chicken Breast", 100, 165, 31, 0, 4, 0, 0, 74),
+            new FoodNutrient("Olive Oil", 10, 90, 0, 0, 10, 0, 0, 0),
+            new FoodNutrient("Candy", 50, 250, 0, 60, 2, 0, 55, 10)
+        };
+        // Oatmeal x1 + Chicken Breast x2 = 480 kcal, 67 g protein, 27 g carbs, 11 g fat
+        MealComposer.Composition result = new MealComposer().compose(options, 480, 67, 27, 11);
+
+        assertEquals(2, result.getFoods().size());
+        assertEquals(480, result.getTotalCalories(), 0.001);
+        assertEquals(0.0, result.getDistance(), 0.001);
+        assertEquals(0.0, result.getCalorieDeviation(), 0.001);
+        for (int i = 0; i < result.getFoods().size(); i++) {
+            Food food = result.getFoods().get(i);
+            if (food.getName().equals("Chicken Breast")) {
+                assertEquals(2.0, result.getMultiplier(i), 0.0);
+                assertEquals(200, food.getGrams(), 0.001);
+                assertEquals(62, ((FoodNutrient) food).getProtein(), 0.001);
+            } else {
+                assertEquals("Oatmeal", food.getName());
+            }
+        }
+        assertFalse(result.isTimedOut());
+    }
+
+    @Test
+    public void testPlainFoodsMatchCalories() {
+        Food[] options = { new Food("Salad", 200, 300), new Food("Soup", 150, 180), new Food("Sandwich", 250, 350) };
+        MealComposer.Composition result = new MealComposer().compose(options, 700, 45, 80, 20);
+
+        assertFalse(result.getFoods().isEmpty());
+        assertTrue(Math.abs(result.getCalorieDeviation()) <= 3.0);
+        Set<String> names = new HashSet<>();
+        for (Food food : result.getFoods()) {
+            assertTrue("Foods are not repeated", names.add(food.getName()));
+        }
+    }
+
+    @Test
+    public void testAlwaysReturnsAFoodWhenOptionsExist() {
+        Food[] options = { new Food("Feast", 500, 3000) };
+        MealComposer.Composition result = new MealComposer().compose(options, 100, 5, 10, 2);
+        assertEquals(1, result.getFoods().size());
+        assertEquals(0.5, result.getMultiplier(0), 0.0);
+        assertTrue(result.getCalorieDeviation() > 0);
+
+        MealComposer.Composition empty = new MealComposer().compose(new Food[0], 100, 5, 10, 2);
+        assertTrue(empty.getFoods().isEmpty());
+        assertEquals(1.0, empty.getDistance(), 0.0);
+
+        assertTrue(new MealComposer().compose(null, 100, 5, 10, 2).getFoods().isEmpty());
+    }
+
+    @Test
+    public void testMaxItemsIsRespected() {
+        Food[] options = new Food[10];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = new Food("Bite" + i, 10, 10);
+        }
+        MealComposer composer = new MealComposer(MealComposer.DEFAULT_PORTIONS, 2, 4,
+                                                 MealComposer.DEFAULT_TIME_BUDGET_NANOS, 1, 0, 0, 0);
+        MealComposer.Composition result = composer.compose(options, 1000, 0, 0, 0);
+        assertEquals(2, result.getFoods().size());
+        assertEquals(40, result.getTotalCalories(), 0.001);
+    }
+
+    @Test
+    public void testThousandCandidatesWithinBudget() {
+        Random random = new Random(42);
+        Food[] options = new Food[1000];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = new FoodNutrient("Food" + i, 100, 50 + random.nextInt(600),
+                                          random.nextInt(40), random.nextInt(80), random.nextInt(30), 0, 0, 0);
+        }
+        MealComposer composer = new MealComposer();
+        for (int i = 0; i < 200; i++) {
+            composer.compose(options, 700, 45, 80, 20);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            MealComposer.Composition result = composer.compose(options, 700, 45, 80, 20);
+            best = Math.min(best, System.nanoTime() - start);
+            assertFalse(result.getFoods().isEmpty());
+        }
+        assertTrue("Composition took " + best / 1000 + " us", best < 5_000_000L);
+
+        MealComposer unbounded = new MealComposer(MealComposer.DEFAULT_PORTIONS, MealComposer.DEFAULT_MAX_ITEMS,
+                                                  MealComposer.DEFAULT_BEAM_WIDTH, Long.MAX_VALUE, 1, 0.5, 0.5, 0.5);
+        MealComposer.Composition result = unbounded.compose(options, 700, 45, 80, 20);
+        assertFalse(result.isTimedOut());
+        assertTrue("Distance " + result.getDistance(), result.getDistance() < 0.05);
+        assertTrue(Math.abs(result.getCalorieDeviation()) < 5.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSettingsAreRejected() {
+        new MealComposer(new double[0], 3, 8, 1_000_000L, 1, 1, 1, 1);
+    }
+
+    @Test
+    public void testMealRecommendationCarriesComposition() {
+        PersonalizedDietRecommendationService service = new PersonalizedDietRecommendationService(null, null);
+        Food[] options = { new FoodNutrient("Rice", 100, 130, 3, 28, 0, 0, 0, 0) };
+        MealComposer.Composition composition = new MealComposer().compose(options, 260, 6, 56, 0);
+        PersonalizedDietRecommendationService.RecommendedMeal meal =
+            service.new RecommendedMeal("Lunch", composition, 260, 6, 56, 0);
+        assertSame(composition, meal.getComposition());
+        assertEquals(260, meal.getTotalCalories());
+        assertEquals("Rice", meal.getFoods().get(0).getName());
+    }
+}
@@ -602,9 +602,11 @@ public class MealPlanningPanelTest {
         }
 
         @Override
-        public String getWeeklyMealPlan() {
+        public Page<String, Long> getWeeklyMealPlan(long afterPosition, int pageSize) {
             if (throwOnGetPlan) throw new RuntimeException("Test exception");
-            return weeklyPlan;
+            java.util.List<String> meals = weeklyPlan.isEmpty()
+                ? new java.util.ArrayList<>() : java.util.Arrays.asList(weeklyPlan.split("\n"));
+            return new Page<>(meals, (long) meals.size(), false);
         }
     }
 }
\ No newline at end of file
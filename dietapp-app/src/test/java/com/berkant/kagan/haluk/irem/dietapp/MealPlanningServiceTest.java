@@ -13,6 +13,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.sql.DriverManager;
@@ -1318,6 +1319,29 @@ public class MealPlanningServiceTest {
         assertTrue(arrayContains(mealPlanningService.getSnackOptions(), "DBSnack"));
         assertTrue(arrayContains(mealPlanningService.getDinnerOptions(), "DBDinner"));
     }
+
+    /**
+     * Test that meal options read the latest food_nutrients row once per food
+     */
+    @Test
+    public void testMealOptionsUseLatestSavedNutrients() throws Exception {
+        try (Statement stmt = testConnection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM foods WHERE meal_type = 'snack'");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories, meal_type) VALUES ('Nutrient Snack', 50, 120, 'snack')");
+            stmt.executeUpdate("INSERT INTO food_nutrients (food_id, protein, carbs, fat, fiber, sugar, sodium) " +
+                               "SELECT id, 3, 10, 2, 1, 4, 50 FROM foods WHERE name = 'Nutrient Snack'");
+            stmt.executeUpdate("INSERT INTO food_nutrients (food_id, protein, carbs, fat, fiber, sugar, sodium) " +
+                               "SELECT id, 12, 8, 5, 2, 3, 40 FROM foods WHERE name = 'Nutrient Snack'");
+        }
+        Food[] options = mealPlanningService.getSnackOptions();
+        assertEquals(1, options.length);
+        assertTrue(options[0] instanceof FoodNutrient);
+        FoodNutrient snack = (FoodNutrient) options[0];
+        assertEquals(12.0, snack.getProtein(), 0.001);
+        assertEquals(5.0, snack.getFat(), 0.001);
+        assertEquals(40.0, snack.getSodium(), 0.001);
+    }
+
     private boolean arrayContains(Food[] arr, String name) {
         for (Food f : arr) if (f.getName().equals(name)) return true;
         return false;
@@ -1654,6 +1678,319 @@ public class MealPlanningServiceTest {
         assertTrue(id > 0);
     }
 
+    @Test
+    public void testStreamFoodLogOverDateRange() {
+        mealPlanningService.logFood(TEST_USERNAME, "2025-01-01", new Food("Test Stream A", 100, 110));
+        mealPlanningService.logFood(TEST_USERNAME, "2025-01-02", new Food("Test Stream B", 100, 120));
+        mealPlanningService.logFood(TEST_USERNAME, "2025-01-03", new Food("Test Stream C", 100, 130));
+
+        try (java.util.stream.Stream<Food> foods =
+                 mealPlanningService.streamFoodLog(TEST_USERNAME, "2025-01-02", null, 1)) {
+            List<String> names = new ArrayList<>();
+            foods.forEach(food -> names.add(food.getName()));
+            assertEquals(java.util.Arrays.asList("Test Stream B", "Test Stream C"), names);
+        }
+    }
+
+    @Test
+    public void testStreamMealPlanOverDateRange() {
+        mealPlanningService.addMealPlan(TEST_USERNAME, "2025-02-01", "breakfast", new Food("Test Plan A", 100, 210));
+        mealPlanningService.addMealPlan(TEST_USERNAME, "2025-02-05", "dinner", new Food("Test Plan B", 100, 220));
+
+        try (java.util.stream.Stream<Food> foods =
+                 mealPlanningService.streamMealPlan(TEST_USERNAME, "2025-02-01", "2025-02-03", 0)) {
+            List<Food> result = new ArrayList<>();
+            foods.forEach(result::add);
+            assertEquals(1, result.size());
+            assertEquals("Test Plan A", result.get(0).getName());
+        }
+    }
+
+    @Test
+    public void testStreamVariantsWithUnknownUser() {
+        assertEquals(0, mealPlanningService.streamFoodLog(null, null, null, 0).count());
+        assertEquals(0, mealPlanningService.streamFoodLog("no_such_user", null, null, 0).count());
+        assertEquals(0, mealPlanningService.streamMealPlan("no_such_user", null, null, 0).count());
+    }
+
+    @Test
+    public void testStreamAllFoodsMatchesGetAllFoods() {
+        mealPlanningService.logFood(TEST_USERNAME, TEST_DATE, new Food("Test Streamed Food", 100, 100));
+        List<String> expected = mealPlanningService.getAllFoods();
+        try (java.util.stream.Stream<String> names = mealPlanningService.streamAllFoods(2)) {
+            assertEquals(expected.size(), names.count());
+        }
+    }
+
+    @Test
+    public void testFoodLogPagesMatchGetFoodLog() {
+        for (int i = 1; i <= 5; i++) {
+            mealPlanningService.logFood(TEST_USERNAME, "2025-03-01", new Food("Test Page " + i, 100, 100 + i));
+        }
+        mealPlanningService.logFood(TEST_USERNAME, "2025-03-02", new Food("Test Page Other Day", 100, 99));
+
+        List<String> paged = new ArrayList<>();
+        long key = 0;
+        int pages = 0;
+        Page<Food, Long> page;
+        do {
+            page = mealPlanningService.getFoodLog(TEST_USERNAME, "2025-03-01", key, 2);
+            assertTrue(page.getItems().size() <= 2);
+            for (Food food : page.getItems()) {
+                paged.add(food.getName());
+            }
+            key = page.getNextKey();
+            pages++;
+        } while (page.hasMore());
+
+        assertEquals(3, pages);
+        assertEquals(Arrays.asList("Test Page 1", "Test Page 2", "Test Page 3", "Test Page 4", "Test Page 5"), paged);
+        Page<Food, Long> past = mealPlanningService.getFoodLog(TEST_USERNAME, "2025-03-01", key, 2);
+        assertTrue(past.getItems().isEmpty());
+        assertEquals(Long.valueOf(key), past.getNextKey());
+        assertTrue(mealPlanningService.getFoodLog("no_such_user", "2025-03-01", 0, 2).getItems().isEmpty());
+    }
+
+    @Test
+    public void testAllFoodsPagesMatchGetAllFoods() {
+        mealPlanningService.logFood(TEST_USERNAME, TEST_DATE, new Food("Test Paged Food", 100, 100));
+        mealPlanningService.logFood(TEST_USERNAME, TEST_DATE, new Food("Test Paged Food", 150, 150));
+
+        List<String> paged = new ArrayList<>();
+        String key = null;
+        Page<String, String> page;
+        do {
+            page = mealPlanningService.getAllFoods(key, 3);
+            paged.addAll(page.getItems());
+            key = page.getNextKey();
+        } while (page.hasMore());
+
+        List<String> expected = new ArrayList<>(mealPlanningService.getAllFoods());
+        java.util.Collections.sort(expected);
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void testWeeklyMealPlanPagesFollowDayAndMealOrder() {
+        mealPlanningService.addMealToPlan(testUserId, "Wednesday", "Dinner", "Test Week D");
+        mealPlanningService.addMealToPlan(testUserId, "Monday", "Lunch", "Test Week B");
+        mealPlanningService.addMealToPlan(testUserId, "Wednesday", "Breakfast", "Test Week C");
+        mealPlanningService.addMealToPlan(testUserId, "Monday", "Breakfast", "Test Week A");
+
+        List<String> paged = new ArrayList<>();
+        long key = 0;
+        Page<String, Long> page;
+        do {
+            page = mealPlanningService.getWeeklyMealPlan(key, 2);
+            for (String meal : page.getItems()) {
+                if (meal.contains("Test Week")) {
+                    paged.add(meal.substring(0, meal.indexOf(" (")));
+                }
+            }
+            key = page.getNextKey();
+        } while (page.hasMore());
+
+        assertEquals(Arrays.asList("Monday - Breakfast: Test Week A", "Monday - Lunch: Test Week B",
+                                   "Wednesday - Breakfast: Test Week C", "Wednesday - Dinner: Test Week D"), paged);
+        String weeklyPlan = mealPlanningService.getWeeklyMealPlan();
+        assertTrue(weeklyPlan.indexOf("Test Week A") < weeklyPlan.indexOf("Test Week B"));
+        assertTrue(weeklyPlan.indexOf("Test Week C") < weeklyPlan.indexOf("Test Week D"));
+    }
+
+    @Test
+    public void testPagesDoNotRepeatFoodsWithSeveralNutrientRows() throws SQLException {
+        // Two nutrient rows for the first entry used to fill a whole page with the same log entry
+        mealPlanningService.logFood(TEST_USERNAME, "2025-03-03", new Food("Test Dup Nutrients", 100, 120));
+        mealPlanningService.logFood(TEST_USERNAME, "2025-03-03", new Food("Test Dup 2", 100, 130));
+        mealPlanningService.logFood(TEST_USERNAME, "2025-03-03", new Food("Test Dup 3", 100, 140));
+        mealPlanningService.addMealToPlan(testUserId, "Monday", "Breakfast", "Test Week Dup A");
+        mealPlanningService.addMealToPlan(testUserId, "Monday", "Lunch", "Test Week Dup B");
+        mealPlanningService.addMealToPlan(testUserId, "Monday", "Dinner", "Test Week Dup C");
+        try (Statement stmt = testConnection.createStatement()) {
+            for (String name : new String[] {"Test Dup Nutrients", "Test Week Dup A", "Test Week Dup B"}) {
+                for (int protein : new int[] {5, 9}) {
+                    stmt.executeUpdate("INSERT INTO food_nutrients (food_id, protein, carbs, fat, fiber, sugar, sodium) " +
+                                       "SELECT id, " + protein + ", 1, 1, 1, 1, 1 FROM foods WHERE name = '" + name + "'");
+                }
+            }
+        }
+
+        for (int pageSize = 1; pageSize <= 3; pageSize++) {
+            List<String> paged = new ArrayList<>();
+            long key = 0;
+            Page<Food, Long> page;
+            do {
+                page = mealPlanningService.getFoodLog(TEST_USERNAME, "2025-03-03", key, pageSize);
+                for (Food food : page.getItems()) {
+                    paged.add(food.getName());
+                    if (food.getName().equals("Test Dup Nutrients")) {
+                        assertEquals(9.0, ((FoodNutrient) food).getProtein(), 0.001);
+                    }
+                }
+                key = page.getNextKey();
+            } while (page.hasMore());
+            assertEquals("page size " + pageSize, Arrays.asList("Test Dup Nutrients", "Test Dup 2", "Test Dup 3"), paged);
+
+            List<String> meals = new ArrayList<>();
+            Page<String, Long> planPage;
+            key = 0;
+            do {
+                planPage = mealPlanningService.getWeeklyMealPlan(key, pageSize);
+                for (String meal : planPage.getItems()) {
+                    if (meal.contains("Test Week Dup")) {
+                        meals.add(meal.substring(0, meal.indexOf(" (")));
+                    }
+                }
+                key = planPage.getNextKey();
+            } while (planPage.hasMore());
+            assertEquals("page size " + pageSize,
+                         Arrays.asList("Monday - Breakfast: Test Week Dup A", "Monday - Lunch: Test Week Dup B",
+                                       "Monday - Dinner: Test Week Dup C"), meals);
+        }
+    }
+
+    @Test
+    public void testAppendWeeklyPlanPageStartsDayHeaders() {
+        StringBuilder plan = new StringBuilder();
+        String day = MealPlanningService.appendWeeklyPlanPage(
+            Arrays.asList("Monday - Breakfast: Oats (Calories: 150)", "Monday - Lunch: Soup (Calories: 200)"), null, plan);
+        assertEquals("Monday", day);
+        // Monday continues on the next page under the same header
+        day = MealPlanningService.appendWeeklyPlanPage(
+            Arrays.asList("Monday - Dinner: Fish (Calories: 300)", "Tuesday - Breakfast: Eggs (Calories: 140)"), day, plan);
+        assertEquals("Tuesday", day);
+        assertEquals("\nMonday:\n  Breakfast: Oats (Calories: 150)\n  Lunch: Soup (Calories: 200)\n" +
+                     "  Dinner: Fish (Calories: 300)\n\nTuesday:\n  Breakfast: Eggs (Calories: 140)\n", plan.toString());
+        assertEquals("Tuesday", MealPlanningService.appendWeeklyPlanPage(new ArrayList<>(), day, plan));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPagedVariantsRejectNonPositivePageSize() {
+        mealPlanningService.getWeeklyMealPlan(0, 0);
+    }
+
+    @Test
+    public void testSearchFoodsByPrefixAndWords() throws Exception {
+        try (Statement stmt = testConnection.createStatement()) {
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsearch Grilled Chicken', 100, 200)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsearch Grilled Chicken', 150, 300)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsearch Chickpea Salad', 100, 150)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsearch Apple', 100, 50)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Fried Zqxsearchable Cheese', 100, 350)");
+        }
+        try {
+            assertEquals(Arrays.asList("Zqxsearch Apple", "Zqxsearch Chickpea Salad", "Zqxsearch Grilled Chicken",
+                                       "Fried Zqxsearchable Cheese"),
+                         mealPlanningService.searchFoods("zqxsearch", 10));
+            assertEquals(2, mealPlanningService.searchFoods("Zqxsearch", 2).size());
+            assertEquals(Arrays.asList("Zqxsearch Grilled Chicken"), mealPlanningService.searchFoods("zqxs gri", 10));
+            assertEquals("Word order does not matter",
+                         Arrays.asList("Zqxsearch Grilled Chicken"), mealPlanningService.searchFoods("chicken zqx", 10));
+            assertEquals(Arrays.asList("Zqxsearch Chickpea Salad", "Zqxsearch Grilled Chicken"),
+                         mealPlanningService.searchFoods("zqxsearch chick", 10));
+
+            // Renames and deletes are mirrored into the index
+            try (Statement stmt = testConnection.createStatement()) {
+                stmt.executeUpdate("UPDATE foods SET name = 'Zqxsearch Baked Chicken' WHERE name = 'Zqxsearch Grilled Chicken'");
+                stmt.executeUpdate("DELETE FROM foods WHERE name = 'Zqxsearch Apple'");
+            }
+            assertTrue(mealPlanningService.searchFoods("zqxs gri", 10).isEmpty());
+            assertEquals(Arrays.asList("Zqxsearch Baked Chicken"), mealPlanningService.searchFoods("zqxs bak", 10));
+            assertTrue(mealPlanningService.searchFoods("zqxsearch app", 10).isEmpty());
+
+            assertTrue(mealPlanningService.searchFoods(null, 10).isEmpty());
+            assertTrue(mealPlanningService.searchFoods("  ", 10).isEmpty());
+            assertTrue(mealPlanningService.searchFoods("zqxsearch", 0).isEmpty());
+            assertTrue(mealPlanningService.searchFoods("%_", 10).isEmpty());
+        } finally {
+            try (Statement stmt = testConnection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM foods WHERE name LIKE '%Zqxsearch%'");
+            }
+        }
+    }
+
+    @Test
+    public void testToFullTextQuery() {
+        assertEquals("\"gri\"* \"chi\"*", MealPlanningService.toFullTextQuery("gri, chi"));
+        assertEquals("\"çorba\"*", MealPlanningService.toFullTextQuery("\"çorba\""));
+        assertNull(MealPlanningService.toFullTextQuery("%* -"));
+    }
+
+    @Test
+    public void testFullTextSearchDisabledOnlyWhenMissing() {
+        assertTrue(MealPlanningService.isFullTextSearchMissing(
+            new SQLException("[SQLITE_ERROR] SQL error or missing database (no such module: fts5)")));
+        assertTrue(MealPlanningService.isFullTextSearchMissing(
+            new SQLException("[SQLITE_ERROR] SQL error or missing database (no such table: foods_fts)")));
+        assertFalse(MealPlanningService.isFullTextSearchMissing(
+            new SQLException("[SQLITE_BUSY] The database file is locked (database is locked)")));
+        assertFalse(MealPlanningService.isFullTextSearchMissing(new SQLException()));
+    }
+
+    @Test
+    public void testSuggestFoodsFromAutocompleteIndex() throws Exception {
+        try (Statement stmt = testConnection.createStatement()) {
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsuggest Banana Bread', 100, 300)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsuggest Banana Smoothie', 100, 150)");
+            stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsuggest Bagel', 100, 250)");
+        }
+        FoodAutocompleteIndex index = new FoodAutocompleteIndex(5);
+        mealPlanningService.setAutocompleteIndex(index);
+        try {
+            // Typing never loads the index
+            assertTrue(mealPlanningService.suggestFoods("zqxsuggest ba", 10).isEmpty());
+            assertFalse(index.isLoaded());
+            assertTrue(mealPlanningService.refreshAutocompleteIndex());
+            assertEquals(Arrays.asList("Zqxsuggest Bagel", "Zqxsuggest Banana Bread", "Zqxsuggest Banana Smoothie"),
+                         mealPlanningService.suggestFoods("zqxsuggest ba", 10));
+
+            // Logged foods move up
+            assertTrue(mealPlanningService.logFood(TEST_USERNAME, TEST_DATE, new Food("Zqxsuggest Banana Smoothie", 100, 150)));
+            assertEquals(Arrays.asList("Zqxsuggest Banana Smoothie", "Zqxsuggest Banana Bread"),
+                         mealPlanningService.suggestFoods("Zqxsuggest  BAN", 2));
+
+            // Typos
+            assertEquals(Arrays.asList("Zqxsuggest Banana Smoothie", "Zqxsuggest Banana Bread"),
+                         mealPlanningService.suggestFoods("zqxsugest bananna", 10));
+
+            // Foods created by planning are added
+            assertTrue(mealPlanningService.suggestFoods("zqxsuggest cherry", 10).isEmpty());
+            assertTrue(mealPlanningService.addMealToPlan(testUserId, "Monday", "lunch", "Zqxsuggest Cherry Pie"));
+            assertEquals(Arrays.asList("Zqxsuggest Cherry Pie"), mealPlanningService.suggestFoods("zqxsuggest cherry", 10));
+
+            // Foods inserted elsewhere appear after a refresh
+            try (Statement stmt = testConnection.createStatement()) {
+                stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('Zqxsuggest Walnut Loaf', 100, 280)");
+            }
+            assertTrue(mealPlanningService.suggestFoods("zqxsuggest walnut", 10).isEmpty());
+            assertTrue(mealPlanningService.refreshAutocompleteIndex());
+            assertEquals(Arrays.asList("Zqxsuggest Walnut Loaf"), mealPlanningService.suggestFoods("zqxsuggest walnut", 10));
+
+            mealPlanningService.setAutocompleteIndex(null);
+            assertTrue(mealPlanningService.suggestFoods("zqxsuggest", 10).isEmpty());
+            assertFalse(mealPlanningService.refreshAutocompleteIndex());
+        } finally {
+            try (Statement stmt = testConnection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM food_logs WHERE food_id IN (SELECT id FROM foods WHERE name LIKE 'Zqxsuggest%')");
+                stmt.executeUpdate("DELETE FROM meal_plans WHERE food_id IN (SELECT id FROM foods WHERE name LIKE 'Zqxsuggest%')");
+                stmt.executeUpdate("DELETE FROM foods WHERE name LIKE 'Zqxsuggest%'");
+            }
+        }
+    }
+
+    @Test
+    public void testLogFoodFeedsPopulationAnalytics() {
+        PopulationAnalytics analytics = new PopulationAnalytics(5);
+        mealPlanningService.setPopulationAnalytics(analytics);
+        assertTrue(mealPlanningService.logFood(TEST_USERNAME, TEST_DATE, new Food("Test Sketch Food", 100, 250)));
+        assertFalse(mealPlanningService.logFood("no_such_user", TEST_DATE, new Food("Test Sketch Food", 100, 250)));
+
+        assertEquals(1, analytics.getTotalLogs());
+        assertEquals(1, analytics.estimateDistinctFoods(TEST_USERNAME));
+        assertEquals("test sketch food", analytics.getTopFoods(1).get(0).getKey());
+        assertEquals(250, analytics.getCaloriePercentile(50), 3);
+    }
+
     // Helper for saveFoodNutrients via reflection
     private void invokeSaveFoodNutrients(Connection conn, int foodId, FoodNutrient fn) throws Exception {
         java.lang.reflect.Method m = MealPlanningService.class.getDeclaredMethod("saveFoodNutrients", Connection.class, int.class, FoodNutrient.class);
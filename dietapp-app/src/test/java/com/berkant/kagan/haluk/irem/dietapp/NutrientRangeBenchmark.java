@@ -0,0 +1,158 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for NutrientRangeIndex against a linear scan and a SQL scan of the foods table.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes:sqlite-jdbc.jar com.berkant.kagan.haluk.irem.dietapp.NutrientRangeBenchmark
+ */
+public class NutrientRangeBenchmark {
+
+    private static final int FOODS = 500_000;
+    private static final int ROUNDS = 20;
+    private static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(49);
+        List<FoodNutrient> foods = new ArrayList<>(FOODS);
+        List<String> mealTypes = new ArrayList<>(FOODS);
+        for (int i = 0; i < FOODS; i++) {
+            foods.add(new FoodNutrient("Food" + i, 50 + random.nextInt(300), random.nextInt(800),
+                                       random.nextDouble() * 40, random.nextDouble() * 90, random.nextDouble() * 40,
+                                       random.nextDouble() * 12, random.nextDouble() * 50, random.nextDouble() * 900));
+            mealTypes.add(MEAL_TYPES[random.nextInt(MEAL_TYPES.length)]);
+        }
+
+        long start = System.nanoTime();
+        NutrientRangeIndex index = new NutrientRangeIndex(foods, mealTypes);
+        System.out.printf("build: %.0f ms for %d foods%n", (System.nanoTime() - start) / 1e6, index.size());
+
+        String[] labels = {
+            "protein>=20 calories<=300 sodium<=200",
+            "protein>=60 fiber>=20",
+            "calories<=1000 sugar<=60",
+            "fat<=5 lunch",
+            "protein>=20 calories<=300 sodium<=200 limit 20"
+        };
+        FoodSubstitutionIndex.Query[] queries = {
+            new FoodSubstitutionIndex.Query(Integer.MAX_VALUE).atLeast(FoodSubstitutionIndex.PROTEIN, 20)
+                .atMost(FoodSubstitutionIndex.CALORIES, 300).atMost(FoodSubstitutionIndex.SODIUM, 200),
+            new FoodSubstitutionIndex.Query(Integer.MAX_VALUE).atLeast(FoodSubstitutionIndex.PROTEIN, 60)
+                .atLeast(FoodSubstitutionIndex.FIBER, 20),
+            new FoodSubstitutionIndex.Query(Integer.MAX_VALUE).atMost(FoodSubstitutionIndex.CALORIES, 1000)
+                .atMost(FoodSubstitutionIndex.SUGAR, 60),
+            new FoodSubstitutionIndex.Query(Integer.MAX_VALUE).atMost(FoodSubstitutionIndex.FAT, 5).mealType("lunch"),
+            new FoodSubstitutionIndex.Query(20).atLeast(FoodSubstitutionIndex.PROTEIN, 20)
+                .atMost(FoodSubstitutionIndex.CALORIES, 300).atMost(FoodSubstitutionIndex.SODIUM, 200)
+        };
+        String[] sql = {
+            "protein * 100.0 / grams >= 20 AND calories * 100.0 / grams <= 300 AND sodium * 100.0 / grams <= 200",
+            "protein * 100.0 / grams >= 60 AND fiber * 100.0 / grams >= 20",
+            "calories * 100.0 / grams <= 1000 AND sugar * 100.0 / grams <= 60",
+            "fat * 100.0 / grams <= 5 AND meal_type = 'lunch'",
+            "protein * 100.0 / grams >= 20 AND calories * 100.0 / grams <= 300 AND sodium * 100.0 / grams <= 200 " +
+                "ORDER BY id LIMIT 20"
+        };
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY, name TEXT, grams REAL, calories INTEGER, " +
+                             "protein REAL, carbs REAL, fat REAL, fiber REAL, sugar REAL, sodium REAL, meal_type TEXT)");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO foods VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < FOODS; i++) {
+                    FoodNutrient food = foods.get(i);
+                    insert.setInt(1, i + 1);
+                    insert.setString(2, food.getName());
+                    insert.setDouble(3, food.getGrams());
+                    insert.setInt(4, food.getCalories());
+                    insert.setDouble(5, food.getProtein());
+                    insert.setDouble(6, food.getCarbs());
+                    insert.setDouble(7, food.getFat());
+                    insert.setDouble(8, food.getFiber());
+                    insert.setDouble(9, food.getSugar());
+                    insert.setDouble(10, food.getSodium());
+                    insert.setString(11, mealTypes.get(i));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+
+            for (int q = 0; q < queries.length; q++) {
+                int indexed = 0;
+                int scanned = 0;
+                int selected = 0;
+                double[] indexNanos = new double[ROUNDS];
+                double[] scanNanos = new double[ROUNDS];
+                double[] sqlNanos = new double[ROUNDS];
+                for (int round = 0; round < ROUNDS + 1; round++) {
+                    long t0 = System.nanoTime();
+                    indexed = index.find(queries[q]).size();
+                    long t1 = System.nanoTime();
+                    scanned = linearScan(foods, mealTypes, queries[q]);
+                    long t2 = System.nanoTime();
+                    if (round < 3) {
+                        selected = sqlScan(conn, sql[q]);
+                    }
+                    long t3 = System.nanoTime();
+                    if (round > 0) {
+                        indexNanos[round - 1] = t1 - t0;
+                        scanNanos[round - 1] = t2 - t1;
+                        sqlNanos[round - 1] = round < 3 ? t3 - t2 : sqlNanos[0];
+                    }
+                }
+                System.out.printf("%-48s %6d rows (scan %d, sql %d): index %7.2f ms, linear scan %7.2f ms, sql %7.1f ms%n",
+                                  labels[q], indexed, scanned, selected,
+                                  median(indexNanos) / 1e6, median(scanNanos) / 1e6, median(sqlNanos) / 1e6);
+            }
+        }
+    }
+
+    private static int linearScan(List<FoodNutrient> foods, List<String> mealTypes, FoodSubstitutionIndex.Query query) {
+        List<FoodNutrient> found = new ArrayList<>();
+        double[] values = new double[FoodSubstitutionIndex.DIMENSIONS];
+        for (int i = 0; i < foods.size() && found.size() < query.getLimit(); i++) {
+            if (query.getMealType() != null && !query.getMealType().equalsIgnoreCase(mealTypes.get(i))) {
+                continue;
+            }
+            FoodSubstitutionIndex.per100g(foods.get(i), values, 0);
+            boolean inside = true;
+            for (int d = 0; d < values.length && inside; d++) {
+                inside = values[d] >= query.getMin(d) && values[d] <= query.getMax(d);
+            }
+            if (inside) {
+                found.add(foods.get(i));
+            }
+        }
+        return found.size();
+    }
+
+    private static int sqlScan(Connection conn, String where) throws Exception {
+        int found = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, grams, calories, protein, carbs, fat, fiber, sugar, " +
+                                              "sodium FROM foods WHERE " + where)) {
+            while (rs.next()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static double median(double[] nanos) {
+        double[] sorted = nanos.clone();
+        java.util.Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,146 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the NutrientRangeIndex class.
+ */
+public class NutrientRangeIndexTest {
+
+    private static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+
+    @Test
+    public void testRangesPer100g() {
+        List<FoodNutrient> foods = new ArrayList<>();
+        foods.add(new FoodNutrient("Chicken Breast", 200, 330, 62, 0, 7.2, 0, 0, 148));
+        foods.add(new FoodNutrient("Tuna", 100, 132, 28, 0, 1, 0, 0, 47));
+        foods.add(new FoodNutrient("Salted Peanuts", 50, 300, 13, 8, 25, 4, 2, 400));
+        foods.add(new FoodNutrient("Apple", 150, 78, 0.4, 21, 0.3, 3.6, 15, 2));
+        foods.add(new FoodNutrient("Zero Grams", 0, 100, 50, 0, 0, 0, 0, 0));
+        NutrientRangeIndex index = new NutrientRangeIndex(foods,
+            Arrays.asList("dinner", "lunch", "snack", "snack", "snack"));
+        assertEquals(5, index.size());
+
+        FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(10)
+            .atLeast(FoodSubstitutionIndex.PROTEIN, 20)
+            .atMost(FoodSubstitutionIndex.CALORIES, 300)
+            .atMost(FoodSubstitutionIndex.SODIUM, 200);
+        assertEquals(Arrays.asList("Chicken Breast", "Tuna"), names(index.find(query)));
+
+        // Bounds are inclusive: chicken has exactly 31 g protein per 100 g
+        assertEquals(Arrays.asList("Chicken Breast"),
+                     names(index.find(new FoodSubstitutionIndex.Query(10).atLeast(FoodSubstitutionIndex.PROTEIN, 31))));
+        assertEquals(Arrays.asList("Chicken Breast"), names(index.find(query.mealType("DINNER"))));
+        assertEquals(Arrays.asList("Chicken Breast"),
+                     names(index.find(new FoodSubstitutionIndex.Query(1).atLeast(FoodSubstitutionIndex.PROTEIN, 20))));
+        assertEquals(Arrays.asList("Salted Peanuts", "Apple", "Zero Grams"),
+                     names(index.find(new FoodSubstitutionIndex.Query(10).mealType("snack"))));
+        assertTrue(index.find(new FoodSubstitutionIndex.Query(10).atLeast(FoodSubstitutionIndex.FIBER, 100)).isEmpty());
+        assertTrue(index.find(new FoodSubstitutionIndex.Query(0)).isEmpty());
+        assertTrue(new NutrientRangeIndex(new ArrayList<>(), null)
+            .find(new FoodSubstitutionIndex.Query(10)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMealTypesMustMatchFoods() {
+        new NutrientRangeIndex(Arrays.asList(new FoodNutrient("Tuna", 100, 132, 28, 0, 1, 0, 0, 47)),
+                               new ArrayList<>());
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(49);
+        List<FoodNutrient> foods = new ArrayList<>();
+        List<String> mealTypes = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Rounded values give many ties at the bounds
+            foods.add(new FoodNutrient("Food" + i, 100, random.nextInt(800), random.nextInt(40),
+                                       random.nextInt(90), random.nextInt(40), random.nextInt(12),
+                                       random.nextInt(50), random.nextInt(900)));
+            mealTypes.add(MEAL_TYPES[random.nextInt(MEAL_TYPES.length)]);
+        }
+        NutrientRangeIndex index = new NutrientRangeIndex(foods, mealTypes);
+        double[] scale = {800, 40, 90, 40, 12, 50, 900};
+
+        for (int q = 0; q < 500; q++) {
+            int limit = q % 5 == 0 ? 10 : Integer.MAX_VALUE;
+            FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(limit);
+            int bounds = 1 + random.nextInt(4);
+            for (int b = 0; b < bounds; b++) {
+                int d = random.nextInt(FoodSubstitutionIndex.DIMENSIONS);
+                // Wide and narrow bounds so both the bitmap and the direct checks run
+                double value = Math.floor(random.nextDouble() * scale[d]);
+                if (random.nextBoolean()) {
+                    query.atLeast(d, value);
+                } else {
+                    query.atMost(d, value);
+                }
+            }
+            if (q % 7 == 0) {
+                query.mealType("Lunch");
+            }
+
+            List<String> expected = new ArrayList<>();
+            double[] values = new double[FoodSubstitutionIndex.DIMENSIONS];
+            for (int i = 0; i < foods.size() && expected.size() < limit; i++) {
+                FoodSubstitutionIndex.per100g(foods.get(i), values, 0);
+                boolean inside = query.getMealType() == null || query.getMealType().equalsIgnoreCase(mealTypes.get(i));
+                for (int d = 0; d < values.length; d++) {
+                    inside &= values[d] >= query.getMin(d) && values[d] <= query.getMax(d);
+                }
+                if (inside) {
+                    expected.add(foods.get(i).getName());
+                }
+            }
+            assertEquals("query " + q, expected, names(index.find(query)));
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY, name TEXT, grams REAL, calories INTEGER, " +
+                         "protein REAL, carbs REAL, fat REAL, fiber REAL, sugar REAL, sodium REAL, meal_type TEXT)");
+            stmt.execute("CREATE TABLE food_nutrients (id INTEGER PRIMARY KEY, food_id INTEGER, protein REAL, " +
+                         "carbs REAL, fat REAL, fiber REAL, sugar REAL, sodium REAL)");
+            stmt.execute("INSERT INTO foods VALUES (2, 'Lentils', 100, 116, 9, 20, 0.4, 8, 1.8, 2, 'lunch'), " +
+                         "(1, 'Greek Yogurt', 200, 194, 20, 7.2, 10, 0, 6.4, 72, 'breakfast'), " +
+                         "(3, 'Bacon', 100, 541, 37, 1.4, 42, 0, 0, 1717, NULL), " +
+                         "(4, 'Tofu', 100, 76, NULL, NULL, NULL, NULL, NULL, NULL, 'dinner')");
+            // The latest food_nutrients row wins over the foods columns
+            stmt.execute("INSERT INTO food_nutrients VALUES (1, 4, 5, 2, 4, 0.3, 0.6, 7), (2, 4, 8, 1.9, 4.8, 0.3, 0.6, 7)");
+
+            NutrientRangeIndex index = NutrientRangeIndex.load(conn);
+            assertEquals(4, index.size());
+            assertEquals(Arrays.asList("Greek Yogurt", "Lentils", "Bacon"),
+                         names(index.find(new FoodSubstitutionIndex.Query(10).atLeast(FoodSubstitutionIndex.PROTEIN, 9))));
+            assertEquals(Arrays.asList("Greek Yogurt", "Lentils"),
+                         names(index.find(new FoodSubstitutionIndex.Query(10)
+                             .atLeast(FoodSubstitutionIndex.PROTEIN, 9)
+                             .atMost(FoodSubstitutionIndex.SODIUM, 200))));
+            assertEquals(Arrays.asList("Tofu"),
+                         names(index.find(new FoodSubstitutionIndex.Query(10)
+                             .atLeast(FoodSubstitutionIndex.PROTEIN, 7.5)
+                             .atMost(FoodSubstitutionIndex.PROTEIN, 8.5))));
+        }
+    }
+
+    private static List<String> names(List<FoodNutrient> foods) {
+        List<String> names = new ArrayList<>();
+        for (FoodNutrient food : foods) {
+            names.add(food.getName());
+        }
+        return names;
+    }
+}
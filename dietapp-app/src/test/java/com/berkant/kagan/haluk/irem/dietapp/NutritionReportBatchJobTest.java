@@ -0,0 +1,178 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the NutritionReportBatchJob class.
+ */
+public class NutritionReportBatchJobTest {
+
+    private static final int USER_COUNT = 50;
+    private static final String DATE = "2025-03-01";
+
+    private File dbFile;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("batch-report", ".db");
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath() + "?journal_mode=WAL";
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT)");
+            stmt.execute("CREATE TABLE foods (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, " +
+                         "grams REAL, calories INTEGER)");
+            stmt.execute("CREATE TABLE food_nutrients (id INTEGER PRIMARY KEY AUTOINCREMENT, food_id INTEGER, " +
+                         "protein REAL, carbs REAL, fat REAL, fiber REAL, sugar REAL, sodium REAL)");
+            stmt.execute("CREATE TABLE food_logs (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER, " +
+                         "date TEXT, food_id INTEGER)");
+            stmt.execute("CREATE TABLE nutrition_goals (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER, " +
+                         "calorie_goal INTEGER, protein_goal REAL, carb_goal REAL, fat_goal REAL)");
+            stmt.execute("INSERT INTO foods (name, grams, calories) VALUES ('Apple', 100, 50)");
+            stmt.execute("INSERT INTO food_nutrients (food_id, protein, carbs, fat, fiber, sugar, sodium) " +
+                         "VALUES (1, 1, 10, 0.5, 2, 8, 1)");
+            stmt.execute("INSERT INTO foods (name, grams, calories) VALUES ('Water', 250, 0)");
+
+            for (int i = 1; i <= USER_COUNT; i++) {
+                stmt.execute("INSERT INTO users (username) VALUES ('user" + i + "')");
+                // User i eats i apples on DATE and one apple the day before
+                for (int j = 0; j < i; j++) {
+                    stmt.execute("INSERT INTO food_logs (user_id, date, food_id) VALUES (" + i + ", '" + DATE + "', 1)");
+                }
+                stmt.execute("INSERT INTO food_logs (user_id, date, food_id) VALUES (" + i + ", '2025-02-28', 1)");
+                if (i % 2 == 0) {
+                    stmt.execute("INSERT INTO nutrition_goals (user_id, calorie_goal, protein_goal, carb_goal, fat_goal) " +
+                                 "VALUES (" + i + ", 1000, 40, 100, 30)");
+                }
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbFile.delete();
+        new File(dbFile.getAbsolutePath() + "-wal").delete();
+        new File(dbFile.getAbsolutePath() + "-shm").delete();
+    }
+
+    private NutritionReportBatchJob newJob(int parallelism, int partitionSize) {
+        return new NutritionReportBatchJob(() -> DriverManager.getConnection(url), parallelism, partitionSize);
+    }
+
+    @Test
+    public void testRunWritesReportForEveryUser() throws Exception {
+        NutritionReportBatchJob.BatchResult result = newJob(4, 7).run(DATE, null);
+
+        assertEquals(USER_COUNT, result.getUsersProcessed());
+        assertEquals(USER_COUNT, result.getReportsWritten());
+        assertEquals(DATE, result.getDate());
+        assertTrue(result.getUsersPerSecond() > 0);
+
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT * FROM daily_nutrition_reports WHERE user_id = ? AND date = ?")) {
+            pstmt.setInt(1, 10);
+            pstmt.setString(2, DATE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(10, rs.getInt("entry_count"));
+                assertEquals(500, rs.getInt("total_calories"));
+                assertEquals(10.0, rs.getDouble("total_protein"), 0.001);
+                assertEquals(80.0, rs.getDouble("total_sugar"), 0.001);
+                assertEquals(1000, rs.getInt("calorie_goal"));
+                assertEquals(50.0, rs.getDouble("calorie_percentage"), 0.001);
+            }
+
+            pstmt.setInt(1, 3);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(150, rs.getInt("total_calories"));
+                // No goals set, defaults apply
+                assertEquals(2000, rs.getInt("calorie_goal"));
+                assertEquals(70.0, rs.getDouble("fat_goal"), 0.001);
+                assertEquals(7.5, rs.getDouble("calorie_percentage"), 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void testReportsMatchAcrossParallelismSettings() throws Exception {
+        newJob(1, 1000).run(DATE, null);
+        long serialChecksum = checksum();
+        newJob(8, 3).run(DATE, null);
+        assertEquals(serialChecksum, checksum());
+        assertEquals(USER_COUNT, countReports());
+    }
+
+    @Test
+    public void testProgressReachesTotal() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger last = new AtomicInteger();
+        newJob(4, 10).run(DATE, (processed, total) -> {
+            calls.incrementAndGet();
+            assertEquals(USER_COUNT, total);
+            last.accumulateAndGet(processed, Math::max);
+        });
+        assertTrue(calls.get() >= USER_COUNT / 10);
+        assertEquals(USER_COUNT, last.get());
+    }
+
+    @Test
+    public void testDateWithoutLogsWritesEmptyReports() throws Exception {
+        NutritionReportBatchJob.BatchResult result = newJob(2, 16).run("2030-01-01", null);
+        assertEquals(USER_COUNT, result.getReportsWritten());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT SUM(total_calories) FROM daily_nutrition_reports WHERE date = '2030-01-01'")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyDateRejected() throws Exception {
+        newJob(2, 16).run(" ", null);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testMissingSchemaPropagatesSQLException() throws Exception {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE food_logs");
+        }
+        newJob(2, 16).run(DATE, null);
+    }
+
+    private long checksum() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT SUM(user_id * total_calories + entry_count) FROM daily_nutrition_reports")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private int countReports() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM daily_nutrition_reports")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
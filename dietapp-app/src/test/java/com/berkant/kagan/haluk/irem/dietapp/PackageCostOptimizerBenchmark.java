@@ -0,0 +1,51 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for optimizing the packages of a household week of 200 ingredients.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.PackageCostOptimizerBenchmark
+ */
+public class PackageCostOptimizerBenchmark {
+
+    private static final int INGREDIENTS = 200;
+    private static final int ROUNDS = 200;
+    private static final int[] MASS_SIZES = {125, 200, 250, 400, 500, 750, 1000, 2000, 5000};
+
+    public static void main(String[] args) {
+        Random random = new Random(5);
+        List<PackageCostOptimizer.Need> needs = new ArrayList<>();
+        for (int i = 0; i < INGREDIENTS; i++) {
+            PackageCostOptimizer.PackageOption[] options = new PackageCostOptimizer.PackageOption[2 + random.nextInt(3)];
+            double pricePerKg = 1 + random.nextInt(30);
+            for (int j = 0; j < options.length; j++) {
+                int size = MASS_SIZES[random.nextInt(MASS_SIZES.length)];
+                // Larger packages are a little cheaper per gram
+                double price = Math.round(pricePerKg * size / 1000.0 * (1.1 - size / 50000.0) * 100) / 100.0;
+                int available = random.nextInt(4) == 0 ? 1 + random.nextInt(5) : PackageCostOptimizer.UNLIMITED;
+                options[j] = new PackageCostOptimizer.PackageOption(size, Math.max(0.01, price), available);
+            }
+            needs.add(new PackageCostOptimizer.Need("Ingredient " + i, 50 + random.nextInt(4000), "g",
+                                                    Arrays.asList(options)));
+        }
+
+        PackageCostOptimizer optimizer = new PackageCostOptimizer();
+        for (int pass = 0; pass < 2; pass++) {
+            long[] times = new long[ROUNDS];
+            PackageCostOptimizer.Plan plan = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                plan = optimizer.optimize(needs);
+                times[round] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            System.out.printf("%s: %d ingredients, median %.3f ms, p99 %.3f ms, total cost %.2f, total waste %.0f g%n",
+                              pass == 0 ? "warmup" : "measured", INGREDIENTS, times[ROUNDS / 2] / 1e6,
+                              times[ROUNDS * 99 / 100] / 1e6, plan.getTotalCost(), plan.getTotalWaste());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the PackageCostOptimizer class.
+ */
+public class PackageCostOptimizerTest {
+
+    private final PackageCostOptimizer optimizer = new PackageCostOptimizer();
+
+    private static PackageCostOptimizer.Need need(double quantity, PackageCostOptimizer.PackageOption... options) {
+        return new PackageCostOptimizer.Need("Flour", quantity, "g", Arrays.asList(options));
+    }
+
+    @Test
+    public void testPicksCheapestCombination() {
+        PackageCostOptimizer.Purchase purchase = optimizer.optimize(need(1200,
+            new PackageCostOptimizer.PackageOption(500, 2.0),
+            new PackageCostOptimizer.PackageOption(1000, 3.5)));
+
+        assertTrue(purchase.isCovered());
+        assertEquals(1, purchase.getCount(0));
+        assertEquals(1, purchase.getCount(1));
+        assertEquals(5.5, purchase.getCost(), 1e-9);
+        assertEquals(300.0, purchase.getWaste(), 1e-9);
+    }
+
+    @Test
+    public void testEqualCostPrefersLessWaste() {
+        PackageCostOptimizer.Purchase purchase = optimizer.optimize(need(400,
+            new PackageCostOptimizer.PackageOption(1000, 2.0),
+            new PackageCostOptimizer.PackageOption(500, 2.0)));
+
+        assertEquals(0, purchase.getCount(0));
+        assertEquals(1, purchase.getCount(1));
+        assertEquals(100.0, purchase.getWaste(), 1e-9);
+    }
+
+    @Test
+    public void testStockLimitsAndUncoverableNeeds() {
+        PackageCostOptimizer.Purchase limited = optimizer.optimize(need(1500,
+            new PackageCostOptimizer.PackageOption(1000, 3.0, 0),
+            new PackageCostOptimizer.PackageOption(500, 2.0)));
+        assertEquals(3, limited.getCount(1));
+        assertEquals(6.0, limited.getCost(), 1e-9);
+
+        PackageCostOptimizer.Purchase shortage = optimizer.optimize(need(1500,
+            new PackageCostOptimizer.PackageOption(500, 2.0, 2)));
+        assertFalse(shortage.isCovered());
+        assertEquals(2, shortage.getCount(0));
+        assertEquals(0.0, shortage.getWaste(), 1e-9);
+
+        assertFalse(optimizer.optimize(need(10)).isCovered());
+        PackageCostOptimizer.Purchase nothing = optimizer.optimize(need(0, new PackageCostOptimizer.PackageOption(500, 2.0)));
+        assertTrue(nothing.isCovered());
+        assertEquals(0.0, nothing.getCost(), 1e-9);
+    }
+
+    @Test
+    public void testFractionalSizes() {
+        // A loose purchase of exactly the amount needed covers it
+        PackageCostOptimizer.Purchase loose = optimizer.optimize(need(2.3,
+            new PackageCostOptimizer.PackageOption(2.3, 1.15, 1)));
+        assertTrue(loose.isCovered());
+        assertEquals(1, loose.getCount(0));
+        assertEquals(1.15, loose.getCost(), 1e-9);
+        assertEquals(0.0, loose.getWaste(), 1e-9);
+
+        // Two 1.4 packages hold only 2.8, so three are needed for 3.9
+        PackageCostOptimizer.Purchase packs = optimizer.optimize(need(3.9,
+            new PackageCostOptimizer.PackageOption(1.4, 1.0)));
+        assertTrue(packs.isCovered());
+        assertEquals(3, packs.getCount(0));
+        assertEquals(4.2 - 3.9, packs.getWaste(), 1e-9);
+    }
+
+    @Test
+    public void testPlanTotals() {
+        List<PackageCostOptimizer.Need> needs = new ArrayList<>();
+        needs.add(need(1200, new PackageCostOptimizer.PackageOption(500, 2.0)));
+        needs.add(new PackageCostOptimizer.Need("Eggs", 4, "unit",
+                                                Arrays.asList(new PackageCostOptimizer.PackageOption(6, 9.0))));
+        PackageCostOptimizer.Plan plan = optimizer.optimize(needs);
+
+        assertEquals(2, plan.getPurchases().size());
+        assertEquals(6.0 + 9.0, plan.getTotalCost(), 1e-9);
+        assertEquals(300.0 + 2.0, plan.getTotalWaste(), 1e-9);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            int n = 1 + random.nextInt(3);
+            PackageCostOptimizer.PackageOption[] options = new PackageCostOptimizer.PackageOption[n];
+            for (int i = 0; i < n; i++) {
+                int available = random.nextInt(3) == 0 ? 1 + random.nextInt(4) : PackageCostOptimizer.UNLIMITED;
+                options[i] = new PackageCostOptimizer.PackageOption(50 * (1 + random.nextInt(20)),
+                                                                    (1 + random.nextInt(800)) / 100.0, available);
+            }
+            int quantity = 1 + random.nextInt(2500);
+            PackageCostOptimizer.Purchase purchase = optimizer.optimize(need(quantity, options));
+
+            long[] best = bruteForce(options, quantity);
+            if (best == null) {
+                assertFalse(purchase.isCovered());
+                continue;
+            }
+            assertTrue(purchase.isCovered());
+            assertEquals("round " + round, best[0], Math.round(purchase.getCost() * 100));
+            assertEquals("round " + round, best[1], Math.round(purchase.getPurchasedQuantity()));
+        }
+    }
+
+    /**
+     * Enumerates every package count up to the stock or to covering the need alone.
+     * Returns {cents, quantity} of the cheapest, least wasteful covering choice, or null.
+     */
+    private static long[] bruteForce(PackageCostOptimizer.PackageOption[] options, int quantity) {
+        long[] best = null;
+        int[] counts = new int[options.length];
+        while (true) {
+            long cents = 0;
+            long size = 0;
+            for (int i = 0; i < options.length; i++) {
+                cents += counts[i] * Math.round(options[i].getPrice() * 100);
+                size += counts[i] * (long) options[i].getSize();
+            }
+            if (size >= quantity && (best == null || cents < best[0] || (cents == best[0] && size < best[1]))) {
+                best = new long[] {cents, size};
+            }
+            int i = 0;
+            while (i < options.length) {
+                int max = (int) Math.ceil(quantity / options[i].getSize());
+                if (options[i].getAvailable() != PackageCostOptimizer.UNLIMITED) {
+                    max = Math.min(max, options[i].getAvailable());
+                }
+                if (counts[i] < max) {
+                    counts[i]++;
+                    break;
+                }
+                counts[i++] = 0;
+            }
+            if (i == options.length) {
+                return best;
+            }
+        }
+    }
+}
@@ -594,13 +594,23 @@ public class PersonalizedDietRecommendationServiceTest {
         assertEquals("Vegan diet should have 20% fat (44g)", 44, veganMacros.getFatGrams());
     }
     
+    /**
+     * Filtered food options of every meal type, as the recommendation methods pass them to generateMealPlan.
+     */
+    private Food[][] mealOptions(PersonalizedDietRecommendationService.UserDietProfile profile) throws Exception {
+        Method m = PersonalizedDietRecommendationService.class.getDeclaredMethod(
+            "getMealOptions", PersonalizedDietRecommendationService.UserDietProfile.class);
+        m.setAccessible(true);
+        return (Food[][]) m.invoke(dietService, profile);
+    }
+    
     @Test
     public void testGenerateMealPlan() throws Exception {
         // Test generating meal plan using reflection
         Method generateMealPlanMethod = PersonalizedDietRecommendationService.class.getDeclaredMethod(
             "generateMealPlan", int.class, 
             PersonalizedDietRecommendationService.MacronutrientDistribution.class,
-            PersonalizedDietRecommendationService.UserDietProfile.class);
+            Food[][].class, long.class, long.class);
         generateMealPlanMethod.setAccessible(true);
         
         // Create test inputs
@@ -617,7 +627,7 @@ public class PersonalizedDietRecommendationServiceTest {
         @SuppressWarnings("unchecked")
         List<PersonalizedDietRecommendationService.RecommendedMeal> meals = 
             (List<PersonalizedDietRecommendationService.RecommendedMeal>) generateMealPlanMethod.invoke(
-                dietService, calories, macros, profile);
+                dietService, calories, macros, mealOptions(profile), System.nanoTime(), -1L);
         
         // Verify results
         assertNotNull("Meals should not be null", meals);
@@ -1598,12 +1608,12 @@ public class PersonalizedDietRecommendationServiceTest {
         Method m = PersonalizedDietRecommendationService.class.getDeclaredMethod(
             "generateMealPlan", int.class, 
             PersonalizedDietRecommendationService.MacronutrientDistribution.class, 
-            PersonalizedDietRecommendationService.UserDietProfile.class);
+            Food[][].class, long.class, long.class);
         m.setAccessible(true);
         PersonalizedDietRecommendationService.UserDietProfile profile = dietService.getUserDietProfile(TEST_USERNAME);
         PersonalizedDietRecommendationService.MacronutrientDistribution macros = 
             dietService.new MacronutrientDistribution(100, 200, 50);
-        List<?> plan = (List<?>) m.invoke(dietService, 2000, macros, profile);
+        List<?> plan = (List<?>) m.invoke(dietService, 2000, macros, mealOptions(profile), System.nanoTime(), -1L);
         assertNotNull(plan);
         assertFalse(plan.isEmpty());
     }
@@ -1681,4 +1691,391 @@ public class PersonalizedDietRecommendationServiceTest {
             // expected
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGenerateRecommendations_SeededSamplerIsReproducible() throws Exception {
+        dietService.setCalorieSampler(new CalorieSampler(new java.util.Random(2024)));
+        List<String> first = dietService.generateRecommendations(25, 80, 180, "Male", "Active");
+        dietService.setCalorieSampler(new CalorieSampler(new java.util.Random(2024)));
+        List<String> second = dietService.generateRecommendations(25, 80, 180, "Male", "Active");
+        assertEquals(first, second);
+        assertTrue(first.contains("\nRecommended Meals:"));
+    }
+
+    @Test
+    public void testGenerateWeeklyPlan_RespectsRepeatLimit() {
+        PersonalizedDietRecommendationService.WeeklyPlan plan = dietService.generateWeeklyPlan(
+            TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL, 2);
+
+        assertEquals(2000, plan.getDailyCalories());
+        assertEquals(7, plan.getDays().size());
+        java.util.Map<String, Integer> counts = new java.util.HashMap<>();
+        for (List<PersonalizedDietRecommendationService.RecommendedMeal> day : plan.getDays()) {
+            assertEquals(4, day.size());
+            assertEquals("Breakfast", day.get(0).getMealType());
+            assertEquals("Snack", day.get(3).getMealType());
+            for (PersonalizedDietRecommendationService.RecommendedMeal meal : day) {
+                for (Food food : meal.getFoods()) {
+                    counts.merge(food.getName().toLowerCase(), 1, Integer::sum);
+                }
+            }
+        }
+        // No food has used up its repeats before the first day, so it is always complete
+        for (PersonalizedDietRecommendationService.RecommendedMeal meal : plan.getDay(0)) {
+            assertFalse(meal.getFoods().isEmpty());
+        }
+        for (java.util.Map.Entry<String, Integer> entry : counts.entrySet()) {
+            assertTrue(entry.getKey() + " repeats " + entry.getValue(), entry.getValue() <= 2);
+            assertEquals(entry.getValue().intValue(), plan.getFoodCount(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testGenerateWeeklyPlan_IsDeterministic() {
+        PersonalizedDietRecommendationService.WeeklyPlan parallel = dietService.generateWeeklyPlan(
+            TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL, 3);
+        java.util.concurrent.ForkJoinPool single = new java.util.concurrent.ForkJoinPool(1);
+        try {
+            dietService.setWeeklyPlanPool(single);
+            PersonalizedDietRecommendationService.WeeklyPlan sequential = dietService.generateWeeklyPlan(
+                TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL, 3);
+            for (int day = 0; day < 7; day++) {
+                for (int meal = 0; meal < 4; meal++) {
+                    List<Food> a = parallel.getDay(day).get(meal).getFoods();
+                    List<Food> b = sequential.getDay(day).get(meal).getFoods();
+                    assertEquals(a.size(), b.size());
+                    for (int i = 0; i < a.size(); i++) {
+                        assertEquals(a.get(i).getName(), b.get(i).getName());
+                        assertEquals(a.get(i).getCalories(), b.get(i).getCalories());
+                    }
+                }
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerateWeeklyPlan_RejectsNonPositiveLimit() {
+        dietService.generateWeeklyPlan(TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT,
+                                       TEST_ACTIVITY_LEVEL, 0);
+    }
+
+    @Test
+    public void testFindSubstitutes_UnknownFoodReturnsEmpty() throws Exception {
+        assertTrue(dietService.findSubstitutes("No Such Food 12345", 5, true, true).isEmpty());
+        FoodNutrient custom = new FoodNutrient("Custom Bowl", 300, 450, 20, 50, 15, 6, 8, 400);
+        List<FoodSubstitutionIndex.Substitute> similar =
+            dietService.findSubstitutes(custom, new FoodSubstitutionIndex.Query(3));
+        assertTrue(similar.size() <= 3);
+        for (int i = 1; i < similar.size(); i++) {
+            assertTrue(similar.get(i - 1).getDistance() <= similar.get(i).getDistance());
+        }
+    }
+
+    @Test
+    public void testFindSubstitutes_SeesNutrientsSavedByMealPlanning() throws Exception {
+        Connection conn = DatabaseHelper.getConnection();
+        String foodIds = "(SELECT id FROM foods WHERE name = 'Substitution Test Isolate')";
+        try {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                             "VALUES ('substuser', 'pw', 'subst@example.com', 'Subst User')");
+            }
+            MealPlanningService planning = new MealPlanningService(conn);
+            // Nutrients of foods saved this way go to food_nutrients, not to the foods columns
+            assertTrue(planning.logFood("substuser", "2031-06-01",
+                new FoodNutrient("Substitution Test Isolate", 100, 400, 90, 2, 1, 0, 1, 5)));
+            FoodSubstitutionIndex.Substitute nearest = dietService.findSubstitutes(
+                new FoodNutrient("Reference", 100, 400, 90, 2, 1, 0, 1, 5), new FoodSubstitutionIndex.Query(1)).get(0);
+            assertEquals("Substitution Test Isolate", nearest.getFood().getName());
+            assertEquals(90.0, nearest.getFood().getProtein(), 0.001);
+
+            // Updating the nutrients in place reloads the index
+            assertTrue(planning.logFood("substuser", "2031-06-02",
+                new FoodNutrient("Substitution Test Isolate", 100, 400, 80, 2, 1, 0, 1, 5)));
+            nearest = dietService.findSubstitutes(
+                new FoodNutrient("Reference", 100, 400, 80, 2, 1, 0, 1, 5), new FoodSubstitutionIndex.Query(1)).get(0);
+            assertEquals("Substitution Test Isolate", nearest.getFood().getName());
+            assertEquals(80.0, nearest.getFood().getProtein(), 0.001);
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM food_logs WHERE food_id IN " + foodIds);
+                stmt.execute("DELETE FROM food_nutrients WHERE food_id IN " + foodIds);
+                stmt.execute("DELETE FROM foods WHERE name = 'Substitution Test Isolate'");
+            }
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testFindFoodsByNutrientRange_SeesNutrientsSavedByMealPlanning() throws Exception {
+        Connection conn = DatabaseHelper.getConnection();
+        String foodIds = "(SELECT id FROM foods WHERE name = 'Range Test Casein')";
+        FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(Integer.MAX_VALUE)
+            .atLeast(FoodSubstitutionIndex.PROTEIN, 87.5)
+            .atMost(FoodSubstitutionIndex.PROTEIN, 87.7);
+        try {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                             "VALUES ('rangeuser', 'pw', 'range@example.com', 'Range User')");
+            }
+            MealPlanningService planning = new MealPlanningService(conn);
+            // Nutrients of foods saved this way go to food_nutrients, not to the foods columns
+            assertTrue(planning.logFood("rangeuser", "2031-06-01",
+                new FoodNutrient("Range Test Casein", 100, 370, 87.6, 3, 1, 0, 1, 4)));
+            List<FoodNutrient> found = dietService.findFoodsByNutrientRange(query);
+            assertEquals(1, found.size());
+            assertEquals("Range Test Casein", found.get(0).getName());
+            assertEquals(87.6, found.get(0).getProtein(), 0.001);
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM food_logs WHERE food_id IN " + foodIds);
+                stmt.execute("DELETE FROM food_nutrients WHERE food_id IN " + foodIds);
+                stmt.execute("DELETE FROM foods WHERE name = 'Range Test Casein'");
+            }
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testFindFoodsByNutrientRange_SeesNewFoods() throws Exception {
+        FoodSubstitutionIndex.Query query = new FoodSubstitutionIndex.Query(10)
+            .atLeast(FoodSubstitutionIndex.PROTEIN, 95)
+            .atMost(FoodSubstitutionIndex.SODIUM, 1)
+            .mealType("snack");
+        List<FoodNutrient> before = dietService.findFoodsByNutrientRange(query);
+        Connection conn = DatabaseHelper.getConnection();
+        try {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO foods (name, grams, calories, protein, carbs, fat, fiber, sugar, sodium, meal_type) " +
+                             "VALUES ('Range Test Isolate', 50, 190, 48, 0, 0.5, 0, 0, 0.2, 'snack')");
+            }
+            // Foods are written through the application, which moves the food data version
+            DatabaseHelper.foodDataChanged();
+            List<FoodNutrient> after = dietService.findFoodsByNutrientRange(query);
+            assertEquals(before.size() + 1, after.size());
+            assertEquals("Range Test Isolate", after.get(after.size() - 1).getName());
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM foods WHERE name = 'Range Test Isolate'");
+            }
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testUserDietProfile_PersistedAndCached() throws Exception {
+        Connection conn = DatabaseHelper.getConnection();
+        try {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                             "VALUES ('profileuser', 'pw', 'profile@example.com', 'Profile User')");
+            }
+            PersonalizedDietRecommendationService writer =
+                new PersonalizedDietRecommendationService(calorieService, mealService);
+            assertTrue(writer.setUserDietProfile("profileuser", DietType.VEGETARIAN,
+                Arrays.asList("diabetes", "hypertension"), WeightGoal.LOSE, Arrays.asList("mushrooms")));
+
+            // A fresh service reads the stored rows
+            PersonalizedDietRecommendationService reader =
+                new PersonalizedDietRecommendationService(calorieService, mealService);
+            PersonalizedDietRecommendationService.UserDietProfile profile = reader.getUserDietProfile("profileuser");
+            assertEquals(DietType.VEGETARIAN, profile.getDietType());
+            assertEquals(WeightGoal.LOSE, profile.getWeightGoal());
+            assertEquals(Arrays.asList("diabetes", "hypertension"), profile.getHealthConditions());
+            assertEquals(Arrays.asList("mushrooms"), profile.getExcludedFoods());
+            assertSame(profile, reader.getUserDietProfile("profileuser"));
+            try {
+                profile.getExcludedFoods().add("nuts");
+                fail("Profile lists should be unmodifiable");
+            } catch (UnsupportedOperationException expected) {
+                // expected
+            }
+
+            // Saving again replaces the child rows instead of appending to them
+            assertTrue(writer.setUserDietProfile("profileuser", DietType.VEGAN,
+                new ArrayList<>(), WeightGoal.MAINTAIN, Arrays.asList("soy", "nuts")));
+            assertEquals(DietType.VEGAN, writer.getUserDietProfile("profileuser").getDietType());
+            assertEquals(DietType.VEGETARIAN, reader.getUserDietProfile("profileuser").getDietType());
+            reader.invalidateUserDietProfile("profileuser");
+            profile = reader.getUserDietProfile("profileuser");
+            assertEquals(DietType.VEGAN, profile.getDietType());
+            assertTrue(profile.getHealthConditions().isEmpty());
+            assertEquals(Arrays.asList("soy", "nuts"), profile.getExcludedFoods());
+
+            assertFalse(writer.setUserDietProfile("no_such_profile_user", DietType.BALANCED,
+                null, WeightGoal.MAINTAIN, null));
+            profile = writer.getUserDietProfile("no_such_profile_user");
+            assertEquals(DietType.BALANCED, profile.getDietType());
+            assertTrue(profile.getExcludedFoods().isEmpty());
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                String profiles = "(SELECT p.id FROM diet_profiles p JOIN users u ON u.id = p.user_id " +
+                                  "WHERE u.username = 'profileuser')";
+                stmt.execute("DELETE FROM health_conditions WHERE profile_id IN " + profiles);
+                stmt.execute("DELETE FROM excluded_foods WHERE profile_id IN " + profiles);
+                stmt.execute("DELETE FROM diet_profiles WHERE id IN " + profiles);
+            }
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testGenerateRecommendationsBatch_MatchesSingleCalls() throws Exception {
+        Connection conn = DatabaseHelper.getConnection();
+        try {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                             "VALUES ('batchuser', 'pw', 'batch@example.com', 'Batch User')");
+            }
+            PersonalizedDietRecommendationService batchService =
+                new PersonalizedDietRecommendationService(calorieService, mealService);
+            assertTrue(batchService.setUserDietProfile("batchuser", DietType.VEGAN,
+                Arrays.asList("diabetes"), WeightGoal.LOSE, Arrays.asList("soy")));
+            batchService.invalidateUserDietProfile("batchuser");
+
+            List<PersonalizedDietRecommendationService.UserInput> inputs = Arrays.asList(
+                new PersonalizedDietRecommendationService.UserInput("batchuser", 'F', 28, 165, 60, 3),
+                new PersonalizedDietRecommendationService.UserInput("no_such_batch_user", 'M', 40, 180, 85, 2),
+                null,
+                new PersonalizedDietRecommendationService.UserInput("batchuser", 'M', 50, 175, 90, 1));
+            List<PersonalizedDietRecommendationService.DietRecommendation> batch =
+                batchService.generateRecommendationsBatch(inputs);
+            assertEquals(4, batch.size());
+            assertNull(batch.get(2));
+
+            PersonalizedDietRecommendationService single =
+                new PersonalizedDietRecommendationService(calorieService, mealService);
+            for (int i = 0; i < inputs.size(); i++) {
+                PersonalizedDietRecommendationService.UserInput input = inputs.get(i);
+                if (input == null) {
+                    continue;
+                }
+                PersonalizedDietRecommendationService.DietRecommendation expected = single.generateRecommendations(
+                    input.getUsername(), input.getGender(), input.getAge(), input.getHeightCm(),
+                    input.getWeightKg(), input.getActivityLevel());
+                PersonalizedDietRecommendationService.DietRecommendation actual = batch.get(i);
+                assertEquals(expected.getDailyCalories(), actual.getDailyCalories());
+                assertEquals(expected.getDietaryGuidelines(), actual.getDietaryGuidelines());
+                for (int meal = 0; meal < 4; meal++) {
+                    List<Food> a = expected.getMeals().get(meal).getFoods();
+                    List<Food> b = actual.getMeals().get(meal).getFoods();
+                    assertEquals(a.size(), b.size());
+                    for (int f = 0; f < a.size(); f++) {
+                        assertEquals(a.get(f).getName(), b.get(f).getName());
+                    }
+                }
+            }
+            // The vegan, soy-free profile keeps tofu out of the plan
+            for (PersonalizedDietRecommendationService.RecommendedMeal meal : batch.get(0).getMeals()) {
+                for (Food food : meal.getFoods()) {
+                    assertFalse(food.getName().contains("Tofu"));
+                }
+            }
+            assertTrue(batchService.generateRecommendationsBatch(null).isEmpty());
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                String profiles = "(SELECT p.id FROM diet_profiles p JOIN users u ON u.id = p.user_id " +
+                                  "WHERE u.username = 'batchuser')";
+                stmt.execute("DELETE FROM health_conditions WHERE profile_id IN " + profiles);
+                stmt.execute("DELETE FROM excluded_foods WHERE profile_id IN " + profiles);
+                stmt.execute("DELETE FROM diet_profiles WHERE id IN " + profiles);
+            }
+            DatabaseHelper.releaseConnection(conn);
+        }
+    }
+
+    @Test
+    public void testIncrementalPlan_ReplaceMealUsesLeftoverBudget() {
+        PersonalizedDietRecommendationService.IncrementalPlan plan = dietService.startIncrementalPlan(
+            TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL);
+        PersonalizedDietRecommendationService.DietRecommendation before = plan.getRecommendation();
+        assertEquals(4, before.getMeals().size());
+
+        double others = 0;
+        for (int slot = 0; slot < 4; slot++) {
+            if (slot != 1) {
+                others += before.getMeals().get(slot).getComposition().getTotalCalories();
+            }
+        }
+        assertEquals(before.getDailyCalories() - others, plan.getCalorieBudget(1), 1e-9);
+
+        List<String> rejected = new ArrayList<>();
+        for (Food food : before.getMeals().get(1).getFoods()) {
+            rejected.add(food.getName());
+        }
+        PersonalizedDietRecommendationService.RecommendedMeal lunch = plan.replaceMeal(1);
+        assertEquals("Lunch", lunch.getMealType());
+        assertEquals(Math.round(plan.getCalorieBudget(1)), lunch.getTargetCalories());
+        for (Food food : lunch.getFoods()) {
+            assertFalse(rejected.contains(food.getName()));
+        }
+
+        // Other meals are untouched and the running totals match the meals
+        PersonalizedDietRecommendationService.DietRecommendation after = plan.getRecommendation();
+        assertSame(before.getMeals().get(0), after.getMeals().get(0));
+        assertSame(lunch, after.getMeals().get(1));
+        double total = 0;
+        for (PersonalizedDietRecommendationService.RecommendedMeal meal : after.getMeals()) {
+            total += meal.getComposition().getTotalCalories();
+        }
+        assertEquals(total, plan.getTotalCalories(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncrementalPlan_RejectsUnknownSlot() {
+        dietService.startIncrementalPlan(TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT,
+                                         TEST_ACTIVITY_LEVEL).replaceMeal(4);
+    }
+
+    @Test
+    public void testGetAppropriateOptions_AppliesHealthLimits() throws Exception {
+        Method method = PersonalizedDietRecommendationService.class.getDeclaredMethod(
+            "getAppropriateOptions", Food[].class, PersonalizedDietRecommendationService.UserDietProfile.class);
+        method.setAccessible(true);
+        Food[] options = {
+            new FoodNutrient("Ramen", 300, 450, 12, 60, 16, 2, 4, 1800),
+            new FoodNutrient("Grilled Vegetables", 200, 120, 4, 18, 4, 5, 8, 60),
+            new FoodNutrient("Soy Sauce Tofu", 150, 180, 15, 6, 10, 1, 2, 900)
+        };
+        PersonalizedDietRecommendationService.UserDietProfile hypertension =
+            dietService.new UserDietProfile(DietType.BALANCED, Arrays.asList("hypertension"),
+                                         WeightGoal.MAINTAIN, new ArrayList<>());
+        Food[] filtered = (Food[]) method.invoke(dietService, options, hypertension);
+        assertEquals(1, filtered.length);
+        assertEquals("Grilled Vegetables", filtered[0].getName());
+
+        // A cap nothing meets is relaxed instead of leaving the meal empty
+        Food[] salty = {options[0]};
+        assertEquals(1, ((Food[]) method.invoke(dietService, salty, hypertension)).length);
+    }
+
+    @Test
+    public void testGenerateRecommendations_TimeBudgetAndStageLatency() {
+        PersonalizedDietRecommendationService.DietRecommendation unbounded = dietService.generateRecommendations(
+            TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL);
+        // A budget that is already spent still returns a meal for every slot
+        PersonalizedDietRecommendationService.DietRecommendation rushed = dietService.generateRecommendations(
+            TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT, TEST_ACTIVITY_LEVEL, 1L);
+        assertEquals(unbounded.getDailyCalories(), rushed.getDailyCalories());
+        assertEquals(4, rushed.getMeals().size());
+        for (PersonalizedDietRecommendationService.RecommendedMeal meal : rushed.getMeals()) {
+            assertFalse(meal.getFoods().isEmpty());
+            assertTrue(meal.getComposition().isTimedOut());
+        }
+
+        for (PersonalizedDietRecommendationService.Stage stage : PersonalizedDietRecommendationService.Stage.values()) {
+            assertEquals(2, dietService.getStageLatency(stage).getCount());
+        }
+        String metrics = dietService.scrapeLatencyMetrics();
+        assertTrue(metrics.contains("# TYPE diet_recommendation_stage_seconds summary"));
+        assertTrue(metrics.contains("diet_recommendation_stage_seconds_count{stage=\"solve\"} 2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerateRecommendations_RejectsNonPositiveBudget() {
+        dietService.generateRecommendations(TEST_USERNAME, TEST_GENDER, TEST_AGE, TEST_HEIGHT, TEST_WEIGHT,
+                                            TEST_ACTIVITY_LEVEL, 0L);
+    }
+}
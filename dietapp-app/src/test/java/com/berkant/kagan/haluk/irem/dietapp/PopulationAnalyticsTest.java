@@ -0,0 +1,123 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the PopulationAnalytics class.
+ */
+public class PopulationAnalyticsTest {
+
+    private PopulationAnalytics sampleAnalytics() {
+        PopulationAnalytics analytics = new PopulationAnalytics(5);
+        for (int i = 0; i < 300; i++) {
+            analytics.recordFoodLog("alice", "Apple", 52);
+        }
+        for (int i = 0; i < 200; i++) {
+            analytics.recordFoodLog("bob", "Rice", 130);
+        }
+        for (int i = 0; i < 100; i++) {
+            analytics.recordFoodLog("bob", "Food " + i, 400 + i);
+        }
+        return analytics;
+    }
+
+    @Test
+    public void testTopFoodsFindsHeavyHitters() {
+        List<Map.Entry<String, Long>> top = sampleAnalytics().getTopFoods(2);
+        assertEquals(2, top.size());
+        assertEquals("apple", top.get(0).getKey());
+        assertTrue(top.get(0).getValue() >= 300);
+        assertEquals("rice", top.get(1).getKey());
+    }
+
+    @Test
+    public void testDistinctCountsPerUserAndOverall() {
+        PopulationAnalytics analytics = sampleAnalytics();
+        assertEquals(1, analytics.estimateDistinctFoods("alice"));
+        assertEquals(101, analytics.estimateDistinctFoods("bob"), 5);
+        assertEquals(102, analytics.estimateDistinctFoods(), 5);
+        assertEquals(0, analytics.estimateDistinctFoods("nobody"));
+    }
+
+    @Test
+    public void testCaloriePercentiles() {
+        PopulationAnalytics analytics = sampleAnalytics();
+        assertEquals(52, analytics.getCaloriePercentile(10), 1);
+        assertEquals(130, analytics.getCaloriePercentile(60), 2);
+        assertEquals(600, analytics.getTotalLogs());
+    }
+
+    @Test
+    public void testNamesAreNormalized() {
+        PopulationAnalytics analytics = new PopulationAnalytics(3);
+        analytics.recordFoodLog("alice", " Banana", 89);
+        analytics.recordFoodLog("alice", "banana ", 89);
+        assertTrue(analytics.estimateFoodCount("BANANA") >= 2);
+        assertEquals(1, analytics.estimateDistinctFoods("alice"));
+    }
+
+    @Test
+    public void testNamesAreNormalizedIndependentOfDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            PopulationAnalytics analytics = new PopulationAnalytics(3);
+            analytics.recordFoodLog("alice", "RICE", 130);
+            analytics.recordFoodLog("alice", "rice", 130);
+            assertEquals("rice", analytics.getTopFoods(1).get(0).getKey());
+            assertEquals(1, analytics.estimateDistinctFoods("alice"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testMergeCombinesSnapshots() {
+        PopulationAnalytics a = new PopulationAnalytics(3);
+        PopulationAnalytics b = new PopulationAnalytics(3);
+        for (int i = 0; i < 10; i++) {
+            a.recordFoodLog("alice", "Oats", 150);
+            b.recordFoodLog("bob", "Oats", 150);
+            b.recordFoodLog("bob", "Milk", 60);
+        }
+        a.merge(b);
+        assertEquals("oats", a.getTopFoods(1).get(0).getKey());
+        assertTrue(a.getTopFoods(1).get(0).getValue() >= 20);
+        assertEquals(2, a.estimateDistinctFoods("bob"));
+        assertEquals(30, a.getTotalLogs());
+    }
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws Exception {
+        PopulationAnalytics analytics = sampleAnalytics();
+        File file = File.createTempFile("population", ".sketch");
+        try {
+            analytics.save(file);
+            PopulationAnalytics restored = PopulationAnalytics.load(file);
+            assertEquals(analytics.getTopFoods(5).get(0).getKey(), restored.getTopFoods(5).get(0).getKey());
+            assertEquals(analytics.estimateDistinctFoods("bob"), restored.estimateDistinctFoods("bob"));
+            assertEquals(analytics.getCaloriePercentile(90), restored.getCaloriePercentile(90), 0.0);
+            assertEquals(analytics.getTotalLogs(), restored.getTotalLogs());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testLoadRejectsForeignFile() throws Exception {
+        File file = File.createTempFile("population", ".sketch");
+        try {
+            java.nio.file.Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            PopulationAnalytics.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the PriceListImporter class.
+ */
+public class PriceListImporterTest {
+
+    private File dbFile;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("prices", ".db");
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath() + "?journal_mode=WAL";
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE ingredients (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                         "name TEXT UNIQUE NOT NULL, price REAL NOT NULL)");
+            stmt.execute("INSERT INTO ingredients (name, price) VALUES ('Tomato', 1.20)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (String suffix : new String[] {"", "-wal", "-shm"}) {
+            new File(dbFile.getAbsolutePath() + suffix).delete();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    @Test
+    public void testImportWritesPricesAndSnapshot() throws Exception {
+        String csv = "name,price\n" +
+                     "Tomato,1.50\n" +
+                     "\"Cheese, Cheddar\",8.25\n" +
+                     "\n" +
+                     "Broken,abc\n" +
+                     ",2.00\n" +
+                     "Onion,-1\n" +
+                     "Cucumber,0.80\n" +
+                     "Cucumber,0.95\n";
+        PriceListImporter importer = new PriceListImporter(this::open, 2);
+        PriceListImporter.ImportResult result = importer.importCsv(new StringReader(csv), "weekly.csv");
+
+        assertEquals(4, result.getImportedRows());
+        assertEquals(3, result.getSkippedRows());
+        try (Connection conn = open()) {
+            assertEquals(result.getSnapshotId(), PriceListImporter.getLatestSnapshotId(conn));
+            assertEquals(1.50, price(conn, "SELECT price FROM ingredients WHERE name = 'Tomato'"), 1e-9);
+            assertEquals(8.25, price(conn, "SELECT price FROM ingredients WHERE name = 'Cheese, Cheddar'"), 1e-9);
+            assertEquals(0.95, price(conn, "SELECT price FROM ingredients WHERE name = 'Cucumber'"), 1e-9);
+            assertEquals(3, count(conn, "SELECT COUNT(*) FROM ingredient_prices WHERE snapshot_id = " + result.getSnapshotId()));
+            assertEquals(4, count(conn, "SELECT row_count FROM price_snapshots WHERE id = " + result.getSnapshotId()));
+        }
+    }
+
+    @Test
+    public void testOlderSnapshotsKeepTheirPrices() throws Exception {
+        PriceListImporter importer = new PriceListImporter(this::open, 100);
+        int first = importer.importCsv(new StringReader("Tomato,1.50\nMilk,3.00\n"), "week 1").getSnapshotId();
+        int second = importer.importCsv(new StringReader("Tomato,2.10\n"), "week 2").getSnapshotId();
+
+        assertTrue(second > first);
+        try (Connection conn = open()) {
+            assertEquals(second, PriceListImporter.getLatestSnapshotId(conn));
+            assertEquals(1.50, price(conn, "SELECT ip.price FROM ingredient_prices ip JOIN ingredients i " +
+                                           "ON i.id = ip.ingredient_id WHERE i.name = 'Tomato' AND ip.snapshot_id = " + first), 1e-9);
+            assertEquals(2.10, price(conn, "SELECT price FROM ingredients WHERE name = 'Tomato'"), 1e-9);
+            assertEquals(0, count(conn, "SELECT COUNT(*) FROM ingredient_prices ip JOIN ingredients i " +
+                                        "ON i.id = ip.ingredient_id WHERE i.name = 'Milk' AND ip.snapshot_id = " + second));
+        }
+    }
+
+    @Test
+    public void testReadersSeeCommittedPricesDuringImport() throws Exception {
+        PriceListImporter importer = new PriceListImporter(this::open, 500);
+        int first = importer.importCsv(new StringReader("Tomato,1.50\n"), "week 1").getSnapshotId();
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            csv.append("Item ").append(i).append(',').append(i % 50).append(".5\n");
+        }
+        csv.append("Tomato,9.99\n");
+        double[] seenPrice = new double[1];
+        int[] seenSnapshot = new int[1];
+        Reader checking = new Reader() {
+            private final StringReader delegate = new StringReader(csv.toString());
+            private boolean checked;
+
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                if (!checked) {
+                    checked = true;
+                } else if (seenSnapshot[0] == 0) {
+                    // Halfway through the import, read from another connection
+                    try (Connection reader = open()) {
+                        seenSnapshot[0] = PriceListImporter.getLatestSnapshotId(reader);
+                        seenPrice[0] = price(reader, "SELECT price FROM ingredients WHERE name = 'Tomato'");
+                    } catch (SQLException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return delegate.read(buf, off, len);
+            }
+
+            @Override
+            public void close() {
+                delegate.close();
+            }
+        };
+
+        PriceListImporter.ImportResult result = importer.importCsv(checking, "week 2");
+        assertEquals(20001, result.getImportedRows());
+        assertEquals(first, seenSnapshot[0]);
+        assertEquals(1.50, seenPrice[0], 1e-9);
+        try (Connection conn = open()) {
+            assertEquals(9.99, price(conn, "SELECT price FROM ingredients WHERE name = 'Tomato'"), 1e-9);
+            assertEquals(20001, count(conn, "SELECT COUNT(*) FROM ingredients"));
+        }
+    }
+
+    @Test
+    public void testFailedImportRollsBack() throws Exception {
+        Reader failing = new Reader() {
+            private final StringReader delegate = new StringReader("Tomato,5.00\nMilk,3.00\n");
+            private int reads;
+
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                if (reads++ > 0) {
+                    throw new IOException("disk error");
+                }
+                return delegate.read(buf, off, 12);
+            }
+
+            @Override
+            public void close() {
+                delegate.close();
+            }
+        };
+        try {
+            new PriceListImporter(this::open, 1).importCsv(failing, "broken");
+            fail("Expected the read error to propagate");
+        } catch (IOException e) {
+            assertEquals("disk error", e.getMessage());
+        }
+        try (Connection conn = open()) {
+            assertEquals(-1, PriceListImporter.getLatestSnapshotId(conn));
+            assertEquals(1.20, price(conn, "SELECT price FROM ingredients WHERE name = 'Tomato'"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testParseLine() {
+        assertArrayEquals(new String[] {"Tomato", "1.5"}, PriceListImporter.parseLine("Tomato,1.5"));
+        assertArrayEquals(new String[] {"Salt, Sea", "0.4"}, PriceListImporter.parseLine("\"Salt, Sea\",0.4"));
+        assertArrayEquals(new String[] {"Say \"cheese\"", "2"}, PriceListImporter.parseLine("\"Say \"\"cheese\"\"\",2"));
+        assertArrayEquals(new String[] {"Oats, Rolled", "3"}, PriceListImporter.parseLine("Oats, Rolled,3"));
+        assertArrayEquals(new String[] {"NoPrice", ""}, PriceListImporter.parseLine("NoPrice"));
+    }
+
+    private static double price(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        }
+    }
+
+    private static int count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the QuantileSketch class.
+ */
+public class QuantileSketchTest {
+
+    @Test
+    public void testQuantilesWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        Random random = new Random(42);
+        double[] values = new double[20000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 50 + random.nextInt(1500);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[] {0.1, 0.5, 0.9, 0.99}) {
+            double exact = values[(int) (q * (values.length - 1))];
+            assertEquals(exact, sketch.getQuantile(q), exact * 0.011);
+        }
+        assertEquals(20000, sketch.getCount());
+    }
+
+    @Test
+    public void testZeroValuesAndEmptySketch() {
+        QuantileSketch sketch = new QuantileSketch(0.02);
+        assertEquals(0.0, sketch.getQuantile(0.5), 0.0);
+        sketch.add(0);
+        sketch.add(0);
+        sketch.add(100);
+        assertEquals(0.0, sketch.getQuantile(0.5), 0.0);
+        assertEquals(100.0, sketch.getQuantile(1.0), 2.0);
+    }
+
+    @Test
+    public void testMergeMatchesSingleSketch() {
+        QuantileSketch all = new QuantileSketch(0.01);
+        QuantileSketch low = new QuantileSketch(0.01);
+        QuantileSketch high = new QuantileSketch(0.01);
+        for (int i = 1; i <= 1000; i++) {
+            all.add(i);
+            (i <= 500 ? low : high).add(i);
+        }
+        high.merge(low);
+        assertEquals(all.getCount(), high.getCount());
+        assertEquals(all.getQuantile(0.25), high.getQuantile(0.25), 0.0);
+        assertEquals(all.getQuantile(0.75), high.getQuantile(0.75), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeRejectsDifferentAccuracy() {
+        new QuantileSketch(0.01).merge(new QuantileSketch(0.02));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantileRejected() {
+        new QuantileSketch(0.01).getQuantile(1.5);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (int i = 0; i < 300; i++) {
+            sketch.add(i * 3);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        QuantileSketch restored = QuantileSketch.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.getCount(), restored.getCount());
+        assertEquals(sketch.getQuantile(0.9), restored.getQuantile(0.9), 0.0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Random;
+
+/**
+ * Benchmark for generateRecommendations with a time budget on growing catalogues.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.RecommendationLatencyBenchmark
+ */
+public class RecommendationLatencyBenchmark {
+
+    private static final int[] CATALOG_SIZES = {300, 3000, 30000};
+    private static final long BUDGET_NANOS = 15_000_000L;
+    private static final int WARMUP = 100;
+    private static final int REQUESTS = 1000;
+
+    public static void main(String[] args) {
+        CalorieNutrientTrackingService calorieService = new CalorieNutrientTrackingService(null) {
+            @Override
+            public int calculateSuggestedCalories(char gender, int age, double heightCm, double weightKg, int activityLevel) {
+                return 2200;
+            }
+        };
+        for (int size : CATALOG_SIZES) {
+            Food[] breakfast = catalog("Breakfast", size, 1);
+            Food[] lunch = catalog("Lunch", size, 2);
+            Food[] dinner = catalog("Dinner", size, 3);
+            Food[] snack = catalog("Snack", size, 4);
+            MealPlanningService mealService = new MealPlanningService(null) {
+                @Override
+                public Food[] getBreakfastOptions() {
+                    return breakfast;
+                }
+
+                @Override
+                public Food[] getLunchOptions() {
+                    return lunch;
+                }
+
+                @Override
+                public Food[] getDinnerOptions() {
+                    return dinner;
+                }
+
+                @Override
+                public Food[] getSnackOptions() {
+                    return snack;
+                }
+            };
+            for (int pass = 0; pass < 2; pass++) {
+                boolean budgeted = pass == 1;
+                PersonalizedDietRecommendationService warm =
+                    new PersonalizedDietRecommendationService(calorieService, mealService);
+                for (int i = 0; i < WARMUP; i++) {
+                    request(warm, budgeted);
+                }
+                PersonalizedDietRecommendationService service =
+                    new PersonalizedDietRecommendationService(calorieService, mealService);
+                for (int i = 0; i < REQUESTS; i++) {
+                    request(service, budgeted);
+                }
+                System.out.printf("%d foods per meal, %s:%n", size,
+                                  budgeted ? "15 ms budget" : "default per-meal budget");
+                for (PersonalizedDietRecommendationService.Stage stage
+                         : PersonalizedDietRecommendationService.Stage.values()) {
+                    LatencyHistogram histogram = service.getStageLatency(stage);
+                    System.out.printf("  %-10s p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n", stage,
+                                      histogram.getValueAtPercentile(50) / 1e6,
+                                      histogram.getValueAtPercentile(99) / 1e6, histogram.getMaxNanos() / 1e6);
+                }
+            }
+        }
+    }
+
+    private static void request(PersonalizedDietRecommendationService service, boolean budgeted) {
+        if (budgeted) {
+            service.generateRecommendations("bench", 'F', 35, 168, 64, 3, BUDGET_NANOS);
+        } else {
+            service.generateRecommendations("bench", 'F', 35, 168, 64, 3);
+        }
+    }
+
+    private static Food[] catalog(String prefix, int size, long seed) {
+        Random random = new Random(seed);
+        Food[] foods = new Food[size];
+        for (int i = 0; i < foods.length; i++) {
+            foods[i] = new FoodNutrient(prefix + " " + i, 100 + random.nextInt(200), 60 + random.nextInt(600),
+                                        random.nextInt(40), random.nextInt(80), random.nextInt(30), 0, 0, 0);
+        }
+        return foods;
+    }
+}
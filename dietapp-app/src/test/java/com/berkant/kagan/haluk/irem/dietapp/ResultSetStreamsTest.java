@@ -0,0 +1,103 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ResultSetStreams class.
+ */
+public class ResultSetStreamsTest {
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT)");
+            for (int i = 1; i <= 1000; i++) {
+                stmt.execute("INSERT INTO items (id, name) VALUES (" + i + ", 'item" + i + "')");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testStreamMapsAllRowsInOrder() throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("SELECT id, name FROM items ORDER BY id");
+        try (Stream<String> names = ResultSetStreams.stream(stmt, 0, rs -> rs.getString("name"), null)) {
+            List<String> result = names.collect(Collectors.toList());
+            assertEquals(1000, result.size());
+            assertEquals("item1", result.get(0));
+            assertEquals("item1000", result.get(999));
+        }
+    }
+
+    @Test
+    public void testCloseReleasesStatementAndRunsHook() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM items ORDER BY id");
+        try (Stream<Integer> ids = ResultSetStreams.stream(stmt, 10, rs -> rs.getInt("id"), closed::incrementAndGet)) {
+            assertEquals(Integer.valueOf(1), ids.findFirst().get());
+        }
+        assertEquals(1, closed.get());
+        assertTrue(stmt.isClosed());
+    }
+
+    @Test
+    public void testPartialConsumptionReadsLazily() throws Exception {
+        AtomicInteger mapped = new AtomicInteger();
+        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM items ORDER BY id");
+        try (Stream<Integer> ids = ResultSetStreams.stream(stmt, 5, rs -> {
+                mapped.incrementAndGet();
+                return rs.getInt("id");
+            }, null)) {
+            List<Integer> firstTen = ids.limit(10).collect(Collectors.toList());
+            assertEquals(10, firstTen.size());
+        }
+        assertEquals(10, mapped.get());
+    }
+
+    @Test
+    public void testFailedQueryClosesStatementAndRunsHook() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM items");
+        conn.close();
+        try {
+            ResultSetStreams.stream(stmt, 0, rs -> rs.getInt("id"), closed::incrementAndGet);
+            fail("Should throw SQLException");
+        } catch (SQLException e) {
+            // expected
+        }
+        assertEquals(1, closed.get());
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @Test
+    public void testMapperErrorIsWrapped() throws Exception {
+        PreparedStatement stmt = conn.prepareStatement("SELECT id FROM items");
+        try (Stream<String> values = ResultSetStreams.stream(stmt, 0, rs -> rs.getString("missing"), null)) {
+            values.count();
+            fail("Should throw RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+}
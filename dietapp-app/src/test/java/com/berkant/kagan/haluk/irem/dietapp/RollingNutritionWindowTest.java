@@ -0,0 +1,90 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the RollingNutritionWindow class.
+ */
+public class RollingNutritionWindowTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 10);
+
+    @Test
+    public void testAveragesOverCalendarDays() {
+        RollingNutritionWindow window = new RollingNutritionWindow(7);
+        window.setDay(DAY, 700, 70, 140, 35);
+        assertEquals(100.0, window.getAverageCalories(), 0.001);
+        assertEquals(10.0, window.getAverageProtein(), 0.001);
+        assertEquals(20.0, window.getAverageCarbs(), 0.001);
+        assertEquals(5.0, window.getAverageFat(), 0.001);
+        assertEquals(DAY, window.getLatestDate());
+        assertEquals(DAY.minusDays(6), window.getStartDate());
+    }
+
+    @Test
+    public void testOldDaysLeaveWindow() {
+        RollingNutritionWindow window = new RollingNutritionWindow(3);
+        window.setDay(DAY, 300, 0, 0, 0);
+        window.setDay(DAY.plusDays(1), 600, 0, 0, 0);
+        window.setDay(DAY.plusDays(2), 900, 0, 0, 0);
+        assertEquals(600.0, window.getAverageCalories(), 0.001);
+
+        window.advanceTo(DAY.plusDays(3));
+        assertEquals(500.0, window.getAverageCalories(), 0.001);
+
+        window.advanceTo(DAY.plusDays(4));
+        assertEquals(300.0, window.getAverageCalories(), 0.001);
+    }
+
+    @Test
+    public void testSetDayReplacesExistingValue() {
+        RollingNutritionWindow window = new RollingNutritionWindow(2);
+        window.setDay(DAY, 400, 10, 0, 0);
+        window.setDay(DAY, 200, 20, 0, 0);
+        assertEquals(100.0, window.getAverageCalories(), 0.001);
+        assertEquals(10.0, window.getAverageProtein(), 0.001);
+    }
+
+    @Test
+    public void testDaysOutsideWindowAreIgnored() {
+        RollingNutritionWindow window = new RollingNutritionWindow(3);
+        window.setDay(DAY, 300, 0, 0, 0);
+        assertFalse(window.setDay(DAY.minusDays(3), 900, 0, 0, 0));
+        assertTrue(window.setDay(DAY.minusDays(2), 300, 0, 0, 0));
+        assertEquals(200.0, window.getAverageCalories(), 0.001);
+    }
+
+    @Test
+    public void testJumpPastWholeWindowResets() {
+        RollingNutritionWindow window = new RollingNutritionWindow(7);
+        window.setDay(DAY, 700, 0, 0, 0);
+        window.advanceTo(DAY.plusDays(30));
+        assertEquals(0.0, window.getAverageCalories(), 0.001);
+        assertEquals(DAY.plusDays(30), window.getLatestDate());
+    }
+
+    @Test
+    public void testMatchesRecomputedAverageOverLongRun() {
+        RollingNutritionWindow window = new RollingNutritionWindow(30);
+        double[] values = new double[400];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 37) % 2500;
+            window.setDay(DAY.plusDays(i), values[i], 0, 0, 0);
+
+            double expected = 0;
+            for (int j = Math.max(0, i - 29); j <= i; j++) {
+                expected += values[j];
+            }
+            assertEquals(expected / 30, window.getAverageCalories(), 0.0001);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveWindowRejected() {
+        new RollingNutritionWindow(0);
+    }
+}
@@ -3198,21 +3198,21 @@ public class ShoppingListServiceTest {
                 	            @Override
                 	            protected Connection getConnection() {
                 	                try {
-                	                    Connection conn = DatabaseHelper.getConnection();
+                	                    Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
                 	                    
-                	                    // Create necessary tables
+                	                    // Create and fill the tables the query reads
                 	                    try (Statement stmt = conn.createStatement()) {
-                	                        // Create tables if they don't exist
-                	                        stmt.execute("CREATE TABLE IF NOT EXISTS ingredients (" +
+                	                        stmt.execute("CREATE TABLE ingredients (" +
                 	                            "id INTEGER PRIMARY KEY, " +
                 	                            "name TEXT NOT NULL, " +
                 	                            "price REAL NOT NULL)");
                 	                            
-                	                        stmt.execute("CREATE TABLE IF NOT EXISTS recipes (" +
+                	                        stmt.execute("CREATE TABLE recipes (" +
                 	                            "id INTEGER PRIMARY KEY, " +
+                	                            "food_id INTEGER, " +
                 	                            "name TEXT NOT NULL)");
                 	                            
-                	                        stmt.execute("CREATE TABLE IF NOT EXISTS recipe_ingredients (" +
+                	                        stmt.execute("CREATE TABLE recipe_ingredients (" +
                 	                            "recipe_id INTEGER, " +
                 	                            "ingredient_id INTEGER, " +
                 	                            "amount REAL NOT NULL, " +
@@ -3220,14 +3220,20 @@ public class ShoppingListServiceTest {
                 	                            "FOREIGN KEY (recipe_id) REFERENCES recipes(id), " +
                 	                            "FOREIGN KEY (ingredient_id) REFERENCES ingredients(id))");
                 	                            
-                	                        stmt.execute("CREATE TABLE IF NOT EXISTS foods (" +
+                	                        stmt.execute("CREATE TABLE foods (" +
                 	                            "id INTEGER PRIMARY KEY, " +
                 	                            "name TEXT NOT NULL)");
                 	                            
-                	                        stmt.execute("CREATE TABLE IF NOT EXISTS meal_plans (" +
+                	                        stmt.execute("CREATE TABLE meal_plans (" +
                 	                            "id INTEGER PRIMARY KEY, " +
                 	                            "food_id INTEGER, " +
                 	                            "FOREIGN KEY (food_id) REFERENCES foods(id))");
+                	                        
+                	                        stmt.execute("INSERT INTO foods VALUES (7, 'Porridge')");
+                	                        stmt.execute("INSERT INTO ingredients VALUES (1, 'Oats', 0.01)");
+                	                        stmt.execute("INSERT INTO recipes VALUES (1, 7, 'Porridge')");
+                	                        stmt.execute("INSERT INTO recipe_ingredients VALUES (1, 1, 80, 'g')");
+                	                        stmt.execute("INSERT INTO meal_plans VALUES (1, 7), (2, 7)");
                 	                    }
                 	                    
                 	                    return conn;
@@ -3240,8 +3246,9 @@ public class ShoppingListServiceTest {
                 	        // Test the method
                 	        List<String> shoppingList = testService.generateShoppingList();
                 	        
-                	        // Basic assertions
+                	        // Recipes are matched to meal plans by food_id, once per planned meal
                 	        assertNotNull("Shopping list should not be null", shoppingList);
+                	        assertEquals(String.format("%s - %.2f %s", "Oats", 160.0, "g"), shoppingList.get(0));
                 	    }
 
                 	    @Test
@@ -3322,15 +3329,319 @@ public void testInsertRecipeGeneratedKeysReturnsValidId() {
    }
 }
 
+@Test
+public void testGenerateShoppingListForUserAndDateRange() throws SQLException {
+    insertShopTestRecipe();
+    Connection conn = DatabaseHelper.getConnection();
+    try (Statement stmt = conn.createStatement()) {
+        for (String date : new String[] {"2031-01-01", "2031-01-03", "2031-02-01"}) {
+            stmt.executeUpdate("INSERT INTO meal_plans (user_id, date, day, meal_type, food_id) " +
+                               "SELECT u.id, '" + date + "', 'Monday', 'breakfast', f.id FROM users u, foods f " +
+                               "WHERE u.username = 'shoplistuser' AND f.name = 'ShopTest Omelette'");
+        }
+    } finally {
+        DatabaseHelper.releaseConnection(conn);
+    }
+
+    try {
+        ShoppingListService service = new ShoppingListService(mealPlanningService);
+        ShoppingListService.ShoppingList list =
+            service.generateShoppingList("shoplistuser", "2031-01-01", "2031-01-31");
+
+        assertEquals(2, list.getItems().size());
+        ShoppingListService.ShoppingItem egg = list.getItems().get(0);
+        assertEquals("ShopTest Egg", egg.getName());
+        assertEquals(4.0, egg.getAmount(), 1e-9);
+        assertEquals("unit", egg.getUnit());
+        assertEquals(10.0, egg.getCost(), 1e-9);
+        ShoppingListService.ShoppingItem milk = list.getItems().get(1);
+        assertEquals("ShopTest Milk", milk.getName());
+        assertEquals("ml and L rows should merge into one item", 300.0, milk.getAmount(), 1e-9);
+        assertEquals("ml", milk.getUnit());
+        assertEquals(12.0, milk.getCost(), 1e-9);
+        assertEquals(22.0, list.getTotalCost(), 1e-9);
+
+        assertTrue(service.generateShoppingList("shoplistuser", "2030-01-01", "2030-12-31").isEmpty());
+        assertTrue(service.generateShoppingList("nosuchshopuser", "2031-01-01", "2031-12-31").isEmpty());
+        assertTrue(service.generateShoppingList(null, "2031-01-01", "2031-12-31").isEmpty());
+    } finally {
+        deleteShopTestData();
+    }
 }
 
+@Test
+public void testCurrentShoppingListFollowsMealPlanChanges() throws SQLException {
+    insertShopTestRecipe();
+    try {
+        MealPlanningService planner = new MealPlanningService(DatabaseHelper.getConnection());
+        ShoppingListService service = new ShoppingListService(planner);
+        int userId = DatabaseHelper.getUserId("shoplistuser");
+
+        assertTrue(service.getCurrentShoppingList("shoplistuser").isEmpty());
+
+        assertTrue(planner.addMealToPlan(userId, "ShopTestDay", "breakfast", "ShopTest Omelette"));
+        planner.addMeal(userId, "ShopTestDay", "breakfast", "ShopTest Omelette", 250, 10, 5, 15, "");
+        ShoppingListService.ShoppingList current = service.getCurrentShoppingList("shoplistuser");
+        assertEquals(2, current.getItems().size());
+        assertEquals(4.0, current.getItems().get(0).getAmount(), 1e-9);
+        assertEquals(300.0, current.getItems().get(1).getAmount(), 1e-9);
+        assertEquals(22.0, current.getTotalCost(), 1e-9);
+
+        // The running totals match a full aggregation over all of the user's plans
+        ShoppingListService.ShoppingList full =
+            service.generateShoppingList("shoplistuser", "0000-01-01", "9999-12-31");
+        assertEquals(full.getItems().size(), current.getItems().size());
+        assertEquals(full.getTotalCost(), current.getTotalCost(), 1e-9);
+
+        planner.deleteMeal("ShopTestDay", "breakfast");
+        current = service.getCurrentShoppingList("shoplistuser");
+        assertEquals(2, current.getItems().size());
+        assertEquals(2.0, current.getItems().get(0).getAmount(), 1e-9);
+        assertEquals(11.0, current.getTotalCost(), 1e-9);
+
+        assertTrue(service.getCurrentShoppingList("nosuchshopuser").isEmpty());
+        assertTrue(service.getCurrentShoppingList(null).isEmpty());
+    } finally {
+        deleteShopTestData();
+    }
+}
 
+@Test
+public void testCurrentShoppingListFollowsPriceChanges() throws Exception {
+    insertShopTestRecipe();
+    int snapshot = -1;
+    try {
+        MealPlanningService planner = new MealPlanningService(DatabaseHelper.getConnection());
+        ShoppingListService service = new ShoppingListService(planner);
+        int userId = DatabaseHelper.getUserId("shoplistuser");
+        assertTrue(planner.addMealToPlan(userId, "ShopTestDay", "breakfast", "ShopTest Omelette"));
+
+        // 2 eggs at 2.5 and 150 ml of milk at 4.0 per 100 ml
+        assertEquals(5.0 + 6.0, service.getCurrentShoppingList("shoplistuser").getTotalCost(), 1e-9);
+
+        snapshot = new PriceListImporter().importCsv(new java.io.StringReader("ShopTest Egg,3.0\n"), "test price change")
+            .getSnapshotId();
+        ShoppingListService.ShoppingList current = service.getCurrentShoppingList("shoplistuser");
+        assertEquals(6.0, current.getItems().get(0).getCost(), 1e-9);
+        assertEquals(6.0 + 6.0, current.getTotalCost(), 1e-9);
+
+        // The reloaded totals still follow meal plan changes
+        assertTrue(planner.addMealToPlan(userId, "ShopTestDay", "breakfast", "ShopTest Omelette"));
+        assertEquals(2 * (6.0 + 6.0), service.getCurrentShoppingList("shoplistuser").getTotalCost(), 1e-9);
+    } finally {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM ingredient_prices WHERE snapshot_id = " + snapshot);
+            stmt.executeUpdate("DELETE FROM price_snapshots WHERE id = " + snapshot);
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        deleteShopTestData();
+    }
+}
 
+@Test
+public void testGenerateShoppingListAtPriceSnapshot() throws Exception {
+    insertShopTestRecipe();
+    int first = -1;
+    int second = -1;
+    int third = -1;
+    try {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO meal_plans (user_id, date, day, meal_type, food_id) " +
+                               "SELECT u.id, '2031-03-01', 'Monday', 'breakfast', f.id FROM users u, foods f " +
+                               "WHERE u.username = 'shoplistuser' AND f.name = 'ShopTest Omelette'");
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
 
+        PriceListImporter importer = new PriceListImporter();
+        first = importer.importCsv(new java.io.StringReader("ShopTest Egg,5.0\n"), "test week 1").getSnapshotId();
+        second = importer.importCsv(new java.io.StringReader("ShopTest Egg,1.0\nShopTest Milk,2.0\n"),
+                                    "test week 2").getSnapshotId();
+        conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE ingredients SET price = 10.0 WHERE name = 'ShopTest Milk'");
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        third = importer.importCsv(new java.io.StringReader("ShopTest Egg,3.0\n"), "test week 3").getSnapshotId();
 
+        // Per meal: 2 eggs and 150 ml of milk priced per 100 ml
+        ShoppingListService service = new ShoppingListService(mealPlanningService);
+        assertEquals("milk as of the second snapshot", 6.0 + 3.0,
+                     service.generateShoppingList("shoplistuser", "2031-03-01", "2031-03-01", third).getTotalCost(), 1e-9);
+        assertEquals(2.0 + 3.0,
+                     service.generateShoppingList("shoplistuser", "2031-03-01", "2031-03-01", second).getTotalCost(), 1e-9);
+        assertEquals("milk not priced by any snapshot yet", 10.0 + 15.0,
+                     service.generateShoppingList("shoplistuser", "2031-03-01", "2031-03-01", first).getTotalCost(), 1e-9);
+        assertEquals(6.0 + 15.0,
+                     service.generateShoppingList("shoplistuser", "2031-03-01", "2031-03-01").getTotalCost(), 1e-9);
+    } finally {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM ingredient_prices WHERE snapshot_id IN (" + first + ", " + second + ", " + third + ")");
+            stmt.executeUpdate("DELETE FROM price_snapshots WHERE id IN (" + first + ", " + second + ", " + third + ")");
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        deleteShopTestData();
+    }
+}
 
+@Test
+public void testOptimizePackagesForShoppingList() throws SQLException {
+    insertShopTestRecipe();
+    try {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO meal_plans (user_id, date, day, meal_type, food_id) " +
+                               "SELECT u.id, '2031-04-01', 'Monday', 'breakfast', f.id FROM users u, foods f " +
+                               "WHERE u.username = 'shoplistuser' AND f.name = 'ShopTest Omelette'");
+            stmt.executeUpdate("INSERT INTO ingredient_packages (ingredient_id, size, unit, price) " +
+                               "SELECT id, 0.25, 'l', 1.0 FROM ingredients WHERE name = 'ShopTest Milk'");
+            stmt.executeUpdate("INSERT INTO ingredient_packages (ingredient_id, size, unit, price) " +
+                               "SELECT id, 1, 'l', 3.5 FROM ingredients WHERE name = 'ShopTest Milk'");
+            stmt.executeUpdate("INSERT INTO ingredient_packages (ingredient_id, size, unit, price) " +
+                               "SELECT id, 6, 'pcs', 9.0 FROM ingredients WHERE name = 'ShopTest Egg'");
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
 
+        ShoppingListService service = new ShoppingListService(mealPlanningService);
+        ShoppingListService.ShoppingList list =
+            service.generateShoppingList("shoplistuser", "2031-04-01", "2031-04-01");
+        PackageCostOptimizer.Plan plan = service.optimizePackages(list);
+
+        assertEquals(2, plan.getPurchases().size());
+        PackageCostOptimizer.Purchase egg = plan.getPurchases().get(0);
+        assertEquals(1, egg.getCount(0));
+        assertEquals(4.0, egg.getWaste(), 1e-9);
+        PackageCostOptimizer.Purchase milk = plan.getPurchases().get(1);
+        assertEquals("one 250 ml carton covers 150 ml", 1, milk.getCount(0));
+        assertEquals(0, milk.getCount(1));
+        assertEquals(100.0, milk.getWaste(), 1e-9);
+        assertEquals(10.0, plan.getTotalCost(), 1e-9);
+
+        assertTrue(service.optimizePackages(null).getPurchases().isEmpty());
+    } finally {
+        deleteShopTestData();
+    }
+}
+
+@Test
+public void testGenerateHouseholdShoppingList() throws SQLException {
+    insertShopTestRecipe();
+    HouseholdService households = new HouseholdService();
+    int householdId = -1;
+    try {
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                               "VALUES ('shoplistuser2', 'pw', 'shop2@example.com', 'Shop User Two')");
+            for (String user : new String[] {"shoplistuser", "shoplistuser2", "shoplistuser2"}) {
+                stmt.executeUpdate("INSERT INTO meal_plans (user_id, date, day, meal_type, food_id) " +
+                                   "SELECT u.id, '2031-05-01', 'Monday', 'breakfast', f.id FROM users u, foods f " +
+                                   "WHERE u.username = '" + user + "' AND f.name = 'ShopTest Omelette'");
+            }
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        householdId = households.createHousehold("ShopTest Household");
+        assertTrue(households.addMember(householdId, "shoplistuser"));
+        assertTrue(households.addMember(householdId, "shoplistuser2"));
 
+        ShoppingListService service = new ShoppingListService(mealPlanningService);
+        ShoppingListService.ShoppingList list =
+            service.generateHouseholdShoppingList(householdId, "2031-05-01", "2031-05-31");
+
+        assertEquals(2, list.getItems().size());
+        assertEquals("ShopTest Egg", list.getItems().get(0).getName());
+        assertEquals(6.0, list.getItems().get(0).getAmount(), 1e-9);
+        assertEquals("ShopTest Milk", list.getItems().get(1).getName());
+        assertEquals(450.0, list.getItems().get(1).getAmount(), 1e-9);
+        assertEquals("ml", list.getItems().get(1).getUnit());
+        double members = service.generateShoppingList("shoplistuser", "2031-05-01", "2031-05-31").getTotalCost()
+                       + service.generateShoppingList("shoplistuser2", "2031-05-01", "2031-05-31").getTotalCost();
+        assertEquals(members, list.getTotalCost(), 1e-9);
+        assertEquals(33.0, list.getTotalCost(), 1e-9);
+
+        assertTrue(service.generateHouseholdShoppingList(householdId, "2030-01-01", "2030-12-31").isEmpty());
+        assertTrue(service.generateHouseholdShoppingList(-5, "2031-05-01", "2031-05-31").isEmpty());
+
+        // Workers take their connections from getConnection()
+        ShoppingListService offline = new ShoppingListService(mealPlanningService) {
+            @Override
+            protected Connection getConnection() {
+                return null;
+            }
+        };
+        try {
+            offline.generateHouseholdShoppingList(householdId, "2031-05-01", "2031-05-31");
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    } finally {
+        if (householdId != -1) {
+            households.deleteHousehold(householdId);
+        }
+        Connection conn = DatabaseHelper.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM meal_plans WHERE user_id = (SELECT id FROM users WHERE username = 'shoplistuser2')");
+            stmt.executeUpdate("DELETE FROM users WHERE username = 'shoplistuser2'");
+        } finally {
+            DatabaseHelper.releaseConnection(conn);
+        }
+        deleteShopTestData();
+    }
+}
 
+/**
+ * Inserts a test user and an omelette recipe of 2 eggs, 50 ml and 0.1 L of milk.
+ */
+private void insertShopTestRecipe() throws SQLException {
+    DatabaseHelper.initializeDatabase();
+    Connection conn = DatabaseHelper.getConnection();
+    try (Statement stmt = conn.createStatement()) {
+        stmt.executeUpdate("INSERT OR IGNORE INTO users (username, password, email, name) " +
+                           "VALUES ('shoplistuser', 'pw', 'shop@example.com', 'Shop User')");
+        stmt.executeUpdate("INSERT INTO foods (name, grams, calories) VALUES ('ShopTest Omelette', 150, 250)");
+        stmt.executeUpdate("INSERT INTO ingredients (name, price) VALUES ('ShopTest Egg', 2.5)");
+        stmt.executeUpdate("INSERT INTO ingredients (name, price) VALUES ('ShopTest Milk', 4.0)");
+        stmt.executeUpdate("INSERT INTO recipes (meal_type, food_id, name) SELECT 'breakfast', id, name " +
+                           "FROM foods WHERE name = 'ShopTest Omelette'");
+        stmt.executeUpdate("INSERT INTO recipe_ingredients (recipe_id, ingredient_id, amount, unit) " +
+                           "SELECT r.id, i.id, 2, 'unit' FROM recipes r, ingredients i " +
+                           "WHERE r.name = 'ShopTest Omelette' AND i.name = 'ShopTest Egg'");
+        stmt.executeUpdate("INSERT INTO recipe_ingredients (recipe_id, ingredient_id, amount, unit) " +
+                           "SELECT r.id, i.id, 50, 'ml' FROM recipes r, ingredients i " +
+                           "WHERE r.name = 'ShopTest Omelette' AND i.name = 'ShopTest Milk'");
+        stmt.executeUpdate("INSERT INTO recipe_ingredients (recipe_id, ingredient_id, amount, unit) " +
+                           "SELECT r.id, i.id, 0.1, 'L' FROM recipes r, ingredients i " +
+                           "WHERE r.name = 'ShopTest Omelette' AND i.name = 'ShopTest Milk'");
+    } finally {
+        DatabaseHelper.releaseConnection(conn);
+    }
+}
 
+private void deleteShopTestData() throws SQLException {
+    Connection conn = DatabaseHelper.getConnection();
+    try (Statement stmt = conn.createStatement()) {
+        stmt.executeUpdate("DELETE FROM meal_plans WHERE user_id = (SELECT id FROM users WHERE username = 'shoplistuser')");
+        stmt.executeUpdate("DELETE FROM food_nutrients WHERE food_id IN (SELECT id FROM foods WHERE name = 'ShopTest Omelette')");
+        stmt.executeUpdate("DELETE FROM recipe_ingredients WHERE recipe_id IN " +
+                           "(SELECT id FROM recipes WHERE name = 'ShopTest Omelette')");
+        stmt.executeUpdate("DELETE FROM recipes WHERE name = 'ShopTest Omelette'");
+        stmt.executeUpdate("DELETE FROM ingredient_packages WHERE ingredient_id IN " +
+                           "(SELECT id FROM ingredients WHERE name LIKE 'ShopTest %')");
+        stmt.executeUpdate("DELETE FROM ingredients WHERE name LIKE 'ShopTest %'");
+        stmt.executeUpdate("DELETE FROM foods WHERE name = 'ShopTest Omelette'");
+        stmt.executeUpdate("DELETE FROM users WHERE username = 'shoplistuser'");
+    } finally {
+        DatabaseHelper.releaseConnection(conn);
+    }
+}
 
+}
@@ -0,0 +1,54 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the UnitRegistry class.
+ */
+public class UnitRegistryTest {
+
+    private final UnitRegistry units = UnitRegistry.getDefault();
+
+    @Test
+    public void testLookupIgnoresCaseAndAliases() {
+        int kg = units.codeOf("kg");
+        assertNotEquals(UnitRegistry.UNKNOWN, kg);
+        assertEquals(kg, units.codeOf(" KG "));
+        assertEquals(kg, units.codeOf("kilogram"));
+        assertEquals("kg", units.nameOf(kg));
+        assertEquals(units.codeOf("unit"), units.codeOf("piece"));
+        assertEquals(UnitRegistry.UNKNOWN, units.codeOf("tbsp"));
+        assertEquals(UnitRegistry.UNKNOWN, units.codeOf(null));
+        assertNull(units.baseUnitOf(UnitRegistry.UNKNOWN));
+    }
+
+    @Test
+    public void testConversionToBaseUnits() {
+        int kg = units.codeOf("kg");
+        int l = units.codeOf("l");
+        int mg = units.codeOf("mg");
+        assertEquals(UnitRegistry.MASS, units.dimensionOf(kg));
+        assertEquals(UnitRegistry.VOLUME, units.dimensionOf(l));
+        assertEquals(UnitRegistry.COUNT, units.dimensionOf(units.codeOf("pcs")));
+        assertEquals("g", units.baseUnitOf(kg));
+        assertEquals("ml", units.baseUnitOf(l));
+        assertEquals(1500.0, units.toBase(1.5, kg), 1e-9);
+        assertEquals(250.0, units.toBase(0.25, l), 1e-9);
+        assertEquals(0.5, units.toBase(500, mg), 1e-9);
+        assertEquals(3.0, units.toBase(3.0, UnitRegistry.UNKNOWN), 1e-9);
+    }
+
+    @Test
+    public void testCostMatchesPriceQuantities() {
+        // Mass and volume prices are per 100 g or ml, counted items per piece
+        assertEquals(5.0, units.costOf(500, units.codeOf("g"), 1.0), 1e-9);
+        assertEquals(20.0, units.costOf(1, units.codeOf("kg"), 2.0), 1e-9);
+        assertEquals(7.5, units.costOf(0.75, units.codeOf("l"), 1.0), 1e-9);
+        assertEquals(1.5, units.costOf(3, units.codeOf("piece"), 0.5), 1e-9);
+        assertEquals(0.8, units.costOf(2, UnitRegistry.UNKNOWN, 0.4), 1e-9);
+        assertEquals(units.costOf(1, units.codeOf("kg"), 3.0),
+                     units.costOf(1000, units.codeOf("g"), 3.0), 1e-9);
+    }
+}
@@ -0,0 +1,91 @@
+package com.berkant.kagan.haluk.irem.dietapp;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark for generateWeeklyPlan against running the single-day generator seven times.
+ * Not part of the test suite; run with
+ * java -cp target/classes:target/test-classes com.berkant.kagan.haluk.irem.dietapp.WeeklyPlanBenchmark
+ */
+public class WeeklyPlanBenchmark {
+
+    private static final int OPTIONS_PER_MEAL = 300;
+    private static final int MAX_REPEATS = 2;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        CalorieNutrientTrackingService calorieService = new CalorieNutrientTrackingService(null) {
+            @Override
+            public int calculateSuggestedCalories(char gender, int age, double heightCm, double weightKg, int activityLevel) {
+                return 2200;
+            }
+        };
+        Food[] breakfast = catalog("Breakfast", 1);
+        Food[] lunch = catalog("Lunch", 2);
+        Food[] dinner = catalog("Dinner", 3);
+        Food[] snack = catalog("Snack", 4);
+        MealPlanningService mealService = new MealPlanningService(null) {
+            @Override
+            public Food[] getBreakfastOptions() {
+                return breakfast;
+            }
+
+            @Override
+            public Food[] getLunchOptions() {
+                return lunch;
+            }
+
+            @Override
+            public Food[] getDinnerOptions() {
+                return dinner;
+            }
+
+            @Override
+            public Food[] getSnackOptions() {
+                return snack;
+            }
+        };
+        PersonalizedDietRecommendationService service =
+            new PersonalizedDietRecommendationService(calorieService, mealService);
+        ForkJoinPool single = new ForkJoinPool(1);
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int day = 0; day < 7; day++) {
+                service.generateRecommendations("bench", 'F', 35, 168, 64, 3);
+            }
+            long sevenDays = System.nanoTime() - start;
+
+            service.setWeeklyPlanPool(ForkJoinPool.commonPool());
+            start = System.nanoTime();
+            PersonalizedDietRecommendationService.WeeklyPlan plan =
+                service.generateWeeklyPlan("bench", 'F', 35, 168, 64, 3, MAX_REPEATS);
+            long weekly = System.nanoTime() - start;
+
+            service.setWeeklyPlanPool(single);
+            start = System.nanoTime();
+            service.generateWeeklyPlan("bench", 'F', 35, 168, 64, 3, MAX_REPEATS);
+            long weeklySingle = System.nanoTime() - start;
+
+            if (round == 0 || round == ROUNDS) {
+                System.out.printf("%s: 7 x single day %.2f ms, weekly plan %.2f ms (common pool, %d workers), "
+                                  + "%.2f ms (1 worker), repaired meals %d%n",
+                                  round == 0 ? "warmup" : "round " + round, sevenDays / 1e6, weekly / 1e6,
+                                  ForkJoinPool.getCommonPoolParallelism(), weeklySingle / 1e6,
+                                  plan.getRepairedMeals());
+            }
+        }
+        single.shutdown();
+    }
+
+    private static Food[] catalog(String prefix, long seed) {
+        Random random = new Random(seed);
+        Food[] foods = new Food[OPTIONS_PER_MEAL];
+        for (int i = 0; i < foods.length; i++) {
+            foods[i] = new FoodNutrient(prefix + " " + i, 100 + random.nextInt(200), 60 + random.nextInt(600),
+                                        random.nextInt(40), random.nextInt(80), random.nextInt(30), 0, 0, 0);
+        }
+        return foods;
+    }
+}